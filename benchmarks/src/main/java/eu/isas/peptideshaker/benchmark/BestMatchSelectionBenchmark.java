@@ -0,0 +1,101 @@
+package eu.isas.peptideshaker.benchmark;
+
+import com.compomics.util.experiment.identification.spectrum_assumptions.PeptideAssumption;
+import com.compomics.util.preferences.SequenceMatchingPreferences;
+import eu.isas.peptideshaker.scoring.psm_scoring.BestMatchSelection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of the selection of the best hit among first hits of equal score
+ * based on the number of hits of their proteins. The proteins of the hits
+ * have different counts so that the selection never needs to annotate the
+ * spectrum, which is not available on synthetic data.
+ *
+ * @author Marc Vaudel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BestMatchSelectionBenchmark {
+
+    /**
+     * The number of spectra processed per invocation.
+     */
+    private static final int N_SPECTRA = 1000;
+    /**
+     * The number of proteins in the synthetic database.
+     */
+    private static final int N_PROTEINS = 20000;
+    /**
+     * The number of first hits of equal score per spectrum.
+     */
+    @Param({"1", "2", "5"})
+    public int nFirstHits;
+    /**
+     * The keys of the spectra.
+     */
+    private String[] spectrumKeys;
+    /**
+     * The first hits of the spectra.
+     */
+    private ArrayList<ArrayList<PeptideAssumption>> firstHits;
+    /**
+     * The number of times every protein appeared as first hit.
+     */
+    private HashMap<String, Integer> proteinCount;
+    /**
+     * The sequence matching preferences.
+     */
+    private SequenceMatchingPreferences sequenceMatchingPreferences;
+
+    /**
+     * Generates the first hits and the protein count.
+     */
+    @Setup
+    public void setUp() {
+        SyntheticData syntheticData = new SyntheticData();
+        spectrumKeys = new String[N_SPECTRA];
+        firstHits = new ArrayList<ArrayList<PeptideAssumption>>(N_SPECTRA);
+        for (int i = 0; i < N_SPECTRA; i++) {
+            spectrumKeys[i] = SyntheticData.getSpectrumKey(1, i);
+            firstHits.add(syntheticData.getFirstHits(nFirstHits, N_PROTEINS));
+        }
+        proteinCount = new HashMap<String, Integer>(N_PROTEINS);
+        for (int i = 0; i < N_PROTEINS; i++) {
+            proteinCount.put(SyntheticData.getAccession(i, false), i + 1);
+        }
+        sequenceMatchingPreferences = SequenceMatchingPreferences.getDefaultSequenceMatching();
+    }
+
+    /**
+     * Selects the best hit of every spectrum.
+     *
+     * @param blackhole the blackhole consuming the best hits
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * selecting a best hit
+     */
+    @Benchmark
+    public void getBestHit(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < N_SPECTRA; i++) {
+            blackhole.consume(BestMatchSelection.getBestHit(spectrumKeys[i], firstHits.get(i), proteinCount, sequenceMatchingPreferences, null, null));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package eu.isas.peptideshaker.benchmark;
+
+import eu.isas.peptideshaker.utils.IdentificationFeaturesCache;
+import eu.isas.peptideshaker.utils.IdentificationFeaturesCache.ObjectType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of the identification features cache. The types benchmarked by
+ * default are stored in an integer column, in a double column and in an
+ * object cache respectively.
+ *
+ * @author Marc Vaudel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class IdentificationFeaturesCacheBenchmark {
+
+    /**
+     * The type of the objects.
+     */
+    @Param({"number_of_validated_spectra", "spectrum_counting", "sequence_validation_coverage"})
+    public ObjectType objectType;
+    /**
+     * The number of matches.
+     */
+    @Param({"100000"})
+    public int nMatches;
+    /**
+     * The keys of the matches.
+     */
+    private String[] matchKeys;
+    /**
+     * The objects to store.
+     */
+    private Object[] objects;
+    /**
+     * A cache filled with the objects.
+     */
+    private IdentificationFeaturesCache cache;
+
+    /**
+     * Generates the objects and fills the cache.
+     */
+    @Setup
+    public void setUp() {
+        SyntheticData syntheticData = new SyntheticData();
+        matchKeys = new String[nMatches];
+        objects = new Object[nMatches];
+        for (int i = 0; i < nMatches; i++) {
+            matchKeys[i] = SyntheticData.getAccession(i, false);
+            if (objectType == ObjectType.number_of_validated_spectra) {
+                objects[i] = syntheticData.nextInt(1000);
+            } else {
+                objects[i] = syntheticData.nextDouble();
+            }
+        }
+        cache = new IdentificationFeaturesCache();
+        for (int i = 0; i < nMatches; i++) {
+            cache.addObject(objectType, matchKeys[i], objects[i]);
+        }
+    }
+
+    /**
+     * Adds all the objects to a new cache.
+     *
+     * @return the cache
+     */
+    @Benchmark
+    public IdentificationFeaturesCache addObject() {
+        IdentificationFeaturesCache result = new IdentificationFeaturesCache();
+        for (int i = 0; i < nMatches; i++) {
+            result.addObject(objectType, matchKeys[i], objects[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Gets all the objects from the filled cache.
+     *
+     * @param blackhole the blackhole consuming the objects
+     */
+    @Benchmark
+    public void getObject(Blackhole blackhole) {
+        for (int i = 0; i < nMatches; i++) {
+            blackhole.consume(cache.getObject(objectType, matchKeys[i]));
+        }
+    }
+}
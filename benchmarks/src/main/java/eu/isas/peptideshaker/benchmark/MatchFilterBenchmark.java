@@ -0,0 +1,108 @@
+package eu.isas.peptideshaker.benchmark;
+
+import com.compomics.util.experiment.filtering.FilterItemComparator;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of the validation of matches by a filter on a confidence and a
+ * score threshold, with compiled or uncompiled items and with a given number
+ * of exceptions as set by the user when manually invalidating matches.
+ *
+ * @author Marc Vaudel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MatchFilterBenchmark {
+
+    /**
+     * The name of the confidence feature.
+     */
+    private static final String CONFIDENCE = "confidence";
+    /**
+     * The name of the score feature.
+     */
+    private static final String SCORE = "score";
+    /**
+     * The number of matches.
+     */
+    @Param({"100000"})
+    public int nMatches;
+    /**
+     * Boolean indicating whether the filter items are compiled to numeric
+     * predicates.
+     */
+    @Param({"true", "false"})
+    public boolean compiled;
+    /**
+     * The number of exceptions in the filter.
+     */
+    @Param({"0", "1000"})
+    public int nExceptions;
+    /**
+     * The keys of the matches.
+     */
+    private String[] matchKeys;
+    /**
+     * The filter.
+     */
+    private SyntheticMatchFilter filter;
+
+    /**
+     * Generates the matches and sets up the filter.
+     */
+    @Setup
+    public void setUp() {
+        SyntheticData syntheticData = new SyntheticData();
+        boolean[] decoys = syntheticData.getDecoys(nMatches, 0.5);
+        double[] scores = syntheticData.getScores(decoys);
+        matchKeys = new String[nMatches];
+        HashMap<String, Double> confidences = new HashMap<String, Double>(nMatches);
+        HashMap<String, Double> scoresMap = new HashMap<String, Double>(nMatches);
+        for (int i = 0; i < nMatches; i++) {
+            matchKeys[i] = SyntheticData.getSpectrumKey(1, i);
+            confidences.put(matchKeys[i], 100 * syntheticData.nextDouble());
+            scoresMap.put(matchKeys[i], scores[i]);
+        }
+        HashMap<String, HashMap<String, Double>> features = new HashMap<String, HashMap<String, Double>>(2);
+        features.put(CONFIDENCE, confidences);
+        features.put(SCORE, scoresMap);
+        filter = new SyntheticMatchFilter(features, compiled);
+        filter.setFilterItem(CONFIDENCE, FilterItemComparator.higherOrEqual, 20.0);
+        filter.setFilterItem(SCORE, FilterItemComparator.higherOrEqual, 30.0);
+        for (int i = 0; i < nExceptions; i++) {
+            filter.addException(SyntheticData.getSpectrumKey(2, i));
+        }
+    }
+
+    /**
+     * Validates every match.
+     *
+     * @param blackhole the blackhole consuming the validation results
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * validating a match
+     */
+    @Benchmark
+    public void isValidated(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < nMatches; i++) {
+            blackhole.consume(filter.isValidated(matchKeys[i], null, null, null, null, null));
+        }
+    }
+}
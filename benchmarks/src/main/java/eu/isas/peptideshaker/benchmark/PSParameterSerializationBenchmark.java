@@ -0,0 +1,368 @@
+package eu.isas.peptideshaker.benchmark;
+
+import eu.isas.peptideshaker.parameters.PSParameter;
+import eu.isas.peptideshaker.scoring.MatchValidationLevel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark comparing the binary layout of the PSParameter with the default
+ * Java serialization of the same attributes. Every parameter is serialized in
+ * its own byte array, as done when storing matches parameters in the
+ * database.
+ *
+ * @author Marc Vaudel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PSParameterSerializationBenchmark {
+
+    /**
+     * The number of parameters.
+     */
+    @Param({"100000"})
+    public int nParameters;
+    /**
+     * The parameters.
+     */
+    private PSParameter[] parameters;
+    /**
+     * The copies of the parameters using the default Java serialization.
+     */
+    private LegacyParameter[] legacyParameters;
+    /**
+     * The serialized parameters.
+     */
+    private byte[][] serialized;
+    /**
+     * The serialized copies of the parameters.
+     */
+    private byte[][] legacySerialized;
+
+    /**
+     * Generates the parameters and serializes them.
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * serializing a parameter
+     */
+    @Setup
+    public void setUp() throws IOException {
+        parameters = new PSParameter[nParameters];
+        legacyParameters = new LegacyParameter[nParameters];
+        for (int i = 0; i < nParameters; i++) {
+            parameters[i] = getParameter(i);
+            legacyParameters[i] = new LegacyParameter(parameters[i], i);
+        }
+        serialized = serialize(parameters);
+        legacySerialized = serialize(legacyParameters);
+    }
+
+    /**
+     * Serializes the parameters using the binary layout.
+     *
+     * @return the serialized parameters
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * serializing a parameter
+     */
+    @Benchmark
+    public byte[][] serializeBinary() throws IOException {
+        return serialize(parameters);
+    }
+
+    /**
+     * Serializes the copies of the parameters using the default Java
+     * serialization.
+     *
+     * @return the serialized parameters
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * serializing a parameter
+     */
+    @Benchmark
+    public byte[][] serializeJava() throws IOException {
+        return serialize(legacyParameters);
+    }
+
+    /**
+     * Deserializes the parameters written using the binary layout.
+     *
+     * @param blackhole the blackhole consuming the parameters
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * deserializing a parameter
+     * @throws ClassNotFoundException exception thrown whenever the class of a
+     * parameter was not found
+     */
+    @Benchmark
+    public void deserializeBinary(Blackhole blackhole) throws IOException, ClassNotFoundException {
+        for (byte[] bytes : serialized) {
+            PSParameter psParameter = (PSParameter) deserialize(bytes);
+            blackhole.consume(psParameter.getPsmProbability());
+        }
+    }
+
+    /**
+     * Deserializes the copies of the parameters written using the default Java
+     * serialization.
+     *
+     * @param blackhole the blackhole consuming the parameters
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * deserializing a parameter
+     * @throws ClassNotFoundException exception thrown whenever the class of a
+     * parameter was not found
+     */
+    @Benchmark
+    public void deserializeJava(Blackhole blackhole) throws IOException, ClassNotFoundException {
+        for (byte[] bytes : legacySerialized) {
+            LegacyParameter legacyParameter = (LegacyParameter) deserialize(bytes);
+            blackhole.consume(legacyParameter.psmProbability);
+        }
+    }
+
+    /**
+     * Returns a parameter filled with test values. One parameter out of ten
+     * has fraction and quality control maps.
+     *
+     * @param index the index of the parameter
+     *
+     * @return a parameter filled with test values
+     */
+    private static PSParameter getParameter(int index) {
+        PSParameter psParameter = new PSParameter();
+        psParameter.setSearchEngineProbability(index * 1e-7);
+        psParameter.setSpectrumProbabilityScore(index * 2e-7);
+        psParameter.setPsmProbability(index * 3e-7);
+        psParameter.setPeptideProbabilityScore(index * 4e-7);
+        psParameter.setPeptideProbability(index * 5e-7);
+        psParameter.setAlgorithmDeltaPEP(0.5);
+        psParameter.setDeltaPEP(0.25);
+        psParameter.setMatchValidationLevel(MatchValidationLevel.confident);
+        psParameter.setSpecificMapKey("2");
+        if (index % 10 == 0) {
+            psParameter.setFractionPEP("fraction_1", 0.01);
+            psParameter.setFractionScore("fraction_1", 0.02);
+            psParameter.setQcResult("Fragment ion sequence coverage", true);
+            psParameter.setQcResult("Precursor m/z deviation", false);
+            psParameter.setIntermediateScore(1, 0.1);
+        }
+        return psParameter;
+    }
+
+    /**
+     * Serializes the given objects, each in its own byte array.
+     *
+     * @param objects the objects to serialize
+     *
+     * @return the serialized objects
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * serializing an object
+     */
+    private static byte[][] serialize(Object[] objects) throws IOException {
+        byte[][] result = new byte[objects.length][];
+        for (int i = 0; i < objects.length; i++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(objects[i]);
+            out.close();
+            result[i] = bytes.toByteArray();
+        }
+        return result;
+    }
+
+    /**
+     * Deserializes an object.
+     *
+     * @param bytes the serialized object
+     *
+     * @return the object
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * deserializing the object
+     * @throws ClassNotFoundException exception thrown whenever the class of
+     * the object was not found
+     */
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Copy of the PSParameter attributes serialized using the default Java
+     * serialization, used as reference.
+     */
+    private static class LegacyParameter implements Serializable {
+
+        /**
+         * Serial version UID for post-serialization compatibility.
+         */
+        static final long serialVersionUID = 1L;
+        /**
+         * Posterior error probability estimated for the search engine results.
+         */
+        private double searchEngineProbability;
+        /**
+         * The algorithm delta PEP.
+         */
+        private Double algorithmDeltaPEP;
+        /**
+         * The delta PEP.
+         */
+        private Double deltaPEP;
+        /**
+         * Probabilistic score for a peptide to spectrum match.
+         */
+        private double psmProbabilityScore;
+        /**
+         * Spectrum posterior error probability.
+         */
+        private double psmProbability;
+        /**
+         * Probabilistic score for a peptide match.
+         */
+        private double peptideProbabilityScore;
+        /**
+         * Peptide Posterior error probability.
+         */
+        private double peptideProbability;
+        /**
+         * Probabilistic score for a protein match.
+         */
+        private double proteinProbabilityScore;
+        /**
+         * Protein posterior error probability.
+         */
+        private double proteinProbability;
+        /**
+         * The validation level.
+         */
+        private MatchValidationLevel matchValidationLevel;
+        /**
+         * Indicates whether the validation was manually updated.
+         */
+        private Boolean manualValidation = false;
+        /**
+         * Indicates whether the match is hidden.
+         */
+        private boolean hidden = false;
+        /**
+         * Indicates whether the match is starred.
+         */
+        private boolean starred = false;
+        /**
+         * The key in the corresponding specific map.
+         */
+        private String specificMapKey;
+        /**
+         * The protein inference class.
+         */
+        private int groupClass = PSParameter.NOT_GROUP;
+        /**
+         * The fraction PEP map.
+         */
+        private HashMap<String, Double> fractionPEP = null;
+        /**
+         * The fraction score map.
+         */
+        private HashMap<String, Double> fractionScore = null;
+        /**
+         * The number of validated peptides per fraction.
+         */
+        private HashMap<String, Integer> validatedPeptidesPerFraction = null;
+        /**
+         * The number of validated spectra per fraction.
+         */
+        private HashMap<String, Integer> validatedSpectraPerFraction = null;
+        /**
+         * The precursor intensity per fraction.
+         */
+        private HashMap<String, ArrayList<Double>> precursorIntensityPerFraction = null;
+        /**
+         * The average precursor intensity per fraction.
+         */
+        private HashMap<String, Double> precursorIntensityAveragePerFraction = null;
+        /**
+         * The summed precursor intensity per fraction.
+         */
+        private HashMap<String, Double> precursorIntensitySummedPerFraction = null;
+        /**
+         * The results of the validation quality filters.
+         */
+        private HashMap<String, Boolean> qcFilters = null;
+        /**
+         * Map of the intermediate scores.
+         */
+        private HashMap<Integer, Double> intermediateScores;
+
+        /**
+         * Constructor copying the attributes of a parameter.
+         *
+         * @param psParameter the parameter to copy
+         * @param index the index used to create the parameter
+         */
+        public LegacyParameter(PSParameter psParameter, int index) {
+            searchEngineProbability = psParameter.getSearchEngineProbability();
+            algorithmDeltaPEP = psParameter.getAlgorithmDeltaPEP();
+            deltaPEP = psParameter.getDeltaPEP();
+            psmProbabilityScore = psParameter.getPsmProbabilityScore();
+            psmProbability = psParameter.getPsmProbability();
+            peptideProbabilityScore = psParameter.getPeptideProbabilityScore();
+            peptideProbability = psParameter.getPeptideProbability();
+            proteinProbabilityScore = psParameter.getProteinProbabilityScore();
+            proteinProbability = psParameter.getProteinProbability();
+            matchValidationLevel = psParameter.getMatchValidationLevel();
+            manualValidation = psParameter.isManualValidation();
+            hidden = psParameter.isHidden();
+            starred = psParameter.isStarred();
+            specificMapKey = psParameter.getSpecificMapKey();
+            groupClass = psParameter.getProteinInferenceClass();
+            if (psParameter.getFractions() != null) {
+                fractionPEP = new HashMap<String, Double>();
+                fractionScore = new HashMap<String, Double>();
+                for (String fraction : psParameter.getFractions()) {
+                    fractionPEP.put(fraction, psParameter.getFractionPEP(fraction));
+                    fractionScore.put(fraction, psParameter.getFractionScore(fraction));
+                }
+            }
+            if (psParameter.hasQcFilters()) {
+                qcFilters = new HashMap<String, Boolean>();
+                for (String criterion : psParameter.getQcCriteria()) {
+                    qcFilters.put(criterion, psParameter.isQcPassed(criterion));
+                }
+            }
+            if (index % 10 == 0) {
+                intermediateScores = new HashMap<Integer, Double>();
+                intermediateScores.put(1, psParameter.getIntermediateScore(1));
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package eu.isas.peptideshaker.benchmark;
+
+import com.compomics.util.experiment.identification.matches.SpectrumMatch;
+import com.compomics.util.gui.waiting.waitinghandlers.WaitingHandlerCLIImpl;
+import eu.isas.peptideshaker.scoring.maps.PsmPTMMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of the PSM PTM map: adding the localization scores of spectrum
+ * matches, grouping the charges which are not statistically significant and
+ * getting the localization probability of every match. The modifications are
+ * distributed among the matches at the given density.
+ *
+ * @author Marc Vaudel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PsmPTMMapBenchmark {
+
+    /**
+     * The masses of the modifications.
+     */
+    private static final double[] PTM_MASSES = {79.966331, 15.994915, 42.010565};
+    /**
+     * The minimal FLR to achieve, 1% as in the default PTM scoring
+     * preferences.
+     */
+    private static final double MINIMAL_FLR = 0.01;
+    /**
+     * The number of spectrum matches.
+     */
+    @Param({"100000"})
+    public int nMatches;
+    /**
+     * The share of the localizations which are conflicting.
+     */
+    @Param({"0.05"})
+    public double conflictRatio;
+    /**
+     * The spectrum matches.
+     */
+    private SpectrumMatch[] spectrumMatches;
+    /**
+     * The mass of the modification of every match.
+     */
+    private double[] ptmMasses;
+    /**
+     * The localization score of every match.
+     */
+    private double[] scores;
+    /**
+     * The conflict flag of every match.
+     */
+    private boolean[] conflicts;
+    /**
+     * The charge of every match.
+     */
+    private int[] charges;
+    /**
+     * A map filled with all matches, grouped and whose probabilities are
+     * estimated.
+     */
+    private PsmPTMMap psmPTMMap;
+
+    /**
+     * Generates the matches and fills the map.
+     */
+    @Setup
+    public void setUp() {
+        SyntheticData syntheticData = new SyntheticData();
+        conflicts = syntheticData.getDecoys(nMatches, conflictRatio);
+        scores = syntheticData.getScores(conflicts);
+        spectrumMatches = new SpectrumMatch[nMatches];
+        ptmMasses = new double[nMatches];
+        charges = new int[nMatches];
+        for (int i = 0; i < nMatches; i++) {
+            ptmMasses[i] = PTM_MASSES[syntheticData.nextInt(PTM_MASSES.length)];
+            spectrumMatches[i] = syntheticData.getSpectrumMatch(1, i, 20000, ptmMasses[i]);
+            scores[i] = -scores[i];
+        }
+        psmPTMMap = getGroupedMap();
+        for (int i = 0; i < nMatches; i++) {
+            charges[i] = psmPTMMap.getKey(spectrumMatches[i]);
+        }
+        psmPTMMap.estimateProbabilities(new WaitingHandlerCLIImpl());
+    }
+
+    /**
+     * Returns a new map filled with all matches and where the charges are
+     * grouped.
+     *
+     * @return a new grouped map
+     */
+    private PsmPTMMap getGroupedMap() {
+        PsmPTMMap result = new PsmPTMMap();
+        for (int i = 0; i < nMatches; i++) {
+            result.addPoint(ptmMasses[i], scores[i], spectrumMatches[i], conflicts[i]);
+        }
+        result.clean(MINIMAL_FLR);
+        return result;
+    }
+
+    /**
+     * Fills a new map with all matches and groups the charges.
+     *
+     * @return the grouped map
+     */
+    @Benchmark
+    public PsmPTMMap addPointAndGroup() {
+        return getGroupedMap();
+    }
+
+    /**
+     * Returns the localization probability of every match.
+     *
+     * @param blackhole the blackhole consuming the probabilities
+     */
+    @Benchmark
+    public void getProbability(Blackhole blackhole) {
+        for (int i = 0; i < nMatches; i++) {
+            blackhole.consume(psmPTMMap.getProbability(ptmMasses[i], charges[i], scores[i]));
+        }
+    }
+}
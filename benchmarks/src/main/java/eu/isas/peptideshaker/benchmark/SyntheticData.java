@@ -0,0 +1,248 @@
+package eu.isas.peptideshaker.benchmark;
+
+import com.compomics.util.experiment.biology.Peptide;
+import com.compomics.util.experiment.identification.matches.ModificationMatch;
+import com.compomics.util.experiment.identification.matches.SpectrumMatch;
+import com.compomics.util.experiment.identification.spectrum_assumptions.PeptideAssumption;
+import com.compomics.util.experiment.massspectrometry.Charge;
+import com.compomics.util.experiment.massspectrometry.Spectrum;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generator of synthetic identification data for the benchmarks. The data is
+ * drawn from a random generator initialized with a fixed seed so that every
+ * run of a benchmark works on the same data.
+ *
+ * @author Marc Vaudel
+ */
+public class SyntheticData {
+
+    /**
+     * The default seed.
+     */
+    public static final long SEED = 20170101L;
+    /**
+     * The amino acids used to build the peptide sequences.
+     */
+    private static final String AMINO_ACIDS = "ACDEFGHIKLMNPQRSTVWY";
+    /**
+     * The tag appended to the accession of decoy proteins.
+     */
+    public static final String DECOY_TAG = "_REVERSED";
+    /**
+     * The random generator.
+     */
+    private final Random random;
+
+    /**
+     * Constructor using the default seed.
+     */
+    public SyntheticData() {
+        this(SEED);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param seed the seed of the random generator
+     */
+    public SyntheticData(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Returns decoy flags where the given share of the hits are decoys.
+     *
+     * @param nHits the number of hits
+     * @param decoyRatio the share of decoy hits
+     *
+     * @return the decoy flags
+     */
+    public boolean[] getDecoys(int nHits, double decoyRatio) {
+        boolean[] decoys = new boolean[nHits];
+        for (int i = 0; i < nHits; i++) {
+            decoys[i] = random.nextDouble() < decoyRatio;
+        }
+        return decoys;
+    }
+
+    /**
+     * Returns scores for the given hits. Decoys and as many targets are drawn
+     * from the distribution of random hits, the other targets from the
+     * distribution of correct hits. The scores are rounded to two decimals so
+     * that different hits share the same score like in search engine results.
+     *
+     * @param decoys the decoy flags of the hits
+     *
+     * @return the scores
+     */
+    public double[] getScores(boolean[] decoys) {
+        int nDecoys = 0;
+        for (boolean decoy : decoys) {
+            if (decoy) {
+                nDecoys++;
+            }
+        }
+        double falseTargetShare = decoys.length == nDecoys ? 0 : ((double) nDecoys) / (decoys.length - nDecoys);
+        double[] scores = new double[decoys.length];
+        for (int i = 0; i < decoys.length; i++) {
+            double score;
+            if (decoys[i] || random.nextDouble() < falseTargetShare) {
+                score = 20 + 8 * random.nextGaussian();
+            } else {
+                score = 60 + 15 * random.nextGaussian();
+            }
+            scores[i] = Math.round(Math.max(score, 0) * 100) / 100.0;
+        }
+        return scores;
+    }
+
+    /**
+     * Returns a random peptide sequence ending with a tryptic residue.
+     *
+     * @param length the length of the sequence
+     *
+     * @return a random peptide sequence
+     */
+    public String getSequence(int length) {
+        StringBuilder sequence = new StringBuilder(length);
+        for (int i = 0; i < length - 1; i++) {
+            sequence.append(AMINO_ACIDS.charAt(random.nextInt(AMINO_ACIDS.length())));
+        }
+        sequence.append(random.nextBoolean() ? 'K' : 'R');
+        return sequence.toString();
+    }
+
+    /**
+     * Returns the accession of a synthetic protein.
+     *
+     * @param index the index of the protein
+     * @param decoy boolean indicating whether the protein is a decoy
+     *
+     * @return the accession of the protein
+     */
+    public static String getAccession(int index, boolean decoy) {
+        String accession = "SYN" + index;
+        if (decoy) {
+            accession += DECOY_TAG;
+        }
+        return accession;
+    }
+
+    /**
+     * Returns the key of a synthetic spectrum.
+     *
+     * @param fraction the index of the fraction
+     * @param index the index of the spectrum in the fraction
+     *
+     * @return the key of the spectrum
+     */
+    public static String getSpectrumKey(int fraction, int index) {
+        return Spectrum.getSpectrumKey(getSpectrumFileName(fraction), getSpectrumTitle(index));
+    }
+
+    /**
+     * Returns the name of the spectrum file of a synthetic fraction.
+     *
+     * @param fraction the index of the fraction
+     *
+     * @return the name of the spectrum file
+     */
+    public static String getSpectrumFileName(int fraction) {
+        return "synthetic_" + fraction + ".mgf";
+    }
+
+    /**
+     * Returns the title of a synthetic spectrum.
+     *
+     * @param index the index of the spectrum
+     *
+     * @return the title of the spectrum
+     */
+    public static String getSpectrumTitle(int index) {
+        return "spectrum_" + index;
+    }
+
+    /**
+     * Returns a peptide assumption on a random sequence mapping to a single
+     * protein.
+     *
+     * @param proteinIndex the index of the protein
+     * @param decoy boolean indicating whether the protein is a decoy
+     * @param score the score of the assumption
+     * @param ptmMass the mass of the modification to carry, null if none
+     *
+     * @return a peptide assumption
+     */
+    public PeptideAssumption getPeptideAssumption(int proteinIndex, boolean decoy, double score, Double ptmMass) {
+        String sequence = getSequence(7 + random.nextInt(14));
+        ArrayList<ModificationMatch> modificationMatches = new ArrayList<ModificationMatch>(1);
+        if (ptmMass != null) {
+            modificationMatches.add(new ModificationMatch(ptmMass + "@S", true, 1 + random.nextInt(sequence.length())));
+        }
+        Peptide peptide = new Peptide(sequence, modificationMatches);
+        ArrayList<String> accessions = new ArrayList<String>(1);
+        accessions.add(getAccession(proteinIndex, decoy));
+        peptide.setParentProteins(accessions);
+        Charge charge = new Charge(Charge.PLUS, 2 + random.nextInt(3));
+        return new PeptideAssumption(peptide, 1, 0, charge, score);
+    }
+
+    /**
+     * Returns first hits of equal score for a spectrum. Every hit maps to a
+     * different protein.
+     *
+     * @param nHits the number of hits
+     * @param nProteins the number of proteins to draw from
+     *
+     * @return the first hits
+     */
+    public ArrayList<PeptideAssumption> getFirstHits(int nHits, int nProteins) {
+        ArrayList<PeptideAssumption> firstHits = new ArrayList<PeptideAssumption>(nHits);
+        double score = 40 * random.nextDouble();
+        int firstProtein = random.nextInt(nProteins);
+        for (int i = 0; i < nHits; i++) {
+            firstHits.add(getPeptideAssumption((firstProtein + i) % nProteins, false, score, null));
+        }
+        return firstHits;
+    }
+
+    /**
+     * Returns a spectrum match whose best assumption carries the given
+     * modification.
+     *
+     * @param fraction the index of the fraction
+     * @param index the index of the spectrum in the fraction
+     * @param nProteins the number of proteins to draw from
+     * @param ptmMass the mass of the modification
+     *
+     * @return a spectrum match
+     */
+    public SpectrumMatch getSpectrumMatch(int fraction, int index, int nProteins, double ptmMass) {
+        SpectrumMatch spectrumMatch = new SpectrumMatch(getSpectrumKey(fraction, index));
+        spectrumMatch.setBestPeptideAssumption(getPeptideAssumption(random.nextInt(nProteins), false, 100 * random.nextDouble(), ptmMass));
+        return spectrumMatch;
+    }
+
+    /**
+     * Returns a random integer between 0 (inclusive) and the given bound
+     * (exclusive).
+     *
+     * @param bound the bound
+     *
+     * @return a random integer
+     */
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    /**
+     * Returns a random double between 0 (inclusive) and 1 (exclusive).
+     *
+     * @return a random double
+     */
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+}
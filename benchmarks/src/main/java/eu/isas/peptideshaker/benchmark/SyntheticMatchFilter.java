@@ -0,0 +1,92 @@
+package eu.isas.peptideshaker.benchmark;
+
+import com.compomics.util.experiment.biology.genes.GeneMaps;
+import com.compomics.util.experiment.filtering.FilterItem;
+import com.compomics.util.experiment.filtering.FilterItemComparator;
+import com.compomics.util.experiment.identification.Identification;
+import com.compomics.util.experiment.identification.spectrum_annotation.spectrum_annotators.PeptideSpectrumAnnotator;
+import com.compomics.util.preferences.IdentificationParameters;
+import eu.isas.peptideshaker.filtering.FilterItemPredicate;
+import eu.isas.peptideshaker.filtering.FilteredMatch;
+import eu.isas.peptideshaker.filtering.MatchFilter;
+import eu.isas.peptideshaker.filtering.NumericFilterItemPredicate;
+import eu.isas.peptideshaker.utils.IdentificationFeaturesGenerator;
+import java.util.HashMap;
+
+/**
+ * Filter on synthetic numeric features of matches. The features are read
+ * from maps instead of an identification so that the benchmark measures the
+ * evaluation of the filter only.
+ *
+ * @author Marc Vaudel
+ */
+public class SyntheticMatchFilter extends MatchFilter {
+
+    /**
+     * Serial number for serialization compatibility.
+     */
+    static final long serialVersionUID = -4391560027264937841L;
+    /**
+     * The value of every feature for every match: feature name &gt; match key
+     * &gt; value.
+     */
+    private final HashMap<String, HashMap<String, Double>> features;
+    /**
+     * Boolean indicating whether the items should be compiled to numeric
+     * predicates, if not the items are evaluated like the filters without
+     * compiled items.
+     */
+    private final boolean compiled;
+
+    /**
+     * Constructor.
+     *
+     * @param features the value of every feature for every match: feature
+     * name &gt; match key &gt; value
+     * @param compiled boolean indicating whether the items should be compiled
+     * to numeric predicates
+     */
+    public SyntheticMatchFilter(HashMap<String, HashMap<String, Double>> features, boolean compiled) {
+        this.features = features;
+        this.compiled = compiled;
+        this.name = "Synthetic filter";
+        this.filterType = FilterType.PSM;
+    }
+
+    @Override
+    protected MatchFilter getNew() {
+        return new SyntheticMatchFilter(features, compiled);
+    }
+
+    @Override
+    public boolean isValidated(String itemName, FilterItemComparator filterItemComparator, Object value, String matchKey, Identification identification, GeneMaps geneMaps, IdentificationFeaturesGenerator identificationFeaturesGenerator,
+            IdentificationParameters identificationParameters, PeptideSpectrumAnnotator peptideSpectrumAnnotator) {
+        String input = value.toString();
+        Double feature = features.get(itemName).get(matchKey);
+        return filterItemComparator.passes(input, feature.toString());
+    }
+
+    @Override
+    protected FilterItemPredicate compileItem(final String itemName, FilterItemComparator filterItemComparator, Object value) {
+        if (compiled) {
+            final HashMap<String, Double> featureValues = features.get(itemName);
+            return new NumericFilterItemPredicate(filterItemComparator, value) {
+                @Override
+                protected Number getValue(FilteredMatch filteredMatch) {
+                    return featureValues.get(filteredMatch.getMatchKey());
+                }
+            };
+        }
+        return super.compileItem(itemName, filterItemComparator, value);
+    }
+
+    @Override
+    public FilterItem[] getPossibleFilterItems() {
+        return new FilterItem[0];
+    }
+
+    @Override
+    public FilterItem getFilterItem(String itemName) {
+        return null;
+    }
+}
@@ -0,0 +1,132 @@
+package eu.isas.peptideshaker.benchmark;
+
+import com.compomics.util.gui.waiting.waitinghandlers.WaitingHandlerCLIImpl;
+import com.compomics.util.waiting.WaitingHandler;
+import eu.isas.peptideshaker.scoring.targetdecoy.TargetDecoyMap;
+import eu.isas.peptideshaker.scoring.targetdecoy.TargetDecoySeries;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the target decoy maps on synthetic scores: filling a map,
+ * estimating its probabilities, getting the probability of scores and
+ * building the target decoy series. Every benchmark processes all the scores
+ * of the map.
+ *
+ * @author Marc Vaudel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TargetDecoyMapBenchmark {
+
+    /**
+     * The number of hits in the map.
+     */
+    @Param({"10000", "1000000"})
+    public int nHits;
+    /**
+     * The share of decoy hits.
+     */
+    @Param({"0.05", "0.5"})
+    public double decoyRatio;
+    /**
+     * The scores of the hits.
+     */
+    private double[] scores;
+    /**
+     * The decoy flags of the hits.
+     */
+    private boolean[] decoys;
+    /**
+     * A map filled with the hits and whose probabilities are estimated.
+     */
+    private TargetDecoyMap targetDecoyMap;
+    /**
+     * The waiting handler passed to the maps.
+     */
+    private WaitingHandler waitingHandler;
+
+    /**
+     * Generates the hits and fills the map.
+     */
+    @Setup
+    public void setUp() {
+        SyntheticData syntheticData = new SyntheticData();
+        decoys = syntheticData.getDecoys(nHits, decoyRatio);
+        scores = syntheticData.getScores(decoys);
+        waitingHandler = new WaitingHandlerCLIImpl();
+        targetDecoyMap = getFilledMap();
+        targetDecoyMap.estimateProbabilities(waitingHandler);
+    }
+
+    /**
+     * Returns a new map filled with the hits.
+     *
+     * @return a new map filled with the hits
+     */
+    private TargetDecoyMap getFilledMap() {
+        TargetDecoyMap result = new TargetDecoyMap();
+        for (int i = 0; i < nHits; i++) {
+            result.put(scores[i], decoys[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Fills a new map with the hits.
+     *
+     * @return the filled map
+     */
+    @Benchmark
+    public TargetDecoyMap put() {
+        return getFilledMap();
+    }
+
+    /**
+     * Estimates the probabilities of the filled map.
+     *
+     * @return the map
+     */
+    @Benchmark
+    public TargetDecoyMap estimateProbabilities() {
+        targetDecoyMap.estimateProbabilities(waitingHandler);
+        return targetDecoyMap;
+    }
+
+    /**
+     * Returns the probability of every hit.
+     *
+     * @param blackhole the blackhole consuming the probabilities
+     */
+    @Benchmark
+    public void getProbability(Blackhole blackhole) {
+        for (int i = 0; i < nHits; i++) {
+            blackhole.consume(targetDecoyMap.getProbability(scores[i]));
+        }
+    }
+
+    /**
+     * Builds the target decoy series of the map.
+     *
+     * @return the target decoy series
+     */
+    @Benchmark
+    public TargetDecoySeries targetDecoySeries() {
+        return targetDecoyMap.getTargetDecoySeries();
+    }
+}
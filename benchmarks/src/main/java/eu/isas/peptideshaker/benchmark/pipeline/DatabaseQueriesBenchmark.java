@@ -0,0 +1,252 @@
+package eu.isas.peptideshaker.benchmark.pipeline;
+
+import com.compomics.util.db.ObjectsCache;
+import com.compomics.util.db.ObjectsDB;
+import com.compomics.util.experiment.identification.identifications.Ms2Identification;
+import com.compomics.util.experiment.massspectrometry.Spectrum;
+import com.compomics.util.gui.waiting.waitinghandlers.WaitingHandlerCLIImpl;
+import eu.isas.peptideshaker.parameters.PSParameter;
+import eu.isas.peptideshaker.validation.MatchesValidator;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/**
+ * Benchmark counting the queries sent to the identification database when
+ * reading the PSM parameters one match at a time and by pages of
+ * MatchesValidator.BATCH_SIZE matches, the access used when filling the
+ * peptide maps. The parameters are stored in a database created in a
+ * temporary folder, and the objects cache is emptied before every pass so
+ * that the parameters are read from the database. The queries are counted
+ * from the interactions logged by the database, the runtime of every pass is
+ * reported as well.
+ *
+ * Usage: DatabaseQueriesBenchmark [number of PSMs, default 100000]
+ *
+ * @author Marc Vaudel
+ */
+public class DatabaseQueriesBenchmark {
+
+    /**
+     * The name of the spectrum file of the matches.
+     */
+    private static final String SPECTRUM_FILE = "benchmark.mgf";
+    /**
+     * The identification.
+     */
+    private final Ms2Identification identification;
+    /**
+     * The cache of the database.
+     */
+    private final ObjectsCache objectsCache;
+    /**
+     * The keys of the PSMs.
+     */
+    private final ArrayList<String> spectrumKeys;
+
+    /**
+     * Constructor. Creates the database and stores the parameters of the
+     * given number of PSMs.
+     *
+     * @param dbFolder the folder where to create the database
+     * @param nPsms the number of PSMs
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * creating the database
+     */
+    public DatabaseQueriesBenchmark(File dbFolder, int nPsms) throws Exception {
+
+        objectsCache = new ObjectsCache();
+        objectsCache.setAutomatedMemoryManagement(true);
+        identification = new Ms2Identification("database_queries_benchmark");
+        identification.establishConnection(dbFolder.getAbsolutePath(), true, objectsCache);
+
+        spectrumKeys = new ArrayList<String>(nPsms);
+        for (int i = 0; i < nPsms; i++) {
+            String spectrumKey = Spectrum.getSpectrumKey(SPECTRUM_FILE, "spectrum_" + i);
+            PSParameter psParameter = new PSParameter();
+            psParameter.setPsmProbability(((double) i) / nPsms);
+            identification.addSpectrumMatchParameter(spectrumKey, psParameter);
+            spectrumKeys.add(spectrumKey);
+        }
+    }
+
+    /**
+     * Reads the parameters of every PSM with one query per match.
+     *
+     * @return the number of queries sent to the database
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * reading the parameters
+     */
+    public long readPerMatch() throws Exception {
+
+        QueryCounter queryCounter = new QueryCounter();
+        try {
+            PSParameter psParameter = new PSParameter();
+            for (String spectrumKey : spectrumKeys) {
+                psParameter = (PSParameter) identification.getSpectrumMatchParameter(spectrumKey, psParameter);
+            }
+        } finally {
+            queryCounter.stop();
+        }
+        return queryCounter.getnQueries();
+    }
+
+    /**
+     * Reads the parameters of every PSM by pages: the parameters of a page
+     * are loaded at once before being read.
+     *
+     * @return the number of queries sent to the database
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * reading the parameters
+     */
+    public long readPaged() throws Exception {
+
+        QueryCounter queryCounter = new QueryCounter();
+        try {
+            PSParameter psParameter = new PSParameter();
+            for (int start = 0; start < spectrumKeys.size(); start += MatchesValidator.BATCH_SIZE) {
+                ArrayList<String> page = new ArrayList<String>(spectrumKeys.subList(start, Math.min(start + MatchesValidator.BATCH_SIZE, spectrumKeys.size())));
+                identification.loadSpectrumMatchParameters(page, psParameter, null, false);
+                for (String spectrumKey : page) {
+                    psParameter = (PSParameter) identification.getSpectrumMatchParameter(spectrumKey, psParameter);
+                }
+            }
+        } finally {
+            queryCounter.stop();
+        }
+        return queryCounter.getnQueries();
+    }
+
+    /**
+     * Saves the objects in cache to the database and empties the cache.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * saving the cache
+     */
+    public void emptyCache() throws Exception {
+        objectsCache.saveCache(new WaitingHandlerCLIImpl(), true);
+    }
+
+    /**
+     * Closes the connection to the database.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * closing the connection
+     */
+    public void close() throws Exception {
+        identification.close();
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of PSMs
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * running the benchmark
+     */
+    public static void main(String[] args) throws Exception {
+
+        int nPsms = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        File dbFolder = File.createTempFile("database_queries_benchmark", "");
+        if (!dbFolder.delete() || !dbFolder.mkdir()) {
+            throw new IOException("Impossible to create the database folder " + dbFolder.getAbsolutePath() + ".");
+        }
+
+        DatabaseQueriesBenchmark benchmark = new DatabaseQueriesBenchmark(dbFolder, nPsms);
+        try {
+            benchmark.emptyCache();
+            long start = System.nanoTime();
+            long perMatchQueries = benchmark.readPerMatch();
+            long perMatchTime = System.nanoTime() - start;
+            benchmark.emptyCache();
+            start = System.nanoTime();
+            long pagedQueries = benchmark.readPaged();
+            long pagedTime = System.nanoTime() - start;
+
+            System.out.println(nPsms + " PSMs:");
+            System.out.println("    per match: " + perMatchQueries + " queries, " + perMatchTime / 1000000 + " ms");
+            System.out.println("    paged: " + pagedQueries + " queries, " + pagedTime / 1000000 + " ms");
+        } finally {
+            benchmark.close();
+            deleteFolder(dbFolder);
+        }
+    }
+
+    /**
+     * Deletes a folder and its content.
+     *
+     * @param folder the folder to delete
+     */
+    private static void deleteFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteFolder(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        folder.delete();
+    }
+
+    /**
+     * Counts the interactions logged by the database, one line per query,
+     * from its creation until stopped. The standard output is redirected
+     * meanwhile.
+     */
+    private static class QueryCounter extends OutputStream {
+
+        /**
+         * The standard output.
+         */
+        private final PrintStream standardOutput;
+        /**
+         * The number of lines logged.
+         */
+        private long nLines = 0;
+
+        /**
+         * Constructor. Redirects the standard output and enables the logging
+         * of the database interactions.
+         */
+        public QueryCounter() {
+            standardOutput = System.out;
+            System.setOut(new PrintStream(this, true));
+            ObjectsDB.setDebugInteractions(true);
+        }
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                nLines++;
+            }
+        }
+
+        /**
+         * Disables the logging of the database interactions and restores the
+         * standard output.
+         */
+        public void stop() {
+            ObjectsDB.setDebugInteractions(false);
+            System.setOut(standardOutput);
+        }
+
+        /**
+         * Returns the number of queries logged.
+         *
+         * @return the number of queries logged
+         */
+        public long getnQueries() {
+            return nLines;
+        }
+    }
+}
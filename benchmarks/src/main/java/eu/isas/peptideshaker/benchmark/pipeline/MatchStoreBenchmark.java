@@ -0,0 +1,109 @@
+package eu.isas.peptideshaker.benchmark.pipeline;
+
+import eu.isas.peptideshaker.cmd.PeptideShakerCLI;
+import eu.isas.peptideshaker.cmd.PeptideShakerCLIParams;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Benchmark comparing the database and the off-heap storage of the match
+ * parameters on the full pipeline. Every round runs the command line once per
+ * storage, each run in its own virtual machine started with the options of
+ * the current one, and reports the wall time. The output of the runs is
+ * discarded.
+ *
+ * Usage: MatchStoreBenchmark [number of rounds] [PeptideShakerCLI
+ * arguments]
+ *
+ * @author Marc Vaudel
+ */
+public class MatchStoreBenchmark {
+
+    /**
+     * The names of the storages.
+     */
+    private static final String[] STORAGES = {"database", "off-heap"};
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of rounds followed by the command line arguments
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * running the command line
+     */
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 2) {
+            System.out.println("Usage: MatchStoreBenchmark [number of rounds] [PeptideShakerCLI arguments]");
+            return;
+        }
+
+        int nRounds = Integer.parseInt(args[0]);
+        String[] cliArguments = Arrays.copyOfRange(args, 1, args.length);
+
+        long[] totalTimes = new long[STORAGES.length];
+        for (int round = 1; round <= nRounds; round++) {
+            System.out.println("Round " + round + ":");
+            for (int storage = 0; storage < STORAGES.length; storage++) {
+                long start = System.nanoTime();
+                int exitValue = run(cliArguments, storage);
+                long time = System.nanoTime() - start;
+                if (exitValue != 0) {
+                    throw new IllegalStateException("PeptideShaker exited with value " + exitValue + " using the " + STORAGES[storage] + " storage.");
+                }
+                totalTimes[storage] += time;
+                System.out.println("    " + STORAGES[storage] + ": " + time / 1000000 + " ms");
+            }
+        }
+        System.out.println("Average:");
+        for (int storage = 0; storage < STORAGES.length; storage++) {
+            System.out.println("    " + STORAGES[storage] + ": " + totalTimes[storage] / nRounds / 1000000 + " ms");
+        }
+    }
+
+    /**
+     * Runs the command line in a new virtual machine and waits for it to
+     * finish.
+     *
+     * @param cliArguments the command line arguments
+     * @param storage the index of the storage
+     *
+     * @return the exit value of the process
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * starting the process or reading its output
+     * @throws InterruptedException exception thrown whenever the thread was
+     * interrupted while waiting for the process
+     */
+    private static int run(String[] cliArguments, int storage) throws IOException, InterruptedException {
+
+        ArrayList<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(PeptideShakerCLI.class.getName());
+        command.addAll(Arrays.asList(cliArguments));
+        command.add("-" + PeptideShakerCLIParams.MATCH_STORE.id);
+        command.add(Integer.toString(storage));
+
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectErrorStream(true);
+        Process process = processBuilder.start();
+        InputStream output = process.getInputStream();
+        try {
+            byte[] buffer = new byte[8192];
+            while (output.read(buffer) != -1) {
+                // discard the output
+            }
+        } finally {
+            output.close();
+        }
+        return process.waitFor();
+    }
+}
@@ -0,0 +1,852 @@
+package eu.isas.peptideshaker.benchmark.pipeline;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generator of synthetic projects: a concatenated target decoy FASTA file,
+ * and for every fraction an mgf file and the corresponding mzIdentML file as
+ * exported by MS-GF+.
+ *
+ * Every PSM is a tryptic peptide of a synthetic protein, decoy PSMs are drawn
+ * from the decoy proteins. The same number of target PSMs as decoy PSMs are
+ * random hits, the scores of random hits and correct hits are drawn from
+ * different distributions. The given share of the PSMs carry an oxidation of
+ * M. The spectra contain the b and y ions of the peptide and noise peaks.
+ *
+ * The files are written as streams and the PSMs of a fraction are generated
+ * twice from the same seed, once for the peptides of the mzIdentML file and
+ * once for the spectra and identification results, so that the memory used
+ * depends on the number of proteins only. The fractions are written in
+ * parallel.
+ *
+ * Usage: SyntheticProjectGenerator [output folder] [number of PSMs]
+ * [options], see the OPTIONS field for the options.
+ *
+ * @author Marc Vaudel
+ */
+public class SyntheticProjectGenerator {
+
+    /**
+     * The default seed.
+     */
+    public static final long DEFAULT_SEED = 20170101L;
+    /**
+     * Description of the command line options.
+     */
+    public static final String OPTIONS = "-fractions [number of fractions, default 1]" + System.getProperty("line.separator")
+            + "-decoy_ratio [share of decoy PSMs, default 0.05]" + System.getProperty("line.separator")
+            + "-ptm_density [share of PSMs carrying an oxidation of M, default 0.2]" + System.getProperty("line.separator")
+            + "-proteins [number of target proteins, default 20000]" + System.getProperty("line.separator")
+            + "-seed [seed of the random generator, default " + DEFAULT_SEED + "]" + System.getProperty("line.separator")
+            + "-generation_threads [number of fractions written in parallel, default the number of available CPUs]";
+    /**
+     * The name of the FASTA file.
+     */
+    public static final String FASTA_FILE_NAME = "synthetic_concatenated_target_decoy.fasta";
+    /**
+     * The name of the variable modification as given to the identification
+     * parameters.
+     */
+    public static final String MODIFICATION_NAME = "Oxidation of M";
+    /**
+     * The tag appended to the accession of decoy proteins.
+     */
+    private static final String DECOY_TAG = "_REVERSED";
+    /**
+     * The amino acids used to build the protein sequences.
+     */
+    private static final String AMINO_ACIDS = "ACDEFGHIKLMNPQRSTVWY";
+    /**
+     * The monoisotopic masses of the residues of the amino acids in the order
+     * of AMINO_ACIDS.
+     */
+    private static final double[] RESIDUE_MASSES = {71.03711, 103.00919, 115.02694, 129.04259, 147.06841, 57.02146, 137.05891, 113.08406, 128.09496,
+        113.08406, 131.04049, 114.04293, 97.05276, 128.05858, 156.10111, 87.03203, 101.04768, 99.06841, 186.07931, 163.06333};
+    /**
+     * The mass of the oxidation.
+     */
+    private static final double OXIDATION_MASS = 15.994915;
+    /**
+     * The mass of water.
+     */
+    private static final double WATER_MASS = 18.010565;
+    /**
+     * The mass of a proton.
+     */
+    private static final double PROTON_MASS = 1.007276;
+    /**
+     * The minimal length of the peptides.
+     */
+    private static final int MIN_PEPTIDE_LENGTH = 8;
+    /**
+     * The maximal length of the peptides.
+     */
+    private static final int MAX_PEPTIDE_LENGTH = 25;
+    /**
+     * The number of noise peaks per spectrum.
+     */
+    private static final int N_NOISE_PEAKS = 10;
+    /**
+     * The duration of the chromatography of a fraction in seconds.
+     */
+    private static final double GRADIENT_LENGTH = 7200;
+    /**
+     * The number of PSMs.
+     */
+    private final long nPsms;
+    /**
+     * The number of fractions.
+     */
+    private int nFractions = 1;
+    /**
+     * The share of decoy PSMs.
+     */
+    private double decoyRatio = 0.05;
+    /**
+     * The share of PSMs carrying a modification.
+     */
+    private double ptmDensity = 0.2;
+    /**
+     * The number of target proteins.
+     */
+    private int nProteins = 20000;
+    /**
+     * The seed of the random generator.
+     */
+    private long seed = DEFAULT_SEED;
+    /**
+     * The number of fractions written in parallel.
+     */
+    private int nThreads = Runtime.getRuntime().availableProcessors();
+    /**
+     * The sequences of the proteins, targets first then decoys.
+     */
+    private String[] sequences;
+    /**
+     * The start indexes of the peptides of every protein.
+     */
+    private int[][] peptideStarts;
+    /**
+     * The end indexes (exclusive) of the peptides of every protein.
+     */
+    private int[][] peptideEnds;
+
+    /**
+     * Constructor.
+     *
+     * @param nPsms the number of PSMs
+     */
+    public SyntheticProjectGenerator(long nPsms) {
+        this.nPsms = nPsms;
+    }
+
+    /**
+     * Sets the number of fractions.
+     *
+     * @param nFractions the number of fractions
+     */
+    public void setnFractions(int nFractions) {
+        this.nFractions = nFractions;
+    }
+
+    /**
+     * Sets the share of decoy PSMs.
+     *
+     * @param decoyRatio the share of decoy PSMs
+     */
+    public void setDecoyRatio(double decoyRatio) {
+        this.decoyRatio = decoyRatio;
+    }
+
+    /**
+     * Sets the share of PSMs carrying a modification.
+     *
+     * @param ptmDensity the share of PSMs carrying a modification
+     */
+    public void setPtmDensity(double ptmDensity) {
+        this.ptmDensity = ptmDensity;
+    }
+
+    /**
+     * Sets the number of target proteins.
+     *
+     * @param nProteins the number of target proteins
+     */
+    public void setnProteins(int nProteins) {
+        this.nProteins = nProteins;
+    }
+
+    /**
+     * Sets the seed of the random generator.
+     *
+     * @param seed the seed of the random generator
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the number of fractions written in parallel.
+     *
+     * @param nThreads the number of fractions written in parallel
+     */
+    public void setnThreads(int nThreads) {
+        this.nThreads = nThreads;
+    }
+
+    /**
+     * Returns the number of fractions.
+     *
+     * @return the number of fractions
+     */
+    public int getnFractions() {
+        return nFractions;
+    }
+
+    /**
+     * Returns a description of the parameters of the generation.
+     *
+     * @return a description of the parameters of the generation
+     */
+    public String getDescription() {
+        return "psms=" + nPsms + ", fractions=" + nFractions + ", decoy_ratio=" + decoyRatio + ", ptm_density=" + ptmDensity + ", proteins=" + nProteins + ", seed=" + seed;
+    }
+
+    /**
+     * Returns the FASTA file of the project in the given folder.
+     *
+     * @param folder the folder of the project
+     *
+     * @return the FASTA file
+     */
+    public static File getFastaFile(File folder) {
+        return new File(folder, FASTA_FILE_NAME);
+    }
+
+    /**
+     * Returns the spectrum file of the given fraction in the given folder.
+     *
+     * @param folder the folder of the project
+     * @param fraction the index of the fraction, starting from 1
+     *
+     * @return the spectrum file
+     */
+    public static File getSpectrumFile(File folder, int fraction) {
+        return new File(folder, "synthetic_" + fraction + ".mgf");
+    }
+
+    /**
+     * Returns the identification file of the given fraction in the given
+     * folder.
+     *
+     * @param folder the folder of the project
+     * @param fraction the index of the fraction, starting from 1
+     *
+     * @return the identification file
+     */
+    public static File getIdentificationFile(File folder, int fraction) {
+        return new File(folder, "synthetic_" + fraction + ".mzid");
+    }
+
+    /**
+     * Generates the project in the given folder.
+     *
+     * @param folder the destination folder
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the files
+     * @throws InterruptedException exception thrown whenever the thread was
+     * interrupted while waiting for the fractions to be written
+     */
+    public void generate(final File folder) throws IOException, InterruptedException {
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Impossible to create the folder " + folder + ".");
+        }
+        generateProteins();
+        writeFasta(getFastaFile(folder));
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(nThreads, nFractions)));
+        try {
+            ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>(nFractions);
+            for (int fraction = 1; fraction <= nFractions; fraction++) {
+                final int fractionIndex = fraction;
+                final long nFractionPsms = nPsms / nFractions + (fraction <= nPsms % nFractions ? 1 : 0);
+                futures.add(pool.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws IOException {
+                        writeFraction(folder, fractionIndex, nFractionPsms);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("An error occurred while writing a fraction.", e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Generates the protein sequences and their tryptic peptides.
+     */
+    private void generateProteins() {
+        Random random = new Random(seed);
+        sequences = new String[2 * nProteins];
+        peptideStarts = new int[sequences.length][];
+        peptideEnds = new int[sequences.length][];
+        for (int i = 0; i < nProteins; i++) {
+            int length = 150 + random.nextInt(650);
+            StringBuilder sequence = new StringBuilder(length);
+            for (int j = 0; j < length; j++) {
+                sequence.append(AMINO_ACIDS.charAt(random.nextInt(AMINO_ACIDS.length())));
+            }
+            sequences[i] = sequence.toString();
+            sequences[nProteins + i] = sequence.reverse().toString();
+        }
+        ArrayList<Integer> starts = new ArrayList<Integer>();
+        ArrayList<Integer> ends = new ArrayList<Integer>();
+        for (int i = 0; i < sequences.length; i++) {
+            starts.clear();
+            ends.clear();
+            String sequence = sequences[i];
+            int start = 0;
+            for (int j = 0; j < sequence.length(); j++) {
+                char aa = sequence.charAt(j);
+                boolean cleavage = j == sequence.length() - 1
+                        || (aa == 'K' || aa == 'R') && sequence.charAt(j + 1) != 'P';
+                if (cleavage) {
+                    int length = j + 1 - start;
+                    if (length >= MIN_PEPTIDE_LENGTH && length <= MAX_PEPTIDE_LENGTH) {
+                        starts.add(start);
+                        ends.add(j + 1);
+                    }
+                    start = j + 1;
+                }
+            }
+            peptideStarts[i] = new int[starts.size()];
+            peptideEnds[i] = new int[ends.size()];
+            for (int j = 0; j < starts.size(); j++) {
+                peptideStarts[i][j] = starts.get(j);
+                peptideEnds[i][j] = ends.get(j);
+            }
+        }
+    }
+
+    /**
+     * Returns the accession of the protein at the given index.
+     *
+     * @param proteinIndex the index of the protein
+     *
+     * @return the accession of the protein
+     */
+    private String getAccession(int proteinIndex) {
+        if (proteinIndex < nProteins) {
+            return "SYN" + proteinIndex;
+        }
+        return "SYN" + (proteinIndex - nProteins) + DECOY_TAG;
+    }
+
+    /**
+     * Writes the FASTA file in the UniProt format with decoy sequences as
+     * generated by SearchGUI.
+     *
+     * @param fastaFile the FASTA file
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the file
+     */
+    private void writeFasta(File fastaFile) throws IOException {
+        Writer writer = getWriter(fastaFile);
+        try {
+            for (int i = 0; i < sequences.length; i++) {
+                String accession = getAccession(i);
+                if (i < nProteins) {
+                    writer.write(">sp|" + accession + "|" + accession + "_SYNTH Synthetic protein " + i + " OS=Synthetic organism GN=" + accession + " PE=1 SV=1\n");
+                } else {
+                    int targetIndex = i - nProteins;
+                    writer.write(">sp|" + accession + "|SYN" + targetIndex + "_SYNTH-REVERSED Synthetic protein " + targetIndex + "-REVERSED\n");
+                }
+                String sequence = sequences[i];
+                for (int j = 0; j < sequence.length(); j += 60) {
+                    writer.write(sequence, j, Math.min(60, sequence.length() - j));
+                    writer.write('\n');
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the spectrum file and the identification file of a fraction.
+     *
+     * @param folder the destination folder
+     * @param fraction the index of the fraction
+     * @param nFractionPsms the number of PSMs in the fraction
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the files
+     */
+    private void writeFraction(File folder, int fraction, long nFractionPsms) throws IOException {
+
+        File fastaFile = getFastaFile(folder);
+        File spectrumFile = getSpectrumFile(folder, fraction);
+        long psmSeed = seed + 1000003L * fraction;
+        SyntheticPsm psm = new SyntheticPsm();
+        StringBuilder line = new StringBuilder(4096);
+
+        Writer mzidWriter = getWriter(getIdentificationFile(folder, fraction));
+        try {
+            writeMzIdentMLHeader(mzidWriter, fraction);
+
+            // Sequence collection
+            mzidWriter.write("<SequenceCollection>\n");
+            for (int i = 0; i < sequences.length; i++) {
+                mzidWriter.write("<DBSequence id=\"DBSeq_" + i + "\" accession=\"" + getAccession(i) + "\" searchDatabase_ref=\"SearchDB_1\" length=\"" + sequences[i].length() + "\"/>\n");
+            }
+            Random random = new Random(psmSeed);
+            for (long i = 0; i < nFractionPsms; i++) {
+                drawPsm(random, psm, i, nFractionPsms);
+                line.setLength(0);
+                line.append("<Peptide id=\"Pep_").append(i).append("\"><PeptideSequence>").append(psm.sequence).append("</PeptideSequence>");
+                if (psm.modificationSite > 0) {
+                    line.append("<Modification location=\"").append(psm.modificationSite).append("\" monoisotopicMassDelta=\"").append(OXIDATION_MASS)
+                            .append("\" residues=\"M\"><cvParam cvRef=\"UNIMOD\" accession=\"UNIMOD:35\" name=\"Oxidation\"/></Modification>");
+                }
+                line.append("</Peptide>\n");
+                String protein = sequences[psm.proteinIndex];
+                char pre = psm.start == 0 ? '-' : protein.charAt(psm.start - 1);
+                char post = psm.end == protein.length() ? '-' : protein.charAt(psm.end);
+                line.append("<PeptideEvidence id=\"PepEv_").append(i).append("\" peptide_ref=\"Pep_").append(i).append("\" dBSequence_ref=\"DBSeq_").append(psm.proteinIndex)
+                        .append("\" start=\"").append(psm.start + 1).append("\" end=\"").append(psm.end).append("\" pre=\"").append(pre).append("\" post=\"").append(post)
+                        .append("\" isDecoy=\"").append(psm.proteinIndex >= nProteins).append("\"/>\n");
+                mzidWriter.write(line.toString());
+            }
+            mzidWriter.write("</SequenceCollection>\n");
+
+            writeMzIdentMLProtocol(mzidWriter, fastaFile, spectrumFile);
+
+            // Identification results and spectra, the same PSMs are drawn again
+            mzidWriter.write("<AnalysisData>\n");
+            mzidWriter.write("<SpectrumIdentificationList id=\"SIL_1\">\n");
+            Writer mgfWriter = getWriter(spectrumFile);
+            try {
+                random = new Random(psmSeed);
+                Random peakRandom = new Random(~psmSeed);
+                long[] peaks = new long[2 * MAX_PEPTIDE_LENGTH + N_NOISE_PEAKS];
+                for (long i = 0; i < nFractionPsms; i++) {
+                    drawPsm(random, psm, i, nFractionPsms);
+                    writeSpectrum(mgfWriter, line, psm, i, peakRandom, peaks);
+                    line.setLength(0);
+                    line.append("<SpectrumIdentificationResult id=\"SIR_").append(i).append("\" spectrumID=\"index=").append(i).append("\" spectraData_ref=\"SD_1\">\n");
+                    line.append("<SpectrumIdentificationItem id=\"SII_").append(i).append("_1\" chargeState=\"").append(psm.charge).append("\" experimentalMassToCharge=\"");
+                    appendFixed(line, psm.experimentalMz, 6);
+                    line.append("\" calculatedMassToCharge=\"");
+                    appendFixed(line, psm.theoreticMz, 6);
+                    line.append("\" peptide_ref=\"Pep_").append(i).append("\" rank=\"1\" passThreshold=\"true\">\n");
+                    line.append("<PeptideEvidenceRef peptideEvidence_ref=\"PepEv_").append(i).append("\"/>\n");
+                    line.append("<cvParam cvRef=\"PSI-MS\" accession=\"MS:1002049\" name=\"MS-GF:RawScore\" value=\"").append(Math.round(10 * psm.score)).append("\"/>\n");
+                    line.append("<cvParam cvRef=\"PSI-MS\" accession=\"MS:1002052\" name=\"MS-GF:SpecEValue\" value=\"").append(Math.pow(10, -psm.score)).append("\"/>\n");
+                    line.append("<cvParam cvRef=\"PSI-MS\" accession=\"MS:1002053\" name=\"MS-GF:EValue\" value=\"").append(Math.pow(10, 3 - psm.score)).append("\"/>\n");
+                    line.append("</SpectrumIdentificationItem>\n");
+                    line.append("<cvParam cvRef=\"PSI-MS\" accession=\"MS:1000796\" name=\"spectrum title\" value=\"").append(getSpectrumTitle(i)).append("\"/>\n");
+                    line.append("</SpectrumIdentificationResult>\n");
+                    mzidWriter.write(line.toString());
+                }
+            } finally {
+                mgfWriter.close();
+            }
+            mzidWriter.write("</SpectrumIdentificationList>\n");
+            mzidWriter.write("</AnalysisData>\n");
+            mzidWriter.write("</DataCollection>\n");
+            mzidWriter.write("</MzIdentML>\n");
+        } finally {
+            mzidWriter.close();
+        }
+    }
+
+    /**
+     * Writes the beginning of an mzIdentML file up to the sequence
+     * collection.
+     *
+     * @param writer the writer
+     * @param fraction the index of the fraction
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the file
+     */
+    private void writeMzIdentMLHeader(Writer writer, int fraction) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<MzIdentML id=\"synthetic_" + fraction + "\" version=\"1.1.0\" xmlns=\"http://psidev.info/psi/pi/mzIdentML/1.1\" "
+                + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" "
+                + "xsi:schemaLocation=\"http://psidev.info/psi/pi/mzIdentML/1.1 http://www.psidev.info/files/mzIdentML1.1.0.xsd\">\n");
+        writer.write("<cvList>\n");
+        writer.write("<cv id=\"PSI-MS\" uri=\"https://raw.githubusercontent.com/HUPO-PSI/psi-ms-CV/master/psi-ms.obo\" fullName=\"PSI-MS\"/>\n");
+        writer.write("<cv id=\"UNIMOD\" uri=\"http://www.unimod.org/obo/unimod.obo\" fullName=\"UNIMOD\"/>\n");
+        writer.write("<cv id=\"UO\" uri=\"https://raw.githubusercontent.com/bio-ontology-research-group/unit-ontology/master/unit.obo\" fullName=\"UNIT-ONTOLOGY\"/>\n");
+        writer.write("</cvList>\n");
+        writer.write("<AnalysisSoftwareList>\n");
+        writer.write("<AnalysisSoftware id=\"ID_software\" name=\"MS-GF+\" version=\"Synthetic\">\n");
+        writer.write("<SoftwareName><cvParam cvRef=\"PSI-MS\" accession=\"MS:1002048\" name=\"MS-GF+\"/></SoftwareName>\n");
+        writer.write("</AnalysisSoftware>\n");
+        writer.write("</AnalysisSoftwareList>\n");
+    }
+
+    /**
+     * Writes the analysis collection, the protocol and the inputs of an
+     * mzIdentML file.
+     *
+     * @param writer the writer
+     * @param fastaFile the FASTA file
+     * @param spectrumFile the spectrum file
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the file
+     */
+    private void writeMzIdentMLProtocol(Writer writer, File fastaFile, File spectrumFile) throws IOException {
+        writer.write("<AnalysisCollection>\n");
+        writer.write("<SpectrumIdentification id=\"SI_1\" spectrumIdentificationProtocol_ref=\"SIP_1\" spectrumIdentificationList_ref=\"SIL_1\">\n");
+        writer.write("<InputSpectra spectraData_ref=\"SD_1\"/>\n");
+        writer.write("<SearchDatabaseRef searchDatabase_ref=\"SearchDB_1\"/>\n");
+        writer.write("</SpectrumIdentification>\n");
+        writer.write("</AnalysisCollection>\n");
+        writer.write("<AnalysisProtocolCollection>\n");
+        writer.write("<SpectrumIdentificationProtocol id=\"SIP_1\" analysisSoftware_ref=\"ID_software\">\n");
+        writer.write("<SearchType><cvParam cvRef=\"PSI-MS\" accession=\"MS:1001083\" name=\"ms-ms search\"/></SearchType>\n");
+        writer.write("<ModificationParams>\n");
+        writer.write("<SearchModification fixedMod=\"false\" massDelta=\"" + OXIDATION_MASS + "\" residues=\"M\"><cvParam cvRef=\"UNIMOD\" accession=\"UNIMOD:35\" name=\"Oxidation\"/></SearchModification>\n");
+        writer.write("</ModificationParams>\n");
+        writer.write("<Enzymes>\n");
+        writer.write("<Enzyme id=\"Enz_1\" missedCleavages=\"2\" semiSpecific=\"false\"><EnzymeName><cvParam cvRef=\"PSI-MS\" accession=\"MS:1001251\" name=\"Trypsin\"/></EnzymeName></Enzyme>\n");
+        writer.write("</Enzymes>\n");
+        writer.write("<ParentTolerance>\n");
+        writer.write("<cvParam cvRef=\"PSI-MS\" accession=\"MS:1001412\" name=\"search tolerance plus value\" value=\"10\" unitCvRef=\"UO\" unitAccession=\"UO:0000169\" unitName=\"parts per million\"/>\n");
+        writer.write("<cvParam cvRef=\"PSI-MS\" accession=\"MS:1001413\" name=\"search tolerance minus value\" value=\"10\" unitCvRef=\"UO\" unitAccession=\"UO:0000169\" unitName=\"parts per million\"/>\n");
+        writer.write("</ParentTolerance>\n");
+        writer.write("<Threshold><cvParam cvRef=\"PSI-MS\" accession=\"MS:1001494\" name=\"no threshold\"/></Threshold>\n");
+        writer.write("</SpectrumIdentificationProtocol>\n");
+        writer.write("</AnalysisProtocolCollection>\n");
+        writer.write("<DataCollection>\n");
+        writer.write("<Inputs>\n");
+        writer.write("<SearchDatabase id=\"SearchDB_1\" location=\"" + fastaFile.getAbsolutePath() + "\">\n");
+        writer.write("<FileFormat><cvParam cvRef=\"PSI-MS\" accession=\"MS:1001348\" name=\"FASTA format\"/></FileFormat>\n");
+        writer.write("<DatabaseName><userParam name=\"" + fastaFile.getName() + "\"/></DatabaseName>\n");
+        writer.write("</SearchDatabase>\n");
+        writer.write("<SpectraData id=\"SD_1\" location=\"" + spectrumFile.getAbsolutePath() + "\" name=\"" + spectrumFile.getName() + "\">\n");
+        writer.write("<FileFormat><cvParam cvRef=\"PSI-MS\" accession=\"MS:1001062\" name=\"Mascot MGF format\"/></FileFormat>\n");
+        writer.write("<SpectrumIDFormat><cvParam cvRef=\"PSI-MS\" accession=\"MS:1000774\" name=\"multiple peak list nativeID format\"/></SpectrumIDFormat>\n");
+        writer.write("</SpectraData>\n");
+        writer.write("</Inputs>\n");
+    }
+
+    /**
+     * Writes the spectrum of a PSM in the mgf format. The spectrum contains
+     * the singly charged b and y ions of the peptide, 80% of which are
+     * detected, and noise peaks.
+     *
+     * @param writer the writer
+     * @param line the builder to use to build the text
+     * @param psm the PSM
+     * @param index the index of the PSM
+     * @param random the random generator to use for the peaks
+     * @param peaks an array to use to sort the peaks
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the file
+     */
+    private void writeSpectrum(Writer writer, StringBuilder line, SyntheticPsm psm, long index, Random random, long[] peaks) throws IOException {
+
+        // The peaks are encoded as m/z in 1e-5 Th with the last bit indicating whether the peak is an ion
+        int nPeaks = 0;
+        double bMass = PROTON_MASS;
+        double yMass = psm.theoreticMass + PROTON_MASS;
+        for (int i = 0; i < psm.sequence.length() - 1; i++) {
+            double residueMass = getResidueMass(psm.sequence.charAt(i));
+            if (i + 1 == psm.modificationSite) {
+                residueMass += OXIDATION_MASS;
+            }
+            bMass += residueMass;
+            yMass -= residueMass;
+            if (random.nextDouble() < 0.8) {
+                peaks[nPeaks++] = 2 * Math.round(bMass * 100000) + 1;
+            }
+            if (random.nextDouble() < 0.8) {
+                peaks[nPeaks++] = 2 * Math.round(yMass * 100000) + 1;
+            }
+        }
+        for (int i = 0; i < N_NOISE_PEAKS; i++) {
+            double mz = 100 + (psm.theoreticMass - 100) * random.nextDouble();
+            peaks[nPeaks++] = 2 * Math.round(mz * 100000);
+        }
+        Arrays.sort(peaks, 0, nPeaks);
+
+        line.setLength(0);
+        line.append("BEGIN IONS\nTITLE=").append(getSpectrumTitle(index)).append("\nPEPMASS=");
+        appendFixed(line, psm.experimentalMz, 6);
+        line.append(' ');
+        appendFixed(line, 100000 + 1000000 * random.nextDouble(), 1);
+        line.append("\nCHARGE=").append(psm.charge).append("+\nRTINSECONDS=");
+        appendFixed(line, psm.retentionTime, 2);
+        line.append('\n');
+        for (int i = 0; i < nPeaks; i++) {
+            appendFixed(line, (peaks[i] >> 1) / 100000.0, 5);
+            line.append(' ');
+            if ((peaks[i] & 1) == 1) {
+                appendFixed(line, 500 + 1000 * random.nextDouble(), 1);
+            } else {
+                appendFixed(line, 10 + 200 * random.nextDouble(), 1);
+            }
+            line.append('\n');
+        }
+        line.append("END IONS\n\n");
+        writer.write(line.toString());
+    }
+
+    /**
+     * Draws a PSM.
+     *
+     * @param random the random generator
+     * @param psm the PSM to set
+     * @param index the index of the PSM in the fraction
+     * @param nFractionPsms the number of PSMs in the fraction
+     */
+    private void drawPsm(Random random, SyntheticPsm psm, long index, long nFractionPsms) {
+
+        boolean decoy = random.nextDouble() < decoyRatio;
+        double falseTargetShare = decoyRatio < 1 ? decoyRatio / (1 - decoyRatio) : 0;
+        boolean correct = !decoy && random.nextDouble() >= falseTargetShare;
+        boolean modified = random.nextDouble() < ptmDensity;
+
+        // Draw a peptide, and try to find one with an M if the PSM should be modified
+        psm.modificationSite = 0;
+        for (int attempt = 0; attempt < 10; attempt++) {
+            int proteinIndex;
+            do {
+                proteinIndex = random.nextInt(nProteins) + (decoy ? nProteins : 0);
+            } while (peptideStarts[proteinIndex].length == 0);
+            int peptideIndex = random.nextInt(peptideStarts[proteinIndex].length);
+            psm.proteinIndex = proteinIndex;
+            psm.start = peptideStarts[proteinIndex][peptideIndex];
+            psm.end = peptideEnds[proteinIndex][peptideIndex];
+            psm.sequence = sequences[proteinIndex].substring(psm.start, psm.end);
+            if (!modified) {
+                break;
+            }
+            int site = psm.sequence.indexOf('M');
+            if (site >= 0) {
+                psm.modificationSite = site + 1;
+                break;
+            }
+        }
+
+        psm.theoreticMass = WATER_MASS;
+        for (int i = 0; i < psm.sequence.length(); i++) {
+            psm.theoreticMass += getResidueMass(psm.sequence.charAt(i));
+        }
+        if (psm.modificationSite > 0) {
+            psm.theoreticMass += OXIDATION_MASS;
+        }
+        double chargeDraw = random.nextDouble();
+        psm.charge = chargeDraw < 0.6 ? 2 : chargeDraw < 0.9 ? 3 : 4;
+        psm.theoreticMz = (psm.theoreticMass + psm.charge * PROTON_MASS) / psm.charge;
+        double ppmError = Math.max(-8, Math.min(8, 2 * random.nextGaussian()));
+        psm.experimentalMz = psm.theoreticMz * (1 + ppmError / 1000000);
+        if (correct) {
+            psm.score = Math.max(0, 10 + 3 * random.nextGaussian());
+        } else {
+            psm.score = Math.max(0, 2 + 1.5 * random.nextGaussian());
+        }
+        psm.retentionTime = 60 + GRADIENT_LENGTH * index / nFractionPsms;
+    }
+
+    /**
+     * Returns the title of the spectrum at the given index.
+     *
+     * @param index the index of the spectrum
+     *
+     * @return the title of the spectrum
+     */
+    private static String getSpectrumTitle(long index) {
+        return "spectrum_" + index;
+    }
+
+    /**
+     * Returns the monoisotopic mass of the residue of the given amino acid.
+     *
+     * @param aa the amino acid
+     *
+     * @return the monoisotopic mass of the residue
+     */
+    private static double getResidueMass(char aa) {
+        return RESIDUE_MASSES[AMINO_ACIDS.indexOf(aa)];
+    }
+
+    /**
+     * Appends a positive number with the given number of decimals. This is
+     * considerably faster than String.format for the amount of numbers
+     * written.
+     *
+     * @param builder the builder
+     * @param value the value
+     * @param decimals the number of decimals
+     */
+    private static void appendFixed(StringBuilder builder, double value, int decimals) {
+        long factor = 1;
+        for (int i = 0; i < decimals; i++) {
+            factor *= 10;
+        }
+        long scaled = Math.round(value * factor);
+        builder.append(scaled / factor).append('.');
+        String fraction = Long.toString(scaled % factor);
+        for (int i = fraction.length(); i < decimals; i++) {
+            builder.append('0');
+        }
+        builder.append(fraction);
+    }
+
+    /**
+     * Returns a buffered writer for the given file.
+     *
+     * @param file the file
+     *
+     * @return a buffered writer
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * opening the file
+     */
+    private static Writer getWriter(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 20);
+    }
+
+    /**
+     * A synthetic PSM, the object is reused for all PSMs of a fraction.
+     */
+    private static class SyntheticPsm {
+
+        /**
+         * The index of the protein.
+         */
+        int proteinIndex;
+        /**
+         * The start index of the peptide on the protein.
+         */
+        int start;
+        /**
+         * The end index (exclusive) of the peptide on the protein.
+         */
+        int end;
+        /**
+         * The sequence of the peptide.
+         */
+        String sequence;
+        /**
+         * The site of the oxidation on the peptide, starting from 1, 0 if
+         * none.
+         */
+        int modificationSite;
+        /**
+         * The theoretic mass of the peptide.
+         */
+        double theoreticMass;
+        /**
+         * The charge.
+         */
+        int charge;
+        /**
+         * The theoretic m/z.
+         */
+        double theoreticMz;
+        /**
+         * The measured m/z.
+         */
+        double experimentalMz;
+        /**
+         * The score as -log10 of the spectrum e-value.
+         */
+        double score;
+        /**
+         * The retention time in seconds.
+         */
+        double retentionTime;
+    }
+
+    /**
+     * Generates a project.
+     *
+     * @param args the output folder, the number of PSMs and the options
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the files
+     * @throws InterruptedException exception thrown whenever the thread was
+     * interrupted while waiting for the fractions to be written
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("Usage: SyntheticProjectGenerator [output folder] [number of PSMs] [options]" + System.getProperty("line.separator") + OPTIONS);
+            return;
+        }
+        SyntheticProjectGenerator generator = new SyntheticProjectGenerator(Long.parseLong(args[1]));
+        String[] unusedOptions = generator.setOptions(Arrays.copyOfRange(args, 2, args.length));
+        if (unusedOptions.length > 0) {
+            throw new IllegalArgumentException("Option " + unusedOptions[0] + " not recognized.");
+        }
+        File folder = new File(args[0]);
+        long start = System.currentTimeMillis();
+        generator.generate(folder);
+        System.out.println("Generated " + generator.getDescription() + " in " + folder + " in " + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    /**
+     * Sets the options of the generation given as command line options.
+     *
+     * @param options the options as option name and value pairs
+     *
+     * @return the options which are not options of the generation
+     */
+    public String[] setOptions(String[] options) {
+        ArrayList<String> unusedOptions = new ArrayList<String>();
+        for (int i = 0; i < options.length; i++) {
+            String option = options[i];
+            if (i + 1 == options.length) {
+                unusedOptions.add(option);
+                break;
+            }
+            String value = options[i + 1];
+            if (option.equals("-fractions")) {
+                setnFractions(Integer.parseInt(value));
+            } else if (option.equals("-decoy_ratio")) {
+                setDecoyRatio(Double.parseDouble(value));
+            } else if (option.equals("-ptm_density")) {
+                setPtmDensity(Double.parseDouble(value));
+            } else if (option.equals("-proteins")) {
+                setnProteins(Integer.parseInt(value));
+            } else if (option.equals("-seed")) {
+                setSeed(Long.parseLong(value));
+            } else if (option.equals("-generation_threads")) {
+                setnThreads(Integer.parseInt(value));
+            } else {
+                unusedOptions.add(option);
+                unusedOptions.add(value);
+            }
+            i++;
+        }
+        return unusedOptions.toArray(new String[unusedOptions.size()]);
+    }
+}
@@ -0,0 +1,442 @@
+package eu.isas.peptideshaker.benchmark.pipeline;
+
+import eu.isas.peptideshaker.cmd.PeptideShakerCLI;
+import eu.isas.peptideshaker.cmd.PeptideShakerCLIParams;
+import eu.isas.peptideshaker.protein_inference.ProteinInferenceMode;
+import eu.isas.peptideshaker.utils.ProcessingPhase;
+import eu.isas.peptideshaker.utils.ProcessingStatistics;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * End-to-end throughput benchmark. For every number of PSMs, a synthetic
+ * project is generated, see SyntheticProjectGenerator, and processed by the
+ * command line in a new virtual machine with the processing statistics
+ * enabled. The wall time of every run and the time and memory used by every
+ * processing phase are saved in the json format in the output folder and
+ * summarized on the standard output. Projects already generated with the
+ * same parameters are reused. When protein inference modes are given, every
+ * round is run once per mode and the runtime of the protein inference and the
+ * resulting number of protein groups are compared.
+ *
+ * Usage: ThroughputHarness [output folder] [numbers of PSMs, comma
+ * separated] [options], see the OPTIONS field for the options. The options
+ * of the generator are accepted, the other options are passed to the command
+ * line.
+ *
+ * @author Marc Vaudel
+ */
+public class ThroughputHarness {
+
+    /**
+     * Description of the command line options.
+     */
+    public static final String OPTIONS = "-rounds [number of runs per project, default 1]" + System.getProperty("line.separator")
+            + "-classpath [class path of PeptideShaker, default the class path of this virtual machine]" + System.getProperty("line.separator")
+            + "-jvm_args [options of the virtual machine running PeptideShaker separated by spaces, default the options of this virtual machine]" + System.getProperty("line.separator")
+            + "-inference_modes [protein inference modes to compare, comma separated (" + ProteinInferenceMode.getCommandLineDescription() + "), default the mode of the command line]";
+    /**
+     * The name of the file where the description of the generated project is
+     * saved.
+     */
+    public static final String GENERATION_FILE_NAME = "generation.txt";
+    /**
+     * The name of the file where the results are saved.
+     */
+    public static final String RESULTS_FILE_NAME = "throughput_results.json";
+    /**
+     * Pattern matching a phase in the processing statistics.
+     */
+    private static final Pattern PHASE_PATTERN = Pattern.compile("\\{\"name\": \"(.*?)\", \"wallTimeMs\": (-?\\d+), \"cpuTimeMs\": -?\\d+, \"items\": (-?\\d+),.*\"peakHeapBytes\": (-?\\d+)\\}");
+    /**
+     * The number of runs per project.
+     */
+    private int nRounds = 1;
+    /**
+     * The class path of PeptideShaker.
+     */
+    private String classPath = System.getProperty("java.class.path");
+    /**
+     * The options of the virtual machine running PeptideShaker.
+     */
+    private ArrayList<String> jvmArguments = new ArrayList<String>(ManagementFactory.getRuntimeMXBean().getInputArguments());
+    /**
+     * The indexes of the protein inference modes to compare, null to use the
+     * mode of the command line.
+     */
+    private ArrayList<Integer> inferenceModes = null;
+    /**
+     * The options passed to the command line.
+     */
+    private ArrayList<String> cliArguments = new ArrayList<String>();
+    /**
+     * The results of the runs in the json format.
+     */
+    private ArrayList<String> results = new ArrayList<String>();
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the output folder, the numbers of PSMs and the options
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * generating a project or running the command line
+     */
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 2) {
+            System.out.println("Usage: ThroughputHarness [output folder] [numbers of PSMs, comma separated] [options]" + System.getProperty("line.separator")
+                    + OPTIONS + System.getProperty("line.separator") + SyntheticProjectGenerator.OPTIONS);
+            return;
+        }
+
+        File outputFolder = new File(args[0]);
+        String[] options = Arrays.copyOfRange(args, 2, args.length);
+        ThroughputHarness harness = new ThroughputHarness();
+        for (String nPsmsAsString : args[1].split(",")) {
+            long nPsms = Long.parseLong(nPsmsAsString.trim());
+            SyntheticProjectGenerator generator = new SyntheticProjectGenerator(nPsms);
+            String[] otherOptions = generator.setOptions(options);
+            harness.setOptions(otherOptions);
+            harness.run(outputFolder, nPsms, generator);
+        }
+    }
+
+    /**
+     * Sets the options of the harness, the other options are passed to the
+     * command line.
+     *
+     * @param options the options as option name and value pairs
+     */
+    public void setOptions(String[] options) {
+        cliArguments.clear();
+        for (int i = 0; i < options.length; i++) {
+            String option = options[i];
+            String value = i + 1 < options.length ? options[i + 1] : null;
+            if (value != null && option.equals("-rounds")) {
+                nRounds = Integer.parseInt(value);
+                i++;
+            } else if (value != null && option.equals("-classpath")) {
+                classPath = value;
+                i++;
+            } else if (value != null && option.equals("-jvm_args")) {
+                jvmArguments.clear();
+                for (String argument : value.trim().split("\\s+")) {
+                    if (argument.length() > 0) {
+                        jvmArguments.add(argument);
+                    }
+                }
+                i++;
+            } else if (value != null && option.equals("-inference_modes")) {
+                inferenceModes = new ArrayList<Integer>();
+                for (String mode : value.split(",")) {
+                    int index = Integer.parseInt(mode.trim());
+                    if (ProteinInferenceMode.getProteinInferenceMode(index) == null) {
+                        throw new IllegalArgumentException("Protein inference mode " + index + " not found.");
+                    }
+                    inferenceModes.add(index);
+                }
+                i++;
+            } else {
+                cliArguments.add(option);
+            }
+        }
+    }
+
+    /**
+     * Generates the project if needed and runs the command line on it.
+     *
+     * @param outputFolder the output folder
+     * @param nPsms the number of PSMs
+     * @param generator the generator of the project
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file
+     * @throws InterruptedException exception thrown whenever the thread was
+     * interrupted
+     */
+    public void run(File outputFolder, long nPsms, SyntheticProjectGenerator generator) throws IOException, InterruptedException {
+
+        File projectFolder = new File(outputFolder, "psms_" + nPsms);
+        File generationFile = new File(projectFolder, GENERATION_FILE_NAME);
+        String description = generator.getDescription();
+        long generationTime = -1;
+        if (!generationFile.exists() || !readFile(generationFile).trim().equals(description)) {
+            System.out.println("Generating " + description + ".");
+            long start = System.nanoTime();
+            generator.generate(projectFolder);
+            generationTime = (System.nanoTime() - start) / 1000000;
+            writeFile(generationFile, description);
+        }
+
+        long inputBytes = 0;
+        StringBuilder spectrumFiles = new StringBuilder();
+        StringBuilder identificationFiles = new StringBuilder();
+        for (int fraction = 1; fraction <= generator.getnFractions(); fraction++) {
+            File spectrumFile = SyntheticProjectGenerator.getSpectrumFile(projectFolder, fraction);
+            File identificationFile = SyntheticProjectGenerator.getIdentificationFile(projectFolder, fraction);
+            if (fraction > 1) {
+                spectrumFiles.append(',');
+                identificationFiles.append(',');
+            }
+            spectrumFiles.append(spectrumFile.getAbsolutePath());
+            identificationFiles.append(identificationFile.getAbsolutePath());
+            inputBytes += spectrumFile.length() + identificationFile.length();
+        }
+        File fastaFile = SyntheticProjectGenerator.getFastaFile(projectFolder);
+        inputBytes += fastaFile.length();
+
+        ArrayList<Integer> modes = new ArrayList<Integer>(1);
+        if (inferenceModes == null) {
+            modes.add(null);
+        } else {
+            modes.addAll(inferenceModes);
+        }
+        // for every mode: the summed runtime of the protein inference, the number of protein groups and the number of runs
+        long[][] inferenceResults = new long[modes.size()][3];
+
+        for (int round = 1; round <= nRounds; round++) {
+            for (int modeIndex = 0; modeIndex < modes.size(); modeIndex++) {
+
+                Integer mode = modes.get(modeIndex);
+                String runName = "round_" + round + (mode == null ? "" : "_mode_" + mode);
+                File cpsFile = new File(projectFolder, "synthetic_" + runName + ".cpsx");
+                File statisticsFile = ProcessingStatistics.getStatisticsFile(cpsFile);
+                File logFile = new File(projectFolder, "peptideshaker_" + runName + ".log");
+                cpsFile.delete();
+                statisticsFile.delete();
+
+                ArrayList<String> command = new ArrayList<String>();
+                command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+                command.addAll(jvmArguments);
+                command.add("-cp");
+                command.add(classPath);
+                command.add(PeptideShakerCLI.class.getName());
+                command.add("-" + PeptideShakerCLIParams.EXPERIMENT.id);
+                command.add("synthetic");
+                command.add("-" + PeptideShakerCLIParams.SAMPLE.id);
+                command.add("psms_" + nPsms);
+                command.add("-" + PeptideShakerCLIParams.REPLICATE.id);
+                command.add(Integer.toString(round));
+                command.add("-" + PeptideShakerCLIParams.IDENTIFICATION_FILES.id);
+                command.add(identificationFiles.toString());
+                command.add("-" + PeptideShakerCLIParams.SPECTRUM_FILES.id);
+                command.add(spectrumFiles.toString());
+                command.add("-" + PeptideShakerCLIParams.PEPTIDESHAKER_OUTPUT.id);
+                command.add(cpsFile.getAbsolutePath());
+                command.add("-db");
+                command.add(fastaFile.getAbsolutePath());
+                command.add("-variable_mods");
+                command.add(SyntheticProjectGenerator.MODIFICATION_NAME);
+                command.addAll(cliArguments);
+                if (mode != null) {
+                    command.add("-" + PeptideShakerCLIParams.PROTEIN_INFERENCE_MODE.id);
+                    command.add(mode.toString());
+                }
+                command.add("-" + PeptideShakerCLIParams.STATISTICS.id);
+                command.add("1");
+
+                System.out.println("Processing " + nPsms + " PSMs, " + runName.replace('_', ' ') + ", log in " + logFile + ".");
+                long start = System.nanoTime();
+                int exitValue = runProcess(command, logFile);
+                long wallTime = (System.nanoTime() - start) / 1000000;
+
+                String statistics = statisticsFile.exists() ? readFile(statisticsFile).trim() : null;
+                printSummary(nPsms, runName, exitValue, wallTime, statistics);
+                if (statistics != null) {
+                    Matcher matcher = PHASE_PATTERN.matcher(statistics);
+                    while (matcher.find()) {
+                        if (matcher.group(1).equals(ProcessingPhase.proteinInference.getName())) {
+                            inferenceResults[modeIndex][0] += Long.parseLong(matcher.group(2));
+                            inferenceResults[modeIndex][1] = Long.parseLong(matcher.group(3));
+                            inferenceResults[modeIndex][2]++;
+                        }
+                    }
+                }
+
+                StringBuilder result = new StringBuilder();
+                result.append("{\"psms\": ").append(nPsms);
+                result.append(", \"generation\": ").append(getJsonString(description));
+                result.append(", \"generationTimeMs\": ").append(generationTime);
+                result.append(", \"inputBytes\": ").append(inputBytes);
+                result.append(", \"round\": ").append(round);
+                result.append(", \"inferenceMode\": ").append(mode == null ? "null" : mode.toString());
+                result.append(", \"arguments\": ").append(getJsonString(command.subList(command.indexOf(PeptideShakerCLI.class.getName()) + 1, command.size()).toString()));
+                result.append(", \"exitValue\": ").append(exitValue);
+                result.append(", \"wallTimeMs\": ").append(wallTime);
+                result.append(", \"psmsPerSecond\": ").append(wallTime == 0 ? -1 : 1000.0 * nPsms / wallTime);
+                result.append(", \"statistics\": ").append(statistics == null ? "null" : statistics);
+                result.append("}");
+                results.add(result.toString());
+                writeResults(new File(outputFolder, RESULTS_FILE_NAME));
+            }
+        }
+
+        if (inferenceModes != null) {
+            System.out.println(nPsms + " PSMs, comparison of the protein inference modes:");
+            for (int modeIndex = 0; modeIndex < modes.size(); modeIndex++) {
+                long[] modeResults = inferenceResults[modeIndex];
+                String modeName = ProteinInferenceMode.getProteinInferenceMode(modes.get(modeIndex)).getName();
+                if (modeResults[2] == 0) {
+                    System.out.println("    " + modeName + ": no protein inference statistics found.");
+                } else {
+                    System.out.println("    " + modeName + ": " + modeResults[0] / modeResults[2] + " ms on average, " + modeResults[1] + " protein groups");
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the given command and copies its output to the given file.
+     *
+     * @param command the command
+     * @param logFile the file where to copy the output
+     *
+     * @return the exit value of the process
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * starting the process or copying its output
+     * @throws InterruptedException exception thrown whenever the thread was
+     * interrupted while waiting for the process
+     */
+    private static int runProcess(ArrayList<String> command, File logFile) throws IOException, InterruptedException {
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectErrorStream(true);
+        Process process = processBuilder.start();
+        InputStream output = process.getInputStream();
+        OutputStream log = new FileOutputStream(logFile);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = output.read(buffer)) != -1) {
+                log.write(buffer, 0, read);
+            }
+        } finally {
+            log.close();
+            output.close();
+        }
+        return process.waitFor();
+    }
+
+    /**
+     * Prints a summary of a run on the standard output.
+     *
+     * @param nPsms the number of PSMs
+     * @param runName the name of the run
+     * @param exitValue the exit value of the command line
+     * @param wallTime the wall time in milliseconds
+     * @param statistics the processing statistics in the json format, null if
+     * not available
+     */
+    private static void printSummary(long nPsms, String runName, int exitValue, long wallTime, String statistics) {
+        System.out.println(nPsms + " PSMs, " + runName.replace('_', ' ') + ": exit value " + exitValue + ", " + wallTime + " ms, "
+                + (wallTime == 0 ? "-" : Long.toString(1000 * nPsms / wallTime)) + " PSMs/s");
+        if (statistics == null) {
+            System.out.println("    No processing statistics found.");
+            return;
+        }
+        Matcher matcher = PHASE_PATTERN.matcher(statistics);
+        while (matcher.find()) {
+            System.out.println("    " + matcher.group(1) + ": " + matcher.group(2) + " ms, " + matcher.group(3) + " items, peak heap " + Long.parseLong(matcher.group(4)) / 1048576 + " MB");
+        }
+    }
+
+    /**
+     * Writes the results of the runs completed so far.
+     *
+     * @param resultsFile the file where to write the results
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the file
+     */
+    private void writeResults(File resultsFile) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("[");
+        for (int i = 0; i < results.size(); i++) {
+            if (i > 0) {
+                json.append(",");
+            }
+            json.append("\n").append(results.get(i));
+        }
+        json.append("\n]\n");
+        writeFile(resultsFile, json.toString());
+    }
+
+    /**
+     * Returns the content of a text file.
+     *
+     * @param file the file
+     *
+     * @return the content of the file
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the file
+     */
+    private static String readFile(File file) throws IOException {
+        StringBuilder content = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                content.append(line).append('\n');
+            }
+        } finally {
+            reader.close();
+        }
+        return content.toString();
+    }
+
+    /**
+     * Writes the given text to a file.
+     *
+     * @param file the file
+     * @param content the text to write
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the file
+     */
+    private static void writeFile(File file, String content) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Returns the given string as a json string.
+     *
+     * @param value the string
+     *
+     * @return the string as a json string
+     */
+    private static String getJsonString(String value) {
+        StringBuilder result = new StringBuilder(value.length() + 2);
+        result.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            if (character == '"' || character == '\\') {
+                result.append('\\').append(character);
+            } else if (character < 0x20) {
+                result.append(String.format("\\u%04x", (int) character));
+            } else {
+                result.append(character);
+            }
+        }
+        result.append('"');
+        return result.toString();
+    }
+}
@@ -40,15 +40,24 @@ import com.compomics.util.preferences.PsmScoringPreferences;
 import com.compomics.util.preferences.SequenceMatchingPreferences;
 import com.compomics.util.preferences.UtilitiesUserPreferences;
 import com.compomics.util.waiting.Duration;
+import eu.isas.peptideshaker.export.CpsExporter;
+import eu.isas.peptideshaker.preferences.DisplayPreferences;
+import eu.isas.peptideshaker.preferences.FilterPreferences;
 import eu.isas.peptideshaker.preferences.ProjectDetails;
 import eu.isas.peptideshaker.preferences.SpectrumCountingPreferences;
 import eu.isas.peptideshaker.protein_inference.ProteinInference;
+import eu.isas.peptideshaker.protein_inference.ProteinInferenceMode;
 import eu.isas.peptideshaker.ptm.PtmScorer;
 import eu.isas.peptideshaker.scoring.maps.InputMap;
 import eu.isas.peptideshaker.scoring.psm_scoring.BestMatchSelection;
 import eu.isas.peptideshaker.scoring.psm_scoring.PsmScorer;
 import eu.isas.peptideshaker.utils.IdentificationFeaturesGenerator;
 import eu.isas.peptideshaker.utils.Metrics;
+import eu.isas.peptideshaker.utils.OffHeapIdentification;
+import eu.isas.peptideshaker.utils.PhaseStatistics;
+import eu.isas.peptideshaker.utils.ProcessingCheckpoint;
+import eu.isas.peptideshaker.utils.ProcessingPhase;
+import eu.isas.peptideshaker.utils.ProcessingStatistics;
 import eu.isas.peptideshaker.validation.MatchesValidator;
 
 import java.io.File;
@@ -147,10 +156,34 @@ public class PeptideShaker {
      * If true, a warning will be displayed when encountering memory issues.
      */
     private boolean memoryWarning = true;
+    /**
+     * If true, the parameters of the matches are stored in off-heap memory
+     * mapped files instead of the database.
+     */
+    private boolean offHeapMatchStore = false;
     /**
      * Object used to monitor the duration of the project creation.
      */
     private Duration projectCreationDuration;
+    /**
+     * The file where to save a checkpoint after every processing phase, null
+     * if no checkpoint should be saved.
+     */
+    private File checkpointFile = null;
+    /**
+     * Indicates whether the checkpoint file was saved from or loaded into the
+     * current database folder, in which case it can be updated
+     * incrementally.
+     */
+    private boolean checkpointSaved = false;
+    /**
+     * The statistics on the resources used by the processing phases.
+     */
+    private ProcessingStatistics processingStatistics = new ProcessingStatistics();
+    /**
+     * The statistics of the import of the files.
+     */
+    private PhaseStatistics importationStatistics = null;
 
     /**
      * Empty constructor for instantiation purposes.
@@ -215,6 +248,7 @@ public class PeptideShaker {
 
         projectCreationDuration = new Duration();
         projectCreationDuration.start();
+        importationStatistics = processingStatistics.startPhase(ProcessingPhase.importation.getName());
 
         waitingHandler.appendReport("Import process for " + experiment.getReference() + " (Sample: " + sample.getReference() + ", Replicate: " + replicateNumber + ")", true, true);
         waitingHandler.appendReportEndLine();
@@ -223,7 +257,12 @@ public class PeptideShaker {
         objectsCache.setAutomatedMemoryManagement(true);
 
         ProteomicAnalysis analysis = experiment.getAnalysisSet(sample).getProteomicAnalysis(replicateNumber);
-        analysis.addIdentificationResults(IdentificationMethod.MS2_IDENTIFICATION, new Ms2Identification(getIdentificationReference()));
+        if (offHeapMatchStore) {
+            waitingHandler.appendReport("Storing the match parameters in memory mapped files.", true, true);
+            analysis.addIdentificationResults(IdentificationMethod.MS2_IDENTIFICATION, new OffHeapIdentification(getIdentificationReference()));
+        } else {
+            analysis.addIdentificationResults(IdentificationMethod.MS2_IDENTIFICATION, new Ms2Identification(getIdentificationReference()));
+        }
 
         fileImporter = new FileImporter(this, waitingHandler, analysis, identificationParameters, metrics);
         fileImporter.importFiles(idFiles, spectrumFiles, processingPreferences, spectrumCountingPreferences, projectDetails, backgroundThread);
@@ -238,6 +277,51 @@ public class PeptideShaker {
         return objectsCache;
     }
 
+    /**
+     * Sets whether the parameters of the matches should be stored in off-heap
+     * memory mapped files instead of the database. Must be set before
+     * importing the files.
+     *
+     * @param offHeapMatchStore a boolean indicating whether the parameters of
+     * the matches should be stored in off-heap memory mapped files
+     */
+    public void setOffHeapMatchStore(boolean offHeapMatchStore) {
+        this.offHeapMatchStore = offHeapMatchStore;
+    }
+
+    /**
+     * Sets the file where a checkpoint should be saved after every processing
+     * phase. The processing can then be resumed from the last checkpoint, see
+     * resumeIdentifications. Null to disable checkpoints.
+     *
+     * @param checkpointFile the checkpoint file, null to disable checkpoints
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Returns the statistics on the resources used by the processing phases.
+     *
+     * @return the statistics on the resources used by the processing phases
+     */
+    public ProcessingStatistics getProcessingStatistics() {
+        return processingStatistics;
+    }
+
+    /**
+     * Ends the statistics of the import of the files if not done already, in
+     * case the import was canceled or failed before the processing of the
+     * identifications started.
+     *
+     * @param nItems the number of items imported
+     */
+    public void endImportationStatistics(long nItems) {
+        if (importationStatistics != null) {
+            processingStatistics.endPhase(importationStatistics, nItems);
+        }
+    }
+
     /**
      * Returns the reference identifying the identification under process.
      *
@@ -272,6 +356,85 @@ public class PeptideShaker {
         Identification identification = experiment.getAnalysisSet(sample).getProteomicAnalysis(replicateNumber).getIdentification(IdentificationMethod.MS2_IDENTIFICATION);
         identificationFeaturesGenerator = new IdentificationFeaturesGenerator(identification, identificationParameters, metrics, spectrumCountingPreferences);
 
+        processingStatistics.endPhase(importationStatistics, identification.getSpectrumIdentificationSize());
+
+        saveCheckpoint(ProcessingPhase.importation, identification, inputMap, proteinCount, waitingHandler, identificationParameters, spectrumCountingPreferences, projectDetails);
+        if (waitingHandler.isRunCanceled()) {
+            return;
+        }
+
+        processIdentifications(ProcessingPhase.importation, inputMap, proteinCount, waitingHandler, exceptionHandler, identificationParameters, processingPreferences, spectrumCountingPreferences, projectDetails);
+    }
+
+    /**
+     * Resumes the processing of the identifications after the last completed
+     * phase of the given checkpoint. The identification must be loaded from
+     * the checkpoint file and this PeptideShaker instance created with the
+     * maps of the checkpoint.
+     *
+     * @param checkpoint the checkpoint to resume from
+     * @param metrics the metrics saved in the checkpoint file
+     * @param geneMaps the gene maps saved in the checkpoint file
+     * @param objectsCache the cache used by the loaded identification
+     * @param waitingHandler the handler displaying feedback to the user
+     * @param exceptionHandler handler for exceptions
+     * @param identificationParameters the identification parameters
+     * @param processingPreferences the processing preferences
+     * @param spectrumCountingPreferences the spectrum counting preferences
+     * @param projectDetails the project details
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * processing the identifications
+     */
+    public void resumeIdentifications(ProcessingCheckpoint checkpoint, Metrics metrics, GeneMaps geneMaps, ObjectsCache objectsCache,
+            WaitingHandler waitingHandler, ExceptionHandler exceptionHandler, IdentificationParameters identificationParameters,
+            ProcessingPreferences processingPreferences, SpectrumCountingPreferences spectrumCountingPreferences, ProjectDetails projectDetails)
+            throws Exception {
+
+        projectCreationDuration = new Duration();
+        projectCreationDuration.start();
+
+        this.metrics = metrics;
+        this.geneMaps = geneMaps;
+        this.objectsCache = objectsCache;
+        checkpointSaved = true;
+
+        waitingHandler.appendReport("Resuming the processing of " + experiment.getReference() + " (Sample: " + sample.getReference() + ", Replicate: " + replicateNumber + ") after: "
+                + checkpoint.getLastCompletedPhase().getName() + ".", true, true);
+        waitingHandler.appendReportEndLine();
+
+        Identification identification = experiment.getAnalysisSet(sample).getProteomicAnalysis(replicateNumber).getIdentification(IdentificationMethod.MS2_IDENTIFICATION);
+        identificationFeaturesGenerator = new IdentificationFeaturesGenerator(identification, identificationParameters, metrics, spectrumCountingPreferences);
+
+        processIdentifications(checkpoint.getLastCompletedPhase(), checkpoint.getPsMaps().getInputMap(), checkpoint.getProteinCount(), waitingHandler, exceptionHandler,
+                identificationParameters, processingPreferences, spectrumCountingPreferences, projectDetails);
+    }
+
+    /**
+     * Processes the identifications and fills the PeptideShaker maps, skipping
+     * the phases already completed.
+     *
+     * @param lastCompletedPhase the last completed phase, null if none
+     * @param inputMap the input map
+     * @param proteinCount map of proteins found several times with the number
+     * of times they appeared as first hit
+     * @param waitingHandler the handler displaying feedback to the user
+     * @param exceptionHandler handler for exceptions
+     * @param identificationParameters the identification parameters
+     * @param processingPreferences the processing preferences
+     * @param spectrumCountingPreferences the spectrum counting preferences
+     * @param projectDetails the project details
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * processing the identifications
+     */
+    private void processIdentifications(ProcessingPhase lastCompletedPhase, InputMap inputMap, HashMap<String, Integer> proteinCount, WaitingHandler waitingHandler,
+            ExceptionHandler exceptionHandler, IdentificationParameters identificationParameters,
+            ProcessingPreferences processingPreferences, SpectrumCountingPreferences spectrumCountingPreferences, ProjectDetails projectDetails)
+            throws Exception {
+
+        Identification identification = experiment.getAnalysisSet(sample).getProteomicAnalysis(replicateNumber).getIdentification(IdentificationMethod.MS2_IDENTIFICATION);
+
         if (!objectsCache.memoryCheck() && memoryWarning) {
             waitingHandler.appendReport("PeptideShaker is encountering memory issues! See http://compomics.github.io/projects/peptide-shaker.html for help.", true, true);
             waitingHandler.appendReport("You can edit the memory given to the tool via the \"Edit\" > \"Java Settings\" menu.", true, true);
@@ -282,226 +445,372 @@ public class PeptideShaker {
             return;
         }
 
-        PsmScoringPreferences psmScoringPreferences = identificationParameters.getPsmScoringPreferences();
+        IdMatchValidationPreferences idMatchValidationPreferences = identificationParameters.getIdValidationPreferences();
+        PTMScoringPreferences ptmScoringPreferences = identificationParameters.getPtmScoringPreferences();
 
-        ArrayList<Integer> usedAlgorithms = projectDetails.getIdentificationAlgorithms();
-        if (psmScoringPreferences.isScoringNeeded(usedAlgorithms)) {
+        if (ProcessingPhase.psmScoring.isPending(lastCompletedPhase)) {
 
-            PsmScorer psmScorer = new PsmScorer();
+            PhaseStatistics phaseStatistics = processingStatistics.startPhase(ProcessingPhase.psmScoring.getName());
+            try {
+                PsmScoringPreferences psmScoringPreferences = identificationParameters.getPsmScoringPreferences();
 
-            waitingHandler.appendReport("Estimating PSM scores.", true, true);
-            psmScorer.estimateIntermediateScores(identification, inputMap, processingPreferences, identificationParameters, waitingHandler, exceptionHandler);
+                ArrayList<Integer> usedAlgorithms = projectDetails.getIdentificationAlgorithms();
+                if (psmScoringPreferences.isScoringNeeded(usedAlgorithms)) {
+
+                    PsmScorer psmScorer = new PsmScorer();
+
+                    waitingHandler.appendReport("Estimating PSM scores.", true, true);
+                    psmScorer.estimateIntermediateScores(identification, inputMap, processingPreferences, identificationParameters, waitingHandler, exceptionHandler);
+
+                    if (psmScoringPreferences.isTargetDecoyNeededForPsmScoring(usedAlgorithms)) {
+                        if (sequenceFactory.concatenatedTargetDecoy()) {
+                            waitingHandler.appendReport("Estimating intermediate scores probabilities.", true, true);
+                            psmScorer.estimateIntermediateScoreProbabilities(identification, inputMap, processingPreferences, waitingHandler);
+                        } else {
+                            waitingHandler.appendReport("No decoy sequences found. Impossible to estimate intermediate scores probabilities.", true, true);
+                        }
+                    }
+
+                    waitingHandler.appendReport("Scoring PSMs.", true, true);
+                    psmScorer.scorePsms(identification, inputMap, processingPreferences, identificationParameters, waitingHandler);
+                }
+
+                if (sequenceFactory.concatenatedTargetDecoy()) {
+                    waitingHandler.appendReport("Computing assumptions probabilities.", true, true);
+                } else {
+                    waitingHandler.appendReport("Importing assumptions scores.", true, true);
+                }
+                inputMap.estimateProbabilities(waitingHandler);
+                waitingHandler.increasePrimaryProgressCounter();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
 
-            if (psmScoringPreferences.isTargetDecoyNeededForPsmScoring(usedAlgorithms)) {
                 if (sequenceFactory.concatenatedTargetDecoy()) {
-                    waitingHandler.appendReport("Estimating intermediate scores probabilities.", true, true);
-                    psmScorer.estimateIntermediateScoreProbabilities(identification, inputMap, processingPreferences, waitingHandler);
+                    waitingHandler.appendReport("Saving assumptions probabilities.", true, true);
                 } else {
-                    waitingHandler.appendReport("No decoy sequences found. Impossible to estimate intermediate scores probabilities.", true, true);
+                    waitingHandler.appendReport("No decoy sequences found. Impossible to estimate assumptions probabilities.", true, true);
                 }
+                attachAssumptionsProbabilities(inputMap, identificationParameters.getSequenceMatchingPreferences(), waitingHandler);
+                waitingHandler.increasePrimaryProgressCounter();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+            } finally {
+                processingStatistics.endPhase(phaseStatistics, identification.getSpectrumIdentificationSize());
             }
 
-            waitingHandler.appendReport("Scoring PSMs.", true, true);
-            psmScorer.scorePsms(identification, inputMap, processingPreferences, identificationParameters, waitingHandler);
+            saveCheckpoint(ProcessingPhase.psmScoring, identification, inputMap, proteinCount, waitingHandler, identificationParameters, spectrumCountingPreferences, projectDetails);
+            if (waitingHandler.isRunCanceled()) {
+                return;
+            }
         }
 
-        if (sequenceFactory.concatenatedTargetDecoy()) {
-            waitingHandler.appendReport("Computing assumptions probabilities.", true, true);
-        } else {
-            waitingHandler.appendReport("Importing assumptions scores.", true, true);
-        }
-        inputMap.estimateProbabilities(waitingHandler);
-        waitingHandler.increasePrimaryProgressCounter();
-        if (waitingHandler.isRunCanceled()) {
-            return;
-        }
+        if (ProcessingPhase.bestHitSelection.isPending(lastCompletedPhase)) {
 
-        if (sequenceFactory.concatenatedTargetDecoy()) {
-            waitingHandler.appendReport("Saving assumptions probabilities.", true, true);
-        } else {
-            waitingHandler.appendReport("No decoy sequences found. Impossible to estimate assumptions probabilities.", true, true);
-        }
-        attachAssumptionsProbabilities(inputMap, identificationParameters.getSequenceMatchingPreferences(), waitingHandler);
-        waitingHandler.increasePrimaryProgressCounter();
-        if (waitingHandler.isRunCanceled()) {
-            return;
-        }
+            PhaseStatistics phaseStatistics = processingStatistics.startPhase(ProcessingPhase.bestHitSelection.getName());
+            try {
+                waitingHandler.appendReport("Selecting best peptide per spectrum.", true, true);
+                BestMatchSelection bestMatchSelection = new BestMatchSelection(identification, proteinCount, matchesValidator, metrics);
+                bestMatchSelection.selectBestHitAndFillPsmMap(inputMap, waitingHandler, identificationParameters);
+                if (idMatchValidationPreferences.getMergeSmallSubgroups()) {
+                    matchesValidator.getPsmMap().clean(idMatchValidationPreferences.getDefaultPsmFDR() / 100);
+                }
+                waitingHandler.increasePrimaryProgressCounter();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+                if (MemoryConsumptionStatus.memoryUsed() > 0.9) {
+                    metrics.clearSpectrumKeys();
+                }
 
-        waitingHandler.appendReport("Selecting best peptide per spectrum.", true, true);
-        BestMatchSelection bestMatchSelection = new BestMatchSelection(identification, proteinCount, matchesValidator, metrics);
-        bestMatchSelection.selectBestHitAndFillPsmMap(inputMap, waitingHandler, identificationParameters);
-        IdMatchValidationPreferences idMatchValidationPreferences = identificationParameters.getIdValidationPreferences();
-        if (idMatchValidationPreferences.getMergeSmallSubgroups()) {
-            matchesValidator.getPsmMap().clean(idMatchValidationPreferences.getDefaultPsmFDR() / 100);
-        }
-        waitingHandler.increasePrimaryProgressCounter();
-        if (waitingHandler.isRunCanceled()) {
-            return;
-        }
-        if (MemoryConsumptionStatus.memoryUsed() > 0.9) {
-            metrics.clearSpectrumKeys();
-        }
+                if (sequenceFactory.concatenatedTargetDecoy()) {
+                    waitingHandler.appendReport("Computing PSM probabilities.", true, true);
+                } else {
+                    waitingHandler.appendReport("No decoy sequences found. Impossible to estimate PSM probabilities.", true, true);
+                }
+                matchesValidator.getPsmMap().estimateProbabilities(waitingHandler);
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+            } finally {
+                processingStatistics.endPhase(phaseStatistics, identification.getSpectrumIdentificationSize());
+            }
 
-        if (sequenceFactory.concatenatedTargetDecoy()) {
-            waitingHandler.appendReport("Computing PSM probabilities.", true, true);
-        } else {
-            waitingHandler.appendReport("No decoy sequences found. Impossible to estimate PSM probabilities.", true, true);
-        }
-        matchesValidator.getPsmMap().estimateProbabilities(waitingHandler);
-        if (waitingHandler.isRunCanceled()) {
-            return;
+            saveCheckpoint(ProcessingPhase.bestHitSelection, identification, inputMap, proteinCount, waitingHandler, identificationParameters, spectrumCountingPreferences, projectDetails);
+            if (waitingHandler.isRunCanceled()) {
+                return;
+            }
         }
 
-        String report = "Scoring PTMs in PSMs (D-score";
-        PTMScoringPreferences ptmScoringPreferences = identificationParameters.getPtmScoringPreferences();
-        if (ptmScoringPreferences.isProbabilitsticScoreCalculation()) {
-            report += " and " + ptmScoringPreferences.getSelectedProbabilisticScore().getName();
-        }
-        report += ")";
-        waitingHandler.appendReport(report, true, true);
-        ptmScorer.scorePsmPtms(identification, waitingHandler, exceptionHandler, identificationParameters, metrics, processingPreferences);
-        waitingHandler.increasePrimaryProgressCounter();
-        if (waitingHandler.isRunCanceled()) {
-            return;
-        }
-        if (MemoryConsumptionStatus.memoryUsed() > 0.9) {
-            metrics.clearSpectrumKeys();
-        }
+        if (ProcessingPhase.psmPtmScoring.isPending(lastCompletedPhase)) {
+
+            PhaseStatistics phaseStatistics = processingStatistics.startPhase(ProcessingPhase.psmPtmScoring.getName());
+            try {
+                String report = "Scoring PTMs in PSMs (D-score";
+                if (ptmScoringPreferences.isProbabilitsticScoreCalculation()) {
+                    report += " and " + ptmScoringPreferences.getSelectedProbabilisticScore().getName();
+                }
+                report += ")";
+                waitingHandler.appendReport(report, true, true);
+                ptmScorer.scorePsmPtms(identification, waitingHandler, exceptionHandler, identificationParameters, metrics, processingPreferences);
+                waitingHandler.increasePrimaryProgressCounter();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+                if (MemoryConsumptionStatus.memoryUsed() > 0.9) {
+                    metrics.clearSpectrumKeys();
+                }
+
+                if (ptmScoringPreferences.isEstimateFlr()) {
+                    waitingHandler.appendReport("Thresholding PTM localizations.", true, true);
+                    PsmPTMMap psmPTMMap = ptmScorer.getPsmPTMMap();
+                    if (idMatchValidationPreferences.getMergeSmallSubgroups()) {
+                        psmPTMMap.clean(ptmScoringPreferences.getFlrThreshold() / 100);
+                    }
+                    psmPTMMap.estimateProbabilities(waitingHandler);
+                    ptmScorer.computeLocalizationStatistics(waitingHandler, ptmScoringPreferences.getFlrThreshold());
+                }
+                waitingHandler.increasePrimaryProgressCounter();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
 
-        if (ptmScoringPreferences.isEstimateFlr()) {
-            waitingHandler.appendReport("Thresholding PTM localizations.", true, true);
-            PsmPTMMap psmPTMMap = ptmScorer.getPsmPTMMap();
-            if (idMatchValidationPreferences.getMergeSmallSubgroups()) {
-                psmPTMMap.clean(ptmScoringPreferences.getFlrThreshold() / 100);
+                if (ptmScoringPreferences.getAlignNonConfidentPTMs()) {
+                    waitingHandler.appendReport("Resolving peptide inference issues.", true, true);
+                    ptmScorer.peptideInference(identification, identificationParameters, waitingHandler);
+                    waitingHandler.increasePrimaryProgressCounter();
+                    if (waitingHandler.isRunCanceled()) {
+                        return;
+                    }
+                }
+            } finally {
+                processingStatistics.endPhase(phaseStatistics, identification.getSpectrumIdentificationSize());
             }
-            psmPTMMap.estimateProbabilities(waitingHandler);
-            ptmScorer.computeLocalizationStatistics(waitingHandler, ptmScoringPreferences.getFlrThreshold());
-        }
-        waitingHandler.increasePrimaryProgressCounter();
-        if (waitingHandler.isRunCanceled()) {
-            return;
-        }
 
-        if (ptmScoringPreferences.getAlignNonConfidentPTMs()) {
-            waitingHandler.appendReport("Resolving peptide inference issues.", true, true);
-            ptmScorer.peptideInference(identification, identificationParameters, waitingHandler);
-            waitingHandler.increasePrimaryProgressCounter();
+            saveCheckpoint(ProcessingPhase.psmPtmScoring, identification, inputMap, proteinCount, waitingHandler, identificationParameters, spectrumCountingPreferences, projectDetails);
             if (waitingHandler.isRunCanceled()) {
                 return;
             }
         }
 
-        if (MemoryConsumptionStatus.memoryUsed() > 0.9) {
-            metrics.clearSpectrumKeys();
-        }
-        waitingHandler.appendReport("Saving probabilities, building peptides and proteins.", true, true);
-        attachSpectrumProbabilitiesAndBuildPeptidesAndProteins(identificationParameters.getSequenceMatchingPreferences(), waitingHandler); // @TODO: this is very slow if memory is full!!
-        waitingHandler.increasePrimaryProgressCounter();
-        if (waitingHandler.isRunCanceled()) {
-            return;
+        if (ProcessingPhase.matchesBuilding.isPending(lastCompletedPhase)) {
+
+            PhaseStatistics phaseStatistics = processingStatistics.startPhase(ProcessingPhase.matchesBuilding.getName());
+            try {
+                if (MemoryConsumptionStatus.memoryUsed() > 0.9) {
+                    metrics.clearSpectrumKeys();
+                }
+                waitingHandler.appendReport("Saving probabilities, building peptides and proteins.", true, true);
+                attachSpectrumProbabilitiesAndBuildPeptidesAndProteins(identificationParameters.getSequenceMatchingPreferences(), waitingHandler); // @TODO: this is very slow if memory is full!!
+                waitingHandler.increasePrimaryProgressCounter();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+            } finally {
+                processingStatistics.endPhase(phaseStatistics, identification.getSpectrumIdentificationSize());
+            }
+
+            saveCheckpoint(ProcessingPhase.matchesBuilding, identification, inputMap, proteinCount, waitingHandler, identificationParameters, spectrumCountingPreferences, projectDetails);
+            if (waitingHandler.isRunCanceled()) {
+                return;
+            }
         }
 
         ProteinInference proteinInference = new ProteinInference();
-        if (identificationParameters.getProteinInferencePreferences().getSimplifyGroups()) {
-            waitingHandler.appendReport("Simplifying protein groups.", true, true);
-            proteinInference.removeRedundantGroups(identification, identificationParameters, identificationFeaturesGenerator, waitingHandler);
-            waitingHandler.increasePrimaryProgressCounter();
+
+        if (ProcessingPhase.proteinGrouping.isPending(lastCompletedPhase)) {
+
+            PhaseStatistics phaseStatistics = processingStatistics.startPhase(ProcessingPhase.proteinGrouping.getName());
+            try {
+                if (projectDetails.getProteinInferenceMode() == ProteinInferenceMode.parsimony) {
+                    waitingHandler.appendReport("Inferring minimal protein set.", true, true);
+                    proteinInference.removeNonParsimoniousGroups(identification, processingPreferences, waitingHandler, exceptionHandler);
+                    waitingHandler.increasePrimaryProgressCounter();
+                    if (waitingHandler.isRunCanceled()) {
+                        return;
+                    }
+                } else if (identificationParameters.getProteinInferencePreferences().getSimplifyGroups()) {
+                    waitingHandler.appendReport("Simplifying protein groups.", true, true);
+                    proteinInference.removeRedundantGroups(identification, identificationParameters, identificationFeaturesGenerator, processingPreferences, waitingHandler, exceptionHandler);
+                    waitingHandler.increasePrimaryProgressCounter();
+                    if (waitingHandler.isRunCanceled()) {
+                        return;
+                    }
+                }
+            } finally {
+                processingStatistics.endPhase(phaseStatistics, identification.getProteinIdentification().size());
+            }
+
+            saveCheckpoint(ProcessingPhase.proteinGrouping, identification, inputMap, proteinCount, waitingHandler, identificationParameters, spectrumCountingPreferences, projectDetails);
             if (waitingHandler.isRunCanceled()) {
                 return;
             }
         }
 
-        waitingHandler.appendReport("Generating peptide map.", true, true);
-        matchesValidator.fillPeptideMaps(identification, metrics, waitingHandler, identificationParameters);
-        if (idMatchValidationPreferences.getMergeSmallSubgroups()) {
-            matchesValidator.getPeptideMap().clean(identificationParameters.getIdValidationPreferences().getDefaultPeptideFDR() / 100);
-        }
-        if (waitingHandler.isRunCanceled()) {
-            return;
-        }
+        if (ProcessingPhase.peptideScoring.isPending(lastCompletedPhase)) {
 
-        if (sequenceFactory.concatenatedTargetDecoy()) {
-            waitingHandler.appendReport("Computing peptide probabilities.", true, true);
-        } else {
-            waitingHandler.appendReport("No decoy sequences found. Impossible to estimate peptide probabilities.", true, true);
-        }
-        matchesValidator.getPeptideMap().estimateProbabilities(waitingHandler);
-        if (waitingHandler.isRunCanceled()) {
-            return;
-        }
+            PhaseStatistics phaseStatistics = processingStatistics.startPhase(ProcessingPhase.peptideScoring.getName());
+            try {
+                waitingHandler.appendReport("Generating peptide map.", true, true);
+                matchesValidator.fillPeptideMaps(identification, metrics, waitingHandler, identificationParameters);
+                if (idMatchValidationPreferences.getMergeSmallSubgroups()) {
+                    matchesValidator.getPeptideMap().clean(identificationParameters.getIdValidationPreferences().getDefaultPeptideFDR() / 100);
+                }
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
 
-        waitingHandler.appendReport("Saving peptide probabilities.", true, true);
-        matchesValidator.attachPeptideProbabilities(identification, waitingHandler);
-        waitingHandler.increasePrimaryProgressCounter();
-        if (waitingHandler.isRunCanceled()) {
-            return;
-        }
+                if (sequenceFactory.concatenatedTargetDecoy()) {
+                    waitingHandler.appendReport("Computing peptide probabilities.", true, true);
+                } else {
+                    waitingHandler.appendReport("No decoy sequences found. Impossible to estimate peptide probabilities.", true, true);
+                }
+                matchesValidator.getPeptideMap().estimateProbabilities(waitingHandler);
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
 
-        waitingHandler.appendReport("Generating protein map.", true, true);
-        matchesValidator.fillProteinMap(identification, waitingHandler);
-        waitingHandler.increasePrimaryProgressCounter();
-        if (waitingHandler.isRunCanceled()) {
-            return;
-        }
+                waitingHandler.appendReport("Saving peptide probabilities.", true, true);
+                matchesValidator.attachPeptideProbabilities(identification, waitingHandler);
+                waitingHandler.increasePrimaryProgressCounter();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+            } finally {
+                processingStatistics.endPhase(phaseStatistics, identification.getPeptideIdentification().size());
+            }
 
-        waitingHandler.appendReport("Resolving protein inference issues, inferring peptide and protein PI status.", true, true); // could be slow
-        proteinInference.retainBestScoringGroups(identification, metrics, matchesValidator.getProteinMap(), identificationParameters, identificationFeaturesGenerator, waitingHandler);
-        waitingHandler.increasePrimaryProgressCounter();
-        if (waitingHandler.isRunCanceled()) {
-            return;
+            saveCheckpoint(ProcessingPhase.peptideScoring, identification, inputMap, proteinCount, waitingHandler, identificationParameters, spectrumCountingPreferences, projectDetails);
+            if (waitingHandler.isRunCanceled()) {
+                return;
+            }
         }
 
-        if (sequenceFactory.concatenatedTargetDecoy()) {
-            waitingHandler.appendReport("Correcting protein probabilities.", true, true);
-        } else {
-            waitingHandler.appendReport("No decoy sequences found. Impossible to estimate protein probabilities.", true, true);
-        }
-        matchesValidator.getProteinMap().estimateProbabilities(waitingHandler);
-        if (waitingHandler.isRunCanceled()) {
-            return;
-        }
+        if (ProcessingPhase.proteinInference.isPending(lastCompletedPhase)) {
 
-        waitingHandler.appendReport("Saving protein probabilities.", true, true);
-        matchesValidator.attachProteinProbabilities(identification, metrics, waitingHandler, identificationParameters.getFractionSettings());
-        waitingHandler.increasePrimaryProgressCounter();
-        if (waitingHandler.isRunCanceled()) {
-            return;
+            PhaseStatistics phaseStatistics = processingStatistics.startPhase(ProcessingPhase.proteinInference.getName());
+            try {
+                waitingHandler.appendReport("Generating protein map.", true, true);
+                matchesValidator.fillProteinMap(identification, processingPreferences, waitingHandler, exceptionHandler);
+                waitingHandler.increasePrimaryProgressCounter();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+
+                waitingHandler.appendReport("Resolving protein inference issues, inferring peptide and protein PI status.", true, true); // could be slow
+                proteinInference.retainBestScoringGroups(identification, metrics, matchesValidator.getProteinMap(), identificationParameters, identificationFeaturesGenerator, processingPreferences, waitingHandler, exceptionHandler);
+                waitingHandler.increasePrimaryProgressCounter();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+
+                if (sequenceFactory.concatenatedTargetDecoy()) {
+                    waitingHandler.appendReport("Correcting protein probabilities.", true, true);
+                } else {
+                    waitingHandler.appendReport("No decoy sequences found. Impossible to estimate protein probabilities.", true, true);
+                }
+                matchesValidator.getProteinMap().estimateProbabilities(waitingHandler);
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+
+                waitingHandler.appendReport("Saving protein probabilities.", true, true);
+                matchesValidator.attachProteinProbabilities(identification, metrics, processingPreferences, waitingHandler, exceptionHandler, identificationParameters.getFractionSettings());
+                waitingHandler.increasePrimaryProgressCounter();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+            } finally {
+                processingStatistics.endPhase(phaseStatistics, identification.getProteinIdentification().size());
+            }
+
+            saveCheckpoint(ProcessingPhase.proteinInference, identification, inputMap, proteinCount, waitingHandler, identificationParameters, spectrumCountingPreferences, projectDetails);
+            if (waitingHandler.isRunCanceled()) {
+                return;
+            }
         }
 
-        if (sequenceFactory.concatenatedTargetDecoy()) {
-            if (idMatchValidationPreferences.getDefaultPsmFDR() == 1
-                    && idMatchValidationPreferences.getDefaultPeptideFDR() == 1
-                    && idMatchValidationPreferences.getDefaultProteinFDR() == 1) {
-                waitingHandler.appendReport("Validating identifications at 1% FDR, quality control of matches.", true, true);
-            } else {
-                waitingHandler.appendReport("Validating identifications, quality control of matches.", true, true);
+        if (ProcessingPhase.validation.isPending(lastCompletedPhase)) {
+
+            PhaseStatistics phaseStatistics = processingStatistics.startPhase(ProcessingPhase.validation.getName());
+            try {
+                if (sequenceFactory.concatenatedTargetDecoy()) {
+                    if (idMatchValidationPreferences.getDefaultPsmFDR() == 1
+                            && idMatchValidationPreferences.getDefaultPeptideFDR() == 1
+                            && idMatchValidationPreferences.getDefaultProteinFDR() == 1) {
+                        waitingHandler.appendReport("Validating identifications at 1% FDR, quality control of matches.", true, true);
+                    } else {
+                        waitingHandler.appendReport("Validating identifications, quality control of matches.", true, true);
+                    }
+                } else {
+                    waitingHandler.appendReport("No decoy sequences found. Impossible to estimate FDRs.", true, true);
+                }
+                matchesValidator.validateIdentifications(identification, metrics, geneMaps, waitingHandler, exceptionHandler, identificationParameters, identificationFeaturesGenerator, inputMap, spectrumCountingPreferences, processingPreferences);
+                waitingHandler.increasePrimaryProgressCounter();
+                metrics.clearSpectrumKeys();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+            } finally {
+                processingStatistics.endPhase(phaseStatistics, identification.getSpectrumIdentificationSize()
+                        + identification.getPeptideIdentification().size() + identification.getProteinIdentification().size());
+            }
+
+            saveCheckpoint(ProcessingPhase.validation, identification, inputMap, proteinCount, waitingHandler, identificationParameters, spectrumCountingPreferences, projectDetails);
+            if (waitingHandler.isRunCanceled()) {
+                return;
             }
-        } else {
-            waitingHandler.appendReport("No decoy sequences found. Impossible to estimate FDRs.", true, true);
         }
-        matchesValidator.validateIdentifications(identification, metrics, geneMaps, waitingHandler, exceptionHandler, identificationParameters, identificationFeaturesGenerator, inputMap, spectrumCountingPreferences, processingPreferences);
-        waitingHandler.increasePrimaryProgressCounter();
-        metrics.clearSpectrumKeys();
-        if (waitingHandler.isRunCanceled()) {
-            return;
+
+        if (ProcessingPhase.ptmScoring.isPending(lastCompletedPhase)) {
+
+            PhaseStatistics phaseStatistics = processingStatistics.startPhase(ProcessingPhase.ptmScoring.getName());
+            try {
+                waitingHandler.appendReport("Scoring PTMs in peptides.", true, true);
+                ptmScorer.scorePeptidePtms(identification, waitingHandler, identificationParameters);
+                waitingHandler.increasePrimaryProgressCounter();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+
+                waitingHandler.appendReport("Scoring PTMs in proteins.", true, true);
+                ptmScorer.scoreProteinPtms(identification, metrics, waitingHandler, identificationParameters, identificationFeaturesGenerator);
+                waitingHandler.increasePrimaryProgressCounter();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+            } finally {
+                processingStatistics.endPhase(phaseStatistics, identification.getPeptideIdentification().size() + identification.getProteinIdentification().size());
+            }
+
+            saveCheckpoint(ProcessingPhase.ptmScoring, identification, inputMap, proteinCount, waitingHandler, identificationParameters, spectrumCountingPreferences, projectDetails);
+            if (waitingHandler.isRunCanceled()) {
+                return;
+            }
         }
 
-        waitingHandler.appendReport("Scoring PTMs in peptides.", true, true);
-        ptmScorer.scorePeptidePtms(identification, waitingHandler, identificationParameters);
-        waitingHandler.increasePrimaryProgressCounter();
-        if (waitingHandler.isRunCanceled()) {
-            return;
+        if (projectDetails.isFeaturesPrecomputation() && ProcessingPhase.featuresPrecomputation.isPending(lastCompletedPhase)) {
+            PhaseStatistics phaseStatistics = processingStatistics.startPhase(ProcessingPhase.featuresPrecomputation.getName());
+            try {
+                waitingHandler.appendReport("Computing protein and peptide features.", true, true);
+                identificationFeaturesGenerator.precomputeFeatures(processingPreferences.getnThreads(), waitingHandler, exceptionHandler);
+                waitingHandler.increasePrimaryProgressCounter();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+            } finally {
+                processingStatistics.endPhase(phaseStatistics, identification.getProteinIdentification().size() + identification.getPeptideIdentification().size());
+            }
         }
 
-        waitingHandler.appendReport("Scoring PTMs in proteins.", true, true);
-        ptmScorer.scoreProteinPtms(identification, metrics, waitingHandler, identificationParameters, identificationFeaturesGenerator);
-        waitingHandler.increasePrimaryProgressCounter();
-        if (waitingHandler.isRunCanceled()) {
-            return;
+        // the checkpoint state is not part of the project
+        if (checkpointFile != null) {
+            ProcessingCheckpoint.delete(getMatchesFolder());
         }
 
         projectCreationDuration.end();
-        report = "Identification processing completed (" + projectCreationDuration.toString() + ").";
+        String report = "Identification processing completed (" + projectCreationDuration.toString() + ").";
 
         // get the detailed report
         ArrayList<Integer> suspiciousInput = inputMap.suspiciousInput(identificationParameters.getIdValidationPreferences().getDefaultPsmFDR() / 100);
@@ -584,6 +893,57 @@ public class PeptideShaker {
         waitingHandler.setRunFinished();
     }
 
+    /**
+     * Saves a checkpoint after the given phase if a checkpoint file is set.
+     * The state of the processing is written to the database folder which is
+     * then archived in the checkpoint file. Only the changes are archived when
+     * the checkpoint file was saved before from the same database folder.
+     *
+     * @param phase the completed phase
+     * @param identification the identification
+     * @param inputMap the input map
+     * @param proteinCount map of proteins found several times with the number
+     * of times they appeared as first hit
+     * @param waitingHandler the handler displaying feedback to the user
+     * @param identificationParameters the identification parameters
+     * @param spectrumCountingPreferences the spectrum counting preferences
+     * @param projectDetails the project details
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * saving the checkpoint
+     */
+    private void saveCheckpoint(ProcessingPhase phase, Identification identification, InputMap inputMap, HashMap<String, Integer> proteinCount,
+            WaitingHandler waitingHandler, IdentificationParameters identificationParameters, SpectrumCountingPreferences spectrumCountingPreferences,
+            ProjectDetails projectDetails) throws Exception {
+
+        if (checkpointFile == null) {
+            return;
+        }
+
+        waitingHandler.appendReport("Saving checkpoint (" + phase.getName() + ").", true, true);
+        PhaseStatistics phaseStatistics = processingStatistics.startPhase("Checkpoint after " + phase.getName());
+        try {
+            File dbFolder = getMatchesFolder();
+            PSMaps psMaps = new PSMaps(matchesValidator.getPsmMap(), matchesValidator.getPeptideMap(), matchesValidator.getProteinMap(), inputMap, ptmScorer.getPsmPTMMap());
+            ProcessingCheckpoint checkpoint = new ProcessingCheckpoint(phase, psMaps, proteinCount);
+            checkpoint.save(dbFolder);
+
+            ShotgunProtocol shotgunProtocol = ShotgunProtocol.inferProtocolFromSearchSettings(identificationParameters.getSearchParameters());
+            try {
+                CpsExporter.saveAs(checkpointFile, waitingHandler, experiment, identification, shotgunProtocol, identificationParameters, spectrumCountingPreferences,
+                        projectDetails, new FilterPreferences(), metrics, geneMaps, identificationFeaturesGenerator.getIdentificationFeaturesCache(), objectsCache, false,
+                        new DisplayPreferences(), dbFolder, checkpointSaved);
+            } finally {
+                // the saving sets the progress counters indeterminate, the next phases use the primary progress counter
+                waitingHandler.setPrimaryProgressCounterIndeterminate(false);
+                waitingHandler.setSecondaryProgressCounterIndeterminate(true);
+            }
+            checkpointSaved = true;
+        } finally {
+            processingStatistics.endPhase(phaseStatistics, identification.getSpectrumIdentificationSize());
+        }
+    }
+
     /**
      * Processes the identifications if a change occurred in the PSM map.
      *
@@ -593,12 +953,13 @@ public class PeptideShaker {
      * @param processingPreferences the processing preferences
      * @param shotgunProtocol information on the protocol
      * @param identificationParameters the identification parameters
+     * @param exceptionHandler handler for exceptions
      *
      * @throws Exception exception thrown whenever it is attempted to attach
      * more than one identification per search engine per spectrum
      */
     public void spectrumMapChanged(Identification identification, WaitingHandler waitingHandler, ProcessingPreferences processingPreferences,
-            ShotgunProtocol shotgunProtocol, IdentificationParameters identificationParameters) throws Exception {
+            ShotgunProtocol shotgunProtocol, IdentificationParameters identificationParameters, ExceptionHandler exceptionHandler) throws Exception {
         PeptideSpecificMap peptideMap = new PeptideSpecificMap();
         ProteinMap proteinMap = new ProteinMap();
         matchesValidator.setPeptideMap(peptideMap);
@@ -608,11 +969,11 @@ public class PeptideShaker {
         peptideMap.clean(identificationParameters.getIdValidationPreferences().getDefaultPeptideFDR() / 100);
         peptideMap.estimateProbabilities(waitingHandler);
         matchesValidator.attachPeptideProbabilities(identification, waitingHandler);
-        matchesValidator.fillProteinMap(identification, waitingHandler);
+        matchesValidator.fillProteinMap(identification, processingPreferences, waitingHandler, exceptionHandler);
         proteinMap.estimateProbabilities(waitingHandler);
-        matchesValidator.attachProteinProbabilities(identification, metrics, waitingHandler, identificationParameters.getFractionSettings());
+        matchesValidator.attachProteinProbabilities(identification, metrics, processingPreferences, waitingHandler, exceptionHandler, identificationParameters.getFractionSettings());
         ProteinInference proteinInference = new ProteinInference();
-        proteinInference.retainBestScoringGroups(identification, metrics, proteinMap, identificationParameters, identificationFeaturesGenerator, waitingHandler);
+        proteinInference.retainBestScoringGroups(identification, metrics, proteinMap, identificationParameters, identificationFeaturesGenerator, processingPreferences, waitingHandler, exceptionHandler);
     }
 
     /**
@@ -622,20 +983,22 @@ public class PeptideShaker {
      * identification matches
      * @param waitingHandler the waiting handler
      * @param identificationParameters the identification parameters
+     * @param processingPreferences the processing preferences
+     * @param exceptionHandler handler for exceptions
      *
      * @throws Exception exception thrown whenever it is attempted to attach
      * more than one identification per search engine per spectrum
      */
     public void peptideMapChanged(Identification identification, WaitingHandler waitingHandler,
-            IdentificationParameters identificationParameters) throws Exception {
+            IdentificationParameters identificationParameters, ProcessingPreferences processingPreferences, ExceptionHandler exceptionHandler) throws Exception {
         ProteinMap proteinMap = new ProteinMap();
         matchesValidator.setProteinMap(proteinMap);
         matchesValidator.attachPeptideProbabilities(identification, waitingHandler);
-        matchesValidator.fillProteinMap(identification, waitingHandler);
+        matchesValidator.fillProteinMap(identification, processingPreferences, waitingHandler, exceptionHandler);
         proteinMap.estimateProbabilities(waitingHandler);
-        matchesValidator.attachProteinProbabilities(identification, metrics, waitingHandler, identificationParameters.getFractionSettings());
+        matchesValidator.attachProteinProbabilities(identification, metrics, processingPreferences, waitingHandler, exceptionHandler, identificationParameters.getFractionSettings());
         ProteinInference proteinInference = new ProteinInference();
-        proteinInference.retainBestScoringGroups(identification, metrics, proteinMap, identificationParameters, identificationFeaturesGenerator, waitingHandler);
+        proteinInference.retainBestScoringGroups(identification, metrics, proteinMap, identificationParameters, identificationFeaturesGenerator, processingPreferences, waitingHandler, exceptionHandler);
     }
 
     /**
@@ -643,15 +1006,18 @@ public class PeptideShaker {
      *
      * @param waitingHandler the waiting handler
      * @param fractionSettings the fraction settings
+     * @param processingPreferences the processing preferences
+     * @param exceptionHandler handler for exceptions
      *
      * @throws SQLException thrown if an SQLException occurs
      * @throws IOException thrown if an IOException occurs
      * @throws ClassNotFoundException thrown if a ClassNotFoundException occurs
      * @throws InterruptedException thrown if an InterruptedException occurs
      */
-    public void proteinMapChanged(WaitingHandler waitingHandler, FractionSettings fractionSettings) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+    public void proteinMapChanged(WaitingHandler waitingHandler, FractionSettings fractionSettings, ProcessingPreferences processingPreferences,
+            ExceptionHandler exceptionHandler) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
         Identification identification = experiment.getAnalysisSet(sample).getProteomicAnalysis(replicateNumber).getIdentification(IdentificationMethod.MS2_IDENTIFICATION);
-        matchesValidator.attachProteinProbabilities(identification, metrics, waitingHandler, fractionSettings);
+        matchesValidator.attachProteinProbabilities(identification, metrics, processingPreferences, waitingHandler, exceptionHandler, fractionSettings);
     }
 
     /**
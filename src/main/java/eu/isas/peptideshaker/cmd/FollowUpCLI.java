@@ -90,7 +90,7 @@ public class FollowUpCLI extends CpsParent {
             } else if (followUpCLIInputBean.getCpsFile() != null) {
                 inputFilePath = followUpCLIInputBean.getCpsFile().getAbsolutePath();
                 cpsFile = followUpCLIInputBean.getCpsFile();
-                loadCpsFile(PeptideShaker.getMatchesFolder(), waitingHandler);
+                loadCpsFile(PeptideShaker.getMatchesFolder(), waitingHandler, true);
             } else {
                 waitingHandler.appendReport("PeptideShaker project input missing.", true, true);
                 return 1;
@@ -198,6 +198,7 @@ public class FollowUpCLI extends CpsParent {
         // export protein accessions
         if (followUpCLIInputBean.accessionExportNeeded()) {
             try {
+                loadIdentificationFeaturesCache();
                 CLIExportMethods.exportAccessions(followUpCLIInputBean, identification, identificationFeaturesGenerator, waitingHandler, filterPreferences);
                 waitingHandler.appendReport("Protein accessions export completed.", true, true);
             } catch (Exception e) {
@@ -210,6 +211,7 @@ public class FollowUpCLI extends CpsParent {
         // export protein details
         if (followUpCLIInputBean.fastaExportNeeded()) {
             try {
+                loadIdentificationFeaturesCache();
                 CLIExportMethods.exportFasta(followUpCLIInputBean, identification, identificationFeaturesGenerator, waitingHandler, filterPreferences);
                 waitingHandler.appendReport("Protein details export completed.", true, true);
             } catch (Exception e) {
@@ -246,6 +248,7 @@ public class FollowUpCLI extends CpsParent {
         // inclusion list export
         if (followUpCLIInputBean.inclusionListNeeded()) {
             try {
+                loadIdentificationFeaturesCache();
                 CLIExportMethods.exportInclusionList(followUpCLIInputBean, identification, identificationFeaturesGenerator, identificationParameters.getSearchParameters(), waitingHandler, filterPreferences);
             } catch (Exception e) {
                 waitingHandler.appendReport("An error occurred while generating the inclusion list.", true, true);
@@ -88,7 +88,7 @@ public class MzidCLI extends CpsParent {
             } else if (mzidCLIInputBean.getCpsFile() != null) {
                 inputFilePath = mzidCLIInputBean.getCpsFile().getAbsolutePath();
                 cpsFile = mzidCLIInputBean.getCpsFile();
-                loadCpsFile(PeptideShaker.getMatchesFolder(), waitingHandler);
+                loadCpsFile(PeptideShaker.getMatchesFolder(), waitingHandler, true);
             } else {
                 waitingHandler.appendReport("PeptideShaker project input missing.", true, true);
                 return 1;
@@ -175,6 +175,7 @@ public class MzidCLI extends CpsParent {
         this.getIdentificationParameters().getAnnotationPreferences().setIntensityLimit(0.0);
 
         try {
+            loadIdentificationFeaturesCache();
             CLIExportMethods.exportMzId(mzidCLIInputBean, this, waitingHandler);
         } catch (Exception e) {
             waitingHandler.appendReport("An error occurred while generating the mzid file.", true, true);
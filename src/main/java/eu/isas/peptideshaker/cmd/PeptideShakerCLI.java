@@ -2,6 +2,9 @@ package eu.isas.peptideshaker.cmd;
 
 import com.compomics.util.Util;
 import com.compomics.util.db.DerbyUtil;
+import com.compomics.util.exceptions.ExceptionHandler;
+import com.compomics.util.exceptions.exception_handlers.CommandLineExceptionHandler;
+import com.compomics.util.exceptions.exception_handlers.WaitingDialogExceptionHandler;
 import com.compomics.util.experiment.MsExperiment;
 import com.compomics.util.experiment.ProteomicAnalysis;
 import com.compomics.util.experiment.SampleAnalysisSet;
@@ -32,6 +35,8 @@ import com.compomics.util.preferences.UtilitiesUserPreferences;
 import com.compomics.util.preferences.ValidationQCPreferences;
 import eu.isas.peptideshaker.export.ProjectExport;
 import eu.isas.peptideshaker.utils.CpsParent;
+import eu.isas.peptideshaker.utils.ProcessingCheckpoint;
+import eu.isas.peptideshaker.utils.ProcessingStatistics;
 import eu.isas.peptideshaker.preferences.ProjectDetails;
 import eu.isas.peptideshaker.preferences.SpectrumCountingPreferences;
 import eu.isas.peptideshaker.utils.Properties;
@@ -176,9 +181,17 @@ public class PeptideShakerCLI extends CpsParent implements Callable {
                 e.printStackTrace();
             }
 
-            // create project
+            // create project, resume from the last checkpoint if requested
             try {
-                createProject();
+                File checkpointFile = getCheckpointFile();
+                if (cliInputBean.isResume() && checkpointFile != null && checkpointFile.exists()) {
+                    resumeProject(checkpointFile);
+                } else {
+                    if (cliInputBean.isResume()) {
+                        waitingHandler.appendReport("No checkpoint found, processing the identification files.", true, true);
+                    }
+                    createProject();
+                }
             } catch (Exception e) {
                 waitingHandler.appendReport("An error occurred while creating the PeptideShaker project. " + getLogFileMessage(), true, true);
                 e.printStackTrace();
@@ -204,9 +217,17 @@ public class PeptideShakerCLI extends CpsParent implements Callable {
                 try {
                     cpsFile = cliInputBean.getOutput();
                     waitingHandler.appendReport("Saving results.", true, true);
+                    setProcessingStatisticsJson(cliInputBean.isStatisticsJson());
                     saveProject(waitingHandler, true);
                     waitingHandler.appendReport("Results saved to " + cpsFile.getAbsolutePath() + ".", true, true);
                     waitingHandler.appendReportEndLine();
+                    if (cliInputBean.isStatisticsJson()) {
+                        waitingHandler.appendReport("Processing statistics saved to " + ProcessingStatistics.getStatisticsFile(cpsFile).getAbsolutePath() + ".", true, true);
+                    }
+                    File checkpointFile = getCheckpointFile();
+                    if (checkpointFile != null && checkpointFile.exists() && !waitingHandler.isRunCanceled() && !checkpointFile.delete()) {
+                        waitingHandler.appendReport("Checkpoint file " + checkpointFile.getAbsolutePath() + " could not be deleted.", true, true);
+                    }
                 } catch (Exception e) {
                     waitingHandler.appendReport("An exception occurred while saving the project. " + getLogFileMessage(), true, true);
                     e.printStackTrace();
@@ -542,6 +563,8 @@ public class PeptideShakerCLI extends CpsParent implements Callable {
         projectDetails = new ProjectDetails();
         projectDetails.setCreationDate(new Date());
         projectDetails.setPeptideShakerVersion(new Properties().getVersion());
+        projectDetails.setProteinInferenceMode(cliInputBean.getProteinInferenceMode());
+        projectDetails.setFeaturesPrecomputation(cliInputBean.isFeaturesPrecomputation());
 
         // get the input files
         ArrayList<File> identificationFilesInput = cliInputBean.getIdFiles();
@@ -743,6 +766,14 @@ public class PeptideShakerCLI extends CpsParent implements Callable {
 
         // create a shaker which will perform the analysis
         PeptideShaker peptideShaker = new PeptideShaker(experiment, sample, replicateNumber);
+        Boolean offHeapMatchStore = cliInputBean.isOffHeapMatchStore();
+        if (offHeapMatchStore == null) {
+            loadUserPreferences();
+            offHeapMatchStore = userPreferences.isOffHeapMatchStore();
+        }
+        peptideShaker.setOffHeapMatchStore(offHeapMatchStore);
+        peptideShaker.setCheckpointFile(getCheckpointFile());
+        setProcessingStatistics(peptideShaker.getProcessingStatistics());
 
         // import the files
         peptideShaker.importFiles(waitingHandler, identificationFiles, spectrumFiles,
@@ -792,6 +823,116 @@ public class PeptideShakerCLI extends CpsParent implements Callable {
         }
     }
 
+    /**
+     * Resumes the processing of the project from the last checkpoint. The
+     * project is loaded from the checkpoint file and processed from the phase
+     * following the last completed phase.
+     *
+     * @param checkpointFile the checkpoint file
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * loading the checkpoint or processing the identifications
+     */
+    public void resumeProject(File checkpointFile) throws Exception {
+
+        waitingHandler.appendReport("Loading checkpoint " + checkpointFile.getAbsolutePath() + ".", true, true);
+        cpsFile = checkpointFile;
+        loadCpsFile(dbFolder, waitingHandler);
+        ProcessingCheckpoint checkpoint = ProcessingCheckpoint.load(dbFolder);
+        if (checkpoint == null) {
+            throw new IllegalArgumentException("No processing state found in checkpoint " + checkpointFile.getAbsolutePath() + ".");
+        }
+
+        // load the FASTA and spectrum files
+        if (!loadFastaFile(waitingHandler)) {
+            waitingHandler.appendReport("FASTA file \'" + identificationParameters.getProteinInferencePreferences().getProteinSequenceDatabase().getName() + "\' not found.", true, true);
+            waitingHandler.setRunCanceled();
+            return;
+        }
+        if (!loadSpectrumFiles(waitingHandler)) {
+            waitingHandler.appendReport("Spectrum files not found.", true, true);
+            waitingHandler.setRunCanceled();
+            return;
+        }
+
+        // set the processing settings
+        ProcessingPreferences processingPreferences = new ProcessingPreferences();
+        Integer nThreads = cliInputBean.getnThreads();
+        if (nThreads != null) {
+            processingPreferences.setnThreads(nThreads);
+        }
+
+        ExceptionHandler exceptionHandler;
+        if (waitingHandler instanceof WaitingDialog) {
+            exceptionHandler = new WaitingDialogExceptionHandler((WaitingDialog) waitingHandler, "https://github.com/compomics/peptide-shaker/issues");
+        } else {
+            exceptionHandler = new CommandLineExceptionHandler();
+        }
+
+        // resume the analysis
+        PeptideShaker peptideShaker = new PeptideShaker(experiment, sample, replicateNumber, checkpoint.getPsMaps());
+        peptideShaker.setCheckpointFile(checkpointFile);
+        setProcessingStatistics(peptideShaker.getProcessingStatistics());
+        peptideShaker.resumeIdentifications(checkpoint, metrics, geneMaps, objectsCache, waitingHandler, exceptionHandler,
+                identificationParameters, processingPreferences, spectrumCountingPreferences, projectDetails);
+
+        if (!waitingHandler.isRunCanceled()) {
+
+            // the identification feature generator
+            identificationFeaturesGenerator = peptideShaker.getIdentificationFeaturesGenerator();
+
+            // the project is saved to the output file and not to the checkpoint
+            cpsFile = null;
+
+            if (waitingHandler instanceof WaitingDialog) {
+                projectDetails.setReport(((WaitingDialog) waitingHandler).getReport(null));
+                ((WaitingDialog) waitingHandler).setRunNotFinished();
+                ((WaitingDialog) waitingHandler).setCloseDialogWhenImportCompletes(true, false);
+            }
+
+        } else {
+            if (waitingHandler instanceof WaitingDialog) {
+                saveReport();
+            }
+            TempFilesManager.deleteTempFolders();
+            waitingHandler.setWaitingText("PeptideShaker Processing Canceled.");
+            System.out.println("<CompomicsError>PeptideShaker processing canceled. " + getLogFileMessage() + "</CompomicsError>");
+        }
+    }
+
+    /**
+     * Sets the statistics on the resources used by the processing phases and
+     * publishes them via JMX if requested.
+     *
+     * @param processingStatistics the processing statistics
+     */
+    @Override
+    public void setProcessingStatistics(ProcessingStatistics processingStatistics) {
+        super.setProcessingStatistics(processingStatistics);
+        if (cliInputBean.isStatisticsJmx()) {
+            try {
+                processingStatistics.registerMBean();
+            } catch (Exception e) {
+                waitingHandler.appendReport("An error occurred while publishing the processing statistics via JMX. " + getLogFileMessage(), true, true);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Returns the file where checkpoints are saved, null if checkpoints are
+     * not used.
+     *
+     * @return the file where checkpoints are saved
+     */
+    private File getCheckpointFile() {
+        File output = cliInputBean.getOutput();
+        if (output == null || !cliInputBean.isCheckpoints() && !cliInputBean.isResume()) {
+            return null;
+        }
+        return ProcessingCheckpoint.getCheckpointFile(output);
+    }
+
     /**
      * Close the PeptideShaker instance. Closes file connections and deletes
      * temporary files.
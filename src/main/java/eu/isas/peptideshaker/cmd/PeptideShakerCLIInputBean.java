@@ -3,6 +3,7 @@ package eu.isas.peptideshaker.cmd;
 import com.compomics.software.cli.CommandLineUtils;
 import com.compomics.cli.identification_parameters.IdentificationParametersInputBean;
 import org.apache.commons.cli.CommandLine;
+import eu.isas.peptideshaker.protein_inference.ProteinInferenceMode;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -81,6 +82,40 @@ public class PeptideShakerCLIInputBean {
      * The number of threads to use.
      */
     private Integer nThreads = null;
+    /**
+     * The protein inference mode.
+     */
+    private ProteinInferenceMode proteinInferenceMode = ProteinInferenceMode.peptideshaker;
+    /**
+     * Indicates whether the protein and peptide features should be estimated
+     * for all matches after validation.
+     */
+    private boolean featuresPrecomputation = false;
+    /**
+     * Indicates whether the parameters of the matches should be stored in
+     * off-heap memory mapped files, null if not set.
+     */
+    private Boolean offHeapMatchStore = null;
+    /**
+     * Indicates whether a checkpoint should be saved after every processing
+     * phase.
+     */
+    private boolean checkpoints = false;
+    /**
+     * Indicates whether the processing should be resumed from the last
+     * checkpoint.
+     */
+    private boolean resume = false;
+    /**
+     * Indicates whether the processing statistics should be written next to
+     * the output file.
+     */
+    private boolean statisticsJson = true;
+    /**
+     * Indicates whether the processing statistics should be published via
+     * JMX.
+     */
+    private boolean statisticsJmx = false;
 
     /**
      * Construct a PeptideShakerCLIInputBean from an Apache CLI instance.
@@ -128,6 +163,55 @@ public class PeptideShakerCLIInputBean {
             nThreads = new Integer(aLine.getOptionValue(PeptideShakerCLIParams.THREADS.id));
         }
 
+        // protein inference mode
+        if (aLine.hasOption(PeptideShakerCLIParams.PROTEIN_INFERENCE_MODE.id)) {
+            proteinInferenceMode = ProteinInferenceMode.getProteinInferenceMode(new Integer(aLine.getOptionValue(PeptideShakerCLIParams.PROTEIN_INFERENCE_MODE.id).trim()));
+        }
+
+        // features precomputation
+        if (aLine.hasOption(PeptideShakerCLIParams.PRECOMPUTE_FEATURES.id)) {
+            String precomputationOption = aLine.getOptionValue(PeptideShakerCLIParams.PRECOMPUTE_FEATURES.id);
+            if (precomputationOption.trim().equals("1")) {
+                featuresPrecomputation = true;
+            }
+        }
+
+        // match store
+        if (aLine.hasOption(PeptideShakerCLIParams.MATCH_STORE.id)) {
+            String matchStoreOption = aLine.getOptionValue(PeptideShakerCLIParams.MATCH_STORE.id);
+            offHeapMatchStore = matchStoreOption.trim().equals("1");
+        }
+
+        // checkpoints
+        if (aLine.hasOption(PeptideShakerCLIParams.CHECKPOINTS.id)) {
+            String checkpointsOption = aLine.getOptionValue(PeptideShakerCLIParams.CHECKPOINTS.id);
+            if (checkpointsOption.trim().equals("1")) {
+                checkpoints = true;
+            }
+        }
+
+        // resume
+        if (aLine.hasOption(PeptideShakerCLIParams.RESUME.id)) {
+            String resumeOption = aLine.getOptionValue(PeptideShakerCLIParams.RESUME.id);
+            if (resumeOption.trim().equals("1")) {
+                resume = true;
+            }
+        }
+
+        // processing statistics
+        if (aLine.hasOption(PeptideShakerCLIParams.STATISTICS.id)) {
+            String statisticsOption = aLine.getOptionValue(PeptideShakerCLIParams.STATISTICS.id);
+            if (statisticsOption.trim().equals("0")) {
+                statisticsJson = false;
+            }
+        }
+        if (aLine.hasOption(PeptideShakerCLIParams.STATISTICS_JMX.id)) {
+            String statisticsJmxOption = aLine.getOptionValue(PeptideShakerCLIParams.STATISTICS_JMX.id);
+            if (statisticsJmxOption.trim().equals("1")) {
+                statisticsJmx = true;
+            }
+        }
+
         followUpCLIInputBean = new FollowUpCLIInputBean(aLine);
         reportCLIInputBean = new ReportCLIInputBean(aLine);
         mzidCLIInputBean = new MzidCLIInputBean(aLine);
@@ -387,6 +471,79 @@ public class PeptideShakerCLIInputBean {
         return nThreads;
     }
 
+    /**
+     * Returns the protein inference mode.
+     *
+     * @return the protein inference mode
+     */
+    public ProteinInferenceMode getProteinInferenceMode() {
+        return proteinInferenceMode;
+    }
+
+    /**
+     * Indicates whether the protein and peptide features should be estimated
+     * for all matches after validation.
+     *
+     * @return a boolean indicating whether the protein and peptide features
+     * should be estimated for all matches after validation
+     */
+    public boolean isFeaturesPrecomputation() {
+        return featuresPrecomputation;
+    }
+
+    /**
+     * Indicates whether the parameters of the matches should be stored in
+     * off-heap memory mapped files instead of the database.
+     *
+     * @return a boolean indicating whether the parameters of the matches
+     * should be stored in off-heap memory mapped files, null if not set
+     */
+    public Boolean isOffHeapMatchStore() {
+        return offHeapMatchStore;
+    }
+
+    /**
+     * Indicates whether a checkpoint should be saved next to the output file
+     * after every processing phase.
+     *
+     * @return a boolean indicating whether checkpoints should be saved
+     */
+    public boolean isCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * Indicates whether the processing should be resumed from the last
+     * checkpoint saved next to the output file.
+     *
+     * @return a boolean indicating whether the processing should be resumed
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * Indicates whether the time and memory used by the processing phases
+     * should be written to a json file next to the output file.
+     *
+     * @return a boolean indicating whether the processing statistics should
+     * be written next to the output file
+     */
+    public boolean isStatisticsJson() {
+        return statisticsJson;
+    }
+
+    /**
+     * Indicates whether the time and memory used by the processing phases
+     * should be published via JMX.
+     *
+     * @return a boolean indicating whether the processing statistics should
+     * be published via JMX
+     */
+    public boolean isStatisticsJmx() {
+        return statisticsJmx;
+    }
+
     /**
      * Verifies the command line start parameters.
      *
@@ -457,6 +614,27 @@ public class PeptideShakerCLIInputBean {
             }
         }
 
+        if (aLine.hasOption(PeptideShakerCLIParams.PROTEIN_INFERENCE_MODE.id)) {
+            String modeTxt = aLine.getOptionValue(PeptideShakerCLIParams.PROTEIN_INFERENCE_MODE.id).trim();
+            ProteinInferenceMode mode = null;
+            try {
+                mode = ProteinInferenceMode.getProteinInferenceMode(new Integer(modeTxt));
+            } catch (NumberFormatException e) {
+                // handled below
+            }
+            if (mode == null) {
+                System.out.println("\nProtein inference mode \'" + modeTxt + "\' not recognized. Supported modes: " + ProteinInferenceMode.getCommandLineDescription() + ".\n");
+                return false;
+            }
+        }
+
+        if ((aLine.hasOption(PeptideShakerCLIParams.CHECKPOINTS.id) && aLine.getOptionValue(PeptideShakerCLIParams.CHECKPOINTS.id).trim().equals("1")
+                || aLine.hasOption(PeptideShakerCLIParams.RESUME.id) && aLine.getOptionValue(PeptideShakerCLIParams.RESUME.id).trim().equals("1"))
+                && !aLine.hasOption(PeptideShakerCLIParams.PEPTIDESHAKER_OUTPUT.id)) {
+            System.out.println("\nCheckpoints are saved next to the output file. Please provide the output file.\n");
+            return false;
+        }
+
 //        // Check the identification parameters
 //        if (!IdentificationParametersInputBean.isValidStartup(aLine, false)) { // @TODO: ok to add?
 //            return false;
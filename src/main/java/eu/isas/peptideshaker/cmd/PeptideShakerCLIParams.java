@@ -2,6 +2,7 @@ package eu.isas.peptideshaker.cmd;
 
 import com.compomics.cli.identification_parameters.IdentificationParametersCLIParams;
 import static eu.isas.peptideshaker.cmd.PathSettingsCLIParams.LOG;
+import eu.isas.peptideshaker.protein_inference.ProteinInferenceMode;
 import org.apache.commons.cli.Options;
 
 /**
@@ -24,7 +25,14 @@ public enum PeptideShakerCLIParams {
     PEPTIDESHAKER_OUTPUT("out", "PeptideShaker output file. Note: if file exists it will be overwritten.", false),
     GUI("gui", "Use a dialog to display the progress (1: true, 0: false, default is '0').", false),
     ZIP("zip", "Exports the entire project as a zip file in the file specified.", false),
-    THREADS("threads", "The number of threads to use. Defaults to the number of available CPUs.", false);
+    THREADS("threads", "The number of threads to use. Defaults to the number of available CPUs.", false),
+    PROTEIN_INFERENCE_MODE("protein_inference_mode", "The protein inference mode (" + ProteinInferenceMode.getCommandLineDescription() + ", default is '0').", false),
+    PRECOMPUTE_FEATURES("precompute_features", "Estimates the protein and peptide features of all matches after validation (1: true, 0: false, default is '0').", false),
+    MATCH_STORE("match_store", "Storage of the match parameters (0: database, 1: off-heap memory mapped files, default is set in the user preferences).", false),
+    CHECKPOINTS("checkpoints", "Saves a checkpoint next to the output file after every processing phase (1: true, 0: false, default is '0').", false),
+    RESUME("resume", "Resumes the processing from the last checkpoint saved next to the output file if any, and saves new checkpoints (1: true, 0: false, default is '0').", false),
+    STATISTICS("statistics", "Writes the time and memory used by every processing phase to a json file next to the output file (1: true, 0: false, default is '1').", false),
+    STATISTICS_JMX("statistics_jmx", "Publishes the time and memory used by every processing phase via JMX (1: true, 0: false, default is '0').", false);
 
     /**
      * Short Id for the CLI parameter.
@@ -107,6 +115,13 @@ public enum PeptideShakerCLIParams {
         output += "\n\nOptional Processing Parameters:\n\n";
         output += "-" + String.format(formatter, GUI.id) + " " + GUI.description + "\n";
         output += "-" + String.format(formatter, THREADS.id) + " " + THREADS.description + "\n";
+        output += "-" + String.format(formatter, PROTEIN_INFERENCE_MODE.id) + " " + PROTEIN_INFERENCE_MODE.description + "\n";
+        output += "-" + String.format(formatter, PRECOMPUTE_FEATURES.id) + " " + PRECOMPUTE_FEATURES.description + "\n";
+        output += "-" + String.format(formatter, MATCH_STORE.id) + " " + MATCH_STORE.description + "\n";
+        output += "-" + String.format(formatter, CHECKPOINTS.id) + " " + CHECKPOINTS.description + "\n";
+        output += "-" + String.format(formatter, RESUME.id) + " " + RESUME.description + "\n";
+        output += "-" + String.format(formatter, STATISTICS.id) + " " + STATISTICS.description + "\n";
+        output += "-" + String.format(formatter, STATISTICS_JMX.id) + " " + STATISTICS_JMX.description + "\n";
 
         output += "\n\nOptional Export Parameters:\n\n";
         output += "-" + String.format(formatter, ZIP.id) + " " + ZIP.description + "\n";
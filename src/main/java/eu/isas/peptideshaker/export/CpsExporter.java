@@ -9,7 +9,6 @@ import com.compomics.util.experiment.identification.Advocate;
 import com.compomics.util.experiment.identification.Identification;
 import com.compomics.util.experiment.io.ExperimentIO;
 import com.compomics.util.waiting.WaitingHandler;
-import com.compomics.util.io.compression.TarUtils;
 import com.compomics.util.preferences.IdentificationParameters;
 import eu.isas.peptideshaker.preferences.DisplayPreferences;
 import eu.isas.peptideshaker.preferences.FilterPreferences;
@@ -17,20 +16,35 @@ import eu.isas.peptideshaker.parameters.PeptideShakerSettings;
 import eu.isas.peptideshaker.preferences.ProjectDetails;
 import eu.isas.peptideshaker.preferences.SpectrumCountingPreferences;
 import eu.isas.peptideshaker.utils.CpsParent;
+import eu.isas.peptideshaker.utils.CpsxArchive;
 import eu.isas.peptideshaker.utils.IdentificationFeaturesCache;
 import eu.isas.peptideshaker.utils.Metrics;
 import java.io.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.HashSet;
 import org.apache.commons.compress.archivers.ArchiveException;
 
 /**
- * This class will export an identification project as cps file.
+ * This class will export an identification project as cps file. The project
+ * is saved in an indexed container, see CpsxArchive.
  *
  * @author Marc Vaudel
  */
 public class CpsExporter {
 
+    /**
+     * Suffix of the key of the digest of an object in the settings table.
+     */
+    private static final String DIGEST_SUFFIX = "_digest";
+    /**
+     * The algorithm used to compute the digest of the settings.
+     */
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
     /**
      * Saves the given data in a cps file.
      *
@@ -67,6 +81,51 @@ public class CpsExporter {
             IdentificationParameters identificationParameters, SpectrumCountingPreferences spectrumCountingPreferences, ProjectDetails projectDetails, FilterPreferences filterPreferences,
             Metrics metrics, GeneMaps geneMaps, IdentificationFeaturesCache identificationFeaturesCache, ObjectsCache objectsCache, boolean emptyCache,
             DisplayPreferences displayPreferences, File dbFolder) throws IOException, SQLException, ArchiveException, ClassNotFoundException, InterruptedException {
+        saveAs(destinationFile, waitingHandler, experiment, identification, shotgunProtocol, identificationParameters, spectrumCountingPreferences, projectDetails,
+                filterPreferences, metrics, geneMaps, identificationFeaturesCache, objectsCache, emptyCache, displayPreferences, dbFolder, false);
+    }
+
+    /**
+     * Saves the given data in a cps file. In incremental mode, the settings
+     * and identification features cache are only written to the database if
+     * they changed, and only the changed blocks of the database are appended
+     * to the existing cps file, see CpsxArchive.update.
+     *
+     * @param destinationFile the destination cps file
+     * @param waitingHandler a waiting handler used to cancel the saving
+     * @param experiment the experiment to save
+     * @param identification the identification to save
+     * @param shotgunProtocol information about the protocol used
+     * @param identificationParameters the identification parameters
+     * @param spectrumCountingPreferences the spectrum counting preferences
+     * @param projectDetails the project details
+     * @param filterPreferences the filtering preferences
+     * @param displayPreferences the display preferences
+     * @param metrics the dataset
+     * @param geneMaps the gene maps
+     * @param identificationFeaturesCache the identification features cache
+     * @param objectsCache the object cache
+     * @param emptyCache a boolean indicating whether the object cache should be
+     * emptied
+     * @param dbFolder the path to the folder where the database is located
+     * @param incremental if true the destination file is updated, it must
+     * have been saved or loaded from the given database folder
+     *
+     * @throws IOException thrown of IOException occurs exception thrown
+     * whenever an error occurred while reading or writing a file
+     * @throws SQLException thrown of SQLException occurs exception thrown
+     * whenever an error occurred while interacting with the database
+     * @throws ArchiveException thrown of ArchiveException occurs exception
+     * thrown whenever an error occurred while taring the project
+     * @throws java.lang.ClassNotFoundException exception thrown whenever an
+     * error occurred while deserializing an object
+     * @throws java.lang.InterruptedException exception thrown whenever a
+     * threading error occurred while saving the project
+     */
+    public static void saveAs(File destinationFile, WaitingHandler waitingHandler, MsExperiment experiment, Identification identification, ShotgunProtocol shotgunProtocol,
+            IdentificationParameters identificationParameters, SpectrumCountingPreferences spectrumCountingPreferences, ProjectDetails projectDetails, FilterPreferences filterPreferences,
+            Metrics metrics, GeneMaps geneMaps, IdentificationFeaturesCache identificationFeaturesCache, ObjectsCache objectsCache, boolean emptyCache,
+            DisplayPreferences displayPreferences, File dbFolder, boolean incremental) throws IOException, SQLException, ArchiveException, ClassNotFoundException, InterruptedException {
 
         identificationFeaturesCache.setReadOnly(true);
 
@@ -75,24 +134,42 @@ public class CpsExporter {
             // save the user advocates
             projectDetails.setUserAdvocateMapping(Advocate.getUserAdvocates());
 
-            // set the experiment parameters
+            // set the experiment parameters, the identification features cache is saved separately so that it can be loaded on demand
             PeptideShakerSettings peptideShakerSettings = new PeptideShakerSettings(shotgunProtocol, identificationParameters, spectrumCountingPreferences,
-                    projectDetails, filterPreferences, displayPreferences, metrics, geneMaps, identificationFeaturesCache);
+                    projectDetails, filterPreferences, displayPreferences, metrics, geneMaps, null);
             ObjectsDB objectsDB = identification.getIdentificationDB().getObjectsDB();
             if (!objectsDB.hasTable(CpsParent.settingsTableName)) {
                 objectsDB.addTable(CpsParent.settingsTableName);
             }
-            if (objectsDB.inDB(CpsParent.settingsTableName, PeptideShakerSettings.nameInCpsSettingsTable, false)) {
-                objectsDB.updateObject(CpsParent.settingsTableName, PeptideShakerSettings.nameInCpsSettingsTable, peptideShakerSettings, false);
-            } else {
-                objectsDB.insertObject(CpsParent.settingsTableName, PeptideShakerSettings.nameInCpsSettingsTable, peptideShakerSettings, false);
+
+            // the digest covers the preferences and the gene maps, the large metrics use a modification flag
+            PeptideShakerSettings digestedSettings = new PeptideShakerSettings(shotgunProtocol, identificationParameters, spectrumCountingPreferences,
+                    projectDetails, filterPreferences, displayPreferences, null, geneMaps, null);
+            byte[] settingsDigest = getDigest(digestedSettings);
+            String settingsDigestKey = PeptideShakerSettings.nameInCpsSettingsTable + DIGEST_SUFFIX;
+            Object savedDigest = null;
+            if (incremental && objectsDB.inDB(CpsParent.settingsTableName, settingsDigestKey, false)) {
+                savedDigest = objectsDB.retrieveObject(CpsParent.settingsTableName, settingsDigestKey, true, false);
+            }
+            if (!incremental || metrics != null && metrics.isModified()
+                    || !(savedDigest instanceof byte[]) || !Arrays.equals(settingsDigest, (byte[]) savedDigest)) {
+                saveObject(objectsDB, PeptideShakerSettings.nameInCpsSettingsTable, peptideShakerSettings);
+                saveObject(objectsDB, settingsDigestKey, settingsDigest);
+                if (metrics != null) {
+                    metrics.setModified(false);
+                }
+            }
+            if (!incremental || identificationFeaturesCache.isModified()
+                    || !objectsDB.inDB(CpsParent.settingsTableName, IdentificationFeaturesCache.nameInCpsSettingsTable, false)) {
+                saveObject(objectsDB, IdentificationFeaturesCache.nameInCpsSettingsTable, identificationFeaturesCache);
+                identificationFeaturesCache.setModified(false);
             }
 
             // save the objects in cache
             objectsCache.saveCache(waitingHandler, emptyCache);
             objectsCache.setReadOnly(true);
 
-            // close connection
+            // close connection, this also writes and closes the off-heap match stores
             identification.close();
 
             // transfer all files in the match directory
@@ -106,7 +183,7 @@ public class CpsExporter {
                 ExperimentIO.save(experimentFile, experiment);
             }
 
-            // tar everything in the current cps file
+            // archive everything in the current cps file
             if (waitingHandler == null || !waitingHandler.isRunCanceled()) {
                 File logFolder = new File(objectsDB.getPath(), "log");
                 HashSet<String> exceptions = new HashSet<String>(1);
@@ -116,7 +193,11 @@ public class CpsExporter {
                         exceptions.add(file.getAbsolutePath());
                     }
                 }
-                TarUtils.tarFolderContent(dbFolder, destinationFile, exceptions, waitingHandler);
+                if (incremental) {
+                    CpsxArchive.update(dbFolder, destinationFile, exceptions, Runtime.getRuntime().availableProcessors(), waitingHandler);
+                } else {
+                    CpsxArchive.archive(dbFolder, destinationFile, exceptions, Runtime.getRuntime().availableProcessors(), waitingHandler);
+                }
             }
 
         } finally {
@@ -128,4 +209,68 @@ public class CpsExporter {
             }
         }
     }
+
+    /**
+     * Saves an object in the settings table, replacing any previous version.
+     *
+     * @param objectsDB the database
+     * @param key the key of the object
+     * @param object the object
+     *
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the database
+     * @throws IOException exception thrown whenever an error occurred while
+     * serializing the object
+     * @throws InterruptedException exception thrown whenever a threading
+     * error occurred while interacting with the database
+     */
+    private static void saveObject(ObjectsDB objectsDB, String key, Object object) throws SQLException, IOException, InterruptedException {
+        if (objectsDB.inDB(CpsParent.settingsTableName, key, false)) {
+            objectsDB.updateObject(CpsParent.settingsTableName, key, object, false);
+        } else {
+            objectsDB.insertObject(CpsParent.settingsTableName, key, object, false);
+        }
+    }
+
+    /**
+     * Returns the SHA-256 digest of the serialized form of an object.
+     *
+     * @param object the object
+     *
+     * @return the digest of the serialized object
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * serializing the object
+     */
+    private static byte[] getDigest(Serializable object) throws IOException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(new DigestOutputStream(new NullOutputStream(), messageDigest));
+        try {
+            objectOutputStream.writeObject(object);
+            objectOutputStream.flush();
+        } finally {
+            objectOutputStream.close();
+        }
+        return messageDigest.digest();
+    }
+
+    /**
+     * Output stream discarding everything written to it.
+     */
+    private static class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
 }
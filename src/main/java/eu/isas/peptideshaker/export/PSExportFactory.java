@@ -327,6 +327,28 @@ public class PSExportFactory implements ExportFactory {
         exportWriter.close();
     }
 
+    /**
+     * Indicates whether writing the given report needs the identification
+     * features, i.e. whether the report has a protein, peptide, PSM or
+     * identification algorithm matches section.
+     *
+     * @param exportScheme the export scheme of the report
+     *
+     * @return a boolean indicating whether writing the report needs the
+     * identification features
+     */
+    public static boolean identificationFeaturesNeeded(ExportScheme exportScheme) {
+        for (String sectionName : exportScheme.getSections()) {
+            if (sectionName.equals(PsProteinFeature.type)
+                    || sectionName.equals(PsPeptideFeature.type)
+                    || sectionName.equals(PsPsmFeature.type)
+                    || sectionName.equals(PsIdentificationAlgorithmMatchesFeature.type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Writes the documentation related to a report.
      *
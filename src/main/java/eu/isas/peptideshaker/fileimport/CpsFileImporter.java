@@ -9,11 +9,13 @@ import com.compomics.util.waiting.WaitingHandler;
 import com.compomics.util.io.compression.TarUtils;
 import eu.isas.peptideshaker.parameters.PeptideShakerSettings;
 import eu.isas.peptideshaker.utils.CpsParent;
+import eu.isas.peptideshaker.utils.CpsxArchive;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import org.apache.commons.compress.archivers.ArchiveException;
 
 /**
@@ -43,18 +45,36 @@ public class CpsFileImporter {
      * experiment data
      * @throws org.apache.commons.compress.archivers.ArchiveException exception
      * thrown whenever an error occurred while untaring the file
+     * @throws InterruptedException exception thrown whenever a threading
+     * error occurred while extracting the file
      */
-    public CpsFileImporter(File cpsFile, File dbFolder, WaitingHandler waitingHandler) throws FileNotFoundException, IOException, ClassNotFoundException, ArchiveException {
+    public CpsFileImporter(File cpsFile, File dbFolder, WaitingHandler waitingHandler) throws FileNotFoundException, IOException, ClassNotFoundException, ArchiveException, InterruptedException {
 
         if (waitingHandler != null) {
             waitingHandler.resetSecondaryProgressCounter();
             waitingHandler.setMaxSecondaryProgressCounter(100);
         }
 
-        TarUtils.extractFile(cpsFile, dbFolder, waitingHandler);
-
         File experimentFile = new File(dbFolder, MsExperiment.experimentObjectName);
-        experiment = ExperimentIO.loadExperiment(experimentFile);
+
+        if (CpsxArchive.isCpsxArchive(cpsFile)) {
+
+            // the experiment is read first so that an invalid project is detected before extracting the database
+            dbFolder.mkdirs();
+            if (!CpsxArchive.extractEntry(cpsFile, MsExperiment.experimentObjectName, experimentFile)) {
+                throw new IOException("No experiment found in " + cpsFile.getName() + ".");
+            }
+            experiment = ExperimentIO.loadExperiment(experimentFile);
+
+            HashSet<String> exceptions = new HashSet<String>(1);
+            exceptions.add(MsExperiment.experimentObjectName);
+            CpsxArchive.extract(cpsFile, dbFolder, exceptions, Runtime.getRuntime().availableProcessors(), waitingHandler);
+
+        } else {
+
+            TarUtils.extractFile(cpsFile, dbFolder, waitingHandler); // tar based cpsx files
+            experiment = ExperimentIO.loadExperiment(experimentFile);
+        }
     }
 
     /**
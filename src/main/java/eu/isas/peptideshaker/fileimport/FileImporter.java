@@ -40,6 +40,8 @@ import eu.isas.peptideshaker.protein_inference.PeptideMapper;
 import eu.isas.peptideshaker.protein_inference.TagMapper;
 import eu.isas.peptideshaker.scoring.maps.InputMap;
 import eu.isas.peptideshaker.utils.Metrics;
+import eu.isas.peptideshaker.utils.PhaseStatistics;
+import eu.isas.peptideshaker.utils.ProcessingStatistics;
 import org.xml.sax.SAXException;
 import uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException;
 
@@ -439,8 +441,14 @@ public class FileImporter {
         public int importFiles() {
 
             try {
-                importSequences(identificationParameters.getSequenceMatchingPreferences(), identificationParameters.getSearchParameters(), identificationParameters.getPeptideVariantsPreferences(), waitingHandler, exceptionHandler,
-                        identificationParameters.getProteinInferencePreferences().getProteinSequenceDatabase());
+                ProcessingStatistics processingStatistics = peptideShaker.getProcessingStatistics();
+                PhaseStatistics sequencesStatistics = processingStatistics.startPhase("Import of the protein sequences");
+                try {
+                    importSequences(identificationParameters.getSequenceMatchingPreferences(), identificationParameters.getSearchParameters(), identificationParameters.getPeptideVariantsPreferences(), waitingHandler, exceptionHandler,
+                            identificationParameters.getProteinInferencePreferences().getProteinSequenceDatabase());
+                } finally {
+                    processingStatistics.endPhase(sequencesStatistics, sequenceFactory.getNSequences());
+                }
 
                 if (waitingHandler.isRunCanceled()) {
                     return 1;
@@ -473,7 +481,13 @@ public class FileImporter {
                     waitingHandler.appendReport("Reading identification files.", true, true);
 
                     for (File idFile : idFiles) {
-                        importPsms(idFile);
+                        PhaseStatistics fileStatistics = processingStatistics.startPhase("Import of " + idFile.getName());
+                        long nPSMsBefore = nPSMs;
+                        try {
+                            importPsms(idFile);
+                        } finally {
+                            processingStatistics.endPhase(fileStatistics, nPSMs - nPSMsBefore);
+                        }
 
                         if (waitingHandler.isRunCanceled()) {
                             try {
@@ -609,6 +623,9 @@ public class FileImporter {
                 }
 
                 return 1;
+            } finally {
+                // the import is ended when starting the processing, unless canceled or failed before
+                peptideShaker.endImportationStatistics(nPSMs);
             }
 
             return 0;
@@ -742,7 +759,13 @@ public class FileImporter {
                                 waitingHandler.appendReport("Collecting peptides to map.", true, true);
                                 HashMap<String, LinkedList<Peptide>> peptideMap = PeptideMapper.getPeptideMap(fileReader, idFileSpectrumMatches, identification, identificationParameters, waitingHandler);
                                 if (!peptideMapper.isCanceled()) {
-                                    peptideMapper.mapPeptides(peptideMap, processingPreferences.getnThreads(), waitingHandler);
+                                    ProcessingStatistics processingStatistics = peptideShaker.getProcessingStatistics();
+                                    PhaseStatistics mappingStatistics = processingStatistics.startPhase("Peptide mapping for " + idFile.getName());
+                                    try {
+                                        peptideMapper.mapPeptides(peptideMap, processingPreferences.getnThreads(), waitingHandler);
+                                    } finally {
+                                        processingStatistics.endPhase(mappingStatistics, peptideMap.size());
+                                    }
                                 }
                                 if (peptideMapper.isCanceled()) {
                                     peptideMap.clear();
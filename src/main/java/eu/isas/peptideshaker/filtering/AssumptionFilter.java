@@ -142,14 +142,33 @@ public class AssumptionFilter extends MatchFilter {
         if (manualValidation.contains(matchKey)) {
             return true;
         }
-        for (String itemName : valuesMap.keySet()) {
-            FilterItemComparator filterItemComparator = comparatorsMap.get(itemName);
-            Object value = valuesMap.get(itemName);
-            if (!isValidated(itemName, filterItemComparator, value, matchKey, peptideAssumption, identification, identificationFeaturesGenerator, identificationParameters, peptideSpectrumAnnotator)) {
-                return false;
-            }
+        FilteredMatch filteredMatch = new FilteredMatch(matchKey, identification, null, identificationFeaturesGenerator, identificationParameters, peptideSpectrumAnnotator);
+        filteredMatch.setPeptideAssumption(peptideAssumption);
+        return isValidated(filteredMatch);
+    }
+
+    @Override
+    protected FilterItemPredicate compileItem(final String itemName, final FilterItemComparator filterItemComparator, final Object value) {
+        final AssumptionFilterItem filterItem = AssumptionFilterItem.getItem(itemName);
+        if (filterItem == null) {
+            throw new IllegalArgumentException("Filter item " + itemName + "not recognized as spectrum assumption filter item.");
         }
-        return true;
+        if (filterItem.isNumber()) {
+            return new NumericFilterItemPredicate(filterItemComparator, value) {
+                @Override
+                protected Number getValue(FilteredMatch filteredMatch) throws IOException, InterruptedException, ClassNotFoundException, SQLException, MzMLUnmarshallerException, MathException {
+                    return getNumericValue(filterItem, filteredMatch.getMatchKey(), filteredMatch.getPeptideAssumption(), filteredMatch.getIdentification(),
+                            filteredMatch.getIdentificationFeaturesGenerator(), filteredMatch.getIdentificationParameters(), filteredMatch.getPeptideSpectrumAnnotator());
+                }
+            };
+        }
+        return new FilterItemPredicate() {
+            @Override
+            public boolean passes(FilteredMatch filteredMatch) throws IOException, InterruptedException, ClassNotFoundException, SQLException, MzMLUnmarshallerException, MathException {
+                return isValidated(itemName, filterItemComparator, value, filteredMatch.getMatchKey(), filteredMatch.getPeptideAssumption(), filteredMatch.getIdentification(),
+                        filteredMatch.getIdentificationFeaturesGenerator(), filteredMatch.getIdentificationParameters(), filteredMatch.getPeptideSpectrumAnnotator());
+            }
+        };
     }
 
     /**
@@ -195,28 +214,90 @@ public class AssumptionFilter extends MatchFilter {
             throw new IllegalArgumentException("Filter item " + itemName + "not recognized as spectrum assumption filter item.");
         }
         String input = value.toString();
+        switch (filterItem) {
+            case precrusorMz:
+            case precrusorRT:
+            case precrusorCharge:
+            case precrusorMzErrorDa:
+            case precrusorMzErrorPpm:
+            case precrusorMzErrorStat:
+            case sequenceCoverage:
+            case algorithmScore:
+            case confidence:
+                Number number = getNumericValue(filterItem, spectrumKey, peptideAssumption, identification, identificationFeaturesGenerator, identificationParameters, peptideSpectrumAnnotator);
+                return filterItemComparator.passes(input, number.toString());
+            case fileNames:
+                return filterItemComparator.passes(input, Spectrum.getSpectrumFile(spectrumKey));
+            case validationStatus:
+                PSParameter psParameter = new PSParameter();
+                psParameter = (PSParameter) identification.getPeptideMatchParameter(spectrumKey, psParameter);
+                Integer validation = psParameter.getMatchValidationLevel().getIndex();
+                return filterItemComparator.passes(input, validation.toString());
+            case stared:
+                psParameter = new PSParameter();
+                psParameter = (PSParameter) identification.getPeptideMatchParameter(spectrumKey, psParameter);
+                String starred;
+                if (psParameter.isStarred()) {
+                    starred = FilterItemComparator.trueFalse[0];
+                } else {
+                    starred = FilterItemComparator.trueFalse[1];
+                }
+                return filterItemComparator.passes(input, starred);
+            default:
+                throw new IllegalArgumentException("Protein filter not implemented for item " + filterItem.name + ".");
+        }
+    }
+
+    /**
+     * Returns the value of a numeric item for the given assumption.
+     *
+     * @param filterItem the numeric item
+     * @param spectrumKey the key of the match of interest
+     * @param peptideAssumption the assumption to validate
+     * @param identification the identification objects where to get
+     * identification matches from
+     * @param identificationFeaturesGenerator the identification feature
+     * generator where to get identification features
+     * @param identificationParameters the identification parameters used
+     * @param peptideSpectrumAnnotator the annotator to use to annotate spectra
+     * when filtering on PSM or assumptions
+     *
+     * @return the value of the item
+     *
+     * @throws java.io.IOException exception thrown whenever an exception
+     * occurred while reading or writing a file
+     * @throws java.lang.InterruptedException exception thrown whenever a
+     * threading issue occurred while estimating the value
+     * @throws java.lang.ClassNotFoundException exception thrown whenever an
+     * error occurred while deserilalizing a match
+     * @throws java.sql.SQLException exception thrown whenever an error occurred
+     * while interacting with a database
+     * @throws uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException exception thrown
+     * whenever an error occurred while reading an mzML file
+     * @throws org.apache.commons.math.MathException exception thrown whenever
+     * an error occurred while doing statistics on a distribution
+     */
+    private Number getNumericValue(AssumptionFilterItem filterItem, String spectrumKey, PeptideAssumption peptideAssumption, Identification identification, IdentificationFeaturesGenerator identificationFeaturesGenerator,
+            IdentificationParameters identificationParameters, PeptideSpectrumAnnotator peptideSpectrumAnnotator) throws IOException, InterruptedException, ClassNotFoundException, SQLException, MzMLUnmarshallerException, MathException {
         switch (filterItem) {
             case precrusorMz:
                 Precursor precursor = SpectrumFactory.getInstance().getPrecursor(spectrumKey);
-                Double mz = precursor.getMz();
-                return filterItemComparator.passes(input, mz.toString());
+                return precursor.getMz();
             case precrusorRT:
                 precursor = SpectrumFactory.getInstance().getPrecursor(spectrumKey);
-                Double rt = precursor.getRt();
-                return filterItemComparator.passes(input, rt.toString());
+                return precursor.getRt();
             case precrusorCharge:
-                Integer charge = peptideAssumption.getIdentificationCharge().value;
-                return filterItemComparator.passes(input, charge.toString());
+                return peptideAssumption.getIdentificationCharge().value;
             case precrusorMzErrorDa:
                 precursor = SpectrumFactory.getInstance().getPrecursor(spectrumKey);
                 SearchParameters searchParameters = identificationParameters.getSearchParameters();
                 Double mzError = Math.abs(peptideAssumption.getDeltaMass(precursor.getMz(), false, searchParameters.getMinIsotopicCorrection(), searchParameters.getMaxIsotopicCorrection()));
-                return filterItemComparator.passes(input, mzError.toString());
+                return mzError;
             case precrusorMzErrorPpm:
                 searchParameters = identificationParameters.getSearchParameters();
                 precursor = SpectrumFactory.getInstance().getPrecursor(spectrumKey);
                 mzError = Math.abs(peptideAssumption.getDeltaMass(precursor.getMz(), true, searchParameters.getMinIsotopicCorrection(), searchParameters.getMaxIsotopicCorrection()));
-                return filterItemComparator.passes(input, mzError.toString());
+                return mzError;
             case precrusorMzErrorStat:
                 searchParameters = identificationParameters.getSearchParameters();
                 precursor = SpectrumFactory.getInstance().getPrecursor(spectrumKey);
@@ -228,7 +309,7 @@ public class AssumptionFilter extends MatchFilter {
                 } else {
                     p = precDeviationDistribution.getCumulativeProbabilityAt(mzError);
                 }
-                return filterItemComparator.passes(input, p.toString());
+                return p;
             case sequenceCoverage:
                 SpectrumFactory spectrumFactory = SpectrumFactory.getInstance();
                 MSnSpectrum spectrum = (MSnSpectrum) spectrumFactory.getSpectrum(spectrumKey);
@@ -245,35 +326,18 @@ public class AssumptionFilter extends MatchFilter {
                     }
                 }
                 Double coverage = 100.0 * nCovered / nAA;
-                return filterItemComparator.passes(input, coverage.toString());
+                return coverage;
             case algorithmScore:
                 Double score = peptideAssumption.getRawScore();
                 if (score == null) {
                     score = peptideAssumption.getScore();
                 }
-                return filterItemComparator.passes(input, score.toString());
-            case fileNames:
-                return filterItemComparator.passes(input, Spectrum.getSpectrumFile(spectrumKey));
+                return score;
             case confidence:
                 PSParameter psParameter = new PSParameter();
                 psParameter = (PSParameter) identification.getPeptideMatchParameter(spectrumKey, psParameter);
                 Double confidence = psParameter.getProteinConfidence();
-                return filterItemComparator.passes(input, confidence.toString());
-            case validationStatus:
-                psParameter = new PSParameter();
-                psParameter = (PSParameter) identification.getPeptideMatchParameter(spectrumKey, psParameter);
-                Integer validation = psParameter.getMatchValidationLevel().getIndex();
-                return filterItemComparator.passes(input, validation.toString());
-            case stared:
-                psParameter = new PSParameter();
-                psParameter = (PSParameter) identification.getPeptideMatchParameter(spectrumKey, psParameter);
-                String starred;
-                if (psParameter.isStarred()) {
-                    starred = FilterItemComparator.trueFalse[0];
-                } else {
-                    starred = FilterItemComparator.trueFalse[1];
-                }
-                return filterItemComparator.passes(input, starred);
+                return confidence;
             default:
                 throw new IllegalArgumentException("Protein filter not implemented for item " + filterItem.name + ".");
         }
@@ -0,0 +1,40 @@
+package eu.isas.peptideshaker.filtering;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import org.apache.commons.math.MathException;
+import uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException;
+
+/**
+ * A filter item compiled for the evaluation of many matches: the item is
+ * resolved and its threshold parsed once when the filter is compiled instead
+ * of for every match.
+ *
+ * @author Marc Vaudel
+ */
+public abstract class FilterItemPredicate {
+
+    /**
+     * Indicates whether the given match passes this filter item.
+     *
+     * @param filteredMatch the match to filter
+     *
+     * @return a boolean indicating whether the given match passes this filter
+     * item
+     *
+     * @throws java.io.IOException exception thrown whenever an exception
+     * occurred while reading or writing a file
+     * @throws java.lang.InterruptedException exception thrown whenever a
+     * threading issue occurred while validating that the match passes the
+     * filter
+     * @throws java.lang.ClassNotFoundException exception thrown whenever an
+     * error occurred while deserilalizing a match
+     * @throws java.sql.SQLException exception thrown whenever an error occurred
+     * while interacting with a database
+     * @throws uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException exception thrown
+     * whenever an error occurred while reading an mzML file
+     * @throws org.apache.commons.math.MathException exception thrown whenever
+     * an error occurred while doing statistics on a distribution
+     */
+    public abstract boolean passes(FilteredMatch filteredMatch) throws IOException, InterruptedException, ClassNotFoundException, SQLException, MzMLUnmarshallerException, MathException;
+}
@@ -0,0 +1,162 @@
+package eu.isas.peptideshaker.filtering;
+
+import com.compomics.util.experiment.biology.genes.GeneMaps;
+import com.compomics.util.experiment.identification.Identification;
+import com.compomics.util.experiment.identification.matches.SpectrumMatch;
+import com.compomics.util.experiment.identification.spectrum_annotation.spectrum_annotators.PeptideSpectrumAnnotator;
+import com.compomics.util.experiment.identification.spectrum_assumptions.PeptideAssumption;
+import com.compomics.util.preferences.IdentificationParameters;
+import eu.isas.peptideshaker.utils.IdentificationFeaturesGenerator;
+import java.io.IOException;
+import java.sql.SQLException;
+import uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException;
+
+/**
+ * A match evaluated by the compiled items of a filter. The objects needed by
+ * several items, like the best peptide assumption of a spectrum match, are
+ * loaded once per match. This class is not thread safe.
+ *
+ * @author Marc Vaudel
+ */
+public class FilteredMatch {
+
+    /**
+     * The key of the match.
+     */
+    private final String matchKey;
+    /**
+     * The identification where to get the information from.
+     */
+    private final Identification identification;
+    /**
+     * The gene maps.
+     */
+    private final GeneMaps geneMaps;
+    /**
+     * The identification features generator.
+     */
+    private final IdentificationFeaturesGenerator identificationFeaturesGenerator;
+    /**
+     * The identification parameters.
+     */
+    private final IdentificationParameters identificationParameters;
+    /**
+     * The annotator to use to annotate spectra.
+     */
+    private final PeptideSpectrumAnnotator peptideSpectrumAnnotator;
+    /**
+     * The peptide assumption filtered, loaded when needed for spectrum
+     * matches.
+     */
+    private PeptideAssumption peptideAssumption = null;
+
+    /**
+     * Constructor.
+     *
+     * @param matchKey the key of the match
+     * @param identification the identification where to get the information
+     * from
+     * @param geneMaps the gene maps
+     * @param identificationFeaturesGenerator the identification features
+     * generator
+     * @param identificationParameters the identification parameters
+     * @param peptideSpectrumAnnotator the annotator to use to annotate spectra
+     */
+    public FilteredMatch(String matchKey, Identification identification, GeneMaps geneMaps, IdentificationFeaturesGenerator identificationFeaturesGenerator,
+            IdentificationParameters identificationParameters, PeptideSpectrumAnnotator peptideSpectrumAnnotator) {
+        this.matchKey = matchKey;
+        this.identification = identification;
+        this.geneMaps = geneMaps;
+        this.identificationFeaturesGenerator = identificationFeaturesGenerator;
+        this.identificationParameters = identificationParameters;
+        this.peptideSpectrumAnnotator = peptideSpectrumAnnotator;
+    }
+
+    /**
+     * Returns the key of the match.
+     *
+     * @return the key of the match
+     */
+    public String getMatchKey() {
+        return matchKey;
+    }
+
+    /**
+     * Returns the identification where to get the information from.
+     *
+     * @return the identification where to get the information from
+     */
+    public Identification getIdentification() {
+        return identification;
+    }
+
+    /**
+     * Returns the gene maps.
+     *
+     * @return the gene maps
+     */
+    public GeneMaps getGeneMaps() {
+        return geneMaps;
+    }
+
+    /**
+     * Returns the identification features generator.
+     *
+     * @return the identification features generator
+     */
+    public IdentificationFeaturesGenerator getIdentificationFeaturesGenerator() {
+        return identificationFeaturesGenerator;
+    }
+
+    /**
+     * Returns the identification parameters.
+     *
+     * @return the identification parameters
+     */
+    public IdentificationParameters getIdentificationParameters() {
+        return identificationParameters;
+    }
+
+    /**
+     * Returns the annotator to use to annotate spectra.
+     *
+     * @return the annotator to use to annotate spectra
+     */
+    public PeptideSpectrumAnnotator getPeptideSpectrumAnnotator() {
+        return peptideSpectrumAnnotator;
+    }
+
+    /**
+     * Returns the peptide assumption to filter. If not set, the best
+     * assumption of the spectrum match designated by the match key is loaded.
+     *
+     * @return the peptide assumption to filter
+     *
+     * @throws java.io.IOException exception thrown whenever an exception
+     * occurred while reading or writing a file
+     * @throws java.lang.InterruptedException exception thrown whenever a
+     * threading issue occurred while loading the match
+     * @throws java.lang.ClassNotFoundException exception thrown whenever an
+     * error occurred while deserilalizing a match
+     * @throws java.sql.SQLException exception thrown whenever an error occurred
+     * while interacting with a database
+     * @throws uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException exception thrown
+     * whenever an error occurred while reading an mzML file
+     */
+    public PeptideAssumption getPeptideAssumption() throws IOException, InterruptedException, ClassNotFoundException, SQLException, MzMLUnmarshallerException {
+        if (peptideAssumption == null) {
+            SpectrumMatch spectrumMatch = identification.getSpectrumMatch(matchKey);
+            peptideAssumption = spectrumMatch.getBestPeptideAssumption();
+        }
+        return peptideAssumption;
+    }
+
+    /**
+     * Sets the peptide assumption to filter.
+     *
+     * @param peptideAssumption the peptide assumption to filter
+     */
+    public void setPeptideAssumption(PeptideAssumption peptideAssumption) {
+        this.peptideAssumption = peptideAssumption;
+    }
+}
@@ -73,6 +73,11 @@ public abstract class MatchFilter implements Serializable, Filter {
      * Map of the values to filter on.
      */
     protected HashMap<String, Object> valuesMap = new HashMap<String, Object>();
+    /**
+     * The filter items compiled for the evaluation of matches, null if not
+     * compiled yet or if the items changed since the last compilation.
+     */
+    private transient volatile FilterItemPredicate[] compiledItems = null;
 
     /**
      * Enum for the type of possible filter.
@@ -312,6 +317,7 @@ public abstract class MatchFilter implements Serializable, Filter {
     public void removeFilterItem(String itemName) {
         comparatorsMap.remove(itemName);
         valuesMap.remove(itemName);
+        compiledItems = null;
     }
 
     /**
@@ -334,6 +340,7 @@ public abstract class MatchFilter implements Serializable, Filter {
      */
     public void setComparatorForItem(String itemName, FilterItemComparator filterItemComparator) {
         comparatorsMap.put(itemName, filterItemComparator);
+        compiledItems = null;
     }
     
     /**
@@ -344,6 +351,7 @@ public abstract class MatchFilter implements Serializable, Filter {
      */
     public void setValueForItem(String itemName, Object value) {
         valuesMap.put(itemName, value);
+        compiledItems = null;
     }
 
     /**
@@ -383,6 +391,7 @@ public abstract class MatchFilter implements Serializable, Filter {
     public void clear() {
         valuesMap.clear();
         comparatorsMap.clear();
+        compiledItems = null;
     }
 
     /**
@@ -424,16 +433,84 @@ public abstract class MatchFilter implements Serializable, Filter {
         if (manualValidation.contains(matchKey)) {
             return true;
         }
-        for (String itemName : valuesMap.keySet()) {
-            FilterItemComparator filterItemComparator = comparatorsMap.get(itemName);
-            Object value = valuesMap.get(itemName);
-            if (!isValidated(itemName, filterItemComparator, value, matchKey, identification, geneMaps, identificationFeaturesGenerator, identificationParameters, peptideSpectrumAnnotator)) {
+        FilteredMatch filteredMatch = new FilteredMatch(matchKey, identification, geneMaps, identificationFeaturesGenerator, identificationParameters, peptideSpectrumAnnotator);
+        return isValidated(filteredMatch);
+    }
+
+    /**
+     * Tests whether a match passes all the items of this filter. Exceptions
+     * and manual validation are not inspected.
+     *
+     * @param filteredMatch the match to filter
+     *
+     * @return a boolean indicating whether the match passes all the items of
+     * this filter
+     *
+     * @throws java.io.IOException exception thrown whenever an exception
+     * occurred while reading or writing a file
+     * @throws java.lang.InterruptedException exception thrown whenever a
+     * threading issue occurred while validating that the match passes the
+     * filter
+     * @throws java.lang.ClassNotFoundException exception thrown whenever an
+     * error occurred while deserilalizing a match
+     * @throws java.sql.SQLException exception thrown whenever an error occurred
+     * while interacting with a database
+     * @throws uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException exception thrown
+     * whenever an error occurred while reading an mzML file
+     * @throws org.apache.commons.math.MathException exception thrown whenever
+     * an error occurred while doing statistics on a distribution
+     */
+    protected boolean isValidated(FilteredMatch filteredMatch) throws IOException, InterruptedException, ClassNotFoundException, SQLException, MzMLUnmarshallerException, MathException {
+        for (FilterItemPredicate filterItemPredicate : getCompiledItems()) {
+            if (!filterItemPredicate.passes(filteredMatch)) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * Returns the items of this filter compiled for the evaluation of
+     * matches. The items are compiled upon first call and after every
+     * modification of the filter items.
+     *
+     * @return the items of this filter compiled for the evaluation of matches
+     */
+    protected FilterItemPredicate[] getCompiledItems() {
+        FilterItemPredicate[] result = compiledItems;
+        if (result == null) {
+            result = new FilterItemPredicate[valuesMap.size()];
+            int i = 0;
+            for (String itemName : valuesMap.keySet()) {
+                result[i++] = compileItem(itemName, comparatorsMap.get(itemName), valuesMap.get(itemName));
+            }
+            compiledItems = result;
+        }
+        return result;
+    }
+
+    /**
+     * Compiles a filter item for the evaluation of matches. By default, the
+     * returned predicate delegates to the isValidated method of the item.
+     * Filters should override this method to resolve the item and parse the
+     * threshold once.
+     *
+     * @param itemName the name of the item to filter on
+     * @param filterItemComparator the comparator to use
+     * @param value the value to use as a threshold
+     *
+     * @return the compiled item
+     */
+    protected FilterItemPredicate compileItem(final String itemName, final FilterItemComparator filterItemComparator, final Object value) {
+        return new FilterItemPredicate() {
+            @Override
+            public boolean passes(FilteredMatch filteredMatch) throws IOException, InterruptedException, ClassNotFoundException, SQLException, MzMLUnmarshallerException, MathException {
+                return isValidated(itemName, filterItemComparator, value, filteredMatch.getMatchKey(), filteredMatch.getIdentification(), filteredMatch.getGeneMaps(),
+                        filteredMatch.getIdentificationFeaturesGenerator(), filteredMatch.getIdentificationParameters(), filteredMatch.getPeptideSpectrumAnnotator());
+            }
+        };
+    }
+
     /**
      * Indicates whether the match designated by the match key validates the
      * given item using the given comparator and value threshold.
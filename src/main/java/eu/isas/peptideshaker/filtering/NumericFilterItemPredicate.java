@@ -0,0 +1,93 @@
+package eu.isas.peptideshaker.filtering;
+
+import com.compomics.util.experiment.filtering.FilterItemComparator;
+import java.io.IOException;
+import java.sql.SQLException;
+import org.apache.commons.math.MathException;
+import uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException;
+
+/**
+ * A compiled filter item on a numeric feature. For the higher or equal and
+ * lower or equal comparators the threshold is parsed once and the values are
+ * compared as primitives, other comparators are delegated to the
+ * FilterItemComparator.
+ *
+ * @author Marc Vaudel
+ */
+public abstract class NumericFilterItemPredicate extends FilterItemPredicate {
+
+    /**
+     * The comparator.
+     */
+    private final FilterItemComparator filterItemComparator;
+    /**
+     * The threshold as provided by the user.
+     */
+    private final String input;
+    /**
+     * The threshold parsed as a double.
+     */
+    private final double threshold;
+    /**
+     * Boolean indicating whether the comparison can be conducted on the
+     * primitive values.
+     */
+    private final boolean primitiveComparison;
+
+    /**
+     * Constructor.
+     *
+     * @param filterItemComparator the comparator
+     * @param value the threshold
+     */
+    public NumericFilterItemPredicate(FilterItemComparator filterItemComparator, Object value) {
+        this.filterItemComparator = filterItemComparator;
+        this.input = value.toString();
+        double parsedThreshold = Double.NaN;
+        boolean parsed = false;
+        if (filterItemComparator == FilterItemComparator.higherOrEqual || filterItemComparator == FilterItemComparator.lowerOrEqual) {
+            try {
+                parsedThreshold = Double.parseDouble(input);
+                parsed = true;
+            } catch (NumberFormatException e) {
+                // Let the comparator handle the input
+            }
+        }
+        this.threshold = parsedThreshold;
+        this.primitiveComparison = parsed;
+    }
+
+    /**
+     * Returns the value of the feature filtered for the given match.
+     *
+     * @param filteredMatch the match to filter
+     *
+     * @return the value of the feature filtered
+     *
+     * @throws java.io.IOException exception thrown whenever an exception
+     * occurred while reading or writing a file
+     * @throws java.lang.InterruptedException exception thrown whenever a
+     * threading issue occurred while estimating the feature
+     * @throws java.lang.ClassNotFoundException exception thrown whenever an
+     * error occurred while deserilalizing a match
+     * @throws java.sql.SQLException exception thrown whenever an error occurred
+     * while interacting with a database
+     * @throws uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException exception thrown
+     * whenever an error occurred while reading an mzML file
+     * @throws org.apache.commons.math.MathException exception thrown whenever
+     * an error occurred while doing statistics on a distribution
+     */
+    protected abstract Number getValue(FilteredMatch filteredMatch) throws IOException, InterruptedException, ClassNotFoundException, SQLException, MzMLUnmarshallerException, MathException;
+
+    @Override
+    public boolean passes(FilteredMatch filteredMatch) throws IOException, InterruptedException, ClassNotFoundException, SQLException, MzMLUnmarshallerException, MathException {
+        Number value = getValue(filteredMatch);
+        if (primitiveComparison) {
+            if (filterItemComparator == FilterItemComparator.higherOrEqual) {
+                return value.doubleValue() >= threshold;
+            }
+            return value.doubleValue() <= threshold;
+        }
+        return filterItemComparator.passes(input, value.toString());
+    }
+}
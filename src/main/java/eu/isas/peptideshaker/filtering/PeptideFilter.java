@@ -122,22 +122,13 @@ public class PeptideFilter extends MatchFilter {
                 }
                 return filterItemComparator.passes(input, ptms);
             case nPSMs:
-                peptideMatch = identification.getPeptideMatch(matchKey);
-                Integer nPsms = peptideMatch.getSpectrumCount();
-                return filterItemComparator.passes(input, nPsms.toString());
             case nValidatedPSMs:
-                nPsms = identificationFeaturesGenerator.getNValidatedSpectraForPeptide(matchKey);
-                return filterItemComparator.passes(input, nPsms.toString());
             case nConfidentPSMs:
-                nPsms = identificationFeaturesGenerator.getNConfidentSpectraForPeptide(matchKey);
-                return filterItemComparator.passes(input, nPsms.toString());
             case confidence:
-                PSParameter psParameter = new PSParameter();
-                psParameter = (PSParameter) identification.getPeptideMatchParameter(matchKey, psParameter);
-                Double confidence = psParameter.getProteinConfidence();
-                return filterItemComparator.passes(input, confidence.toString());
+                Number number = getNumericValue(filterItem, matchKey, identification, identificationFeaturesGenerator);
+                return filterItemComparator.passes(input, number.toString());
             case proteinInference:
-                psParameter = new PSParameter();
+                PSParameter psParameter = new PSParameter();
                 psParameter = (PSParameter) identification.getPeptideMatchParameter(matchKey, psParameter);
                 Integer pi = psParameter.getProteinInferenceClass();
                 return filterItemComparator.passes(input, pi.toString());
@@ -161,6 +152,71 @@ public class PeptideFilter extends MatchFilter {
         }
     }
 
+    /**
+     * Returns the value of a numeric item for the given match.
+     *
+     * @param filterItem the numeric item
+     * @param matchKey the key of the match of interest
+     * @param identification the identification objects where to get
+     * identification matches from
+     * @param identificationFeaturesGenerator the identification feature
+     * generator where to get identification features
+     *
+     * @return the value of the item
+     *
+     * @throws java.io.IOException exception thrown whenever an exception
+     * occurred while reading or writing a file
+     * @throws java.lang.InterruptedException exception thrown whenever a
+     * threading issue occurred while estimating the value
+     * @throws java.lang.ClassNotFoundException exception thrown whenever an
+     * error occurred while deserilalizing a match
+     * @throws java.sql.SQLException exception thrown whenever an error occurred
+     * while interacting with a database
+     * @throws uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException exception thrown
+     * whenever an error occurred while reading an mzML file
+     * @throws org.apache.commons.math.MathException exception thrown whenever
+     * an error occurred while doing statistics on a distribution
+     */
+    private Number getNumericValue(PeptideFilterItem filterItem, String matchKey, Identification identification, IdentificationFeaturesGenerator identificationFeaturesGenerator)
+            throws IOException, InterruptedException, ClassNotFoundException, SQLException, MzMLUnmarshallerException, MathException {
+        switch (filterItem) {
+            case nPSMs:
+                PeptideMatch peptideMatch = identification.getPeptideMatch(matchKey);
+                Integer nPsms = peptideMatch.getSpectrumCount();
+                return nPsms;
+            case nValidatedPSMs:
+                nPsms = identificationFeaturesGenerator.getNValidatedSpectraForPeptide(matchKey);
+                return nPsms;
+            case nConfidentPSMs:
+                nPsms = identificationFeaturesGenerator.getNConfidentSpectraForPeptide(matchKey);
+                return nPsms;
+            case confidence:
+                PSParameter psParameter = new PSParameter();
+                psParameter = (PSParameter) identification.getPeptideMatchParameter(matchKey, psParameter);
+                Double confidence = psParameter.getProteinConfidence();
+                return confidence;
+            default:
+                throw new IllegalArgumentException("Protein filter not implemented for item " + filterItem.name + ".");
+        }
+    }
+
+    @Override
+    protected FilterItemPredicate compileItem(final String itemName, final FilterItemComparator filterItemComparator, final Object value) {
+        final PeptideFilterItem filterItem = PeptideFilterItem.getItem(itemName);
+        if (filterItem == null) {
+            throw new IllegalArgumentException("Filter item " + itemName + "not recognized as peptide filter item.");
+        }
+        if (filterItem.isNumber()) {
+            return new NumericFilterItemPredicate(filterItemComparator, value) {
+                @Override
+                protected Number getValue(FilteredMatch filteredMatch) throws IOException, InterruptedException, ClassNotFoundException, SQLException, MzMLUnmarshallerException, MathException {
+                    return getNumericValue(filterItem, filteredMatch.getMatchKey(), filteredMatch.getIdentification(), filteredMatch.getIdentificationFeaturesGenerator());
+                }
+            };
+        }
+        return super.compileItem(itemName, filterItemComparator, value);
+    }
+
     @Override
     public FilterItem[] getPossibleFilterItems() {
         return PeptideFilterItem.values();
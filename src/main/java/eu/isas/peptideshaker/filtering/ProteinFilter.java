@@ -138,19 +138,11 @@ public class ProteinFilter extends MatchFilter {
             case GO:
                 return filterItemComparator.passes(input, new ArrayList<String>(geneMaps.getGoNamesForProtein(matchKey)));
             case expectedCoverage:
-                Double coverage = 100 * identificationFeaturesGenerator.getObservableCoverage(matchKey);
-                return filterItemComparator.passes(input, coverage.toString());
             case validatedCoverage:
-                coverage = 100 * identificationFeaturesGenerator.getValidatedSequenceCoverage(matchKey);
-                return filterItemComparator.passes(input, coverage.toString());
             case confidentCoverage:
-                HashMap<Integer, Double> sequenceCoverage = identificationFeaturesGenerator.getSequenceCoverage(matchKey);
-                coverage = 100 * sequenceCoverage.get(MatchValidationLevel.confident.getIndex());
-                return filterItemComparator.passes(input, coverage.toString());
             case spectrumCounting:
-                sequenceCoverage = identificationFeaturesGenerator.getSequenceCoverage(matchKey);
-                coverage = 100 * sequenceCoverage.get(MatchValidationLevel.confident.getIndex());
-                return filterItemComparator.passes(input, coverage.toString());
+                Number number = getNumericValue(filterItem, matchKey, identification, identificationFeaturesGenerator);
+                return filterItemComparator.passes(input, number.toString());
             case ptm:
                 ProteinMatch proteinMatch = identification.getProteinMatch(matchKey);
                 ArrayList<String> ptms;
@@ -163,31 +155,16 @@ public class ProteinFilter extends MatchFilter {
                 }
                 return filterItemComparator.passes(input, ptms);
             case nPeptides:
-                proteinMatch = identification.getProteinMatch(matchKey);
-                Integer nPeptides = proteinMatch.getPeptideCount();
-                return filterItemComparator.passes(input, nPeptides.toString());
             case nValidatedPeptides:
-                nPeptides = identificationFeaturesGenerator.getNValidatedPeptides(matchKey);
-                return filterItemComparator.passes(input, nPeptides.toString());
             case nConfidentPeptides:
-                nPeptides = identificationFeaturesGenerator.getNConfidentPeptides(matchKey);
-                return filterItemComparator.passes(input, nPeptides.toString());
             case nPSMs:
-                Integer nPsms = identificationFeaturesGenerator.getNSpectra(matchKey);
-                return filterItemComparator.passes(input, nPsms.toString());
             case nValidatedPSMs:
-                nPsms = identificationFeaturesGenerator.getNValidatedSpectra(matchKey);
-                return filterItemComparator.passes(input, nPsms.toString());
             case nConfidentPSMs:
-                nPsms = identificationFeaturesGenerator.getNConfidentSpectra(matchKey);
-                return filterItemComparator.passes(input, nPsms.toString());
             case confidence:
-                PSParameter psParameter = new PSParameter();
-                psParameter = (PSParameter) identification.getProteinMatchParameter(matchKey, psParameter);
-                Double confidence = psParameter.getProteinConfidence();
-                return filterItemComparator.passes(input, confidence.toString());
+                number = getNumericValue(filterItem, matchKey, identification, identificationFeaturesGenerator);
+                return filterItemComparator.passes(input, number.toString());
             case proteinInference:
-                psParameter = new PSParameter();
+                PSParameter psParameter = new PSParameter();
                 psParameter = (PSParameter) identification.getProteinMatchParameter(matchKey, psParameter);
                 Integer pi = psParameter.getProteinInferenceClass();
                 return filterItemComparator.passes(input, pi.toString());
@@ -211,6 +188,94 @@ public class ProteinFilter extends MatchFilter {
         }
     }
 
+    /**
+     * Returns the value of a numeric item for the given match.
+     *
+     * @param filterItem the numeric item
+     * @param matchKey the key of the match of interest
+     * @param identification the identification objects where to get
+     * identification matches from
+     * @param identificationFeaturesGenerator the identification feature
+     * generator where to get identification features
+     *
+     * @return the value of the item
+     *
+     * @throws java.io.IOException exception thrown whenever an exception
+     * occurred while reading or writing a file
+     * @throws java.lang.InterruptedException exception thrown whenever a
+     * threading issue occurred while estimating the value
+     * @throws java.lang.ClassNotFoundException exception thrown whenever an
+     * error occurred while deserilalizing a match
+     * @throws java.sql.SQLException exception thrown whenever an error occurred
+     * while interacting with a database
+     * @throws uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException exception thrown
+     * whenever an error occurred while reading an mzML file
+     * @throws org.apache.commons.math.MathException exception thrown whenever
+     * an error occurred while doing statistics on a distribution
+     */
+    private Number getNumericValue(ProteinFilterItem filterItem, String matchKey, Identification identification, IdentificationFeaturesGenerator identificationFeaturesGenerator)
+            throws IOException, InterruptedException, ClassNotFoundException, SQLException, MzMLUnmarshallerException, MathException {
+        switch (filterItem) {
+            case expectedCoverage:
+                Double coverage = 100 * identificationFeaturesGenerator.getObservableCoverage(matchKey);
+                return coverage;
+            case validatedCoverage:
+                coverage = 100 * identificationFeaturesGenerator.getValidatedSequenceCoverage(matchKey);
+                return coverage;
+            case confidentCoverage:
+                HashMap<Integer, Double> sequenceCoverage = identificationFeaturesGenerator.getSequenceCoverage(matchKey);
+                coverage = 100 * sequenceCoverage.get(MatchValidationLevel.confident.getIndex());
+                return coverage;
+            case spectrumCounting:
+                sequenceCoverage = identificationFeaturesGenerator.getSequenceCoverage(matchKey);
+                coverage = 100 * sequenceCoverage.get(MatchValidationLevel.confident.getIndex());
+                return coverage;
+            case nPeptides:
+                ProteinMatch proteinMatch = identification.getProteinMatch(matchKey);
+                Integer nPeptides = proteinMatch.getPeptideCount();
+                return nPeptides;
+            case nValidatedPeptides:
+                nPeptides = identificationFeaturesGenerator.getNValidatedPeptides(matchKey);
+                return nPeptides;
+            case nConfidentPeptides:
+                nPeptides = identificationFeaturesGenerator.getNConfidentPeptides(matchKey);
+                return nPeptides;
+            case nPSMs:
+                Integer nPsms = identificationFeaturesGenerator.getNSpectra(matchKey);
+                return nPsms;
+            case nValidatedPSMs:
+                nPsms = identificationFeaturesGenerator.getNValidatedSpectra(matchKey);
+                return nPsms;
+            case nConfidentPSMs:
+                nPsms = identificationFeaturesGenerator.getNConfidentSpectra(matchKey);
+                return nPsms;
+            case confidence:
+                PSParameter psParameter = new PSParameter();
+                psParameter = (PSParameter) identification.getProteinMatchParameter(matchKey, psParameter);
+                Double confidence = psParameter.getProteinConfidence();
+                return confidence;
+            default:
+                throw new IllegalArgumentException("Protein filter not implemented for item " + filterItem.name + ".");
+        }
+    }
+
+    @Override
+    protected FilterItemPredicate compileItem(final String itemName, final FilterItemComparator filterItemComparator, final Object value) {
+        final ProteinFilterItem filterItem = ProteinFilterItem.getItem(itemName);
+        if (filterItem == null) {
+            throw new IllegalArgumentException("Filter item " + itemName + "not recognized as protein filter item.");
+        }
+        if (filterItem.isNumber()) {
+            return new NumericFilterItemPredicate(filterItemComparator, value) {
+                @Override
+                protected Number getValue(FilteredMatch filteredMatch) throws IOException, InterruptedException, ClassNotFoundException, SQLException, MzMLUnmarshallerException, MathException {
+                    return getNumericValue(filterItem, filteredMatch.getMatchKey(), filteredMatch.getIdentification(), filteredMatch.getIdentificationFeaturesGenerator());
+                }
+            };
+        }
+        return super.compileItem(itemName, filterItemComparator, value);
+    }
+
     @Override
     public FilterItem[] getPossibleFilterItems() {
         return ProteinFilterItem.values();
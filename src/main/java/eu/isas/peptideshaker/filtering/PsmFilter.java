@@ -84,6 +84,13 @@ public class PsmFilter extends MatchFilter {
         return new PsmFilter();
     }
 
+    @Override
+    public PsmFilter clone() {
+        PsmFilter newFilter = (PsmFilter) super.clone();
+        newFilter.assumptionFilter = (AssumptionFilter) assumptionFilter.clone();
+        return newFilter;
+    }
+
     @Override
     public boolean isValidated(String itemName, FilterItemComparator filterItemComparator, Object value, String matchKey, Identification identification, GeneMaps geneMaps, IdentificationFeaturesGenerator identificationFeaturesGenerator,
             IdentificationParameters identificationParameters, PeptideSpectrumAnnotator peptideSpectrumAnnotator) throws IOException, InterruptedException, ClassNotFoundException, SQLException, MzMLUnmarshallerException, MathException {
@@ -119,6 +126,25 @@ public class PsmFilter extends MatchFilter {
         }
     }
 
+    @Override
+    protected FilterItemPredicate compileItem(String itemName, FilterItemComparator filterItemComparator, Object value) {
+        PsmFilterItem filterItem = PsmFilterItem.getItem(itemName);
+        if (filterItem == null) {
+            return assumptionFilter.compileItem(itemName, filterItemComparator, value);
+        }
+        if (filterItem == PsmFilterItem.confidence) {
+            return new NumericFilterItemPredicate(filterItemComparator, value) {
+                @Override
+                protected Number getValue(FilteredMatch filteredMatch) throws IOException, InterruptedException, ClassNotFoundException, SQLException, MzMLUnmarshallerException {
+                    PSParameter psParameter = new PSParameter();
+                    psParameter = (PSParameter) filteredMatch.getIdentification().getPeptideMatchParameter(filteredMatch.getMatchKey(), psParameter);
+                    return psParameter.getProteinConfidence();
+                }
+            };
+        }
+        return super.compileItem(itemName, filterItemComparator, value);
+    }
+
     @Override
     public FilterItem[] getPossibleFilterItems() {
         return PsmFilterItem.values();
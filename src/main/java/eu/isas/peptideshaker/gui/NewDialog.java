@@ -717,6 +717,7 @@ public class NewDialog extends javax.swing.JDialog {
             }
 
             peptideShaker = new PeptideShaker(experiment, sample, replicateNumber);
+            peptideShaker.setOffHeapMatchStore(peptideShakerGUI.getUserPreferences().isOffHeapMatchStore());
 
             ArrayList<String> tips;
             try {
@@ -744,6 +745,7 @@ public class NewDialog extends javax.swing.JDialog {
             progressCounter++; // resolving protein inference
             progressCounter += 4; // Correcting protein probabilities, Validating identifications at 1% FDR, Scoring PTMs in peptides, Scoring PTMs in proteins.
             progressCounter += 2; // Scoring PTMs in PSMs. Estimating PTM FLR.
+            progressCounter++; // Computing protein and peptide features
             if (identificationParameters.getPtmScoringPreferences().getAlignNonConfidentPTMs()) {
                 progressCounter++; // Peptide inference
             }
@@ -788,6 +790,7 @@ public class NewDialog extends javax.swing.JDialog {
                 peptideShakerGUI.setGeneMaps(peptideShaker.getGeneMaps());
                 peptideShakerGUI.setIdentificationFeaturesGenerator(peptideShaker.getIdentificationFeaturesGenerator());
                 peptideShakerGUI.setCache(peptideShaker.getCache());
+                peptideShakerGUI.setProcessingStatistics(peptideShaker.getProcessingStatistics());
                 peptideShakerGUI.displayResults();
                 peptideShakerGUI.initiateDisplay(); // display the overview tab
                 peptideShakerGUI.getProjectDetails().setReport(waitingDialog.getReport(null));
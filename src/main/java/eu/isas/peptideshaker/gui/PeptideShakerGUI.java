@@ -110,6 +110,7 @@ import eu.isas.peptideshaker.scoring.maps.PsmPTMMap;
 import eu.isas.peptideshaker.utils.CpsParent;
 import eu.isas.peptideshaker.utils.IdentificationFeaturesGenerator;
 import eu.isas.peptideshaker.utils.Metrics;
+import eu.isas.peptideshaker.utils.ProcessingStatistics;
 import eu.isas.peptideshaker.utils.PsZipUtils;
 import eu.isas.peptideshaker.utils.StarHider;
 import eu.isas.peptideshaker.validation.MatchesValidator;
@@ -6305,6 +6306,15 @@ public class PeptideShakerGUI extends JFrame implements ClipboardOwner, JavaHome
         cpsParent.setObjectsCache(objectsCache);
     }
 
+    /**
+     * Sets the statistics on the resources used by the processing phases.
+     *
+     * @param processingStatistics the processing statistics
+     */
+    public void setProcessingStatistics(ProcessingStatistics processingStatistics) {
+        cpsParent.setProcessingStatistics(processingStatistics);
+    }
+
     /**
      * Returns the objects cache in use
      *
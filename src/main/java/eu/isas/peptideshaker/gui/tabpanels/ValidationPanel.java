@@ -15,6 +15,7 @@ import eu.isas.peptideshaker.gui.PeptideShakerGUI;
 import eu.isas.peptideshaker.scoring.PSMaps;
 import eu.isas.peptideshaker.scoring.maps.PsmSpecificMap;
 import eu.isas.peptideshaker.validation.MatchesValidator;
+import eu.isas.peptideshaker.validation.ThresholdRevalidator;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Font;
@@ -135,6 +136,11 @@ public class ValidationPanel extends javax.swing.JPanel {
      * Map keeping track of probabilities modifications.
      */
     private HashMap<Integer, Boolean> modifiedMaps = new HashMap<Integer, Boolean>();
+    /**
+     * The revalidator used when only thresholds changed, null if the
+     * probabilities changed since the last validation.
+     */
+    private ThresholdRevalidator thresholdRevalidator = null;
     /**
      * The score log axis.
      */
@@ -1499,15 +1505,45 @@ public class ValidationPanel extends javax.swing.JPanel {
                         PSMaps pSMaps = new PSMaps();
                         pSMaps = (PSMaps) peptideShakerGUI.getIdentification().getUrParam(pSMaps);
 
-                        MatchesValidator matchesValidator = new MatchesValidator(pSMaps.getPsmSpecificMap(), pSMaps.getPeptideSpecificMap(), pSMaps.getProteinMap());
-                        matchesValidator.validateIdentifications(peptideShakerGUI.getIdentification(), peptideShakerGUI.getMetrics(), peptideShakerGUI.getGeneMaps(), pSMaps.getInputMap(), progressDialog, peptideShakerGUI.getExceptionHandler(), peptideShakerGUI.getIdentificationFeaturesGenerator(), peptideShakerGUI.getIdentificationParameters(), peptideShakerGUI.getSpectrumCountingPreferences(), peptideShakerGUI.getProcessingPreferences());
+                        if (thresholdRevalidator == null) {
+                            thresholdRevalidator = new ThresholdRevalidator(peptideShakerGUI.getIdentification(), pSMaps);
+                        }
+
+                        // if only thresholds changed, update the matches crossing the thresholds
+                        ArrayList<Integer> changedGroups = getGroupsWithChangedThreshold();
+                        boolean thresholdOnly = changedGroups != null && !changedGroups.isEmpty();
+                        if (thresholdOnly) {
+                            for (int group : changedGroups) {
+                                if (!thresholdRevalidator.canRevalidate(getTargetDecoyMap(group))) {
+                                    thresholdOnly = false;
+                                    break;
+                                }
+                            }
+                        }
+
+                        if (thresholdOnly) {
+                            progressDialog.setPrimaryProgressCounterIndeterminate(true);
+                            for (int group : changedGroups) {
+                                thresholdRevalidator.revalidate(getTargetDecoyMap(group), getOriginalTargetDecoyResults(group), peptideShakerGUI.getMetrics(), peptideShakerGUI.getGeneMaps(), peptideShakerGUI.getIdentificationFeaturesGenerator(), peptideShakerGUI.getIdentificationParameters(), peptideShakerGUI.getSpectrumCountingPreferences(), progressDialog);
+                                if (progressDialog.isRunCanceled()) {
+                                    thresholdRevalidator = null;
+                                    break;
+                                }
+                            }
+                        } else {
+                            thresholdRevalidator = null;
+                            MatchesValidator matchesValidator = new MatchesValidator(pSMaps.getPsmSpecificMap(), pSMaps.getPeptideSpecificMap(), pSMaps.getProteinMap());
+                            matchesValidator.validateIdentifications(peptideShakerGUI.getIdentification(), peptideShakerGUI.getMetrics(), peptideShakerGUI.getGeneMaps(), pSMaps.getInputMap(), progressDialog, peptideShakerGUI.getExceptionHandler(), peptideShakerGUI.getIdentificationFeaturesGenerator(), peptideShakerGUI.getIdentificationParameters(), peptideShakerGUI.getSpectrumCountingPreferences(), peptideShakerGUI.getProcessingPreferences());
+                        }
 
                         progressDialog.setPrimaryProgressCounterIndeterminate(true);
 
                         if (!progressDialog.isRunCanceled()) {
                             // update the other tabs
-                            peptideShakerGUI.getMetrics().setnValidatedProteins(-1);
-                            peptideShakerGUI.getMetrics().setnConfidentProteins(-1);
+                            if (!thresholdOnly) {
+                                peptideShakerGUI.getMetrics().setnValidatedProteins(-1);
+                                peptideShakerGUI.getMetrics().setnConfidentProteins(-1);
+                            }
                             peptideShakerGUI.setUpdated(PeptideShakerGUI.OVER_VIEW_TAB_INDEX, false);
                             peptideShakerGUI.setUpdated(PeptideShakerGUI.PROTEIN_FRACTIONS_TAB_INDEX, false);
                             peptideShakerGUI.setUpdated(PeptideShakerGUI.STRUCTURES_TAB_INDEX, false);
@@ -1524,6 +1560,17 @@ public class ValidationPanel extends javax.swing.JPanel {
                             int selectedGroup = groupSelectionTable.getSelectedRow();
                             originalThresholds.put(selectedGroup, input);
                             originalThresholdTypes.put(selectedGroup, inputType);
+                            if (thresholdOnly) {
+                                for (int group : changedGroups) {
+                                    if (group != selectedGroup) {
+                                        TargetDecoyResults groupResults = getTargetDecoyMap(group).getTargetDecoyResults();
+                                        groupResults.setUserInput(lastThresholds.get(group));
+                                        groupResults.setInputType(lastThresholdTypes.get(group));
+                                        originalThresholds.put(group, lastThresholds.get(group));
+                                        originalThresholdTypes.put(group, lastThresholdTypes.get(group));
+                                    }
+                                }
+                            }
                             peptideShakerGUI.setDataSaved(false);
                         } else {
                             // @TODO: ideally the validation settings ought to be reset as well..?
@@ -2315,6 +2362,7 @@ public class ValidationPanel extends javax.swing.JPanel {
 
                 PSMaps pSMaps = new PSMaps();
                 pSMaps = (PSMaps) peptideShakerGUI.getIdentification().getUrParam(pSMaps);
+                thresholdRevalidator = null;
 
                 int cpt = 0;
 
@@ -2572,26 +2620,89 @@ public class ValidationPanel extends javax.swing.JPanel {
     private void updateResults(int thresholdType, double threshold) {
 
         if (currentTargetDecoyMap != null) {
-
             TargetDecoyResults currentResults = currentTargetDecoyMap.getTargetDecoyResults();
+            setThreshold(currentResults, targetDecoySeries, thresholdType, threshold);
+        }
+    }
 
-            switch (thresholdType) {
-                case 0:
-                    currentResults.setConfidenceLimit(threshold);
-                    targetDecoySeries.getConfidenceResults(currentResults);
-                    break;
-                case 1:
-                    currentResults.setFdrLimit(threshold);
-                    targetDecoySeries.getFDRResults(currentResults);
-                    break;
-                case 2:
-                    currentResults.setFnrLimit(threshold);
-                    targetDecoySeries.getFNRResults(currentResults);
-                    break;
-                default:
-                    break;
+    /**
+     * Sets the given threshold in the target/decoy results.
+     *
+     * @param targetDecoyResults the target/decoy results to update
+     * @param targetDecoySeries the target/decoy series of the map
+     * @param thresholdType the threshold type
+     * @param threshold the threshold
+     */
+    private static void setThreshold(TargetDecoyResults targetDecoyResults, TargetDecoySeries targetDecoySeries, int thresholdType, double threshold) {
+
+        switch (thresholdType) {
+            case 0:
+                targetDecoyResults.setConfidenceLimit(threshold);
+                targetDecoySeries.getConfidenceResults(targetDecoyResults);
+                break;
+            case 1:
+                targetDecoyResults.setFdrLimit(threshold);
+                targetDecoySeries.getFDRResults(targetDecoyResults);
+                break;
+            case 2:
+                targetDecoyResults.setFnrLimit(threshold);
+                targetDecoySeries.getFNRResults(targetDecoyResults);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Returns the groups whose threshold changed since the last validation.
+     * Returns null if the probabilities of a group changed or if the last
+     * validated threshold of a group is not known.
+     *
+     * @return the groups whose threshold changed since the last validation
+     */
+    private ArrayList<Integer> getGroupsWithChangedThreshold() {
+
+        for (Boolean modified : modifiedMaps.values()) {
+            if (modified) {
+                return null;
+            }
+        }
+
+        ArrayList<Integer> result = new ArrayList<Integer>();
+
+        for (int group : lastThresholds.keySet()) {
+            Double originalThreshold = originalThresholds.get(group);
+            Integer originalThresholdType = originalThresholdTypes.get(group);
+            if (originalThreshold == null || originalThresholdType == null) {
+                return null;
+            }
+            if (!originalThreshold.equals(lastThresholds.get(group)) || !originalThresholdType.equals(lastThresholdTypes.get(group))) {
+                result.add(group);
             }
         }
+
+        return result;
+    }
+
+    /**
+     * Returns the target/decoy results of the given group at the last
+     * validated threshold.
+     *
+     * @param group the index of the group of interest
+     *
+     * @return the target/decoy results of the given group at the last
+     * validated threshold
+     */
+    private TargetDecoyResults getOriginalTargetDecoyResults(int group) {
+
+        TargetDecoyMap targetDecoyMap = getTargetDecoyMap(group);
+        TargetDecoyResults currentResults = targetDecoyMap.getTargetDecoyResults();
+        TargetDecoyResults originalResults = new TargetDecoyResults();
+        originalResults.setClassicalEstimators(currentResults.isClassicalEstimators());
+        originalResults.setClassicalValidation(currentResults.isClassicalValidation());
+        setThreshold(originalResults, targetDecoyMap.getTargetDecoySeries(), originalThresholdTypes.get(group), originalThresholds.get(group));
+
+        return originalResults;
     }
 
     /**
@@ -3022,7 +3133,7 @@ public class ValidationPanel extends javax.swing.JPanel {
                 PeptideShaker miniShaker = new PeptideShaker(peptideShakerGUI.getExperiment(), peptideShakerGUI.getSample(), peptideShakerGUI.getReplicateNumber(), pSMaps);
 
                 try {
-                    miniShaker.spectrumMapChanged(peptideShakerGUI.getIdentification(), progressDialog, peptideShakerGUI.getProcessingPreferences(), peptideShakerGUI.getShotgunProtocol(), peptideShakerGUI.getIdentificationParameters());
+                    miniShaker.spectrumMapChanged(peptideShakerGUI.getIdentification(), progressDialog, peptideShakerGUI.getProcessingPreferences(), peptideShakerGUI.getShotgunProtocol(), peptideShakerGUI.getIdentificationParameters(), peptideShakerGUI.getExceptionHandler());
                 } catch (Exception e) {
                     JOptionPane.showMessageDialog(peptideShakerGUI, JOptionEditorPane.getJOptionEditorPane(
                             "An identification conflict occured. If you can reproduce the error <br>"
@@ -3035,6 +3146,7 @@ public class ValidationPanel extends javax.swing.JPanel {
                 for (int key : modifiedMaps.keySet()) {
                     modifiedMaps.put(key, false);
                 }
+                thresholdRevalidator = null;
 
                 progressDialog.setRunFinished();
             }
@@ -3072,7 +3184,7 @@ public class ValidationPanel extends javax.swing.JPanel {
                 PeptideShaker miniShaker = new PeptideShaker(peptideShakerGUI.getExperiment(), peptideShakerGUI.getSample(), peptideShakerGUI.getReplicateNumber(), pSMaps);
 
                 try {
-                    miniShaker.peptideMapChanged(peptideShakerGUI.getIdentification(), progressDialog, peptideShakerGUI.getIdentificationParameters());
+                    miniShaker.peptideMapChanged(peptideShakerGUI.getIdentification(), progressDialog, peptideShakerGUI.getIdentificationParameters(), peptideShakerGUI.getProcessingPreferences(), peptideShakerGUI.getExceptionHandler());
                 } catch (Exception e) {
                     JOptionPane.showMessageDialog(peptideShakerGUI, JOptionEditorPane.getJOptionEditorPane(
                             "An identification conflict occured. If you can reproduce the error <br>"
@@ -3085,6 +3197,7 @@ public class ValidationPanel extends javax.swing.JPanel {
                 for (int key : peptideMap.keySet()) {
                     modifiedMaps.put(key, false);
                 }
+                thresholdRevalidator = null;
 
                 progressDialog.setRunFinished();
             }
@@ -3122,8 +3235,9 @@ public class ValidationPanel extends javax.swing.JPanel {
                     pSMaps = (PSMaps) peptideShakerGUI.getIdentification().getUrParam(pSMaps);
                     PeptideShaker miniShaker = new PeptideShaker(peptideShakerGUI.getExperiment(), peptideShakerGUI.getSample(), peptideShakerGUI.getReplicateNumber(), pSMaps);
 
-                    miniShaker.proteinMapChanged(progressDialog, peptideShakerGUI.getIdentificationParameters().getFractionSettings());
+                    miniShaker.proteinMapChanged(progressDialog, peptideShakerGUI.getIdentificationParameters().getFractionSettings(), peptideShakerGUI.getProcessingPreferences(), peptideShakerGUI.getExceptionHandler());
                     modifiedMaps.put(0, false);
+                    thresholdRevalidator = null;
                 } catch (Exception e) {
                     peptideShakerGUI.catchException(e);
                 }
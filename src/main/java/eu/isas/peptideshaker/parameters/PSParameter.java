@@ -2,7 +2,18 @@ package eu.isas.peptideshaker.parameters;
 
 import com.compomics.util.experiment.personalization.UrParameter;
 import eu.isas.peptideshaker.scoring.MatchValidationLevel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
@@ -14,6 +25,16 @@ import org.apache.commons.math.util.FastMath;
  * them, indicate the estimated posterior error probability associated and flag
  * whether they have been validated or not.
  *
+ * The scores and flags are kept in primitive attributes and the sparse per
+ * fraction, quality control and intermediate score values in sorted arrays,
+ * missing values being represented by NaN or Integer.MIN_VALUE.
+ *
+ * The parameter is serialized in a compact versioned binary layout: the scores
+ * and flags are written at fixed positions and the optional maps are written
+ * as a single block which is only decoded when one of the maps is accessed.
+ * Parameters saved with the default Java serialization by previous versions
+ * are still read.
+ *
  * @author Marc Vaudel
  */
 public class PSParameter implements UrParameter {
@@ -29,13 +50,15 @@ public class PSParameter implements UrParameter {
     /**
      * The difference in identification algorithm level PEP with the next best
      * peptide assumption with sequence difference for a given search engine.
+     * NaN if not set.
      */
-    private Double algorithmDeltaPEP;
+    private double algorithmDeltaPEP = Double.NaN;
     /**
      * The difference in identification algorithm level PEP with the next best
      * peptide assumption with sequence difference across all search engines.
+     * NaN if not set.
      */
-    private Double deltaPEP;
+    private double deltaPEP = Double.NaN;
     /**
      * Probabilistic score for a peptide to spectrum match in the dataset.
      */
@@ -68,7 +91,7 @@ public class PSParameter implements UrParameter {
      * Boolean indicating whether the validation confidence was manually
      * updated.
      */
-    private Boolean manualValidation = false;
+    private boolean manualValidation = false;
     /**
      * Boolean indicating whether this is a hidden match.
      */
@@ -108,41 +131,124 @@ public class PSParameter implements UrParameter {
      */
     public static final int UNRELATED = 3;
     /**
-     * The fraction confidence map.
+     * The fractions where this match was found, sorted. The per fraction
+     * arrays are aligned on this array.
+     */
+    private String[] fractions = null;
+    /**
+     * The fraction confidence per fraction.
      */
-    private HashMap<String, Double> fractionPEP = null;
+    private double[] fractionPEP = null;
     /**
-     * The fraction confidence map.
+     * The fraction score per fraction.
      */
-    private HashMap<String, Double> fractionScore = null;
+    private double[] fractionScore = null;
     /**
      * The number of validated peptides per fraction.
      */
-    private HashMap<String, Integer> validatedPeptidesPerFraction = null;
+    private int[] validatedPeptidesPerFraction = null;
     /**
      * The number of validated spectra per fraction.
      */
-    private HashMap<String, Integer> validatedSpectraPerFraction = null;
+    private int[] validatedSpectraPerFraction = null;
     /**
-     * The precursor intensity per fraction.
+     * The precursor intensities per fraction.
      */
-    private HashMap<String, ArrayList<Double>> precursorIntensityPerFraction = null;
+    private double[][] precursorIntensityPerFraction = null;
     /**
      * The average precursor intensity per fraction.
      */
-    private HashMap<String, Double> precursorIntensityAveragePerFraction = null;
+    private double[] precursorIntensityAveragePerFraction = null;
     /**
      * The summed precursor intensity per fraction.
      */
-    private HashMap<String, Double> precursorIntensitySummedPerFraction = null;
+    private double[] precursorIntensitySummedPerFraction = null;
+    /**
+     * The criteria of the validation quality filters, sorted.
+     */
+    private String[] qcCriteria = null;
+    /**
+     * The results of the validation quality filters, aligned on the criteria.
+     */
+    private boolean[] qcResults = null;
+    /**
+     * The indexes of the intermediate scores, sorted.
+     */
+    private int[] intermediateScoreIds = null;
+    /**
+     * The intermediate scores, aligned on the indexes.
+     */
+    private double[] intermediateScores = null;
+    /**
+     * Value used for missing integers in the per fraction arrays.
+     */
+    private static final int MISSING_INTEGER = Integer.MIN_VALUE;
+    /**
+     * Empty array of strings.
+     */
+    private static final String[] NO_STRINGS = new String[0];
+    /**
+     * Empty array of booleans.
+     */
+    private static final boolean[] NO_BOOLEANS = new boolean[0];
+    /**
+     * Empty array of integers.
+     */
+    private static final int[] NO_INTEGERS = new int[0];
+    /**
+     * Empty array of doubles.
+     */
+    private static final double[] NO_DOUBLES = new double[0];
+    /**
+     * The optional maps in their binary form as read from the stream, null if
+     * decoded or if the parameter was not deserialized.
+     */
+    private transient volatile byte[] encodedMaps = null;
     /**
-     * The results of the validation quality filters.
+     * No field is written by the default Java serialization, the attributes
+     * are written in a binary layout by writeObject.
      */
-    private HashMap<String, Boolean> qcFilters = null;
+    private static final ObjectStreamField[] serialPersistentFields = {};
     /**
-     * Map of the intermediate scores. Score index &gt; value
+     * The version of the binary layout written by writeObject.
      */
-    private HashMap<Integer, Double> intermediateScores;
+    private static final int CODEC_VERSION = 1;
+    /**
+     * Flag indicating that the algorithm delta PEP is set.
+     */
+    private static final int FLAG_ALGORITHM_DELTA_PEP = 1;
+    /**
+     * Flag indicating that the delta PEP is set.
+     */
+    private static final int FLAG_DELTA_PEP = 1 << 1;
+    /**
+     * Flag indicating that the match validation level is set.
+     */
+    private static final int FLAG_VALIDATION_LEVEL = 1 << 2;
+    /**
+     * Flag indicating that the manual validation is set.
+     */
+    private static final int FLAG_MANUAL_VALIDATION_SET = 1 << 3;
+    /**
+     * Flag indicating that the validation was manually updated.
+     */
+    private static final int FLAG_MANUAL_VALIDATION = 1 << 4;
+    /**
+     * Flag indicating a hidden match.
+     */
+    private static final int FLAG_HIDDEN = 1 << 5;
+    /**
+     * Flag indicating a starred match.
+     */
+    private static final int FLAG_STARRED = 1 << 6;
+    /**
+     * Flag indicating that the specific map key is set.
+     */
+    private static final int FLAG_SPECIFIC_MAP_KEY = 1 << 7;
+    /**
+     * Flag indicating that the block of optional maps follows.
+     */
+    private static final int FLAG_MAPS = 1 << 8;
 
     /**
      * Constructor.
@@ -305,7 +411,7 @@ public class PSParameter implements UrParameter {
      * search engine
      */
     public Double getAlgorithmDeltaPEP() {
-        return algorithmDeltaPEP;
+        return Double.isNaN(algorithmDeltaPEP) ? null : algorithmDeltaPEP;
     }
 
     /**
@@ -318,7 +424,7 @@ public class PSParameter implements UrParameter {
      * search engine
      */
     public void setAlgorithmDeltaPEP(Double deltaPEP) {
-        this.algorithmDeltaPEP = deltaPEP;
+        this.algorithmDeltaPEP = deltaPEP == null ? Double.NaN : deltaPEP;
     }
 
     /**
@@ -331,7 +437,7 @@ public class PSParameter implements UrParameter {
      * engines
      */
     public Double getDeltaPEP() {
-        return deltaPEP;
+        return Double.isNaN(deltaPEP) ? null : deltaPEP;
     }
 
     /**
@@ -344,7 +450,7 @@ public class PSParameter implements UrParameter {
      * search engines
      */
     public void setDeltaPEP(Double deltaPEP) {
-        this.deltaPEP = deltaPEP;
+        this.deltaPEP = deltaPEP == null ? Double.NaN : deltaPEP;
     }
 
     /**
@@ -551,10 +657,12 @@ public class PSParameter implements UrParameter {
      * @param confidence the confidence
      */
     public void setFractionScore(String fraction, Double confidence) {
+        decodeMaps();
+        int index = addFraction(fraction);
         if (fractionScore == null) {
-            fractionScore = new HashMap<String, Double>(2);
+            fractionScore = getMissingDoubles(fractions.length);
         }
-        fractionScore.put(fraction, confidence);
+        fractionScore[index] = confidence == null ? Double.NaN : confidence;
     }
 
     /**
@@ -564,10 +672,8 @@ public class PSParameter implements UrParameter {
      * @return the fraction score
      */
     public Double getFractionScore(String fraction) {
-        if (fractionScore == null) {
-            return null;
-        }
-        return fractionScore.get(fraction);
+        decodeMaps();
+        return getFractionValue(fractionScore, fraction);
     }
 
     /**
@@ -576,11 +682,17 @@ public class PSParameter implements UrParameter {
      * @return the fractions where this match was found
      */
     public Set<String> getFractions() {
-        if (fractionScore != null) {
-            return fractionScore.keySet();
-        } else {
+        decodeMaps();
+        if (fractionScore == null) {
             return null;
         }
+        HashSet<String> result = new HashSet<String>(fractionScore.length);
+        for (int i = 0; i < fractionScore.length; i++) {
+            if (!Double.isNaN(fractionScore[i])) {
+                result.add(fractions[i]);
+            }
+        }
+        return result;
     }
 
     /**
@@ -590,10 +702,12 @@ public class PSParameter implements UrParameter {
      * @param confidence the confidence
      */
     public void setFractionPEP(String fraction, Double confidence) {
+        decodeMaps();
+        int index = addFraction(fraction);
         if (fractionPEP == null) {
-            fractionPEP = new HashMap<String, Double>(2);
+            fractionPEP = getMissingDoubles(fractions.length);
         }
-        fractionPEP.put(fraction, confidence);
+        fractionPEP[index] = confidence == null ? Double.NaN : confidence;
     }
 
     /**
@@ -603,10 +717,8 @@ public class PSParameter implements UrParameter {
      * @return the fraction pep
      */
     public Double getFractionPEP(String fraction) {
-        if (fractionPEP == null) {
-            return null;
-        }
-        return fractionPEP.get(fraction);
+        decodeMaps();
+        return getFractionValue(fractionPEP, fraction);
     }
 
     /**
@@ -616,10 +728,12 @@ public class PSParameter implements UrParameter {
      * @return the fraction confidence
      */
     public Double getFractionConfidence(String fraction) {
-        if (fractionPEP == null || fractionPEP.get(fraction) == null) {
+        decodeMaps();
+        Double pep = getFractionValue(fractionPEP, fraction);
+        if (pep == null) {
             return null;
         }
-        return 100 * (1 - fractionPEP.get(fraction));
+        return 100 * (1 - pep);
     }
 
     /**
@@ -629,8 +743,9 @@ public class PSParameter implements UrParameter {
      * @return the number of validated peptides in the given fraction
      */
     public Integer getFractionValidatedPeptides(String fraction) {
+        decodeMaps();
         if (validatedPeptidesPerFraction != null) {
-            return validatedPeptidesPerFraction.get(fraction);
+            return getFractionValue(validatedPeptidesPerFraction, fraction);
         } else {
             return 0;
         }
@@ -643,7 +758,8 @@ public class PSParameter implements UrParameter {
      * map
      */
     public void setFractionValidatedPeptides(HashMap<String, Integer> validatedPeptidesPerFraction) {
-        this.validatedPeptidesPerFraction = validatedPeptidesPerFraction;
+        decodeMaps();
+        this.validatedPeptidesPerFraction = toFractionIntegers(validatedPeptidesPerFraction);
     }
 
     /**
@@ -653,8 +769,9 @@ public class PSParameter implements UrParameter {
      * @return the number of validated spectra in the given fraction
      */
     public Integer getFractionValidatedSpectra(String fraction) {
+        decodeMaps();
         if (validatedSpectraPerFraction != null) {
-            return validatedSpectraPerFraction.get(fraction);
+            return getFractionValue(validatedSpectraPerFraction, fraction);
         } else {
             return 0;
         }
@@ -666,7 +783,8 @@ public class PSParameter implements UrParameter {
      * @param validatedSpectraPerFraction the validated spectra per fraction map
      */
     public void setFractionValidatedSpectra(HashMap<String, Integer> validatedSpectraPerFraction) {
-        this.validatedSpectraPerFraction = validatedSpectraPerFraction;
+        decodeMaps();
+        this.validatedSpectraPerFraction = toFractionIntegers(validatedSpectraPerFraction);
     }
 
     /**
@@ -676,11 +794,20 @@ public class PSParameter implements UrParameter {
      * @return the precursor intensity in the given fraction
      */
     public ArrayList<Double> getPrecursorIntensityPerFraction(String fraction) {
-        if (precursorIntensityPerFraction != null) {
-            return precursorIntensityPerFraction.get(fraction);
-        } else {
+        decodeMaps();
+        if (precursorIntensityPerFraction == null) {
             return new ArrayList<Double>();
         }
+        int index = getFractionIndex(fraction);
+        if (index < 0 || precursorIntensityPerFraction[index] == null) {
+            return null;
+        }
+        double[] intensities = precursorIntensityPerFraction[index];
+        ArrayList<Double> result = new ArrayList<Double>(intensities.length);
+        for (double intensity : intensities) {
+            result.add(intensity);
+        }
+        return result;
     }
 
     /**
@@ -689,28 +816,31 @@ public class PSParameter implements UrParameter {
      * @param precursorIntensityPerFraction the precursor intensities per fraction map
      */
     public void setPrecursorIntensityPerFraction(HashMap<String, ArrayList<Double>> precursorIntensityPerFraction) {
-        this.precursorIntensityPerFraction = precursorIntensityPerFraction;
+        decodeMaps();
+        this.precursorIntensityPerFraction = toFractionIntensities(precursorIntensityPerFraction);
 
         // calculate the average precursor intensities
         for (String fraction : precursorIntensityPerFraction.keySet()) {
 
-            Double sum = 0.0;
+            int index = getFractionIndex(fraction);
+            double[] intensities = this.precursorIntensityPerFraction[index];
+            double sum = 0.0;
 
-            for (Double intensity : precursorIntensityPerFraction.get(fraction)) {
+            for (double intensity : intensities) {
                 sum += intensity;
             }
 
             if (precursorIntensitySummedPerFraction != null) { //@TODO: is always null?
-                precursorIntensitySummedPerFraction.put(fraction, sum);
+                precursorIntensitySummedPerFraction[index] = sum;
             }
 
             if (precursorIntensityAveragePerFraction == null) {
-                precursorIntensityAveragePerFraction = new HashMap<String, Double>(2);
+                precursorIntensityAveragePerFraction = getMissingDoubles(fractions.length);
             }
             if (sum > 0) {
-                precursorIntensityAveragePerFraction.put(fraction, sum / precursorIntensityPerFraction.get(fraction).size());
+                precursorIntensityAveragePerFraction[index] = sum / intensities.length;
             } else {
-                precursorIntensityAveragePerFraction.put(fraction, null);
+                precursorIntensityAveragePerFraction[index] = Double.NaN;
             }
         }
     }
@@ -722,11 +852,8 @@ public class PSParameter implements UrParameter {
      * @return the average precursor intensity in the given fraction
      */
     public Double getPrecursorIntensityAveragePerFraction(String fraction) {
-        if (precursorIntensityAveragePerFraction != null) {
-            return precursorIntensityAveragePerFraction.get(fraction);
-        } else {
-            return null;
-        }
+        decodeMaps();
+        return getFractionValue(precursorIntensityAveragePerFraction, fraction);
     }
 
     /**
@@ -736,11 +863,8 @@ public class PSParameter implements UrParameter {
      * @return the summed precursor intensity in the given fraction
      */
     public Double getPrecursorIntensitySummedPerFraction(String fraction) {
-        if (precursorIntensitySummedPerFraction != null) {
-            return precursorIntensitySummedPerFraction.get(fraction);
-        } else {
-            return null;
-        }
+        decodeMaps();
+        return getFractionValue(precursorIntensitySummedPerFraction, fraction);
     }
     
     /**
@@ -750,9 +874,6 @@ public class PSParameter implements UrParameter {
      * inspected
      */
     public Boolean isManualValidation() {
-        if (manualValidation == null) {
-            manualValidation = false;
-        }
         return manualValidation;
     }
 
@@ -763,7 +884,7 @@ public class PSParameter implements UrParameter {
      * was manually inspected
      */
     public void setManualValidation(Boolean manualValidation) {
-        this.manualValidation = manualValidation;
+        this.manualValidation = manualValidation != null && manualValidation;
     }
 
     /**
@@ -773,10 +894,19 @@ public class PSParameter implements UrParameter {
      * @param validated boolean indicating whether the test was passed
      */
     public void setQcResult(String criterion, boolean validated) {
-        if (qcFilters == null) {
-            qcFilters = new HashMap<String, Boolean>();
+        decodeMaps();
+        if (qcCriteria == null) {
+            qcCriteria = NO_STRINGS;
+            qcResults = NO_BOOLEANS;
+        }
+        int index = Arrays.binarySearch(qcCriteria, criterion);
+        if (index >= 0) {
+            qcResults[index] = validated;
+        } else {
+            index = -index - 1;
+            qcResults = insert(qcResults, index, validated);
+            qcCriteria = insert(qcCriteria, index, criterion);
         }
-        qcFilters.put(criterion, validated);
     }
 
     /**
@@ -787,10 +917,15 @@ public class PSParameter implements UrParameter {
      * @return a boolean indicating whether the test was passed
      */
     public Boolean isQcPassed(String criterion) {
-        if (qcFilters == null) {
+        decodeMaps();
+        if (qcCriteria == null) {
+            return null;
+        }
+        int index = Arrays.binarySearch(qcCriteria, criterion);
+        if (index < 0) {
             return null;
         }
-        return qcFilters.get(criterion);
+        return qcResults[index];
     }
 
     /**
@@ -799,20 +934,20 @@ public class PSParameter implements UrParameter {
      * @return the list of qc checks made for this match in a set
      */
     public Set<String> getQcCriteria() {
-        if (qcFilters == null) {
+        decodeMaps();
+        if (qcCriteria == null) {
             return new HashSet<String>();
         }
-        return qcFilters.keySet();
+        return new HashSet<String>(Arrays.asList(qcCriteria));
     }
 
     /**
      * Resets the results of the QC filters.
      */
     public void resetQcResults() {
-        if (qcFilters == null) {
-            qcFilters = new HashMap<String, Boolean>();
-        }
-        qcFilters.clear();
+        decodeMaps();
+        qcCriteria = NO_STRINGS;
+        qcResults = NO_BOOLEANS;
     }
 
     /**
@@ -822,7 +957,8 @@ public class PSParameter implements UrParameter {
      * match
      */
     public boolean hasQcFilters() {
-        return qcFilters != null;
+        decodeMaps();
+        return qcCriteria != null;
     }
 
     /**
@@ -831,19 +967,30 @@ public class PSParameter implements UrParameter {
      * @param scoreId the index of the score
      * @param score the value of the score
      */
-    public void setIntermediateScore(Integer scoreId, Double score) {
-        if (intermediateScores == null) {
+    public synchronized void setIntermediateScore(Integer scoreId, Double score) {
+        decodeMaps();
+        if (intermediateScoreIds == null) {
             createIntermediateScoreMap();
         }
-        intermediateScores.put(scoreId, score);
+        double value = score == null ? Double.NaN : score;
+        int index = Arrays.binarySearch(intermediateScoreIds, scoreId);
+        if (index >= 0) {
+            intermediateScores[index] = value;
+        } else {
+            index = -index - 1;
+            intermediateScores = insert(intermediateScores, index, value);
+            intermediateScoreIds = insert(intermediateScoreIds, index, scoreId);
+        }
     }
     
     /**
-     * Instantiates the intermediate scores map if null.
+     * Instantiates the intermediate scores if null.
      */
     public synchronized void createIntermediateScoreMap() {
-        if (intermediateScores == null) {
-            intermediateScores = new HashMap<Integer, Double>();
+        decodeMaps();
+        if (intermediateScoreIds == null) {
+            intermediateScores = NO_DOUBLES;
+            intermediateScoreIds = NO_INTEGERS;
         }
     }
 
@@ -855,10 +1002,351 @@ public class PSParameter implements UrParameter {
      * @return the intermediate score
      */
     public Double getIntermediateScore(int scoreId) {
-        if (intermediateScores == null) {
+        decodeMaps();
+        if (intermediateScoreIds == null) {
+            return null;
+        }
+        int index = Arrays.binarySearch(intermediateScoreIds, scoreId);
+        if (index < 0 || Double.isNaN(intermediateScores[index])) {
+            return null;
+        }
+        return intermediateScores[index];
+    }
+
+    /**
+     * Returns the index of the given fraction in the fractions array, a
+     * negative value if not found.
+     *
+     * @param fraction the fraction
+     *
+     * @return the index of the given fraction
+     */
+    private int getFractionIndex(String fraction) {
+        if (fractions == null) {
+            return -1;
+        }
+        return Arrays.binarySearch(fractions, fraction);
+    }
+
+    /**
+     * Adds a fraction to the fractions array if not present and inserts a
+     * missing value at its index in all the per fraction arrays.
+     *
+     * @param fraction the fraction
+     *
+     * @return the index of the fraction
+     */
+    private int addFraction(String fraction) {
+        String[] currentFractions = fractions == null ? NO_STRINGS : fractions;
+        int index = Arrays.binarySearch(currentFractions, fraction);
+        if (index >= 0) {
+            return index;
+        }
+        index = -index - 1;
+        if (fractionPEP != null) {
+            fractionPEP = insert(fractionPEP, index, Double.NaN);
+        }
+        if (fractionScore != null) {
+            fractionScore = insert(fractionScore, index, Double.NaN);
+        }
+        if (validatedPeptidesPerFraction != null) {
+            validatedPeptidesPerFraction = insert(validatedPeptidesPerFraction, index, MISSING_INTEGER);
+        }
+        if (validatedSpectraPerFraction != null) {
+            validatedSpectraPerFraction = insert(validatedSpectraPerFraction, index, MISSING_INTEGER);
+        }
+        if (precursorIntensityPerFraction != null) {
+            precursorIntensityPerFraction = insert(precursorIntensityPerFraction, index, null);
+        }
+        if (precursorIntensityAveragePerFraction != null) {
+            precursorIntensityAveragePerFraction = insert(precursorIntensityAveragePerFraction, index, Double.NaN);
+        }
+        if (precursorIntensitySummedPerFraction != null) {
+            precursorIntensitySummedPerFraction = insert(precursorIntensitySummedPerFraction, index, Double.NaN);
+        }
+        fractions = insert(currentFractions, index, fraction);
+        return index;
+    }
+
+    /**
+     * Returns the number of fractions.
+     *
+     * @return the number of fractions
+     */
+    private int getNFractions() {
+        return fractions == null ? 0 : fractions.length;
+    }
+
+    /**
+     * Returns the value of the given per fraction array for the given
+     * fraction, null if not found.
+     *
+     * @param values the per fraction values, can be null
+     * @param fraction the fraction
+     *
+     * @return the value for the given fraction
+     */
+    private Double getFractionValue(double[] values, String fraction) {
+        if (values == null) {
+            return null;
+        }
+        int index = getFractionIndex(fraction);
+        if (index < 0 || Double.isNaN(values[index])) {
+            return null;
+        }
+        return values[index];
+    }
+
+    /**
+     * Returns the value of the given per fraction array for the given
+     * fraction, null if not found.
+     *
+     * @param values the per fraction values, can be null
+     * @param fraction the fraction
+     *
+     * @return the value for the given fraction
+     */
+    private Integer getFractionValue(int[] values, String fraction) {
+        if (values == null) {
+            return null;
+        }
+        int index = getFractionIndex(fraction);
+        if (index < 0 || values[index] == MISSING_INTEGER) {
+            return null;
+        }
+        return values[index];
+    }
+
+    /**
+     * Converts a map of doubles indexed by fraction into an array aligned on
+     * the fractions array. The fractions of the map are added if needed.
+     *
+     * @param map the map, can be null
+     *
+     * @return the values per fraction, null if the map is null
+     */
+    private double[] toFractionDoubles(HashMap<String, Double> map) {
+        if (map == null) {
             return null;
         }
-        return intermediateScores.get(scoreId);
+        for (String fraction : map.keySet()) {
+            addFraction(fraction);
+        }
+        double[] values = getMissingDoubles(getNFractions());
+        for (String fraction : map.keySet()) {
+            Double value = map.get(fraction);
+            if (value != null) {
+                values[getFractionIndex(fraction)] = value;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Converts a map of integers indexed by fraction into an array aligned on
+     * the fractions array. The fractions of the map are added if needed.
+     *
+     * @param map the map, can be null
+     *
+     * @return the values per fraction, null if the map is null
+     */
+    private int[] toFractionIntegers(HashMap<String, Integer> map) {
+        if (map == null) {
+            return null;
+        }
+        for (String fraction : map.keySet()) {
+            addFraction(fraction);
+        }
+        int[] values = new int[getNFractions()];
+        Arrays.fill(values, MISSING_INTEGER);
+        for (String fraction : map.keySet()) {
+            Integer value = map.get(fraction);
+            if (value != null) {
+                values[getFractionIndex(fraction)] = value;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Converts a map of intensities indexed by fraction into an array aligned
+     * on the fractions array. The fractions of the map are added if needed.
+     *
+     * @param map the map, can be null
+     *
+     * @return the intensities per fraction, null if the map is null
+     */
+    private double[][] toFractionIntensities(HashMap<String, ArrayList<Double>> map) {
+        if (map == null) {
+            return null;
+        }
+        for (String fraction : map.keySet()) {
+            addFraction(fraction);
+        }
+        double[][] values = new double[getNFractions()][];
+        for (String fraction : map.keySet()) {
+            ArrayList<Double> intensities = map.get(fraction);
+            if (intensities != null) {
+                double[] fractionValues = new double[intensities.size()];
+                for (int i = 0; i < fractionValues.length; i++) {
+                    Double intensity = intensities.get(i);
+                    fractionValues[i] = intensity == null ? Double.NaN : intensity;
+                }
+                values[getFractionIndex(fraction)] = fractionValues;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Sets the results of the QC filters from a map.
+     *
+     * @param map the results of the QC filters, can be null
+     */
+    private void setQcResults(HashMap<String, Boolean> map) {
+        if (map == null) {
+            qcCriteria = null;
+            qcResults = null;
+            return;
+        }
+        String[] criteria = map.keySet().toArray(new String[map.size()]);
+        Arrays.sort(criteria);
+        boolean[] results = new boolean[criteria.length];
+        for (int i = 0; i < criteria.length; i++) {
+            Boolean result = map.get(criteria[i]);
+            results[i] = result != null && result;
+        }
+        qcResults = results;
+        qcCriteria = criteria;
+    }
+
+    /**
+     * Sets the intermediate scores from a map.
+     *
+     * @param map the intermediate scores, can be null
+     */
+    private void setIntermediateScores(HashMap<Integer, Double> map) {
+        if (map == null) {
+            intermediateScoreIds = null;
+            intermediateScores = null;
+            return;
+        }
+        int[] scoreIds = new int[map.size()];
+        int index = 0;
+        for (Integer scoreId : map.keySet()) {
+            scoreIds[index++] = scoreId;
+        }
+        Arrays.sort(scoreIds);
+        double[] scores = new double[scoreIds.length];
+        for (int i = 0; i < scoreIds.length; i++) {
+            Double score = map.get(scoreIds[i]);
+            scores[i] = score == null ? Double.NaN : score;
+        }
+        intermediateScores = scores;
+        intermediateScoreIds = scoreIds;
+    }
+
+    /**
+     * Returns an array of the given length filled with missing values.
+     *
+     * @param length the length of the array
+     *
+     * @return an array filled with missing values
+     */
+    private static double[] getMissingDoubles(int length) {
+        double[] result = new double[length];
+        Arrays.fill(result, Double.NaN);
+        return result;
+    }
+
+    /**
+     * Returns a copy of the given array where the given value is inserted at
+     * the given index.
+     *
+     * @param array the array
+     * @param index the index
+     * @param value the value to insert
+     *
+     * @return a copy of the array with the value inserted
+     */
+    private static String[] insert(String[] array, int index, String value) {
+        String[] result = new String[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    /**
+     * Returns a copy of the given array where the given value is inserted at
+     * the given index.
+     *
+     * @param array the array
+     * @param index the index
+     * @param value the value to insert
+     *
+     * @return a copy of the array with the value inserted
+     */
+    private static double[] insert(double[] array, int index, double value) {
+        double[] result = new double[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    /**
+     * Returns a copy of the given array where the given value is inserted at
+     * the given index.
+     *
+     * @param array the array
+     * @param index the index
+     * @param value the value to insert
+     *
+     * @return a copy of the array with the value inserted
+     */
+    private static int[] insert(int[] array, int index, int value) {
+        int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    /**
+     * Returns a copy of the given array where the given value is inserted at
+     * the given index.
+     *
+     * @param array the array
+     * @param index the index
+     * @param value the value to insert
+     *
+     * @return a copy of the array with the value inserted
+     */
+    private static boolean[] insert(boolean[] array, int index, boolean value) {
+        boolean[] result = new boolean[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    /**
+     * Returns a copy of the given array where the given value is inserted at
+     * the given index.
+     *
+     * @param array the array
+     * @param index the index
+     * @param value the value to insert
+     *
+     * @return a copy of the array with the value inserted
+     */
+    private static double[][] insert(double[][] array, int index, double[] value) {
+        double[][] result = new double[array.length + 1][];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
     }
     
     /**
@@ -881,6 +1369,509 @@ public class PSParameter implements UrParameter {
         return score;
     }
 
+    /**
+     * Decodes the optional maps if they are still in their binary form. Must
+     * be called before accessing any of the maps.
+     */
+    private void decodeMaps() {
+        if (encodedMaps != null) {
+            decodeEncodedMaps();
+        }
+    }
+
+    /**
+     * Decodes the binary form of the optional maps into the map attributes.
+     */
+    private synchronized void decodeEncodedMaps() {
+        byte[] maps = encodedMaps;
+        if (maps == null) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(maps));
+            int mask = in.readUnsignedShort();
+            if ((mask & 1) != 0) {
+                fractionPEP = toFractionDoubles(readDoubleMap(in));
+            }
+            if ((mask & 1 << 1) != 0) {
+                fractionScore = toFractionDoubles(readDoubleMap(in));
+            }
+            if ((mask & 1 << 2) != 0) {
+                validatedPeptidesPerFraction = toFractionIntegers(readIntegerMap(in));
+            }
+            if ((mask & 1 << 3) != 0) {
+                validatedSpectraPerFraction = toFractionIntegers(readIntegerMap(in));
+            }
+            if ((mask & 1 << 4) != 0) {
+                int size = in.readInt();
+                HashMap<String, ArrayList<Double>> intensities = new HashMap<String, ArrayList<Double>>(size);
+                for (int i = 0; i < size; i++) {
+                    String key = in.readUTF();
+                    ArrayList<Double> values = null;
+                    int nValues = in.readInt();
+                    if (nValues >= 0) {
+                        values = new ArrayList<Double>(nValues);
+                        for (int j = 0; j < nValues; j++) {
+                            values.add(readDouble(in));
+                        }
+                    }
+                    intensities.put(key, values);
+                }
+                precursorIntensityPerFraction = toFractionIntensities(intensities);
+            }
+            if ((mask & 1 << 5) != 0) {
+                precursorIntensityAveragePerFraction = toFractionDoubles(readDoubleMap(in));
+            }
+            if ((mask & 1 << 6) != 0) {
+                precursorIntensitySummedPerFraction = toFractionDoubles(readDoubleMap(in));
+            }
+            if ((mask & 1 << 7) != 0) {
+                int size = in.readInt();
+                HashMap<String, Boolean> qcFilters = new HashMap<String, Boolean>(size);
+                for (int i = 0; i < size; i++) {
+                    String key = in.readUTF();
+                    byte value = in.readByte();
+                    qcFilters.put(key, value < 0 ? null : value == 1);
+                }
+                setQcResults(qcFilters);
+            }
+            if ((mask & 1 << 8) != 0) {
+                int size = in.readInt();
+                HashMap<Integer, Double> scores = new HashMap<Integer, Double>(size);
+                for (int i = 0; i < size; i++) {
+                    int key = in.readInt();
+                    scores.put(key, readDouble(in));
+                }
+                setIntermediateScores(scores);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupted PSParameter maps.", e);
+        }
+        encodedMaps = null;
+    }
+
+    /**
+     * Encodes the optional maps in their binary form.
+     *
+     * @return the binary form of the optional maps, null if no map is set
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the maps
+     */
+    private byte[] encodeMaps() throws IOException {
+        int mask = 0;
+        if (fractionPEP != null) {
+            mask |= 1;
+        }
+        if (fractionScore != null) {
+            mask |= 1 << 1;
+        }
+        if (validatedPeptidesPerFraction != null) {
+            mask |= 1 << 2;
+        }
+        if (validatedSpectraPerFraction != null) {
+            mask |= 1 << 3;
+        }
+        if (precursorIntensityPerFraction != null) {
+            mask |= 1 << 4;
+        }
+        if (precursorIntensityAveragePerFraction != null) {
+            mask |= 1 << 5;
+        }
+        if (precursorIntensitySummedPerFraction != null) {
+            mask |= 1 << 6;
+        }
+        if (qcCriteria != null) {
+            mask |= 1 << 7;
+        }
+        if (intermediateScoreIds != null) {
+            mask |= 1 << 8;
+        }
+        if (mask == 0) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(mask);
+        if (fractionPEP != null) {
+            writeFractionDoubles(out, fractionPEP);
+        }
+        if (fractionScore != null) {
+            writeFractionDoubles(out, fractionScore);
+        }
+        if (validatedPeptidesPerFraction != null) {
+            writeFractionIntegers(out, validatedPeptidesPerFraction);
+        }
+        if (validatedSpectraPerFraction != null) {
+            writeFractionIntegers(out, validatedSpectraPerFraction);
+        }
+        if (precursorIntensityPerFraction != null) {
+            int size = 0;
+            for (double[] values : precursorIntensityPerFraction) {
+                if (values != null) {
+                    size++;
+                }
+            }
+            out.writeInt(size);
+            for (int i = 0; i < precursorIntensityPerFraction.length; i++) {
+                double[] values = precursorIntensityPerFraction[i];
+                if (values != null) {
+                    out.writeUTF(fractions[i]);
+                    out.writeInt(values.length);
+                    for (double value : values) {
+                        writeDouble(out, value);
+                    }
+                }
+            }
+        }
+        if (precursorIntensityAveragePerFraction != null) {
+            writeFractionDoubles(out, precursorIntensityAveragePerFraction);
+        }
+        if (precursorIntensitySummedPerFraction != null) {
+            writeFractionDoubles(out, precursorIntensitySummedPerFraction);
+        }
+        if (qcCriteria != null) {
+            out.writeInt(qcCriteria.length);
+            for (int i = 0; i < qcCriteria.length; i++) {
+                out.writeUTF(qcCriteria[i]);
+                out.writeByte(qcResults[i] ? 1 : 0);
+            }
+        }
+        if (intermediateScoreIds != null) {
+            out.writeInt(intermediateScoreIds.length);
+            for (int i = 0; i < intermediateScoreIds.length; i++) {
+                out.writeInt(intermediateScoreIds[i]);
+                writeDouble(out, intermediateScores[i]);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes per fraction doubles as a map indexed by fraction, missing
+     * values are skipped.
+     *
+     * @param out the stream to write to
+     * @param values the values per fraction
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the values
+     */
+    private void writeFractionDoubles(DataOutputStream out, double[] values) throws IOException {
+        int size = 0;
+        for (double value : values) {
+            if (!Double.isNaN(value)) {
+                size++;
+            }
+        }
+        out.writeInt(size);
+        for (int i = 0; i < values.length; i++) {
+            if (!Double.isNaN(values[i])) {
+                out.writeUTF(fractions[i]);
+                writeDouble(out, values[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a map of doubles indexed by strings.
+     *
+     * @param in the stream to read from
+     *
+     * @return the map read
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the map
+     */
+    private static HashMap<String, Double> readDoubleMap(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        HashMap<String, Double> map = new HashMap<String, Double>(size);
+        for (int i = 0; i < size; i++) {
+            String key = in.readUTF();
+            map.put(key, readDouble(in));
+        }
+        return map;
+    }
+
+    /**
+     * Writes per fraction integers as a map indexed by fraction, missing
+     * values are skipped.
+     *
+     * @param out the stream to write to
+     * @param values the values per fraction
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the values
+     */
+    private void writeFractionIntegers(DataOutputStream out, int[] values) throws IOException {
+        int size = 0;
+        for (int value : values) {
+            if (value != MISSING_INTEGER) {
+                size++;
+            }
+        }
+        out.writeInt(size);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != MISSING_INTEGER) {
+                out.writeUTF(fractions[i]);
+                out.writeBoolean(true);
+                out.writeInt(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a map of integers indexed by strings.
+     *
+     * @param in the stream to read from
+     *
+     * @return the map read
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the map
+     */
+    private static HashMap<String, Integer> readIntegerMap(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        HashMap<String, Integer> map = new HashMap<String, Integer>(size);
+        for (int i = 0; i < size; i++) {
+            String key = in.readUTF();
+            Integer value = null;
+            if (in.readBoolean()) {
+                value = in.readInt();
+            }
+            map.put(key, value);
+        }
+        return map;
+    }
+
+    /**
+     * Writes a double which can be missing (NaN).
+     *
+     * @param out the stream to write to
+     * @param value the value to write
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the value
+     */
+    private static void writeDouble(DataOutputStream out, double value) throws IOException {
+        boolean missing = Double.isNaN(value);
+        out.writeBoolean(!missing);
+        if (!missing) {
+            out.writeDouble(value);
+        }
+    }
+
+    /**
+     * Reads a double which can be null.
+     *
+     * @param in the stream to read from
+     *
+     * @return the value read
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the value
+     */
+    private static Double readDouble(DataInputStream in) throws IOException {
+        if (in.readBoolean()) {
+            return in.readDouble();
+        }
+        return null;
+    }
+
+    /**
+     * Writes the parameter in the binary layout.
+     *
+     * @param out the stream to write to
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the parameter
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        byte[] maps = encodedMaps;
+        if (maps == null) {
+            maps = encodeMaps();
+        }
+        int flags = 0;
+        if (!Double.isNaN(algorithmDeltaPEP)) {
+            flags |= FLAG_ALGORITHM_DELTA_PEP;
+        }
+        if (!Double.isNaN(deltaPEP)) {
+            flags |= FLAG_DELTA_PEP;
+        }
+        if (matchValidationLevel != null) {
+            flags |= FLAG_VALIDATION_LEVEL;
+        }
+        flags |= FLAG_MANUAL_VALIDATION_SET;
+        if (manualValidation) {
+            flags |= FLAG_MANUAL_VALIDATION;
+        }
+        if (hidden) {
+            flags |= FLAG_HIDDEN;
+        }
+        if (starred) {
+            flags |= FLAG_STARRED;
+        }
+        if (specificMapKey != null) {
+            flags |= FLAG_SPECIFIC_MAP_KEY;
+        }
+        if (maps != null) {
+            flags |= FLAG_MAPS;
+        }
+        out.writeByte(CODEC_VERSION);
+        out.writeShort(flags);
+        out.writeDouble(searchEngineProbability);
+        out.writeDouble(psmProbabilityScore);
+        out.writeDouble(psmProbability);
+        out.writeDouble(peptideProbabilityScore);
+        out.writeDouble(peptideProbability);
+        out.writeDouble(proteinProbabilityScore);
+        out.writeDouble(proteinProbability);
+        out.writeInt(groupClass);
+        if (!Double.isNaN(algorithmDeltaPEP)) {
+            out.writeDouble(algorithmDeltaPEP);
+        }
+        if (!Double.isNaN(deltaPEP)) {
+            out.writeDouble(deltaPEP);
+        }
+        if (matchValidationLevel != null) {
+            out.writeByte(matchValidationLevel.getIndex());
+        }
+        if (specificMapKey != null) {
+            out.writeUTF(specificMapKey);
+        }
+        if (maps != null) {
+            out.writeInt(maps.length);
+            out.write(maps);
+        }
+    }
+
+    /**
+     * Reads the parameter. Parameters written with the default Java
+     * serialization by previous versions are recognized by the fields present
+     * in the stream.
+     *
+     * @param in the stream to read from
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the parameter
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing a legacy parameter
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        if (fields.getObjectStreamClass().getFields().length > 0) {
+            readLegacyFields(fields);
+            return;
+        }
+        int version = in.readUnsignedByte();
+        if (version > CODEC_VERSION) {
+            throw new InvalidObjectException("PSParameter binary layout version " + version + " not supported.");
+        }
+        int flags = in.readUnsignedShort();
+        searchEngineProbability = in.readDouble();
+        psmProbabilityScore = in.readDouble();
+        psmProbability = in.readDouble();
+        peptideProbabilityScore = in.readDouble();
+        peptideProbability = in.readDouble();
+        proteinProbabilityScore = in.readDouble();
+        proteinProbability = in.readDouble();
+        groupClass = in.readInt();
+        algorithmDeltaPEP = (flags & FLAG_ALGORITHM_DELTA_PEP) != 0 ? in.readDouble() : Double.NaN;
+        deltaPEP = (flags & FLAG_DELTA_PEP) != 0 ? in.readDouble() : Double.NaN;
+        matchValidationLevel = (flags & FLAG_VALIDATION_LEVEL) != 0 ? MatchValidationLevel.getMatchValidationLevel(in.readByte()) : null;
+        manualValidation = (flags & FLAG_MANUAL_VALIDATION) != 0;
+        hidden = (flags & FLAG_HIDDEN) != 0;
+        starred = (flags & FLAG_STARRED) != 0;
+        specificMapKey = (flags & FLAG_SPECIFIC_MAP_KEY) != 0 ? in.readUTF() : null;
+        if ((flags & FLAG_MAPS) != 0) {
+            byte[] maps = new byte[in.readInt()];
+            in.readFully(maps);
+            encodedMaps = maps;
+        }
+    }
+
+    /**
+     * Sets the attributes from the fields of a parameter written with the
+     * default Java serialization.
+     *
+     * @param fields the fields read from the stream
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the fields
+     */
+    @SuppressWarnings("unchecked")
+    private void readLegacyFields(ObjectInputStream.GetField fields) throws IOException {
+        ObjectStreamClass streamClass = fields.getObjectStreamClass();
+        searchEngineProbability = getLegacyDouble(fields, streamClass, "searchEngineProbability");
+        psmProbabilityScore = getLegacyDouble(fields, streamClass, "psmProbabilityScore");
+        psmProbability = getLegacyDouble(fields, streamClass, "psmProbability");
+        peptideProbabilityScore = getLegacyDouble(fields, streamClass, "peptideProbabilityScore");
+        peptideProbability = getLegacyDouble(fields, streamClass, "peptideProbability");
+        proteinProbabilityScore = getLegacyDouble(fields, streamClass, "proteinProbabilityScore");
+        proteinProbability = getLegacyDouble(fields, streamClass, "proteinProbability");
+        setAlgorithmDeltaPEP((Double) getLegacyObject(fields, streamClass, "algorithmDeltaPEP"));
+        setDeltaPEP((Double) getLegacyObject(fields, streamClass, "deltaPEP"));
+        matchValidationLevel = (MatchValidationLevel) getLegacyObject(fields, streamClass, "matchValidationLevel");
+        setManualValidation((Boolean) getLegacyObject(fields, streamClass, "manualValidation"));
+        hidden = streamClass.getField("hidden") != null && fields.get("hidden", false);
+        starred = streamClass.getField("starred") != null && fields.get("starred", false);
+        specificMapKey = (String) getLegacyObject(fields, streamClass, "specificMapKey");
+        groupClass = streamClass.getField("groupClass") != null ? fields.get("groupClass", NOT_GROUP) : NOT_GROUP;
+        fractionPEP = toFractionDoubles((HashMap<String, Double>) getLegacyObject(fields, streamClass, "fractionPEP"));
+        fractionScore = toFractionDoubles((HashMap<String, Double>) getLegacyObject(fields, streamClass, "fractionScore"));
+        validatedPeptidesPerFraction = toFractionIntegers((HashMap<String, Integer>) getLegacyObject(fields, streamClass, "validatedPeptidesPerFraction"));
+        validatedSpectraPerFraction = toFractionIntegers((HashMap<String, Integer>) getLegacyObject(fields, streamClass, "validatedSpectraPerFraction"));
+        precursorIntensityPerFraction = toFractionIntensities((HashMap<String, ArrayList<Double>>) getLegacyObject(fields, streamClass, "precursorIntensityPerFraction"));
+        precursorIntensityAveragePerFraction = toFractionDoubles((HashMap<String, Double>) getLegacyObject(fields, streamClass, "precursorIntensityAveragePerFraction"));
+        precursorIntensitySummedPerFraction = toFractionDoubles((HashMap<String, Double>) getLegacyObject(fields, streamClass, "precursorIntensitySummedPerFraction"));
+        setQcResults((HashMap<String, Boolean>) getLegacyObject(fields, streamClass, "qcFilters"));
+        setIntermediateScores((HashMap<Integer, Double>) getLegacyObject(fields, streamClass, "intermediateScores"));
+    }
+
+    /**
+     * Returns the value of a double field of a legacy parameter, 0 if not in
+     * the stream.
+     *
+     * @param fields the fields read from the stream
+     * @param streamClass the class description found in the stream
+     * @param name the name of the field
+     *
+     * @return the value of the field
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the field
+     */
+    private static double getLegacyDouble(ObjectInputStream.GetField fields, ObjectStreamClass streamClass, String name) throws IOException {
+        ObjectStreamField field = streamClass.getField(name);
+        if (field == null || field.getTypeCode() != 'D') {
+            return 0;
+        }
+        return fields.get(name, 0.0);
+    }
+
+    /**
+     * Returns the value of an object field of a legacy parameter, null if not
+     * in the stream.
+     *
+     * @param fields the fields read from the stream
+     * @param streamClass the class description found in the stream
+     * @param name the name of the field
+     *
+     * @return the value of the field
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the field
+     */
+    private static Object getLegacyObject(ObjectInputStream.GetField fields, ObjectStreamClass streamClass, String name) throws IOException {
+        ObjectStreamField field = streamClass.getField(name);
+        if (field == null || field.isPrimitive()) {
+            return null;
+        }
+        return fields.get(name, null);
+    }
+
     @Override
     public String getParameterKey() {
         return "PeptideShaker|0";
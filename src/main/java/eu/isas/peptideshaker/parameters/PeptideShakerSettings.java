@@ -59,7 +59,8 @@ public class PeptideShakerSettings implements UrParameter {
      */
     protected GeneMaps geneMaps;
     /**
-     * The identification features generator with features in cache.
+     * The identification features generator with features in cache. Null
+     * when the cache is saved separately in the settings table.
      */
     private IdentificationFeaturesCache identificationFeaturesCache;
     /**
@@ -217,7 +218,8 @@ public class PeptideShakerSettings implements UrParameter {
     /**
      * Returns the identification features cache used by the identification
      * features generator before saving the file. Null for versions older than
-     * 0.18.0.
+     * 0.18.0 and for files where the cache is saved separately in the settings
+     * table under IdentificationFeaturesCache.nameInCpsSettingsTable.
      *
      * @return the identification features cache
      */
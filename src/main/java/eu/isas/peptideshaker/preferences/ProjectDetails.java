@@ -7,6 +7,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
 import com.compomics.util.pride.prideobjects.*;
+import eu.isas.peptideshaker.protein_inference.ProteinInferenceMode;
 import java.util.HashMap;
 
 /**
@@ -135,6 +136,15 @@ public class ProjectDetails implements Serializable {
      * The user advocates mapping of this project.
      */
     private HashMap<Integer, Advocate> userAdvocateMapping;
+    /**
+     * The index of the protein inference mode used for this project.
+     */
+    private Integer proteinInferenceMode;
+    /**
+     * Indicates whether the protein and peptide features should be estimated
+     * for all matches at the end of the processing.
+     */
+    private Boolean featuresPrecomputation;
 
     /**
      * Constructor.
@@ -739,4 +749,52 @@ public class ProjectDetails implements Serializable {
     public void setIncludeProteinSequences(Boolean includeProteinSequences) {
         this.includeProteinSequences = includeProteinSequences;
     }
+
+    /**
+     * Returns the protein inference mode used for this project.
+     *
+     * @return the protein inference mode used for this project
+     */
+    public ProteinInferenceMode getProteinInferenceMode() {
+        if (proteinInferenceMode == null) { // Backward compatibility
+            proteinInferenceMode = ProteinInferenceMode.peptideshaker.getIndex();
+        }
+        return ProteinInferenceMode.getProteinInferenceMode(proteinInferenceMode);
+    }
+
+    /**
+     * Sets the protein inference mode used for this project.
+     *
+     * @param proteinInferenceMode the protein inference mode used for this
+     * project
+     */
+    public void setProteinInferenceMode(ProteinInferenceMode proteinInferenceMode) {
+        this.proteinInferenceMode = proteinInferenceMode.getIndex();
+    }
+
+    /**
+     * Indicates whether the protein and peptide features should be estimated
+     * for all matches at the end of the processing.
+     *
+     * @return a boolean indicating whether the protein and peptide features
+     * should be estimated for all matches at the end of the processing
+     */
+    public boolean isFeaturesPrecomputation() {
+        if (featuresPrecomputation == null) { // Backward compatibility
+            featuresPrecomputation = true;
+        }
+        return featuresPrecomputation;
+    }
+
+    /**
+     * Sets whether the protein and peptide features should be estimated for
+     * all matches at the end of the processing.
+     *
+     * @param featuresPrecomputation a boolean indicating whether the protein
+     * and peptide features should be estimated for all matches at the end of
+     * the processing
+     */
+    public void setFeaturesPrecomputation(boolean featuresPrecomputation) {
+        this.featuresPrecomputation = featuresPrecomputation;
+    }
 }
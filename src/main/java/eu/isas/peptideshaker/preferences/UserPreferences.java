@@ -25,6 +25,11 @@ public class UserPreferences implements Serializable {
      * Show/hide sliders.
      */
     private boolean showSliders = false;
+    /**
+     * Indicates whether the parameters of the matches should be stored in
+     * off-heap memory mapped files instead of the database.
+     */
+    private boolean offHeapMatchStore = false;
 
     /**
      * Constructor.
@@ -50,6 +55,28 @@ public class UserPreferences implements Serializable {
         this.showSliders = showSliders;
     }
 
+    /**
+     * Indicates whether the parameters of the matches should be stored in
+     * off-heap memory mapped files instead of the database.
+     *
+     * @return a boolean indicating whether the parameters of the matches
+     * should be stored in off-heap memory mapped files
+     */
+    public boolean isOffHeapMatchStore() {
+        return offHeapMatchStore;
+    }
+
+    /**
+     * Sets whether the parameters of the matches should be stored in off-heap
+     * memory mapped files instead of the database.
+     *
+     * @param offHeapMatchStore a boolean indicating whether the parameters of
+     * the matches should be stored in off-heap memory mapped files
+     */
+    public void setOffHeapMatchStore(boolean offHeapMatchStore) {
+        this.offHeapMatchStore = offHeapMatchStore;
+    }
+
     /**
      * Returns the paths of the recent projects.
      *
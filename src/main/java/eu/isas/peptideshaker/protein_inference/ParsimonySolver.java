@@ -0,0 +1,461 @@
+package eu.isas.peptideshaker.protein_inference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.PriorityQueue;
+
+/**
+ * Solver for the minimal set of proteins explaining all peptides of a
+ * connected component of a peptide to protein graph. Proteins supported by a
+ * unique peptide are retained first, the remaining peptides are then covered
+ * using an exact branch and bound search for small components, which returns
+ * a cover of minimal size, and a lazy greedy set cover for large components,
+ * from which redundant proteins are removed. Ties are resolved by accession
+ * index so that the result is deterministic. This class is thread safe.
+ *
+ * @author Marc Vaudel
+ */
+public class ParsimonySolver {
+
+    /**
+     * The maximal number of candidate proteins for which the exact search is
+     * used.
+     */
+    public static final int EXACT_LIMIT = 24;
+    /**
+     * The peptide to protein graph.
+     */
+    private final PeptideProteinGraph graph;
+
+    /**
+     * Constructor.
+     *
+     * @param graph the peptide to protein graph
+     */
+    public ParsimonySolver(PeptideProteinGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Returns the indexes of the accessions of a minimal protein set
+     * explaining all peptides of the given groups. The groups are expected to
+     * form a connected component of the graph.
+     *
+     * @param componentGroups the groups of the component
+     *
+     * @return the indexes of the selected accessions, sorted
+     */
+    public int[] solve(int[] componentGroups) {
+
+        // Index the accessions and peptides of the component
+        int[] accessions = getComponentAccessions(componentGroups);
+        int[] peptides = getComponentPeptides(accessions);
+        int[][] accessionPeptides = new int[accessions.length][];
+        for (int i = 0; i < accessions.length; i++) {
+            int accession = accessions[i];
+            int nPeptides = graph.getNAccessionPeptides(accession);
+            int[] localPeptides = new int[nPeptides];
+            for (int j = 0; j < nPeptides; j++) {
+                localPeptides[j] = Arrays.binarySearch(peptides, graph.getAccessionPeptide(accession, j));
+            }
+            accessionPeptides[i] = localPeptides;
+        }
+
+        BitSet uncovered = new BitSet(peptides.length);
+        uncovered.set(0, peptides.length);
+        boolean[] selected = new boolean[accessions.length];
+
+        // Retain the accessions supported by a unique peptide
+        for (int i = 0; i < peptides.length; i++) {
+            if (graph.getNPeptideAccessions(peptides[i]) == 1) {
+                int accession = Arrays.binarySearch(accessions, graph.getPeptideAccession(peptides[i], 0));
+                if (!selected[accession]) {
+                    selected[accession] = true;
+                    for (int peptide : accessionPeptides[accession]) {
+                        uncovered.clear(peptide);
+                    }
+                }
+            }
+        }
+
+        if (!uncovered.isEmpty()) {
+
+            ArrayList<Integer> candidates = new ArrayList<Integer>();
+            for (int i = 0; i < accessions.length; i++) {
+                if (!selected[i] && getGain(accessionPeptides[i], uncovered) > 0) {
+                    candidates.add(i);
+                }
+            }
+
+            int[] cover = greedyCover(candidates, accessionPeptides, uncovered);
+            if (candidates.size() <= EXACT_LIMIT && cover.length > 1) {
+                cover = new ExactCover(candidates, accessionPeptides, uncovered, peptides.length, cover).getCover();
+            }
+            for (int accession : cover) {
+                selected[accession] = true;
+            }
+        }
+
+        int nSelected = 0;
+        for (boolean accessionSelected : selected) {
+            if (accessionSelected) {
+                nSelected++;
+            }
+        }
+        int[] result = new int[nSelected];
+        int index = 0;
+        for (int i = 0; i < accessions.length; i++) {
+            if (selected[i]) {
+                result[index++] = accessions[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the sorted indexes of the accessions of the given groups.
+     *
+     * @param componentGroups the groups of the component
+     *
+     * @return the sorted indexes of the accessions
+     */
+    private int[] getComponentAccessions(int[] componentGroups) {
+        int size = 0;
+        for (int group : componentGroups) {
+            size += graph.getNGroupAccessions(group);
+        }
+        int[] accessions = new int[size];
+        int index = 0;
+        for (int group : componentGroups) {
+            for (int i = 0; i < graph.getNGroupAccessions(group); i++) {
+                accessions[index++] = graph.getGroupAccession(group, i);
+            }
+        }
+        return sortAndCompact(accessions);
+    }
+
+    /**
+     * Returns the sorted indexes of the peptides of the given accessions.
+     *
+     * @param accessions the accessions
+     *
+     * @return the sorted indexes of the peptides
+     */
+    private int[] getComponentPeptides(int[] accessions) {
+        int size = 0;
+        for (int accession : accessions) {
+            size += graph.getNAccessionPeptides(accession);
+        }
+        int[] peptides = new int[size];
+        int index = 0;
+        for (int accession : accessions) {
+            for (int i = 0; i < graph.getNAccessionPeptides(accession); i++) {
+                peptides[index++] = graph.getAccessionPeptide(accession, i);
+            }
+        }
+        return sortAndCompact(peptides);
+    }
+
+    /**
+     * Sorts the given array and removes duplicates.
+     *
+     * @param values the values
+     *
+     * @return the distinct values sorted
+     */
+    private static int[] sortAndCompact(int[] values) {
+        Arrays.sort(values);
+        int nDistinct = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[i - 1]) {
+                values[nDistinct++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, nDistinct);
+    }
+
+    /**
+     * Returns the number of uncovered peptides of an accession.
+     *
+     * @param peptides the local indexes of the peptides of the accession
+     * @param uncovered the uncovered peptides
+     *
+     * @return the number of uncovered peptides of the accession
+     */
+    private static int getGain(int[] peptides, BitSet uncovered) {
+        int gain = 0;
+        for (int peptide : peptides) {
+            if (uncovered.get(peptide)) {
+                gain++;
+            }
+        }
+        return gain;
+    }
+
+    /**
+     * Covers the uncovered peptides using the accession covering the most
+     * uncovered peptides at every step. As the gain of an accession can only
+     * decrease, gains are only updated when an accession reaches the top of
+     * the queue.
+     *
+     * @param candidates the local indexes of the candidate accessions
+     * @param accessionPeptides the local indexes of the peptides of every
+     * accession
+     * @param uncovered the uncovered peptides, will not be modified
+     *
+     * @return the local indexes of the accessions selected
+     */
+    private static int[] greedyCover(ArrayList<Integer> candidates, int[][] accessionPeptides, BitSet uncovered) {
+
+        BitSet remaining = (BitSet) uncovered.clone();
+        PriorityQueue<Long> queue = new PriorityQueue<Long>(Math.max(candidates.size(), 1));
+        for (int candidate : candidates) {
+            queue.add(getQueueKey(getGain(accessionPeptides[candidate], remaining), candidate));
+        }
+
+        ArrayList<Integer> cover = new ArrayList<Integer>();
+        while (!remaining.isEmpty() && !queue.isEmpty()) {
+            long key = queue.poll();
+            int candidate = (int) key;
+            int gain = Integer.MAX_VALUE - (int) (key >>> 32);
+            int newGain = getGain(accessionPeptides[candidate], remaining);
+            if (newGain == gain) {
+                cover.add(candidate);
+                for (int peptide : accessionPeptides[candidate]) {
+                    remaining.clear(peptide);
+                }
+            } else if (newGain > 0) {
+                queue.add(getQueueKey(newGain, candidate));
+            }
+        }
+
+        return removeRedundant(cover, accessionPeptides, uncovered);
+    }
+
+    /**
+     * Removes from a cover the accessions whose peptides are all covered by
+     * the other accessions of the cover. The accessions are inspected in the
+     * reverse order of selection, the last selected covering the fewest
+     * peptides.
+     *
+     * @param cover the local indexes of the accessions of the cover in the
+     * order of selection
+     * @param accessionPeptides the local indexes of the peptides of every
+     * accession
+     * @param uncovered the peptides covered by the cover
+     *
+     * @return the local indexes of the accessions of the cover without
+     * redundant accessions
+     */
+    private static int[] removeRedundant(ArrayList<Integer> cover, int[][] accessionPeptides, BitSet uncovered) {
+
+        int[] coverage = new int[uncovered.length()];
+        for (int candidate : cover) {
+            for (int peptide : accessionPeptides[candidate]) {
+                if (uncovered.get(peptide)) {
+                    coverage[peptide]++;
+                }
+            }
+        }
+
+        boolean[] redundant = new boolean[cover.size()];
+        int nRedundant = 0;
+        for (int i = cover.size() - 1; i >= 0; i--) {
+            int[] peptides = accessionPeptides[cover.get(i)];
+            boolean needed = false;
+            for (int peptide : peptides) {
+                if (uncovered.get(peptide) && coverage[peptide] == 1) {
+                    needed = true;
+                    break;
+                }
+            }
+            if (!needed) {
+                redundant[i] = true;
+                nRedundant++;
+                for (int peptide : peptides) {
+                    if (uncovered.get(peptide)) {
+                        coverage[peptide]--;
+                    }
+                }
+            }
+        }
+
+        int[] result = new int[cover.size() - nRedundant];
+        int index = 0;
+        for (int i = 0; i < cover.size(); i++) {
+            if (!redundant[i]) {
+                result[index++] = cover.get(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the key of an accession in the greedy queue. Keys are sorted by
+     * decreasing gain and increasing accession index.
+     *
+     * @param gain the gain of the accession
+     * @param candidate the local index of the accession
+     *
+     * @return the key of the accession in the queue
+     */
+    private static long getQueueKey(int gain, int candidate) {
+        return ((long) (Integer.MAX_VALUE - gain) << 32) | candidate;
+    }
+
+    /**
+     * Branch and bound search of a minimal cover. At every step the uncovered
+     * peptide with the fewest candidate accessions is selected and every
+     * candidate covering it is tested. Branches which cannot beat the best
+     * cover found so far are discarded.
+     */
+    private static class ExactCover {
+
+        /**
+         * The candidate accessions as local indexes.
+         */
+        private final int[] candidates;
+        /**
+         * The peptides covered by every candidate.
+         */
+        private final BitSet[] candidatePeptides;
+        /**
+         * The candidates covering every peptide as indexes in the candidates
+         * array.
+         */
+        private final int[][] peptideCandidates;
+        /**
+         * The best cover found so far as indexes in the candidates array.
+         */
+        private int[] bestCover;
+        /**
+         * The size of the best cover found so far.
+         */
+        private int bestSize;
+        /**
+         * The cover under construction.
+         */
+        private final int[] currentCover;
+
+        /**
+         * Constructor. The search is conducted upon construction.
+         *
+         * @param candidates the local indexes of the candidate accessions
+         * @param accessionPeptides the local indexes of the peptides of every
+         * accession
+         * @param uncovered the peptides to cover
+         * @param nPeptides the number of peptides
+         * @param initialCover an initial cover used as upper bound
+         */
+        public ExactCover(ArrayList<Integer> candidates, int[][] accessionPeptides, BitSet uncovered, int nPeptides, int[] initialCover) {
+
+            this.candidates = new int[candidates.size()];
+            candidatePeptides = new BitSet[candidates.size()];
+            int[] nPeptideCandidates = new int[nPeptides];
+            for (int i = 0; i < this.candidates.length; i++) {
+                int candidate = candidates.get(i);
+                this.candidates[i] = candidate;
+                BitSet peptides = new BitSet(nPeptides);
+                for (int peptide : accessionPeptides[candidate]) {
+                    if (uncovered.get(peptide)) {
+                        peptides.set(peptide);
+                        nPeptideCandidates[peptide]++;
+                    }
+                }
+                candidatePeptides[i] = peptides;
+            }
+            peptideCandidates = new int[nPeptides][];
+            for (int peptide = 0; peptide < nPeptides; peptide++) {
+                peptideCandidates[peptide] = new int[nPeptideCandidates[peptide]];
+                nPeptideCandidates[peptide] = 0;
+            }
+            for (int i = 0; i < this.candidates.length; i++) {
+                BitSet peptides = candidatePeptides[i];
+                for (int peptide = peptides.nextSetBit(0); peptide >= 0; peptide = peptides.nextSetBit(peptide + 1)) {
+                    peptideCandidates[peptide][nPeptideCandidates[peptide]++] = i;
+                }
+            }
+
+            bestCover = null;
+            bestSize = initialCover.length;
+            currentCover = new int[initialCover.length];
+            search(uncovered, 0);
+
+            if (bestCover == null) {
+                bestCover = initialCover;
+            } else {
+                for (int i = 0; i < bestSize; i++) {
+                    bestCover[i] = this.candidates[bestCover[i]];
+                }
+            }
+        }
+
+        /**
+         * Recursively explores the covers of the uncovered peptides.
+         *
+         * @param uncovered the uncovered peptides
+         * @param depth the number of candidates in the current cover
+         */
+        private void search(BitSet uncovered, int depth) {
+
+            if (uncovered.isEmpty()) {
+                if (depth < bestSize) {
+                    bestSize = depth;
+                    bestCover = Arrays.copyOf(currentCover, depth);
+                }
+                return;
+            }
+            if (depth + 1 >= bestSize) {
+                return;
+            }
+
+            int maxGain = 0;
+            for (BitSet peptides : candidatePeptides) {
+                maxGain = Math.max(maxGain, peptides.intersects(uncovered) ? intersectionSize(peptides, uncovered) : 0);
+            }
+            int nUncovered = uncovered.cardinality();
+            int lowerBound = (nUncovered + maxGain - 1) / maxGain;
+            if (depth + lowerBound >= bestSize) {
+                return;
+            }
+
+            int branchPeptide = -1;
+            for (int peptide = uncovered.nextSetBit(0); peptide >= 0; peptide = uncovered.nextSetBit(peptide + 1)) {
+                if (branchPeptide == -1 || peptideCandidates[peptide].length < peptideCandidates[branchPeptide].length) {
+                    branchPeptide = peptide;
+                }
+            }
+
+            for (int candidate : peptideCandidates[branchPeptide]) {
+                BitSet newUncovered = (BitSet) uncovered.clone();
+                newUncovered.andNot(candidatePeptides[candidate]);
+                currentCover[depth] = candidate;
+                search(newUncovered, depth + 1);
+            }
+        }
+
+        /**
+         * Returns the number of peptides in both sets.
+         *
+         * @param peptides1 the first set of peptides
+         * @param peptides2 the second set of peptides
+         *
+         * @return the number of peptides in both sets
+         */
+        private static int intersectionSize(BitSet peptides1, BitSet peptides2) {
+            BitSet intersection = (BitSet) peptides1.clone();
+            intersection.and(peptides2);
+            return intersection.cardinality();
+        }
+
+        /**
+         * Returns the best cover found as local accession indexes.
+         *
+         * @return the best cover found
+         */
+        public int[] getCover() {
+            return bestCover;
+        }
+    }
+}
@@ -0,0 +1,660 @@
+package eu.isas.peptideshaker.protein_inference;
+
+import com.compomics.util.experiment.identification.Identification;
+import com.compomics.util.experiment.identification.matches.ProteinMatch;
+import com.compomics.util.experiment.identification.matches_iterators.ProteinMatchesIterator;
+import com.compomics.util.waiting.WaitingHandler;
+import eu.isas.peptideshaker.utils.KeyDictionary;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bipartite graph of the peptides and proteins of an identification. Protein
+ * groups, protein accessions and peptides are indexed by integers and the
+ * edges are stored in compact adjacency arrays: the neighbors of node i are
+ * found in values[index[i]] to values[index[i+1]-1], sorted. The graph is
+ * split in connected components which can be processed independently.
+ *
+ * @author Marc Vaudel
+ */
+public class PeptideProteinGraph {
+
+    /**
+     * The keys of the protein groups.
+     */
+    private String[] groupKeys;
+    /**
+     * The protein accessions.
+     */
+    private String[] accessions;
+    /**
+     * The peptide keys.
+     */
+    private String[] peptideKeys;
+    /**
+     * Dictionary of the group indexes: group key | group index.
+     */
+    private KeyDictionary groupIndexes;
+    /**
+     * Dictionary of the accession indexes: accession | accession index.
+     */
+    private KeyDictionary accessionIndexes;
+    /**
+     * Start of the accessions of every group.
+     */
+    private int[] groupAccessionsIndex;
+    /**
+     * The accessions of every group.
+     */
+    private int[] groupAccessions;
+    /**
+     * Start of the groups of every accession.
+     */
+    private int[] accessionGroupsIndex;
+    /**
+     * The groups of every accession.
+     */
+    private int[] accessionGroups;
+    /**
+     * Start of the peptides of every accession.
+     */
+    private int[] accessionPeptidesIndex;
+    /**
+     * The peptides of every accession.
+     */
+    private int[] accessionPeptides;
+    /**
+     * Start of the accessions of every peptide.
+     */
+    private int[] peptideAccessionsIndex;
+    /**
+     * The accessions of every peptide.
+     */
+    private int[] peptideAccessions;
+    /**
+     * The connected component of every group.
+     */
+    private int[] groupComponent;
+    /**
+     * The groups of every connected component.
+     */
+    private int[][] components;
+
+    /**
+     * Constructor. Builds the graph from the protein matches of the given
+     * identification.
+     *
+     * @param identification the identification containing the protein matches
+     * @param waitingHandler a waiting handler allowing canceling the process,
+     * can be null
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file
+     * @throws InterruptedException exception thrown whenever a threading error
+     * occurred
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing an object
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the back-end database
+     */
+    public PeptideProteinGraph(Identification identification, WaitingHandler waitingHandler)
+            throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+
+        int nGroupsMax = identification.getProteinIdentification().size();
+        ArrayList<int[]> groupAccessionsList = new ArrayList<int[]>(nGroupsMax);
+        ArrayList<int[]> groupPeptidesList = new ArrayList<int[]>(nGroupsMax);
+        groupIndexes = new KeyDictionary(nGroupsMax);
+        accessionIndexes = new KeyDictionary(nGroupsMax);
+        KeyDictionary peptideIndexes = new KeyDictionary(nGroupsMax);
+
+        ProteinMatchesIterator proteinMatchesIterator = identification.getProteinMatchesIterator(null, false, null, false, null, waitingHandler);
+        ProteinMatch proteinMatch;
+        while ((proteinMatch = proteinMatchesIterator.next()) != null) {
+
+            groupIndexes.getId(proteinMatch.getKey());
+            groupAccessionsList.add(getIds(accessionIndexes, proteinMatch.getTheoreticProteinsAccessions()));
+            groupPeptidesList.add(getIds(peptideIndexes, proteinMatch.getPeptideMatchesKeys()));
+
+            if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                break;
+            }
+        }
+
+        groupKeys = groupIndexes.toArray();
+        accessions = accessionIndexes.toArray();
+        peptideKeys = peptideIndexes.toArray();
+        setAdjacency(groupAccessionsList, groupPeptidesList);
+    }
+
+    /**
+     * Constructor. Builds the graph from the given protein groups.
+     *
+     * @param groupKeys the keys of the protein groups
+     * @param groupsAccessions the accessions of every group
+     * @param groupsPeptides the keys of the peptides of every group
+     */
+    public PeptideProteinGraph(String[] groupKeys, String[][] groupsAccessions, String[][] groupsPeptides) {
+
+        ArrayList<int[]> groupAccessionsList = new ArrayList<int[]>(groupKeys.length);
+        ArrayList<int[]> groupPeptidesList = new ArrayList<int[]>(groupKeys.length);
+        groupIndexes = new KeyDictionary(groupKeys.length);
+        accessionIndexes = new KeyDictionary(groupKeys.length);
+        KeyDictionary peptideIndexes = new KeyDictionary(groupKeys.length);
+
+        for (int group = 0; group < groupKeys.length; group++) {
+            groupIndexes.getId(groupKeys[group]);
+            groupAccessionsList.add(getIds(accessionIndexes, Arrays.asList(groupsAccessions[group])));
+            groupPeptidesList.add(getIds(peptideIndexes, Arrays.asList(groupsPeptides[group])));
+        }
+
+        this.groupKeys = groupIndexes.toArray();
+        accessions = accessionIndexes.toArray();
+        peptideKeys = peptideIndexes.toArray();
+        setAdjacency(groupAccessionsList, groupPeptidesList);
+    }
+
+    /**
+     * Returns the ids of the given keys in a dictionary, sorted. Keys not in
+     * the dictionary are added.
+     *
+     * @param dictionary the dictionary
+     * @param keys the keys
+     *
+     * @return the sorted ids of the keys
+     */
+    private static int[] getIds(KeyDictionary dictionary, List<String> keys) {
+        int[] ids = new int[keys.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = dictionary.getId(keys.get(i));
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Builds the adjacency arrays and the connected components of the graph
+     * from the accessions and peptides of the groups.
+     *
+     * @param groupAccessionsList the ids of the accessions of every group,
+     * sorted
+     * @param groupPeptidesList the ids of the peptides of every group
+     */
+    private void setAdjacency(ArrayList<int[]> groupAccessionsList, ArrayList<int[]> groupPeptidesList) {
+
+        int nGroups = groupKeys.length;
+        int nAccessions = accessions.length;
+        int nPeptides = peptideKeys.length;
+
+        // group to accessions
+        groupAccessionsIndex = new int[nGroups + 1];
+        for (int group = 0; group < nGroups; group++) {
+            groupAccessionsIndex[group + 1] = groupAccessionsIndex[group] + groupAccessionsList.get(group).length;
+        }
+        groupAccessions = new int[groupAccessionsIndex[nGroups]];
+        for (int group = 0; group < nGroups; group++) {
+            int[] groupAccessionsIndexes = groupAccessionsList.get(group);
+            System.arraycopy(groupAccessionsIndexes, 0, groupAccessions, groupAccessionsIndex[group], groupAccessionsIndexes.length);
+        }
+
+        // accession to groups
+        accessionGroupsIndex = new int[nAccessions + 1];
+        for (int accession : groupAccessions) {
+            accessionGroupsIndex[accession + 1]++;
+        }
+        cumulate(accessionGroupsIndex);
+        accessionGroups = new int[groupAccessions.length];
+        int[] cursor = Arrays.copyOf(accessionGroupsIndex, nAccessions);
+        for (int group = 0; group < nGroups; group++) {
+            for (int i = groupAccessionsIndex[group]; i < groupAccessionsIndex[group + 1]; i++) {
+                accessionGroups[cursor[groupAccessions[i]]++] = group;
+            }
+        }
+
+        // accession to peptides, a peptide can be found in several groups of an accession
+        accessionPeptidesIndex = new int[nAccessions + 1];
+        for (int group = 0; group < nGroups; group++) {
+            int groupSize = groupPeptidesList.get(group).length;
+            for (int i = groupAccessionsIndex[group]; i < groupAccessionsIndex[group + 1]; i++) {
+                accessionPeptidesIndex[groupAccessions[i] + 1] += groupSize;
+            }
+        }
+        cumulate(accessionPeptidesIndex);
+        accessionPeptides = new int[accessionPeptidesIndex[nAccessions]];
+        cursor = Arrays.copyOf(accessionPeptidesIndex, nAccessions);
+        for (int group = 0; group < nGroups; group++) {
+            int[] groupPeptides = groupPeptidesList.get(group);
+            for (int i = groupAccessionsIndex[group]; i < groupAccessionsIndex[group + 1]; i++) {
+                int accession = groupAccessions[i];
+                System.arraycopy(groupPeptides, 0, accessionPeptides, cursor[accession], groupPeptides.length);
+                cursor[accession] += groupPeptides.length;
+            }
+        }
+        accessionPeptides = sortAndCompact(accessionPeptidesIndex, accessionPeptides);
+
+        // peptide to accessions
+        peptideAccessionsIndex = new int[nPeptides + 1];
+        for (int peptide : accessionPeptides) {
+            peptideAccessionsIndex[peptide + 1]++;
+        }
+        cumulate(peptideAccessionsIndex);
+        peptideAccessions = new int[accessionPeptides.length];
+        cursor = Arrays.copyOf(peptideAccessionsIndex, nPeptides);
+        for (int accession = 0; accession < nAccessions; accession++) {
+            for (int i = accessionPeptidesIndex[accession]; i < accessionPeptidesIndex[accession + 1]; i++) {
+                peptideAccessions[cursor[accessionPeptides[i]]++] = accession;
+            }
+        }
+
+        setComponents();
+    }
+
+    /**
+     * Splits the graph in connected components using a union-find on the
+     * accessions.
+     */
+    private void setComponents() {
+
+        int nGroups = groupKeys.length;
+        int nAccessions = accessions.length;
+        int[] parents = new int[nAccessions];
+        for (int accession = 0; accession < nAccessions; accession++) {
+            parents[accession] = accession;
+        }
+        for (int group = 0; group < nGroups; group++) {
+            int start = groupAccessionsIndex[group];
+            for (int i = start + 1; i < groupAccessionsIndex[group + 1]; i++) {
+                union(parents, groupAccessions[start], groupAccessions[i]);
+            }
+        }
+        for (int peptide = 0; peptide < peptideKeys.length; peptide++) {
+            int start = peptideAccessionsIndex[peptide];
+            for (int i = start + 1; i < peptideAccessionsIndex[peptide + 1]; i++) {
+                union(parents, peptideAccessions[start], peptideAccessions[i]);
+            }
+        }
+
+        int[] rootComponent = new int[nAccessions];
+        Arrays.fill(rootComponent, -1);
+        groupComponent = new int[nGroups];
+        int nComponents = 0;
+        for (int group = 0; group < nGroups; group++) {
+            int start = groupAccessionsIndex[group];
+            if (start == groupAccessionsIndex[group + 1]) {
+                groupComponent[group] = nComponents++;
+            } else {
+                int root = find(parents, groupAccessions[start]);
+                if (rootComponent[root] == -1) {
+                    rootComponent[root] = nComponents++;
+                }
+                groupComponent[group] = rootComponent[root];
+            }
+        }
+
+        int[] componentSizes = new int[nComponents];
+        for (int component : groupComponent) {
+            componentSizes[component]++;
+        }
+        components = new int[nComponents][];
+        for (int component = 0; component < nComponents; component++) {
+            components[component] = new int[componentSizes[component]];
+        }
+        Arrays.fill(componentSizes, 0);
+        for (int group = 0; group < nGroups; group++) {
+            int component = groupComponent[group];
+            components[component][componentSizes[component]++] = group;
+        }
+    }
+
+    /**
+     * Returns the root of a node in a union-find forest, compressing the path
+     * on the way.
+     *
+     * @param parents the parents of the nodes
+     * @param node the node of interest
+     *
+     * @return the root of the node
+     */
+    private static int find(int[] parents, int node) {
+        int root = node;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        while (parents[node] != root) {
+            int next = parents[node];
+            parents[node] = root;
+            node = next;
+        }
+        return root;
+    }
+
+    /**
+     * Merges the trees of two nodes in a union-find forest.
+     *
+     * @param parents the parents of the nodes
+     * @param node1 the first node
+     * @param node2 the second node
+     */
+    private static void union(int[] parents, int node1, int node2) {
+        int root1 = find(parents, node1);
+        int root2 = find(parents, node2);
+        if (root1 != root2) {
+            if (root1 < root2) {
+                parents[root2] = root1;
+            } else {
+                parents[root1] = root2;
+            }
+        }
+    }
+
+    /**
+     * Transforms an array of counts shifted by one into an array of start
+     * indexes.
+     *
+     * @param index the array to cumulate
+     */
+    private static void cumulate(int[] index) {
+        for (int i = 1; i < index.length; i++) {
+            index[i] += index[i - 1];
+        }
+    }
+
+    /**
+     * Sorts the values of every node and removes duplicates. The index is
+     * updated accordingly.
+     *
+     * @param index the start index of the values of every node
+     * @param values the values
+     *
+     * @return the compacted values
+     */
+    private static int[] sortAndCompact(int[] index, int[] values) {
+        int nNodes = index.length - 1;
+        int newEnd = 0;
+        int start = index[0];
+        for (int node = 0; node < nNodes; node++) {
+            int end = index[node + 1];
+            Arrays.sort(values, start, end);
+            int newStart = newEnd;
+            for (int i = start; i < end; i++) {
+                if (i == start || values[i] != values[i - 1]) {
+                    values[newEnd++] = values[i];
+                }
+            }
+            index[node] = newStart;
+            start = end;
+        }
+        index[nNodes] = newEnd;
+        return newEnd == values.length ? values : Arrays.copyOf(values, newEnd);
+    }
+
+    /**
+     * Returns the number of protein groups.
+     *
+     * @return the number of protein groups
+     */
+    public int getNGroups() {
+        return groupKeys.length;
+    }
+
+    /**
+     * Returns the key of the protein group at the given index.
+     *
+     * @param group the index of the group
+     *
+     * @return the key of the protein group
+     */
+    public String getGroupKey(int group) {
+        return groupKeys[group];
+    }
+
+    /**
+     * Returns the index of a protein group, -1 if not in the graph.
+     *
+     * @param groupKey the key of the group
+     *
+     * @return the index of a protein group
+     */
+    public int getGroupIndex(String groupKey) {
+        return groupIndexes.indexOf(groupKey);
+    }
+
+    /**
+     * Returns the number of protein accessions.
+     *
+     * @return the number of protein accessions
+     */
+    public int getNAccessions() {
+        return accessions.length;
+    }
+
+    /**
+     * Returns the protein accession at the given index.
+     *
+     * @param accession the index of the accession
+     *
+     * @return the protein accession
+     */
+    public String getAccession(int accession) {
+        return accessions[accession];
+    }
+
+    /**
+     * Returns the index of a protein accession, -1 if not in the graph.
+     *
+     * @param accession the protein accession
+     *
+     * @return the index of the protein accession
+     */
+    public int getAccessionIndex(String accession) {
+        return accessionIndexes.indexOf(accession);
+    }
+
+    /**
+     * Returns the number of peptides.
+     *
+     * @return the number of peptides
+     */
+    public int getNPeptides() {
+        return peptideKeys.length;
+    }
+
+    /**
+     * Returns the key of the peptide at the given index.
+     *
+     * @param peptide the index of the peptide
+     *
+     * @return the key of the peptide
+     */
+    public String getPeptideKey(int peptide) {
+        return peptideKeys[peptide];
+    }
+
+    /**
+     * Returns the number of accessions of a group.
+     *
+     * @param group the index of the group
+     *
+     * @return the number of accessions of the group
+     */
+    public int getNGroupAccessions(int group) {
+        return groupAccessionsIndex[group + 1] - groupAccessionsIndex[group];
+    }
+
+    /**
+     * Returns the i-th accession of a group. Accessions are sorted by index.
+     *
+     * @param group the index of the group
+     * @param i the rank of the accession in the group
+     *
+     * @return the index of the accession
+     */
+    public int getGroupAccession(int group, int i) {
+        return groupAccessions[groupAccessionsIndex[group] + i];
+    }
+
+    /**
+     * Returns the number of groups containing an accession.
+     *
+     * @param accession the index of the accession
+     *
+     * @return the number of groups containing the accession
+     */
+    public int getNAccessionGroups(int accession) {
+        return accessionGroupsIndex[accession + 1] - accessionGroupsIndex[accession];
+    }
+
+    /**
+     * Returns the i-th group containing an accession.
+     *
+     * @param accession the index of the accession
+     * @param i the rank of the group
+     *
+     * @return the index of the group
+     */
+    public int getAccessionGroup(int accession, int i) {
+        return accessionGroups[accessionGroupsIndex[accession] + i];
+    }
+
+    /**
+     * Returns the number of peptides of an accession.
+     *
+     * @param accession the index of the accession
+     *
+     * @return the number of peptides of the accession
+     */
+    public int getNAccessionPeptides(int accession) {
+        return accessionPeptidesIndex[accession + 1] - accessionPeptidesIndex[accession];
+    }
+
+    /**
+     * Returns the i-th peptide of an accession. Peptides are sorted by index.
+     *
+     * @param accession the index of the accession
+     * @param i the rank of the peptide
+     *
+     * @return the index of the peptide
+     */
+    public int getAccessionPeptide(int accession, int i) {
+        return accessionPeptides[accessionPeptidesIndex[accession] + i];
+    }
+
+    /**
+     * Returns the number of accessions of a peptide.
+     *
+     * @param peptide the index of the peptide
+     *
+     * @return the number of accessions of the peptide
+     */
+    public int getNPeptideAccessions(int peptide) {
+        return peptideAccessionsIndex[peptide + 1] - peptideAccessionsIndex[peptide];
+    }
+
+    /**
+     * Returns the i-th accession of a peptide. Accessions are sorted by index.
+     *
+     * @param peptide the index of the peptide
+     * @param i the rank of the accession
+     *
+     * @return the index of the accession
+     */
+    public int getPeptideAccession(int peptide, int i) {
+        return peptideAccessions[peptideAccessionsIndex[peptide] + i];
+    }
+
+    /**
+     * Indicates whether a group contains the given accession.
+     *
+     * @param group the index of the group
+     * @param accession the index of the accession
+     *
+     * @return a boolean indicating whether the group contains the accession
+     */
+    public boolean containsAccession(int group, int accession) {
+        return Arrays.binarySearch(groupAccessions, groupAccessionsIndex[group], groupAccessionsIndex[group + 1], accession) >= 0;
+    }
+
+    /**
+     * Indicates whether all accessions of a subgroup are found in a group.
+     *
+     * @param group the index of the group
+     * @param subgroup the index of the candidate subgroup
+     *
+     * @return a boolean indicating whether all accessions of the subgroup are
+     * in the group
+     */
+    public boolean isSubgroup(int group, int subgroup) {
+        int i = groupAccessionsIndex[group], iEnd = groupAccessionsIndex[group + 1];
+        int j = groupAccessionsIndex[subgroup], jEnd = groupAccessionsIndex[subgroup + 1];
+        if (jEnd - j > iEnd - i) {
+            return false;
+        }
+        while (j < jEnd) {
+            while (i < iEnd && groupAccessions[i] < groupAccessions[j]) {
+                i++;
+            }
+            if (i == iEnd || groupAccessions[i] != groupAccessions[j]) {
+                return false;
+            }
+            j++;
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether two groups have accessions in common.
+     *
+     * @param group1 the index of the first group
+     * @param group2 the index of the second group
+     *
+     * @return a boolean indicating whether two groups have accessions in
+     * common
+     */
+    public boolean shareAccessions(int group1, int group2) {
+        int i = groupAccessionsIndex[group1], iEnd = groupAccessionsIndex[group1 + 1];
+        int j = groupAccessionsIndex[group2], jEnd = groupAccessionsIndex[group2 + 1];
+        while (i < iEnd && j < jEnd) {
+            if (groupAccessions[i] == groupAccessions[j]) {
+                return true;
+            } else if (groupAccessions[i] < groupAccessions[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of connected components.
+     *
+     * @return the number of connected components
+     */
+    public int getNComponents() {
+        return components.length;
+    }
+
+    /**
+     * Returns the indexes of the groups of a connected component.
+     *
+     * @param component the index of the component
+     *
+     * @return the indexes of the groups of the component
+     */
+    public int[] getComponentGroups(int component) {
+        return components[component];
+    }
+
+    /**
+     * Returns the connected component of a group.
+     *
+     * @param group the index of the group
+     *
+     * @return the index of the component
+     */
+    public int getComponent(int group) {
+        return groupComponent[group];
+    }
+}
@@ -0,0 +1,260 @@
+package eu.isas.peptideshaker.protein_inference;
+
+import com.compomics.util.experiment.identification.protein_sequences.SequenceFactory;
+import com.compomics.util.protein.Header;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Index of the information from the FASTA headers used for protein inference.
+ * The header of every protein is parsed only once, the description words are
+ * stored as integer tokens shared by all proteins, and the protein evidence
+ * level as an integer. This class is thread safe.
+ *
+ * @author Marc Vaudel
+ */
+public class ProteinDescriptionIndex {
+
+    /**
+     * Evidence level of proteins where the evidence is not an integer.
+     */
+    public static final int UNPARSABLE_EVIDENCE = Integer.MAX_VALUE;
+    /**
+     * Keywords of uncharacterized proteins.
+     */
+    private static final String[] UNCHARACTERIZED_KEYWORDS = {"Uncharacterized", "Putative"};
+    /**
+     * The protein sequence factory.
+     */
+    private final SequenceFactory sequenceFactory = SequenceFactory.getInstance();
+    /**
+     * The indexed proteins: accession | entry.
+     */
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    /**
+     * The description words: word | token.
+     */
+    private final ConcurrentHashMap<String, Integer> tokens = new ConcurrentHashMap<String, Integer>();
+    /**
+     * The number of tokens created.
+     */
+    private final AtomicInteger nTokens = new AtomicInteger();
+
+    /**
+     * Returns the index entry of a protein, parsing its header if not done
+     * already.
+     *
+     * @param accession the accession of the protein
+     *
+     * @return the index entry of the protein
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the FASTA file
+     * @throws InterruptedException exception thrown whenever a threading error
+     * occurred
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing an object
+     */
+    public Entry getEntry(String accession) throws IOException, IllegalArgumentException, InterruptedException, ClassNotFoundException {
+        Entry entry = entries.get(accession);
+        if (entry == null) {
+            entry = new Entry(accession, sequenceFactory.getHeader(accession));
+            Entry previous = entries.putIfAbsent(accession, entry);
+            if (previous != null) {
+                entry = previous;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the token of a description word.
+     *
+     * @param word the description word
+     *
+     * @return the token of the word
+     */
+    private int getToken(String word) {
+        Integer token = tokens.get(word);
+        if (token == null) {
+            Integer newToken = nTokens.getAndIncrement();
+            token = tokens.putIfAbsent(word, newToken);
+            if (token == null) {
+                token = newToken;
+            }
+        }
+        return token;
+    }
+
+    /**
+     * Clears the index.
+     */
+    public void clear() {
+        entries.clear();
+        tokens.clear();
+    }
+
+    /**
+     * The information on a protein used for protein inference.
+     */
+    public class Entry {
+
+        /**
+         * The gene name, null if not set.
+         */
+        private final String geneName;
+        /**
+         * Boolean indicating whether the header contains a protein evidence
+         * level.
+         */
+        private final boolean hasEvidence;
+        /**
+         * The protein evidence level, UNPARSABLE_EVIDENCE if not an integer.
+         */
+        private final int evidenceLevel;
+        /**
+         * Boolean indicating whether the protein is uncharacterized.
+         */
+        private final boolean uncharacterized;
+        /**
+         * The tokens of the description words longer than 3 characters in
+         * order of appearance.
+         */
+        private final int[] descriptionTokens;
+        /**
+         * The distinct description tokens sorted.
+         */
+        private final int[] sortedDescriptionTokens;
+
+        /**
+         * Constructor.
+         *
+         * @param accession the protein accession
+         * @param header the FASTA header of the protein
+         */
+        private Entry(String accession, Header header) {
+
+            String headerGeneName = header.getGeneName();
+            geneName = headerGeneName == null ? null : headerGeneName.intern();
+
+            String evidence = header.getProteinEvidence();
+            hasEvidence = evidence != null;
+            int level = UNPARSABLE_EVIDENCE;
+            if (hasEvidence) {
+                try {
+                    level = new Integer(evidence);
+                } catch (NumberFormatException e) {
+                    // ignore
+                }
+            }
+            evidenceLevel = level;
+
+            String description = header.getSimpleProteinDescription();
+
+            // if the description is not set, use the accession instead - fix for home made fasta headers
+            String characterization = description;
+            if (characterization == null || characterization.trim().isEmpty()) {
+                characterization = accession;
+            }
+            boolean keyWordFound = false;
+            for (String keyWord : UNCHARACTERIZED_KEYWORDS) {
+                if (characterization.contains(keyWord)) {
+                    keyWordFound = true;
+                    break;
+                }
+            }
+            uncharacterized = keyWordFound;
+
+            ArrayList<Integer> descriptionTokensList = new ArrayList<Integer>();
+            if (description != null) {
+                for (String component : description.split(" ")) {
+                    if (component.length() > 3) {
+                        descriptionTokensList.add(getToken(component));
+                    }
+                }
+            }
+            descriptionTokens = new int[descriptionTokensList.size()];
+            for (int i = 0; i < descriptionTokens.length; i++) {
+                descriptionTokens[i] = descriptionTokensList.get(i);
+            }
+            int[] sortedTokens = Arrays.copyOf(descriptionTokens, descriptionTokens.length);
+            Arrays.sort(sortedTokens);
+            int nDistinct = 0;
+            for (int i = 0; i < sortedTokens.length; i++) {
+                if (i == 0 || sortedTokens[i] != sortedTokens[i - 1]) {
+                    sortedTokens[nDistinct++] = sortedTokens[i];
+                }
+            }
+            sortedDescriptionTokens = Arrays.copyOf(sortedTokens, nDistinct);
+        }
+
+        /**
+         * Returns the gene name, null if not set.
+         *
+         * @return the gene name
+         */
+        public String getGeneName() {
+            return geneName;
+        }
+
+        /**
+         * Indicates whether the header contains a protein evidence level.
+         *
+         * @return a boolean indicating whether the header contains a protein
+         * evidence level
+         */
+        public boolean hasEvidence() {
+            return hasEvidence;
+        }
+
+        /**
+         * Returns the protein evidence level, UNPARSABLE_EVIDENCE if not an
+         * integer or not set.
+         *
+         * @return the protein evidence level
+         */
+        public int getEvidenceLevel() {
+            return evidenceLevel;
+        }
+
+        /**
+         * Indicates whether the protein is uncharacterized.
+         *
+         * @return a boolean indicating whether the protein is uncharacterized
+         */
+        public boolean isUncharacterized() {
+            return uncharacterized;
+        }
+
+        /**
+         * Returns the number of description words longer than 3 characters.
+         *
+         * @return the number of description words longer than 3 characters
+         */
+        public int getNDescriptionTokens() {
+            return descriptionTokens.length;
+        }
+
+        /**
+         * Returns the number of description words of this entry found in the
+         * description of another entry.
+         *
+         * @param other the other entry
+         *
+         * @return the number of description words of this entry found in the
+         * description of the other entry
+         */
+        public int countCommonTokens(Entry other) {
+            int nMatch = 0;
+            for (int token : descriptionTokens) {
+                if (Arrays.binarySearch(other.sortedDescriptionTokens, token) >= 0) {
+                    nMatch++;
+                }
+            }
+            return nMatch;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package eu.isas.peptideshaker.protein_inference;
 
+import com.compomics.util.exceptions.ExceptionHandler;
 import com.compomics.util.experiment.biology.Protein;
 import com.compomics.util.experiment.identification.Identification;
 import com.compomics.util.experiment.identification.protein_sequences.SequenceFactory;
@@ -10,6 +11,7 @@ import com.compomics.util.experiment.identification.matches_iterators.ProteinMat
 import com.compomics.util.experiment.personalization.UrParameter;
 import com.compomics.util.preferences.DigestionPreferences;
 import com.compomics.util.preferences.IdentificationParameters;
+import com.compomics.util.preferences.ProcessingPreferences;
 import com.compomics.util.preferences.ProteinInferencePreferences;
 import com.compomics.util.waiting.WaitingHandler;
 import eu.isas.peptideshaker.parameters.PSParameter;
@@ -23,6 +25,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class groups the methods for protein inference.
@@ -52,27 +57,31 @@ public class ProteinInference {
      */
     private SequenceFactory sequenceFactory = SequenceFactory.getInstance();
     /**
-     * Map of the most complex groups: key | proteins
+     * Index of the protein headers information.
      */
-    private HashMap<String, ArrayList<String>> proteinGroupCache = new HashMap<String, ArrayList<String>>(100);
+    private ProteinDescriptionIndex descriptionIndex = new ProteinDescriptionIndex();
     /**
-     * Size of the protein groups cahce
+     * Flag for groups not processed yet.
      */
-    private int cacheSize = 100;
+    private static final int UNPROCESSED = -2;
     /**
-     * The minimal group size to include a protein in the cache
+     * Flag for groups without subgroup.
      */
-    private int sizeOfProteinsInCache = 10;
+    private static final int NO_SUBGROUP = -1;
 
     /**
-     * Reduce artifact groups which can be explained by a simpler group.
+     * Reduce artifact groups which can be explained by a simpler group. The
+     * groups are organized in a peptide to protein graph and the connected
+     * components of the graph are processed in parallel.
      *
      * @param identification the identification class containing all
      * identification matches
      * @param identificationParameters the identification parameters
      * @param identificationFeaturesGenerator the identification feature
      * generator
+     * @param processingPreferences the processing preferences
      * @param waitingHandler the handler displaying feedback to the user
+     * @param exceptionHandler handler for exceptions
      *
      * @throws IOException thrown if an IOException occurs
      * @throws InterruptedException thrown if an InterruptedException occurs
@@ -80,49 +89,77 @@ public class ProteinInference {
      * @throws ClassNotFoundException thrown if a ClassNotFoundException occurs
      */
     public void removeRedundantGroups(Identification identification, IdentificationParameters identificationParameters,
-            IdentificationFeaturesGenerator identificationFeaturesGenerator, WaitingHandler waitingHandler)
+            IdentificationFeaturesGenerator identificationFeaturesGenerator, ProcessingPreferences processingPreferences,
+            WaitingHandler waitingHandler, ExceptionHandler exceptionHandler)
             throws IOException, SQLException, ClassNotFoundException, InterruptedException {
 
         ArrayList<String> toRemove = new ArrayList<String>();
-        int max = identification.getProteinIdentification().size();
 
         if (waitingHandler != null) {
+            waitingHandler.setWaitingText("Building Protein Graph. Please Wait...");
+        }
+
+        PeptideProteinGraph graph = new PeptideProteinGraph(identification, waitingHandler);
+
+        if (waitingHandler != null) {
+            if (waitingHandler.isRunCanceled()) {
+                return;
+            }
             waitingHandler.setWaitingText("Symplifying Protein Groups. Please Wait...");
             waitingHandler.setSecondaryProgressCounterIndeterminate(false);
-            waitingHandler.setMaxSecondaryProgressCounter(max);
-        }
-
-        HashSet<String> toDelete = new HashSet<String>();
-        HashMap<String, String> processedKeys = new HashMap<String, String>();
-
-        ProteinMatchesIterator proteinMatchesIterator = identification.getProteinMatchesIterator(null, false, null, false, null, waitingHandler);
-        ProteinMatch proteinSharedGroup;
-        while ((proteinSharedGroup = proteinMatchesIterator.next()) != null) {
-            if (proteinSharedGroup.getNProteins() > 1) {
-                String proteinSharedKey = proteinSharedGroup.getKey();
-                if (!processedKeys.containsKey(proteinSharedKey)) {
-                    String uniqueKey = getSubgroup(identification, proteinSharedKey, proteinSharedGroup, processedKeys, toDelete, identificationParameters, identificationFeaturesGenerator);
-                    if (uniqueKey != null) {
-                        mergeProteinGroups(identification, proteinSharedKey, uniqueKey, toDelete);
-                        processedKeys.put(proteinSharedKey, uniqueKey);
-                    } else {
-                        processedKeys.put(proteinSharedKey, proteinSharedKey);
-                    }
-                }
-                if (waitingHandler != null) {
-                    if (waitingHandler.isRunCanceled()) {
-                        return;
-                    }
-                    waitingHandler.increaseSecondaryProgressCounter();
-                }
+            waitingHandler.setMaxSecondaryProgressCounter(graph.getNGroups());
+        }
+
+        int[] subgroups = new int[graph.getNGroups()];
+        Arrays.fill(subgroups, UNPROCESSED);
+        boolean[] toDelete = new boolean[graph.getNGroups()];
+
+        ExecutorService pool = Executors.newFixedThreadPool(processingPreferences.getnThreads());
+        ArrayList<GroupSimplificationRunnable> runnables = new ArrayList<GroupSimplificationRunnable>();
+
+        for (int component = 0; component < graph.getNComponents(); component++) {
+            int[] componentGroups = graph.getComponentGroups(component);
+            if (componentGroups.length > 1) {
+                GroupSimplificationRunnable runnable = new GroupSimplificationRunnable(graph, componentGroups, subgroups, toDelete, identification,
+                        identificationParameters, identificationFeaturesGenerator, waitingHandler, exceptionHandler);
+                pool.submit(runnable);
+                runnables.add(runnable);
+            } else if (waitingHandler != null) {
+                waitingHandler.increaseSecondaryProgressCounter();
+            }
+            if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                pool.shutdownNow();
+                return;
             }
         }
+        pool.shutdown();
+        if (!pool.awaitTermination(7, TimeUnit.DAYS)) {
+            throw new InterruptedException("Protein groups simplification timed out. Please contact the developers.");
+        }
+        if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+            return;
+        }
+
+        for (GroupSimplificationRunnable runnable : runnables) {
+            enzymaticIssue += runnable.getEnzymaticIssue();
+            evidenceIssue += runnable.getEvidenceIssue();
+            uncharacterizedIssue += runnable.getUncharacterizedIssue();
+            explainedGroup += runnable.getExplainedGroup();
+        }
 
         if (enzymaticIssue + evidenceIssue + uncharacterizedIssue + explainedGroup > 0) { // special case to not divide by zero
 
             if (waitingHandler != null) {
+
+                int nToDelete = 0;
+                for (boolean delete : toDelete) {
+                    if (delete) {
+                        nToDelete++;
+                    }
+                }
+
                 waitingHandler.setWaitingText("Removing Mapping Artifacts. Please Wait...");
-                waitingHandler.appendReport(toDelete.size() + " unlikely protein mappings found:", true, true);
+                waitingHandler.appendReport(nToDelete + " unlikely protein mappings found:", true, true);
 
                 String padding = "    ";
 
@@ -156,194 +193,126 @@ public class ProteinInference {
     }
 
     /**
-     * Returns the best subgroup of a protein key, null if none found. If
-     * intermediate groups are found they will be processed. Processed keys are
-     * stored in processedKeys. Keys to delete are stored in keysToDelete.
-     * Returns null if no simpler group is found.
+     * Reduces the groups to a minimal set of proteins explaining all peptides.
+     * For every connected component of the peptide to protein graph a minimal
+     * protein set is computed. The groups without protein in this set are
+     * removed, their peptides being explained by the other groups, and the
+     * groups with only part of their proteins in this set are merged into the
+     * group made of these proteins when available. The components are
+     * processed in parallel. The groups are simplified before the scoring of
+     * the proteins, the removal of a group thus only needs to be done in the
+     * identification.
      *
-     * @param identification the identification where to get the matches from.
-     * @param sharedKey the key of the group to inspect
-     * @param processedKeys map of already processed keys and their best smaller
-     * key
-     * @param keysToDelete list of keys to delete
-     * @param shotgunProtocol the protocol containing the enzyme used
-     * @param identificationFeaturesGenerator the identification features
-     * generator
-     * @param proteinInferencePreferences the protein inference preferences
-     *
-     * @return the best smaller group, null if none found.
+     * @param identification the identification class containing all
+     * identification matches
+     * @param processingPreferences the processing preferences
+     * @param waitingHandler the handler displaying feedback to the user
+     * @param exceptionHandler handler for exceptions
      *
-     * @throws IOException exception thrown whenever an error occurred while
-     * reading or writing a file
-     * @throws InterruptedException exception thrown whenever an threading error
-     * occurred
-     * @throws ClassNotFoundException exception thrown whenever an error
-     * occurred while deserializing an object
-     * @throws SQLException exception thrown whenever an error occurred while
-     * interacting with the back-end database
+     * @throws IOException thrown if an IOException occurs
+     * @throws InterruptedException thrown if an InterruptedException occurs
+     * @throws SQLException thrown if an SQLException occurs
+     * @throws ClassNotFoundException thrown if a ClassNotFoundException occurs
      */
-    private String getSubgroup(Identification identification, String sharedKey, ProteinMatch sharedProteinMatch, HashMap<String, String> processedKeys,
-            HashSet<String> keysToDelete, IdentificationParameters identificationParameters, IdentificationFeaturesGenerator identificationFeaturesGenerator)
-            throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+    public void removeNonParsimoniousGroups(Identification identification, ProcessingPreferences processingPreferences,
+            WaitingHandler waitingHandler, ExceptionHandler exceptionHandler)
+            throws IOException, SQLException, ClassNotFoundException, InterruptedException {
 
-        ArrayList<String> sharedAccessions;
-        if (sharedProteinMatch == null) {
-            sharedAccessions = proteinGroupCache.get(sharedKey);
-            if (sharedAccessions == null) {
-                sharedProteinMatch = identification.getProteinMatch(sharedKey, false);
-            }
+        long start = System.currentTimeMillis();
+
+        if (waitingHandler != null) {
+            waitingHandler.setWaitingText("Building Protein Graph. Please Wait...");
         }
-        if (sharedProteinMatch != null) {
-            sharedAccessions = sharedProteinMatch.getTheoreticProteinsAccessions();
-        } else {
-            sharedAccessions = getProteins(sharedKey);
-        }
-        HashSet<String> candidateUnique = new HashSet<String>(1);
-        HashSet<String> sharedAccessionsAsSet = null;
-
-        for (String accession : sharedAccessions) {
-            HashSet<String> otherGroups = identification.getProteinMap().get(accession);
-            for (String uniqueKey : otherGroups) {
-                if (!uniqueKey.equals(sharedKey)) {
-                    ArrayList<String> uniqueAccessions = proteinGroupCache.get(uniqueKey);
-                    if (uniqueAccessions == null) {
-                        ProteinMatch uniqueProteinMatch = identification.getProteinMatch(uniqueKey, false);
-                        if (uniqueProteinMatch != null) {
-                            uniqueAccessions = uniqueProteinMatch.getTheoreticProteinsAccessions();
-                        } else {
-                            uniqueAccessions = getProteins(uniqueKey);
-                        }
-                    }
-                    if (sharedAccessions.size() >= uniqueAccessions.size()) {
-                        if (sharedAccessionsAsSet == null) {
-                            sharedAccessionsAsSet = new HashSet<String>(sharedAccessions);
-                        }
-                        if (ProteinMatch.contains(sharedAccessionsAsSet, uniqueAccessions) && !keysToDelete.contains(uniqueKey)) {
-                            String subGroup = uniqueKey;
-                            if (uniqueAccessions.size() > 1) {
-                                String reducedGroup = processedKeys.get(uniqueKey);
-                                if (reducedGroup == null) {
-                                    reducedGroup = getSubgroup(identification, uniqueKey, null, processedKeys, keysToDelete, identificationParameters, identificationFeaturesGenerator);
-                                    if (reducedGroup != null) {
-                                        mergeProteinGroups(identification, uniqueKey, reducedGroup, keysToDelete);
-                                        processedKeys.put(uniqueKey, reducedGroup);
-                                        subGroup = reducedGroup;
-                                    } else {
-                                        processedKeys.put(uniqueKey, uniqueKey);
-                                    }
-                                }
-                            }
-                            if (!candidateUnique.contains(subGroup)) {
-                                candidateUnique.add(subGroup);
-                            }
-                        }
-                    }
-                }
+
+        PeptideProteinGraph graph = new PeptideProteinGraph(identification, waitingHandler);
+
+        if (waitingHandler != null) {
+            if (waitingHandler.isRunCanceled()) {
+                return;
             }
+            waitingHandler.setWaitingText("Inferring Minimal Protein Set. Please Wait...");
+            waitingHandler.setSecondaryProgressCounterIndeterminate(false);
+            waitingHandler.setMaxSecondaryProgressCounter(graph.getNGroups());
         }
 
-        String minimalKey = null;
+        ParsimonySolver parsimonySolver = new ParsimonySolver(graph);
+        boolean[] selected = new boolean[graph.getNAccessions()];
+        boolean[] toDelete = new boolean[graph.getNGroups()];
 
-        if (!candidateUnique.isEmpty()) {
-            ArrayList<String> keys = new ArrayList<String>(candidateUnique.size());
-            for (String accession : candidateUnique) {
-                if (!keysToDelete.contains(accession)) {
-                    keys.add(accession);
-                }
+        ExecutorService pool = Executors.newFixedThreadPool(processingPreferences.getnThreads());
+
+        for (int component = 0; component < graph.getNComponents(); component++) {
+            int[] componentGroups = graph.getComponentGroups(component);
+            ParsimonyRunnable runnable = new ParsimonyRunnable(graph, parsimonySolver, componentGroups, selected, toDelete, identification,
+                    waitingHandler, exceptionHandler);
+            pool.submit(runnable);
+            if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                pool.shutdownNow();
+                return;
             }
+        }
+        pool.shutdown();
+        if (!pool.awaitTermination(7, TimeUnit.DAYS)) {
+            throw new InterruptedException("Protein parsimony inference timed out. Please contact the developers.");
+        }
+        if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+            return;
+        }
 
-            if (!keys.isEmpty()) {
-                ProteinMatch match = identification.getProteinMatch(sharedKey);
-                HashMap<String, Integer> preferenceReason = new HashMap<String, Integer>();
-                for (String key1 : keys) {
-                    for (String accession1 : ProteinMatch.getAccessions(key1)) {
-                        if (minimalKey == null) {
-                            preferenceReason = new HashMap<String, Integer>();
-                            boolean best = true;
-                            for (String key2 : keys) {
-                                if (!key1.equals(key2)) {
-                                    if (!ProteinMatch.contains(key1, key2)) {
-                                        if (!ProteinMatch.getCommonProteins(key1, key2).isEmpty()) {
-                                            best = false;
-                                        }
-                                        for (String accession2 : ProteinMatch.getAccessions(key2)) {
-                                            int tempPrefernce = compareMainProtein(match, accession2, match, accession1, identificationFeaturesGenerator, identificationParameters);
-                                            if (tempPrefernce != 1) {
-                                                best = false;
-                                            } else {
-                                                if (preferenceReason.containsKey(accession2)) {
-                                                    tempPrefernce = Math.min(preferenceReason.get(accession2), tempPrefernce);
-                                                }
-                                                preferenceReason.put(accession2, tempPrefernce);
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                            if (best) {
-                                ArrayList<String> accessions = ProteinMatch.getOtherProteins(sharedKey, key1);
-                                for (String accession2 : accessions) {
-                                    int tempPrefernce = compareMainProtein(match, accession2, match, accession1, identificationFeaturesGenerator, identificationParameters);
-                                    if (tempPrefernce == 0) {
-                                        best = false;
-                                        break;
-                                    } else {
-                                        if (preferenceReason.containsKey(accession2)) {
-                                            tempPrefernce = Math.min(preferenceReason.get(accession2), tempPrefernce);
-                                        }
-                                        preferenceReason.put(accession2, tempPrefernce);
-                                    }
-                                }
-                                if (best && minimalKey == null) {
-                                    minimalKey = key1;
-                                }
-                            }
-                        } else {
-                            break;
-                        }
-                    }
-                    if (minimalKey != null) {
-                        for (String key2 : keys) {
-                            if (!key2.equals(minimalKey) && !keysToDelete.contains(key2)) {
-                                keysToDelete.add(key2);
-                                for (int reason : preferenceReason.values()) {
-                                    if (reason == 1) {
-                                        enzymaticIssue++;
-                                    }
-                                    if (reason == 2) {
-                                        evidenceIssue++;
-                                    }
-                                    if (reason == 3) {
-                                        uncharacterizedIssue++;
-                                    }
-                                }
-                            }
-                        }
-                        break;
-                    }
+        int nSelected = 0;
+        for (boolean accessionSelected : selected) {
+            if (accessionSelected) {
+                nSelected++;
+            }
+        }
+        ArrayList<String> toRemove = new ArrayList<String>();
+        for (int group = 0; group < graph.getNGroups(); group++) {
+            if (toDelete[group]) {
+                toRemove.add(graph.getGroupKey(group));
+            }
+        }
+        explainedGroup += toRemove.size();
+
+        if (waitingHandler != null) {
+            waitingHandler.setWaitingText("Removing Non-Parsimonious Groups. Please Wait...");
+            waitingHandler.setSecondaryProgressCounterIndeterminate(false);
+            waitingHandler.resetSecondaryProgressCounter();
+            waitingHandler.setMaxSecondaryProgressCounter(toRemove.size());
+        }
+        for (String proteinKey : toRemove) {
+            identification.removeProteinMatch(proteinKey);
+            if (waitingHandler != null) {
+                if (waitingHandler.isRunCanceled()) {
+                    return;
                 }
+                waitingHandler.increaseSecondaryProgressCounter();
             }
         }
+        ProteinMatch.clearCache();
 
-        return minimalKey;
+        if (waitingHandler != null) {
+            String padding = "    ";
+            waitingHandler.appendReport(nSelected + " of " + graph.getNAccessions() + " proteins needed to explain all peptides ("
+                    + graph.getNComponents() + " independent protein clusters).", true, true);
+            waitingHandler.appendReport(padding + "- " + toRemove.size() + " of " + graph.getNGroups() + " groups explained by the minimal protein set and removed ("
+                    + (System.currentTimeMillis() - start) + " ms).", true, true);
+        }
     }
 
     /**
-     * Puts the peptide of the shared group in the unique group and adds the
-     * shared group to the list of proteins to delete.
+     * Puts the peptide of the shared group in the unique group and saves the
+     * unique group.
      *
      * @param identification the identification whether to get the matches
      * @param sharedGroup the key of the shared group
      * @param uniqueGroup the key of the unique group
-     * @param keysToDelete list of keys to be deleted where sharedGroup will be
-     * added
      *
      * @throws IllegalArgumentException
      * @throws SQLException
      * @throws IOException
      * @throws ClassNotFoundException
      */
-    private void mergeProteinGroups(Identification identification, String sharedGroup, String uniqueGroup, HashSet<String> keysToDelete)
+    private void mergeProteinGroups(Identification identification, String sharedGroup, String uniqueGroup)
             throws IllegalArgumentException, SQLException, IOException, ClassNotFoundException, InterruptedException {
 
         ProteinMatch sharedMatch = identification.getProteinMatch(sharedGroup);
@@ -352,9 +321,7 @@ public class ProteinInference {
         for (String peptideKey : sharedMatch.getPeptideMatchesKeys()) {
             uniqueMatch.addPeptideMatchKey(peptideKey);
         }
-
-        keysToDelete.add(sharedGroup);
-        explainedGroup++;
+        identification.updateProteinMatch(uniqueMatch);
     }
 
     /**
@@ -368,7 +335,9 @@ public class ProteinInference {
      * @param identificationParameters the identification parameters
      * @param identificationFeaturesGenerator the identification feature
      * generator
+     * @param processingPreferences the processing preferences
      * @param waitingHandler the handler displaying feedback to the user
+     * @param exceptionHandler handler for exceptions
      *
      * @throws IOException thrown if an IOException occurs
      * @throws InterruptedException thrown if an InterruptedException occurs
@@ -376,7 +345,8 @@ public class ProteinInference {
      * @throws ClassNotFoundException thrown if a ClassNotFoundException occurs
      */
     public void retainBestScoringGroups(Identification identification, Metrics metrics, ProteinMap proteinMap,
-            IdentificationParameters identificationParameters, IdentificationFeaturesGenerator identificationFeaturesGenerator, WaitingHandler waitingHandler)
+            IdentificationParameters identificationParameters, IdentificationFeaturesGenerator identificationFeaturesGenerator,
+            ProcessingPreferences processingPreferences, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler)
             throws IOException, SQLException, ClassNotFoundException, InterruptedException {
 
         waitingHandler.setWaitingText("Simplifying Redundant Protein Groups. Please Wait...");
@@ -396,65 +366,38 @@ public class ProteinInference {
         ArrayList<UrParameter> parameters = new ArrayList<UrParameter>(1);
         parameters.add(psParameter);
         if (proteinInferencePreferences.getSimplifyGroups() && proteinInferencePreferences.getSimplifyGroupsScore()) {
-            ProteinMatchesIterator proteinMatchesIterator = identification.getProteinMatchesIterator(parameters, true, parameters, true, parameters, waitingHandler);
-            ProteinMatch proteinMatch;
-            while ((proteinMatch = proteinMatchesIterator.next()) != null) {
 
+            PeptideProteinGraph graph = new PeptideProteinGraph(identification, waitingHandler);
+            if (waitingHandler.isRunCanceled()) {
+                return;
+            }
+            boolean[] explainedGroups = new boolean[graph.getNGroups()];
+
+            ExecutorService pool = Executors.newFixedThreadPool(processingPreferences.getnThreads());
+            for (int component = 0; component < graph.getNComponents(); component++) {
+                int[] componentGroups = graph.getComponentGroups(component);
+                if (componentGroups.length > 1) {
+                    BestScoringGroupRunnable runnable = new BestScoringGroupRunnable(graph, componentGroups, explainedGroups, identification, waitingHandler, exceptionHandler);
+                    pool.submit(runnable);
+                } else if (graph.getNGroupAccessions(componentGroups[0]) > 1) {
+                    waitingHandler.increaseSecondaryProgressCounter();
+                }
                 if (waitingHandler.isRunCanceled()) {
+                    pool.shutdownNow();
                     return;
                 }
+            }
+            pool.shutdown();
+            if (!pool.awaitTermination(7, TimeUnit.DAYS)) {
+                throw new InterruptedException("Protein groups simplification timed out. Please contact the developers.");
+            }
+            if (waitingHandler.isRunCanceled()) {
+                return;
+            }
 
-                String proteinSharedKey = proteinMatch.getKey();
-                ArrayList<String> sharedAccessions = proteinMatch.getTheoreticProteinsAccessions();
-
-                if (sharedAccessions.size() > 1) {
-
-                    HashSet<String> sharedAccessionsAsSet = null;
-                    psParameter = (PSParameter) identification.getProteinMatchParameter(proteinSharedKey, psParameter);
-                    double sharedProteinProbabilityScore = psParameter.getProteinProbabilityScore();
-                    boolean better = false;
-
-                    for (String accession : sharedAccessions) {
-                        HashSet<String> otherGroups = identification.getProteinMap().get(accession);
-                        for (String proteinUniqueKey : otherGroups) {
-                            if (!proteinUniqueKey.equals(proteinSharedKey)) {
-                                ProteinMatch uniqueProteinMatch = identification.getProteinMatch(proteinUniqueKey, false);
-                                ArrayList<String> uniqueAccessions;
-                                if (uniqueProteinMatch != null) {
-                                    uniqueAccessions = uniqueProteinMatch.getTheoreticProteinsAccessions();
-                                } else {
-                                    uniqueAccessions = getProteins(proteinUniqueKey);
-                                }
-                                if (sharedAccessions.size() >= uniqueAccessions.size()) {
-                                    if (sharedAccessionsAsSet == null) {
-                                        sharedAccessionsAsSet = new HashSet<String>(sharedAccessions);
-                                    }
-                                    if (ProteinMatch.contains(sharedAccessionsAsSet, uniqueAccessions)) {
-                                        psParameter = (PSParameter) identification.getProteinMatchParameter(proteinUniqueKey, psParameter);
-                                        double uniqueProteinProbabilityScore = psParameter.getProteinProbabilityScore();
-                                        ProteinMatch proteinUnique = identification.getProteinMatch(proteinUniqueKey);
-                                        ProteinMatch proteinShared = identification.getProteinMatch(proteinSharedKey);
-                                        for (String sharedPeptideKey : proteinShared.getPeptideMatchesKeys()) {
-                                            proteinUnique.addPeptideMatchKey(sharedPeptideKey);
-                                        }
-                                        identification.updateProteinMatch(proteinUnique);
-                                        if (uniqueProteinProbabilityScore <= sharedProteinProbabilityScore) {
-                                            better = true;
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-
-                    if (better) {
-                        toRemove.add(proteinSharedKey);
-                    } else {
-                        waitingHandler.increaseSecondaryProgressCounter();
-                        if (waitingHandler.isRunCanceled()) {
-                            return;
-                        }
-                    }
+            for (int group = 0; group < graph.getNGroups(); group++) {
+                if (explainedGroups[group]) {
+                    toRemove.add(graph.getGroupKey(group));
                 }
             }
 
@@ -468,8 +411,6 @@ public class ProteinInference {
                 proteinMap.cleanUp();
             }
         }
-
-        clearCache();
         ProteinMatch.clearCache();
 
         int nSolved = toRemove.size();
@@ -717,29 +658,6 @@ public class ProteinInference {
         waitingHandler.appendReport(report, true, true);
     }
 
-    /**
-     * Parses a protein description retaining only words longer than 3
-     * characters.
-     *
-     * @param proteinAccession the accession of the inspected protein
-     * @return description words longer than 3 characters
-     */
-    private ArrayList<String> parseDescription(String proteinAccession) throws IOException, IllegalArgumentException, InterruptedException, ClassNotFoundException {
-        String description = sequenceFactory.getHeader(proteinAccession).getSimpleProteinDescription();
-
-        if (description == null) {
-            return new ArrayList<String>();
-        }
-
-        ArrayList<String> result = new ArrayList<String>();
-        for (String component : description.split(" ")) {
-            if (component.length() > 3) {
-                result.add(component);
-            }
-        }
-        return result;
-    }
-
     /**
      * Checks whether a new main protein (newAccession) of the new protein match
      * (newProteinMatch) is better than another one main protein (oldAccession)
@@ -785,62 +703,40 @@ public class ProteinInference {
             }
         }
 
-        if (proteinInferencePreferences.getSimplifyGroupsEvidence()) {
-            String evidenceLevelOld = sequenceFactory.getHeader(oldAccession).getProteinEvidence();
-            String evidenceLevelNew = sequenceFactory.getHeader(newAccession).getProteinEvidence();
-
-            // compare protein evidence levels
-            if (evidenceLevelOld != null && evidenceLevelNew != null) {
-                try {
-                    Integer levelOld = new Integer(evidenceLevelOld);
-                    Integer levelNew = new Integer(evidenceLevelNew);
-                    if (levelNew < levelOld) {
-                        return 2;
-                    } else if (levelOld < levelNew) {
-                        return 0;
+        if (proteinInferencePreferences.getSimplifyGroupsEvidence() || proteinInferencePreferences.getSimplifyGroupsUncharacterized()) {
+
+            ProteinDescriptionIndex.Entry oldEntry = descriptionIndex.getEntry(oldAccession);
+            ProteinDescriptionIndex.Entry newEntry = descriptionIndex.getEntry(newAccession);
+
+            if (proteinInferencePreferences.getSimplifyGroupsEvidence()) {
+                if (oldEntry.hasEvidence() && newEntry.hasEvidence()) {
+                    // compare protein evidence levels
+                    int levelOld = oldEntry.getEvidenceLevel();
+                    int levelNew = newEntry.getEvidenceLevel();
+                    if (levelOld != ProteinDescriptionIndex.UNPARSABLE_EVIDENCE && levelNew != ProteinDescriptionIndex.UNPARSABLE_EVIDENCE) {
+                        if (levelNew < levelOld) {
+                            return 2;
+                        } else if (levelOld < levelNew) {
+                            return 0;
+                        }
                     }
-                } catch (NumberFormatException e) {
-                    // ignore
+                } else if (newEntry.hasEvidence()) {
+                    // only the new match has evidence information
+                    return 2;
+                } else if (oldEntry.hasEvidence()) {
+                    // only the old match has evidence information
+                    return 0;
                 }
             }
-            // only the new match has evidence information
-            if (evidenceLevelOld == null && evidenceLevelNew != null) {
-                return 2;
-            }
-            // only the old match has evidence information
-            if (evidenceLevelOld != null && evidenceLevelNew == null) {
-                return 0;
-            }
-        }
-
-        if (proteinInferencePreferences.getSimplifyGroupsUncharacterized()) {
-            // Compare descriptions for keywords of uncharacterized proteins
-            String oldDescription = sequenceFactory.getHeader(oldAccession).getSimpleProteinDescription();
-            String newDescription = sequenceFactory.getHeader(newAccession).getSimpleProteinDescription();
-
-            // if the description is not set, return the accessions instead - fix for home made fasta headers
-            if (oldDescription == null || oldDescription.trim().isEmpty()) {
-                oldDescription = oldAccession;
-            }
-            if (newDescription == null || newDescription.trim().isEmpty()) {
-                newDescription = newAccession;
-            }
 
-            boolean oldUncharacterized = false, newUncharacterized = false;
-            String[] keyWords = {"Uncharacterized", "Putative"};
-            for (String keyWord : keyWords) {
-                if (newDescription.contains(keyWord)) {
-                    newUncharacterized = true;
-                }
-                if (oldDescription.contains(keyWord)) {
-                    oldUncharacterized = true;
+            if (proteinInferencePreferences.getSimplifyGroupsUncharacterized()) {
+                // compare the keywords of uncharacterized proteins
+                if (oldEntry.isUncharacterized() && !newEntry.isUncharacterized()) {
+                    return 3;
+                } else if (!oldEntry.isUncharacterized() && newEntry.isUncharacterized()) {
+                    return 0;
                 }
             }
-            if (oldUncharacterized && !newUncharacterized) {
-                return 3;
-            } else if (!oldUncharacterized && newUncharacterized) {
-                return 0;
-            }
         }
 
         return 0;
@@ -857,8 +753,10 @@ public class ProteinInference {
      */
     private boolean getSimilarity(String primaryProteinAccession, String secondaryProteinAccession) throws IOException, IllegalArgumentException, InterruptedException, ClassNotFoundException {
 
-        String geneNamePrimaryProtein = sequenceFactory.getHeader(primaryProteinAccession).getGeneName();
-        String geneNameSecondaryProtein = sequenceFactory.getHeader(secondaryProteinAccession).getGeneName();
+        ProteinDescriptionIndex.Entry primaryEntry = descriptionIndex.getEntry(primaryProteinAccession);
+        ProteinDescriptionIndex.Entry secondaryEntry = descriptionIndex.getEntry(secondaryProteinAccession);
+        String geneNamePrimaryProtein = primaryEntry.getGeneName();
+        String geneNameSecondaryProtein = secondaryEntry.getGeneName();
         boolean sameGene = false;
 
         // compare the gene names
@@ -894,67 +792,608 @@ public class ProteinInference {
             }
 
             // compare the protein descriptions, less secure than gene names
-            ArrayList<String> primaryDescription = parseDescription(primaryProteinAccession);
-            ArrayList<String> secondaryDescription = parseDescription(secondaryProteinAccession);
-
-            if (primaryDescription.size() > secondaryDescription.size()) {
-                int nMatch = 0;
-                for (String secondaryDescription1 : secondaryDescription) {
-                    if (primaryDescription.contains(secondaryDescription1)) {
-                        nMatch++;
+            if (primaryEntry.getNDescriptionTokens() > secondaryEntry.getNDescriptionTokens()) {
+                return secondaryEntry.countCommonTokens(primaryEntry) >= secondaryEntry.getNDescriptionTokens() / 2;
+            } else {
+                return primaryEntry.countCommonTokens(secondaryEntry) >= primaryEntry.getNDescriptionTokens() / 2;
+            }
+        }
+    }
+
+    /**
+     * Runnable simplifying the protein groups of a connected component of the
+     * peptide to protein graph.
+     *
+     * @author Marc Vaudel
+     */
+    private class GroupSimplificationRunnable implements Runnable {
+
+        /**
+         * The peptide to protein graph.
+         */
+        private final PeptideProteinGraph graph;
+        /**
+         * The groups of the component to process.
+         */
+        private final int[] componentGroups;
+        /**
+         * The best subgroup of every processed group, the group itself if none
+         * found.
+         */
+        private final int[] subgroups;
+        /**
+         * The groups explained by a simpler group.
+         */
+        private final boolean[] toDelete;
+        /**
+         * The identification.
+         */
+        private final Identification identification;
+        /**
+         * The identification parameters.
+         */
+        private final IdentificationParameters identificationParameters;
+        /**
+         * The identification features generator.
+         */
+        private final IdentificationFeaturesGenerator identificationFeaturesGenerator;
+        /**
+         * The waiting handler.
+         */
+        private final WaitingHandler waitingHandler;
+        /**
+         * Handler for the exceptions.
+         */
+        private final ExceptionHandler exceptionHandler;
+        /**
+         * Number of groups deleted because of protein evidence issues.
+         */
+        private int evidenceIssue = 0;
+        /**
+         * Number of groups deleted because of enzymatic issues.
+         */
+        private int enzymaticIssue = 0;
+        /**
+         * Number of groups deleted because of protein characterization issues.
+         */
+        private int uncharacterizedIssue = 0;
+        /**
+         * Number of groups deleted because explained by a simpler group.
+         */
+        private int explainedGroup = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param graph the peptide to protein graph
+         * @param componentGroups the groups of the component to process
+         * @param subgroups the best subgroup of every processed group
+         * @param toDelete the groups explained by a simpler group
+         * @param identification the identification
+         * @param identificationParameters the identification parameters
+         * @param identificationFeaturesGenerator the identification features
+         * generator
+         * @param waitingHandler the waiting handler, can be null
+         * @param exceptionHandler handler for exceptions
+         */
+        public GroupSimplificationRunnable(PeptideProteinGraph graph, int[] componentGroups, int[] subgroups, boolean[] toDelete,
+                Identification identification, IdentificationParameters identificationParameters,
+                IdentificationFeaturesGenerator identificationFeaturesGenerator, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+            this.graph = graph;
+            this.componentGroups = componentGroups;
+            this.subgroups = subgroups;
+            this.toDelete = toDelete;
+            this.identification = identification;
+            this.identificationParameters = identificationParameters;
+            this.identificationFeaturesGenerator = identificationFeaturesGenerator;
+            this.waitingHandler = waitingHandler;
+            this.exceptionHandler = exceptionHandler;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int group : componentGroups) {
+                    if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                        return;
+                    }
+                    if (graph.getNGroupAccessions(group) > 1 && subgroups[group] == UNPROCESSED) {
+                        int uniqueGroup = getSubgroup(group);
+                        if (uniqueGroup != NO_SUBGROUP) {
+                            mergeProteinGroups(group, uniqueGroup);
+                            subgroups[group] = uniqueGroup;
+                        } else {
+                            subgroups[group] = group;
+                        }
+                    }
+                    if (waitingHandler != null) {
+                        waitingHandler.increaseSecondaryProgressCounter();
                     }
                 }
-                return nMatch >= secondaryDescription.size() / 2;
-            } else {
-                int nMatch = 0;
-                for (String primaryDescription1 : primaryDescription) {
-                    if (secondaryDescription.contains(primaryDescription1)) {
-                        nMatch++;
+            } catch (Exception e) {
+                if (exceptionHandler != null) {
+                    exceptionHandler.catchException(e);
+                }
+                if (waitingHandler != null) {
+                    waitingHandler.setRunCanceled();
+                }
+            }
+        }
+
+        /**
+         * Returns the best subgroup of a group, NO_SUBGROUP if none found. If
+         * intermediate groups are found they will be processed.
+         *
+         * @param sharedGroup the index of the group to inspect
+         *
+         * @return the best smaller group, NO_SUBGROUP if none found
+         *
+         * @throws IOException exception thrown whenever an error occurred while
+         * reading or writing a file
+         * @throws InterruptedException exception thrown whenever an threading
+         * error occurred
+         * @throws ClassNotFoundException exception thrown whenever an error
+         * occurred while deserializing an object
+         * @throws SQLException exception thrown whenever an error occurred
+         * while interacting with the back-end database
+         */
+        private int getSubgroup(int sharedGroup) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+
+            int nSharedAccessions = graph.getNGroupAccessions(sharedGroup);
+            ArrayList<Integer> candidateUnique = new ArrayList<Integer>(1);
+
+            for (int i = 0; i < nSharedAccessions; i++) {
+                int accession = graph.getGroupAccession(sharedGroup, i);
+                for (int j = 0; j < graph.getNAccessionGroups(accession); j++) {
+                    int uniqueGroup = graph.getAccessionGroup(accession, j);
+                    if (uniqueGroup != sharedGroup
+                            && nSharedAccessions >= graph.getNGroupAccessions(uniqueGroup)
+                            && !toDelete[uniqueGroup]
+                            && graph.isSubgroup(sharedGroup, uniqueGroup)) {
+                        int subGroup = uniqueGroup;
+                        if (graph.getNGroupAccessions(uniqueGroup) > 1 && subgroups[uniqueGroup] == UNPROCESSED) {
+                            int reducedGroup = getSubgroup(uniqueGroup);
+                            if (reducedGroup != NO_SUBGROUP) {
+                                mergeProteinGroups(uniqueGroup, reducedGroup);
+                                subgroups[uniqueGroup] = reducedGroup;
+                                subGroup = reducedGroup;
+                            } else {
+                                subgroups[uniqueGroup] = uniqueGroup;
+                            }
+                        }
+                        if (!candidateUnique.contains(subGroup)) {
+                            candidateUnique.add(subGroup);
+                        }
+                    }
+                }
+            }
+
+            int minimalGroup = NO_SUBGROUP;
+
+            if (!candidateUnique.isEmpty()) {
+                ArrayList<Integer> groups = new ArrayList<Integer>(candidateUnique.size());
+                for (int group : candidateUnique) {
+                    if (!toDelete[group]) {
+                        groups.add(group);
+                    }
+                }
+
+                if (!groups.isEmpty()) {
+                    ProteinMatch match = identification.getProteinMatch(graph.getGroupKey(sharedGroup));
+                    HashMap<String, Integer> preferenceReason = new HashMap<String, Integer>();
+                    for (int group1 : groups) {
+                        for (int i = 0; i < graph.getNGroupAccessions(group1); i++) {
+                            if (minimalGroup == NO_SUBGROUP) {
+                                String accession1 = graph.getAccession(graph.getGroupAccession(group1, i));
+                                preferenceReason = new HashMap<String, Integer>();
+                                boolean best = true;
+                                for (int group2 : groups) {
+                                    if (group1 != group2 && !graph.isSubgroup(group1, group2)) {
+                                        if (graph.shareAccessions(group1, group2)) {
+                                            best = false;
+                                        }
+                                        for (int j = 0; j < graph.getNGroupAccessions(group2); j++) {
+                                            String accession2 = graph.getAccession(graph.getGroupAccession(group2, j));
+                                            int tempPrefernce = compareMainProtein(match, accession2, match, accession1, identificationFeaturesGenerator, identificationParameters);
+                                            if (tempPrefernce != 1) {
+                                                best = false;
+                                            } else {
+                                                if (preferenceReason.containsKey(accession2)) {
+                                                    tempPrefernce = Math.min(preferenceReason.get(accession2), tempPrefernce);
+                                                }
+                                                preferenceReason.put(accession2, tempPrefernce);
+                                            }
+                                        }
+                                    }
+                                }
+                                if (best) {
+                                    for (int j = 0; j < nSharedAccessions; j++) {
+                                        int otherAccession = graph.getGroupAccession(sharedGroup, j);
+                                        if (!graph.containsAccession(group1, otherAccession)) {
+                                            String accession2 = graph.getAccession(otherAccession);
+                                            int tempPrefernce = compareMainProtein(match, accession2, match, accession1, identificationFeaturesGenerator, identificationParameters);
+                                            if (tempPrefernce == 0) {
+                                                best = false;
+                                                break;
+                                            } else {
+                                                if (preferenceReason.containsKey(accession2)) {
+                                                    tempPrefernce = Math.min(preferenceReason.get(accession2), tempPrefernce);
+                                                }
+                                                preferenceReason.put(accession2, tempPrefernce);
+                                            }
+                                        }
+                                    }
+                                    if (best && minimalGroup == NO_SUBGROUP) {
+                                        minimalGroup = group1;
+                                    }
+                                }
+                            } else {
+                                break;
+                            }
+                        }
+                        if (minimalGroup != NO_SUBGROUP) {
+                            for (int group2 : groups) {
+                                if (group2 != minimalGroup && !toDelete[group2]) {
+                                    toDelete[group2] = true;
+                                    for (int reason : preferenceReason.values()) {
+                                        if (reason == 1) {
+                                            enzymaticIssue++;
+                                        }
+                                        if (reason == 2) {
+                                            evidenceIssue++;
+                                        }
+                                        if (reason == 3) {
+                                            uncharacterizedIssue++;
+                                        }
+                                    }
+                                }
+                            }
+                            break;
+                        }
                     }
                 }
-                return nMatch >= primaryDescription.size() / 2;
             }
+
+            return minimalGroup;
+        }
+
+        /**
+         * Puts the peptide of the shared group in the unique group and flags
+         * the shared group for deletion.
+         *
+         * @param sharedGroup the index of the shared group
+         * @param uniqueGroup the index of the unique group
+         *
+         * @throws IOException exception thrown whenever an error occurred while
+         * reading or writing a file
+         * @throws InterruptedException exception thrown whenever an threading
+         * error occurred
+         * @throws ClassNotFoundException exception thrown whenever an error
+         * occurred while deserializing an object
+         * @throws SQLException exception thrown whenever an error occurred
+         * while interacting with the back-end database
+         */
+        private void mergeProteinGroups(int sharedGroup, int uniqueGroup) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+            ProteinInference.this.mergeProteinGroups(identification, graph.getGroupKey(sharedGroup), graph.getGroupKey(uniqueGroup));
+            toDelete[sharedGroup] = true;
+            explainedGroup++;
+        }
+
+        /**
+         * Returns the number of groups deleted because of protein evidence
+         * issues.
+         *
+         * @return the number of groups deleted because of protein evidence
+         * issues
+         */
+        public int getEvidenceIssue() {
+            return evidenceIssue;
+        }
+
+        /**
+         * Returns the number of groups deleted because of enzymatic issues.
+         *
+         * @return the number of groups deleted because of enzymatic issues
+         */
+        public int getEnzymaticIssue() {
+            return enzymaticIssue;
+        }
+
+        /**
+         * Returns the number of groups deleted because of protein
+         * characterization issues.
+         *
+         * @return the number of groups deleted because of protein
+         * characterization issues
+         */
+        public int getUncharacterizedIssue() {
+            return uncharacterizedIssue;
+        }
+
+        /**
+         * Returns the number of groups deleted because explained by a simpler
+         * group.
+         *
+         * @return the number of groups deleted because explained by a simpler
+         * group
+         */
+        public int getExplainedGroup() {
+            return explainedGroup;
         }
     }
 
     /**
-     * Returns the proteins of a group key. Uses
-     * ProteinMatch.getAccessions(groupKey) after checking if the protein group
-     * is in cache. Manages cache update and size.
-     *
-     * @param groupKey the group key of interest
+     * Runnable merging the groups of a connected component of the peptide to
+     * protein graph into their subgroups and flagging the groups which do not
+     * score better than a subgroup.
      *
-     * @return the proteins of a group key
+     * @author Marc Vaudel
      */
-    private ArrayList<String> getProteins(String groupKey) {
-        ArrayList<String> result = proteinGroupCache.get(groupKey);
-        if (result == null) {
-            result = new ArrayList<String>(Arrays.asList(ProteinMatch.getAccessions(groupKey)));
-            if (result.size() > sizeOfProteinsInCache) {
-                proteinGroupCache.put(groupKey, result);
-                if (proteinGroupCache.size() > cacheSize) {
-                    int smallestSize = sizeOfProteinsInCache;
-                    String smallestGroup = null;
-                    for (String key : proteinGroupCache.keySet()) {
-                        ArrayList<String> group = proteinGroupCache.get(key);
-                        if (smallestGroup == null || group.size() < smallestSize) {
-                            smallestGroup = key;
-                            smallestSize = group.size();
+    private class BestScoringGroupRunnable implements Runnable {
+
+        /**
+         * The peptide to protein graph.
+         */
+        private final PeptideProteinGraph graph;
+        /**
+         * The groups of the component to process.
+         */
+        private final int[] componentGroups;
+        /**
+         * The groups which do not score better than a subgroup.
+         */
+        private final boolean[] explainedGroups;
+        /**
+         * The identification.
+         */
+        private final Identification identification;
+        /**
+         * The waiting handler.
+         */
+        private final WaitingHandler waitingHandler;
+        /**
+         * Handler for the exceptions.
+         */
+        private final ExceptionHandler exceptionHandler;
+
+        /**
+         * Constructor.
+         *
+         * @param graph the peptide to protein graph
+         * @param componentGroups the groups of the component to process
+         * @param explainedGroups the groups which do not score better than a
+         * subgroup
+         * @param identification the identification
+         * @param waitingHandler the waiting handler
+         * @param exceptionHandler handler for exceptions
+         */
+        public BestScoringGroupRunnable(PeptideProteinGraph graph, int[] componentGroups, boolean[] explainedGroups,
+                Identification identification, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+            this.graph = graph;
+            this.componentGroups = componentGroups;
+            this.explainedGroups = explainedGroups;
+            this.identification = identification;
+            this.waitingHandler = waitingHandler;
+            this.exceptionHandler = exceptionHandler;
+        }
+
+        @Override
+        public void run() {
+            try {
+                PSParameter psParameter = new PSParameter();
+                HashSet<Integer> inspectedGroups = new HashSet<Integer>();
+                for (int sharedGroup : componentGroups) {
+
+                    if (waitingHandler.isRunCanceled()) {
+                        return;
+                    }
+
+                    int nSharedAccessions = graph.getNGroupAccessions(sharedGroup);
+
+                    if (nSharedAccessions > 1) {
+
+                        String proteinSharedKey = graph.getGroupKey(sharedGroup);
+                        psParameter = (PSParameter) identification.getProteinMatchParameter(proteinSharedKey, psParameter);
+                        double sharedProteinProbabilityScore = psParameter.getProteinProbabilityScore();
+                        boolean better = false;
+                        inspectedGroups.clear();
+
+                        for (int i = 0; i < nSharedAccessions; i++) {
+                            int accession = graph.getGroupAccession(sharedGroup, i);
+                            for (int j = 0; j < graph.getNAccessionGroups(accession); j++) {
+                                int uniqueGroup = graph.getAccessionGroup(accession, j);
+                                if (uniqueGroup != sharedGroup && !inspectedGroups.contains(uniqueGroup)) {
+                                    inspectedGroups.add(uniqueGroup);
+                                    if (graph.isSubgroup(sharedGroup, uniqueGroup)) {
+                                        String proteinUniqueKey = graph.getGroupKey(uniqueGroup);
+                                        psParameter = (PSParameter) identification.getProteinMatchParameter(proteinUniqueKey, psParameter);
+                                        double uniqueProteinProbabilityScore = psParameter.getProteinProbabilityScore();
+                                        ProteinMatch proteinUnique = identification.getProteinMatch(proteinUniqueKey);
+                                        ProteinMatch proteinShared = identification.getProteinMatch(proteinSharedKey);
+                                        for (String sharedPeptideKey : proteinShared.getPeptideMatchesKeys()) {
+                                            proteinUnique.addPeptideMatchKey(sharedPeptideKey);
+                                        }
+                                        identification.updateProteinMatch(proteinUnique);
+                                        if (uniqueProteinProbabilityScore <= sharedProteinProbabilityScore) {
+                                            better = true;
+                                        }
+                                    }
+                                }
+                            }
+                        }
+
+                        if (better) {
+                            explainedGroups[sharedGroup] = true;
+                        } else {
+                            waitingHandler.increaseSecondaryProgressCounter();
                         }
                     }
-                    proteinGroupCache.remove(smallestGroup);
-                    sizeOfProteinsInCache = smallestSize;
                 }
+            } catch (Exception e) {
+                exceptionHandler.catchException(e);
+                waitingHandler.setRunCanceled();
             }
         }
-        return result;
     }
 
     /**
-     * Clears the cache.
+     * Runnable computing the minimal protein set of a connected component of
+     * the protein graph, flagging the groups without retained protein and
+     * merging the groups into the group made of their retained proteins.
+     *
+     * @author Marc Vaudel
      */
-    private void clearCache() {
-        proteinGroupCache.clear();
-        sizeOfProteinsInCache = 10;
+    private class ParsimonyRunnable implements Runnable {
+
+        /**
+         * The peptide to protein graph.
+         */
+        private final PeptideProteinGraph graph;
+        /**
+         * The solver for the minimal protein set.
+         */
+        private final ParsimonySolver parsimonySolver;
+        /**
+         * The groups of the component to process.
+         */
+        private final int[] componentGroups;
+        /**
+         * The accessions retained in the minimal protein set.
+         */
+        private final boolean[] selected;
+        /**
+         * The groups explained by the minimal protein set, to be removed.
+         */
+        private final boolean[] toDelete;
+        /**
+         * The identification.
+         */
+        private final Identification identification;
+        /**
+         * The waiting handler.
+         */
+        private final WaitingHandler waitingHandler;
+        /**
+         * Handler for the exceptions.
+         */
+        private final ExceptionHandler exceptionHandler;
+
+        /**
+         * Constructor.
+         *
+         * @param graph the peptide to protein graph
+         * @param parsimonySolver the solver for the minimal protein set
+         * @param componentGroups the groups of the component to process
+         * @param selected the accessions retained in the minimal protein set
+         * @param toDelete the groups explained by the minimal protein set, to
+         * be removed
+         * @param identification the identification
+         * @param waitingHandler the waiting handler, can be null
+         * @param exceptionHandler handler for exceptions
+         */
+        public ParsimonyRunnable(PeptideProteinGraph graph, ParsimonySolver parsimonySolver, int[] componentGroups, boolean[] selected,
+                boolean[] toDelete, Identification identification, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+            this.graph = graph;
+            this.parsimonySolver = parsimonySolver;
+            this.componentGroups = componentGroups;
+            this.selected = selected;
+            this.toDelete = toDelete;
+            this.identification = identification;
+            this.waitingHandler = waitingHandler;
+            this.exceptionHandler = exceptionHandler;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int accession : parsimonySolver.solve(componentGroups)) {
+                    selected[accession] = true;
+                }
+                for (int group : componentGroups) {
+                    if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                        return;
+                    }
+                    int nRetained = getNRetained(group);
+                    if (nRetained == 0) {
+                        // the peptides of the group are all found in groups with a retained protein
+                        toDelete[group] = true;
+                    } else if (nRetained < graph.getNGroupAccessions(group)) {
+                        int minimalGroup = getMinimalGroup(group, nRetained);
+                        if (minimalGroup != NO_SUBGROUP) {
+                            mergeProteinGroups(identification, graph.getGroupKey(group), graph.getGroupKey(minimalGroup));
+                            toDelete[group] = true;
+                        }
+                    }
+                    if (waitingHandler != null) {
+                        waitingHandler.increaseSecondaryProgressCounter();
+                    }
+                }
+            } catch (Exception e) {
+                if (exceptionHandler != null) {
+                    exceptionHandler.catchException(e);
+                }
+                if (waitingHandler != null) {
+                    waitingHandler.setRunCanceled();
+                }
+            }
+        }
+
+        /**
+         * Returns the number of accessions of the group retained in the
+         * minimal protein set.
+         *
+         * @param group the index of the group
+         *
+         * @return the number of retained accessions
+         */
+        private int getNRetained(int group) {
+            int nRetained = 0;
+            for (int i = 0; i < graph.getNGroupAccessions(group); i++) {
+                if (selected[graph.getGroupAccession(group, i)]) {
+                    nRetained++;
+                }
+            }
+            return nRetained;
+        }
+
+        /**
+         * Returns the subgroup made of the accessions of the group retained in
+         * the minimal protein set, NO_SUBGROUP if no such group exists.
+         *
+         * @param group the index of the group
+         * @param nSelected the number of accessions of the group retained,
+         * must be positive
+         *
+         * @return the subgroup made of the retained accessions
+         */
+        private int getMinimalGroup(int group, int nSelected) {
+
+            int firstSelected = -1;
+            for (int i = 0; i < graph.getNGroupAccessions(group) && firstSelected == -1; i++) {
+                int accession = graph.getGroupAccession(group, i);
+                if (selected[accession]) {
+                    firstSelected = accession;
+                }
+            }
+
+            for (int i = 0; i < graph.getNAccessionGroups(firstSelected); i++) {
+                int subgroup = graph.getAccessionGroup(firstSelected, i);
+                if (subgroup != group
+                        && graph.getNGroupAccessions(subgroup) == nSelected
+                        && graph.isSubgroup(group, subgroup)) {
+                    boolean allSelected = true;
+                    for (int j = 0; j < nSelected; j++) {
+                        if (!selected[graph.getGroupAccession(subgroup, j)]) {
+                            allSelected = false;
+                            break;
+                        }
+                    }
+                    if (allSelected) {
+                        return subgroup;
+                    }
+                }
+            }
+            return NO_SUBGROUP;
+        }
     }
 }
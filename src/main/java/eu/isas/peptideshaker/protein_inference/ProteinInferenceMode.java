@@ -0,0 +1,86 @@
+package eu.isas.peptideshaker.protein_inference;
+
+/**
+ * Enum listing the implemented protein inference modes.
+ *
+ * @author Marc Vaudel
+ */
+public enum ProteinInferenceMode {
+
+    peptideshaker(0, "PeptideShaker"),
+    parsimony(1, "Parsimony");
+    /**
+     * The index of this mode.
+     */
+    private int index;
+    /**
+     * The name of this mode.
+     */
+    private String name;
+
+    /**
+     * Constructor.
+     *
+     * @param index the index of this mode
+     * @param name the name of this mode
+     */
+    private ProteinInferenceMode(int index, String name) {
+        this.index = index;
+        this.name = name;
+    }
+
+    /**
+     * Returns the index of this mode.
+     *
+     * @return the index of this mode
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the name of this mode.
+     *
+     * @return the name of this mode
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+
+    /**
+     * Returns the mode corresponding to the given index, null if not found.
+     *
+     * @param index the index of the mode
+     *
+     * @return the mode corresponding to the given index
+     */
+    public static ProteinInferenceMode getProteinInferenceMode(int index) {
+        for (ProteinInferenceMode mode : values()) {
+            if (mode.getIndex() == index) {
+                return mode;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a command line description of the modes.
+     *
+     * @return a command line description of the modes
+     */
+    public static String getCommandLineDescription() {
+        StringBuilder description = new StringBuilder();
+        for (ProteinInferenceMode mode : values()) {
+            if (description.length() > 0) {
+                description.append(", ");
+            }
+            description.append(mode.getIndex()).append(": ").append(mode.getName());
+        }
+        return description.toString();
+    }
+}
@@ -55,6 +55,15 @@ public class ProteinMap implements Serializable {
         proteinMatchMap.put(probabilityScore, isDecoy);
     }
 
+    /**
+     * Adds all the points of another protein map.
+     *
+     * @param otherProteinMap the other protein map
+     */
+    public void addAll(ProteinMap otherProteinMap) {
+        proteinMatchMap.addAll(otherProteinMap.getTargetDecoyMap());
+    }
+
     /**
      * Removes a point in the target/decoy map. Note: it is necessary to run
      * cleanUp() afterwards to clean up the map.
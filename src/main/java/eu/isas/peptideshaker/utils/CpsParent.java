@@ -116,6 +116,26 @@ public class CpsParent extends UserPreferencesParent {
      * The currently loaded cps file.
      */
     protected File cpsFile = null;
+    /**
+     * The cps file the database folder was last loaded from or saved to, null
+     * if none.
+     */
+    private File savedCpsFile = null;
+    /**
+     * Indicates whether the identification features cache saved in the
+     * project still needs to be loaded.
+     */
+    private boolean identificationFeaturesCachePending = false;
+    /**
+     * The statistics on the resources used by the processing phases and the
+     * saving of the project.
+     */
+    protected ProcessingStatistics processingStatistics = new ProcessingStatistics();
+    /**
+     * Indicates whether the processing statistics are written next to the cps
+     * file when saving the project.
+     */
+    private boolean processingStatisticsJson = true;
     /**
      * The name of the table to use to store PeptideShaker experiment settings.
      */
@@ -201,6 +221,33 @@ public class CpsParent extends UserPreferencesParent {
      * thrown whenever an error occurs while untaring the file
      */
     public void loadCpsFile(File dbFolder, WaitingHandler waitingHandler) throws IOException, ClassNotFoundException, SQLException, InterruptedException, ArchiveException {
+        loadCpsFile(dbFolder, waitingHandler, false);
+    }
+
+    /**
+     * Loads the information from a cps file. In lazy mode, the identification
+     * features cache is not deserialized, allowing to quickly open a project
+     * for tasks which do not need it. It can be loaded later using
+     * loadIdentificationFeaturesCache. Projects saved with the cache embedded
+     * in the settings are always loaded entirely.
+     *
+     * @param dbFolder the folder where to untar the project
+     * @param waitingHandler a waiting handler displaying feedback to the user.
+     * Ignored if null
+     * @param lazy if true the identification features cache is not loaded
+     *
+     * @throws IOException thrown of IOException occurs exception thrown
+     * whenever an error occurred while reading or writing a file
+     * @throws SQLException thrown of SQLException occurs exception thrown
+     * whenever an error occurred while interacting with the database
+     * @throws java.lang.ClassNotFoundException exception thrown whenever an
+     * error occurred while deserializing an object
+     * @throws java.lang.InterruptedException exception thrown whenever a
+     * threading error occurred while saving the project
+     * @throws org.apache.commons.compress.archivers.ArchiveException exception
+     * thrown whenever an error occurs while untaring the file
+     */
+    public void loadCpsFile(File dbFolder, WaitingHandler waitingHandler, boolean lazy) throws IOException, ClassNotFoundException, SQLException, InterruptedException, ArchiveException {
 
         CpsFileImporter cpsFileImporter = new CpsFileImporter(cpsFile, dbFolder, waitingHandler);
 
@@ -208,6 +255,7 @@ public class CpsParent extends UserPreferencesParent {
         if (identification != null) {
             identification.close();
         }
+        processingStatistics = new ProcessingStatistics();
 
         // Get the experiment data
         experiment = cpsFileImporter.getExperiment();
@@ -276,6 +324,13 @@ public class CpsParent extends UserPreferencesParent {
         if (identificationFeaturesCache != null) {
             identificationFeaturesGenerator.setIdentificationFeaturesCache(experimentSettings.getIdentificationFeaturesCache());
             identificationFeaturesCache.setReadOnly(false);
+            identificationFeaturesCache.setModified(true); // saved separately from now on
+            identificationFeaturesCachePending = false;
+        } else {
+            identificationFeaturesCachePending = true;
+            if (!lazy) {
+                loadIdentificationFeaturesCache();
+            }
         }
 
         if (waitingHandler != null && waitingHandler.isRunCanceled()) {
@@ -283,13 +338,38 @@ public class CpsParent extends UserPreferencesParent {
             return;
         }
 
+        savedCpsFile = cpsFile;
+
         loadUserPreferences();
         userPreferences.addRecentProject(cpsFile);
         saveUserPreferences();
     }
 
     /**
-     * Saves the project in the cps file.
+     * Loads the identification features cache of the project if it was not
+     * loaded when opening the project.
+     *
+     * @throws SQLException exception thrown whenever an error occurred while
+     * querying the database
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the database
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing the cache
+     * @throws InterruptedException exception thrown whenever a threading
+     * issue occurred while querying the database
+     */
+    public void loadIdentificationFeaturesCache() throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+        if (identificationFeaturesCachePending) {
+            identificationFeaturesGenerator.loadIdentificationFeaturesCache(identification.getIdentificationDB().getObjectsDB());
+            identificationFeaturesCachePending = false;
+        }
+    }
+
+    /**
+     * Saves the project in the cps file. If the project was loaded from or
+     * last saved to the same file, only the changes are saved, otherwise the
+     * file is written entirely. Unless disabled, the processing statistics are
+     * written next to the cps file.
      *
      * @param waitingHandler waiting handler displaying feedback to the user.
      * can be null.
@@ -307,10 +387,23 @@ public class CpsParent extends UserPreferencesParent {
      * threading error occurred while saving the project
      */
     public void saveProject(WaitingHandler waitingHandler, boolean emptyCache) throws IOException, SQLException, ArchiveException, ClassNotFoundException, InterruptedException {
-        CpsExporter.saveAs(cpsFile, waitingHandler, experiment, identification, shotgunProtocol, identificationParameters,
-                spectrumCountingPreferences, projectDetails, filterPreferences, metrics, geneMaps,
-                identificationFeaturesGenerator.getIdentificationFeaturesCache(),
-                objectsCache, emptyCache, displayPreferences, dbFolder);
+        loadIdentificationFeaturesCache(); // otherwise the saved cache would be replaced by an empty one
+        boolean incremental = cpsFile.equals(savedCpsFile);
+        PhaseStatistics savingStatistics = processingStatistics.startPhase("Saving");
+        try {
+            CpsExporter.saveAs(cpsFile, waitingHandler, experiment, identification, shotgunProtocol, identificationParameters,
+                    spectrumCountingPreferences, projectDetails, filterPreferences, metrics, geneMaps,
+                    identificationFeaturesGenerator.getIdentificationFeaturesCache(),
+                    objectsCache, emptyCache, displayPreferences, dbFolder, incremental);
+        } finally {
+            processingStatistics.endPhase(savingStatistics, identification.getSpectrumIdentificationSize());
+        }
+        if (waitingHandler == null || !waitingHandler.isRunCanceled()) {
+            savedCpsFile = cpsFile;
+            if (processingStatisticsJson) {
+                processingStatistics.writeJson(ProcessingStatistics.getStatisticsFile(cpsFile));
+            }
+        }
 
         loadUserPreferences();
         userPreferences.addRecentProject(cpsFile);
@@ -619,6 +712,7 @@ public class CpsParent extends UserPreferencesParent {
      */
     public void setIdentificationFeaturesGenerator(IdentificationFeaturesGenerator identificationFeaturesGenerator) {
         this.identificationFeaturesGenerator = identificationFeaturesGenerator;
+        identificationFeaturesCachePending = false;
     }
 
     /**
@@ -669,6 +763,38 @@ public class CpsParent extends UserPreferencesParent {
         this.objectsCache = objectsCache;
     }
 
+    /**
+     * Returns the statistics on the resources used by the processing phases
+     * and the saving of the project.
+     *
+     * @return the processing statistics
+     */
+    public ProcessingStatistics getProcessingStatistics() {
+        return processingStatistics;
+    }
+
+    /**
+     * Sets the statistics on the resources used by the processing phases, for
+     * instance the statistics of the PeptideShaker instance which created the
+     * project.
+     *
+     * @param processingStatistics the processing statistics
+     */
+    public void setProcessingStatistics(ProcessingStatistics processingStatistics) {
+        this.processingStatistics = processingStatistics;
+    }
+
+    /**
+     * Sets whether the processing statistics should be written next to the
+     * cps file when saving the project.
+     *
+     * @param processingStatisticsJson a boolean indicating whether the
+     * processing statistics should be written next to the cps file
+     */
+    public void setProcessingStatisticsJson(boolean processingStatisticsJson) {
+        this.processingStatisticsJson = processingStatisticsJson;
+    }
+
     /**
      * Sets the filter preferences.
      *
@@ -745,6 +871,7 @@ public class CpsParent extends UserPreferencesParent {
      */
     public void resetIdentificationFeaturesGenerator() {
         identificationFeaturesGenerator = new IdentificationFeaturesGenerator(identification, identificationParameters, metrics, spectrumCountingPreferences);
+        identificationFeaturesCachePending = false;
     }
 
     /**
@@ -0,0 +1,1119 @@
+package eu.isas.peptideshaker.utils;
+
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Indexed container for cpsx files. The content of every file is split in
+ * blocks which are compressed independently in parallel. An index at the end
+ * of the container gives the position of every block, so that entries can be
+ * extracted in parallel or individually without scanning the container.
+ *
+ * The container is organized as follows: the magic number, the compressed
+ * blocks, the index, the position of the index, and the magic number again.
+ * The container can be updated by appending the blocks which
+ * changed followed by a new index, the latest index being the one at the end
+ * of the file. Unchanged blocks are recognized by their SHA-256 digest, the
+ * CRC32 checksum of the blocks is used to verify their integrity when
+ * extracting.
+ *
+ * @author Marc Vaudel
+ */
+public class CpsxArchive {
+
+    /**
+     * The magic number identifying the container, used as header and
+     * trailer.
+     */
+    private static final byte[] MAGIC = {'P', 'S', 'C', 'P', 'S', 'X', '0', '1'};
+    /**
+     * The algorithm used to compute the digest of the blocks.
+     */
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    /**
+     * The length of the digest of the blocks in bytes.
+     */
+    private static final int DIGEST_LENGTH = 32;
+    /**
+     * The size of the uncompressed blocks in bytes.
+     */
+    private static final int BLOCK_SIZE = 4 * 1024 * 1024;
+    /**
+     * The size of the trailer: the position of the index and the magic
+     * number.
+     */
+    private static final int TRAILER_SIZE = 8 + MAGIC.length;
+    /**
+     * Files last modified at least this number of milliseconds before the
+     * container was written and not modified since are not read again when
+     * updating the container.
+     */
+    private static final long MODIFICATION_TIME_MARGIN = 2000;
+
+    /**
+     * Empty constructor, all methods are static.
+     */
+    private CpsxArchive() {
+    }
+
+    /**
+     * Indicates whether the given file is an indexed cpsx container. Returns
+     * false for the tar based cpsx files.
+     *
+     * @param file the file to inspect
+     *
+     * @return a boolean indicating whether the given file is an indexed cpsx
+     * container
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the file
+     */
+    public static boolean isCpsxArchive(File file) throws IOException {
+        if (!file.exists() || file.length() < MAGIC.length + TRAILER_SIZE) {
+            return false;
+        }
+        byte[] header = new byte[MAGIC.length];
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            raf.readFully(header);
+        } finally {
+            raf.close();
+        }
+        return Arrays.equals(header, MAGIC);
+    }
+
+    /**
+     * Archives the content of a folder in the given destination file.
+     *
+     * @param folder the folder to archive
+     * @param destinationFile the destination file
+     * @param exceptions the absolute path of the files to exclude
+     * @param nThreads the number of threads to use for the compression
+     * @param waitingHandler a waiting handler displaying progress and allowing
+     * canceling the process, can be null
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file
+     * @throws InterruptedException exception thrown whenever a threading
+     * error occurred while compressing the files
+     */
+    public static void archive(File folder, File destinationFile, HashSet<String> exceptions, int nThreads, WaitingHandler waitingHandler)
+            throws IOException, InterruptedException {
+        write(folder, destinationFile, exceptions, nThreads, waitingHandler, null);
+    }
+
+    /**
+     * Updates the given container with the content of a folder. Only the
+     * blocks which changed since the container was written are appended,
+     * followed by a new index. The container is rewritten entirely if it is
+     * not an indexed container, if its index does not contain the digest of
+     * the blocks, or if the space used by outdated blocks exceeds the space
+     * used by the current blocks.
+     *
+     * @param folder the folder to archive
+     * @param archive the container to update
+     * @param exceptions the absolute path of the files to exclude
+     * @param nThreads the number of threads to use for the compression
+     * @param waitingHandler a waiting handler displaying progress and allowing
+     * canceling the process, can be null
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file
+     * @throws InterruptedException exception thrown whenever a threading
+     * error occurred while compressing the files
+     */
+    public static void update(File folder, File archive, HashSet<String> exceptions, int nThreads, WaitingHandler waitingHandler)
+            throws IOException, InterruptedException {
+
+        Index previousIndex = null;
+        if (isCpsxArchive(archive)) {
+            try {
+                previousIndex = readIndex(archive);
+            } catch (IOException e) {
+                // corrupted index, the container is rewritten
+            }
+        }
+        if (previousIndex == null || previousIndex.getDeadSpace() > previousIndex.getLiveSpace()) {
+            archive(folder, archive, exceptions, nThreads, waitingHandler);
+        } else {
+            write(folder, archive, exceptions, nThreads, waitingHandler, previousIndex);
+        }
+    }
+
+    /**
+     * Extracts a single entry of the container.
+     *
+     * @param archive the container
+     * @param entryName the name of the entry, relative path separated by '/'
+     * @param destinationFile the file where to write the entry
+     *
+     * @return a boolean indicating whether the entry was found
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file
+     */
+    public static boolean extractEntry(File archive, String entryName, File destinationFile) throws IOException {
+        Index index = readIndex(archive);
+        for (Entry entry : index.entries) {
+            if (entry.name.equals(entryName) && !entry.directory) {
+                RandomAccessFile source = new RandomAccessFile(archive, "r");
+                try {
+                    FileChannel channel = source.getChannel();
+                    RandomAccessFile destination = new RandomAccessFile(destinationFile, "rw");
+                    try {
+                        destination.setLength(entry.length);
+                        for (int i = 0; i < entry.getNBlocks(); i++) {
+                            destination.write(readBlock(channel, entry, i));
+                        }
+                    } finally {
+                        destination.close();
+                    }
+                } finally {
+                    source.close();
+                }
+                if (entry.lastModified > 0) {
+                    destinationFile.setLastModified(entry.lastModified);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Extracts the content of the container in the given folder. The blocks
+     * are decompressed and written in parallel.
+     *
+     * @param archive the container
+     * @param destinationFolder the folder where to extract the content
+     * @param nThreads the number of threads to use for the decompression
+     * @param waitingHandler a waiting handler displaying progress and allowing
+     * canceling the process, can be null
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file, or if an entry would be extracted outside of
+     * the destination folder
+     * @throws InterruptedException exception thrown whenever a threading
+     * error occurred while decompressing the files
+     */
+    public static void extract(File archive, File destinationFolder, int nThreads, WaitingHandler waitingHandler)
+            throws IOException, InterruptedException {
+        extract(archive, destinationFolder, null, nThreads, waitingHandler);
+    }
+
+    /**
+     * Extracts the content of the container in the given folder except for
+     * the given entries. The blocks are decompressed and written in parallel.
+     *
+     * @param archive the container
+     * @param destinationFolder the folder where to extract the content
+     * @param exceptions the names of the entries not to extract, can be null
+     * @param nThreads the number of threads to use for the decompression
+     * @param waitingHandler a waiting handler displaying progress and allowing
+     * canceling the process, can be null
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file, or if an entry would be extracted outside of
+     * the destination folder
+     * @throws InterruptedException exception thrown whenever a threading
+     * error occurred while decompressing the files
+     */
+    public static void extract(File archive, File destinationFolder, HashSet<String> exceptions, int nThreads, WaitingHandler waitingHandler)
+            throws IOException, InterruptedException {
+
+        Index index = readIndex(archive);
+        ArrayList<Entry> entries = new ArrayList<Entry>(index.entries.size());
+        ArrayList<File> files = new ArrayList<File>(index.entries.size());
+        for (Entry entry : index.entries) {
+            if (exceptions == null || !exceptions.contains(entry.name)) {
+                entries.add(entry);
+                files.add(getDestinationFile(destinationFolder, entry.name));
+            }
+        }
+
+        // create the folders and files
+        int totalBlocks = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            File file = files.get(i);
+            if (entry.directory) {
+                file.mkdirs();
+            } else {
+                File parent = file.getParentFile();
+                if (parent != null) {
+                    parent.mkdirs();
+                }
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try {
+                    raf.setLength(entry.length);
+                } finally {
+                    raf.close();
+                }
+                totalBlocks += entry.getNBlocks();
+            }
+        }
+        if (waitingHandler != null) {
+            waitingHandler.resetSecondaryProgressCounter();
+            waitingHandler.setMaxSecondaryProgressCounter(totalBlocks);
+        }
+
+        RandomAccessFile source = new RandomAccessFile(archive, "r");
+        ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+        try {
+            FileChannel channel = source.getChannel();
+            ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>(totalBlocks);
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                for (int j = 0; j < entry.getNBlocks(); j++) {
+                    futures.add(pool.submit(new BlockExtractor(channel, entry, j, files.get(i), waitingHandler)));
+                }
+            }
+            for (Future<Object> future : futures) {
+                getResult(future);
+                if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                    return;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            source.close();
+        }
+
+        // restore the modification times so that unchanged files are not read again when updating the container
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (!entry.directory && entry.lastModified > 0) {
+                files.get(i).setLastModified(entry.lastModified);
+            }
+        }
+    }
+
+    /**
+     * Returns the file where an entry should be extracted. Entries with an
+     * absolute path or navigating to a parent folder are rejected so that
+     * nothing is written outside of the destination folder.
+     *
+     * @param destinationFolder the folder where to extract the content
+     * @param entryName the name of the entry
+     *
+     * @return the file where to extract the entry
+     *
+     * @throws IOException exception thrown whenever the entry would be
+     * extracted outside of the destination folder
+     */
+    private static File getDestinationFile(File destinationFolder, String entryName) throws IOException {
+        if (entryName.startsWith("/") || entryName.startsWith("\\") || new File(entryName).isAbsolute()) {
+            throw new IOException("Invalid entry " + entryName + " in cpsx container.");
+        }
+        for (String part : entryName.split("[/\\\\]")) {
+            if (part.equals("..")) {
+                throw new IOException("Invalid entry " + entryName + " in cpsx container.");
+            }
+        }
+        File file = new File(destinationFolder, entryName);
+        String folderPath = destinationFolder.getCanonicalPath() + File.separator;
+        if (!file.getCanonicalPath().startsWith(folderPath)) {
+            throw new IOException("Invalid entry " + entryName + " in cpsx container.");
+        }
+        return file;
+    }
+
+    /**
+     * Writes the content of a folder in a container. A new container is
+     * written in a temporary file which replaces the destination file once
+     * complete, an updated container is truncated to its previous length if
+     * the update does not complete.
+     *
+     * @param folder the folder to archive
+     * @param destinationFile the destination file
+     * @param exceptions the absolute path of the files to exclude
+     * @param nThreads the number of threads to use for the compression
+     * @param waitingHandler a waiting handler displaying progress and allowing
+     * canceling the process, can be null
+     * @param previousIndex the index of the container to update, null to
+     * write a new container
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file
+     * @throws InterruptedException exception thrown whenever a threading
+     * error occurred while compressing the files
+     */
+    private static void write(File folder, File destinationFile, HashSet<String> exceptions, int nThreads, WaitingHandler waitingHandler, Index previousIndex)
+            throws IOException, InterruptedException {
+
+        long archiveTime = System.currentTimeMillis();
+        ArrayList<Entry> entries = new ArrayList<Entry>();
+        ArrayList<File> files = new ArrayList<File>();
+        listContent(folder, "", exceptions, entries, files);
+
+        HashMap<String, Entry> previousEntries = new HashMap<String, Entry>();
+        if (previousIndex != null) {
+            for (Entry entry : previousIndex.entries) {
+                previousEntries.put(entry.name, entry);
+            }
+        }
+
+        long totalBlocks = 0;
+        for (Entry entry : entries) {
+            totalBlocks += entry.getNBlocks();
+        }
+        if (waitingHandler != null) {
+            waitingHandler.resetSecondaryProgressCounter();
+            waitingHandler.setMaxSecondaryProgressCounter((int) Math.min(totalBlocks, Integer.MAX_VALUE));
+        }
+
+        long initialLength = previousIndex == null ? 0 : destinationFile.length();
+        File outputFile = previousIndex == null ? File.createTempFile(destinationFile.getName(), ".tmp", destinationFile.getAbsoluteFile().getParentFile()) : destinationFile;
+        boolean success = false;
+        ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile, previousIndex != null), 1024 * 1024));
+
+        try {
+            long offset = initialLength;
+            if (previousIndex == null) {
+                output.write(MAGIC);
+                offset = MAGIC.length;
+            }
+            LinkedList<PendingBlock> pendingBlocks = new LinkedList<PendingBlock>();
+            int maxPendingBlocks = 2 * nThreads;
+
+            for (int i = 0; i < entries.size(); i++) {
+
+                Entry entry = entries.get(i);
+                File file = files.get(i);
+
+                if (entry.directory) {
+                    continue;
+                }
+
+                Entry previousEntry = previousEntries.get(entry.name);
+                if (previousEntry != null && previousEntry.isUnchanged(entry, previousIndex.archiveTime)) {
+                    entry.copyBlocks(previousEntry);
+                    if (waitingHandler != null) {
+                        waitingHandler.increaseSecondaryProgressCounter(entry.getNBlocks());
+                    }
+                    continue;
+                }
+
+                FileInputStream input = new FileInputStream(file);
+                try {
+                    long remaining = entry.length;
+                    for (int blockIndex = 0; remaining > 0; blockIndex++) {
+                        int blockLength = (int) Math.min(remaining, BLOCK_SIZE);
+                        byte[] block = new byte[blockLength];
+                        readFully(input, block);
+                        remaining -= blockLength;
+                        int checksum = getChecksum(block);
+                        // the checksum is a cheap pre-filter, only the digest identifies an unchanged block
+                        if (previousEntry != null && previousEntry.hasBlock(blockIndex, blockLength, checksum)
+                                && Arrays.equals(previousEntry.digests[blockIndex], getDigest(block))) {
+                            entry.copyBlock(previousEntry, blockIndex);
+                            if (waitingHandler != null) {
+                                waitingHandler.increaseSecondaryProgressCounter();
+                            }
+                        } else {
+                            Future<CompressedBlock> future = pool.submit(new BlockCompressor(block));
+                            pendingBlocks.add(new PendingBlock(entry, blockIndex, blockLength, checksum, future));
+                            while (pendingBlocks.size() >= maxPendingBlocks) {
+                                offset = writeBlock(pendingBlocks.removeFirst(), output, offset, waitingHandler);
+                            }
+                        }
+                        if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                            return;
+                        }
+                    }
+                } finally {
+                    input.close();
+                }
+            }
+            while (!pendingBlocks.isEmpty()) {
+                offset = writeBlock(pendingBlocks.removeFirst(), output, offset, waitingHandler);
+            }
+
+            // write the index and trailer
+            long indexOffset = offset;
+            output.writeLong(archiveTime);
+            output.writeInt(entries.size());
+            for (Entry entry : entries) {
+                output.writeUTF(entry.name);
+                output.writeBoolean(entry.directory);
+                output.writeLong(entry.length);
+                output.writeLong(entry.lastModified);
+                int nBlocks = entry.getNBlocks();
+                output.writeInt(nBlocks);
+                for (int j = 0; j < nBlocks; j++) {
+                    output.writeLong(entry.blockOffsets[j]);
+                    output.writeInt(entry.compressedLengths[j]);
+                    output.writeInt(entry.uncompressedLengths[j]);
+                    output.writeInt(entry.checksums[j]);
+                    output.write(entry.digests[j]);
+                }
+            }
+            output.writeLong(indexOffset);
+            output.write(MAGIC);
+            output.flush();
+            success = true;
+
+        } finally {
+            pool.shutdownNow();
+            output.close();
+            if (!success) {
+                if (previousIndex != null) {
+                    // remove the incomplete update so that the previous index remains at the end of the file
+                    RandomAccessFile raf = new RandomAccessFile(destinationFile, "rw");
+                    try {
+                        raf.setLength(initialLength);
+                    } finally {
+                        raf.close();
+                    }
+                } else {
+                    outputFile.delete();
+                }
+            }
+        }
+
+        if (previousIndex == null) {
+            if (destinationFile.exists() && !destinationFile.delete()) {
+                outputFile.delete();
+                throw new IOException("Impossible to replace " + destinationFile.getAbsolutePath() + ".");
+            }
+            if (!outputFile.renameTo(destinationFile)) {
+                throw new IOException("Impossible to move " + outputFile.getAbsolutePath() + " to " + destinationFile.getAbsolutePath() + ".");
+            }
+        }
+    }
+
+    /**
+     * Lists the content of a folder recursively.
+     *
+     * @param folder the folder
+     * @param prefix the prefix of the entries names
+     * @param exceptions the absolute path of the files to exclude
+     * @param entries the list where to add the entries
+     * @param files the list where to add the files corresponding to the
+     * entries
+     */
+    private static void listContent(File folder, String prefix, HashSet<String> exceptions, ArrayList<Entry> entries, ArrayList<File> files) {
+        File[] children = folder.listFiles();
+        if (children == null) {
+            return;
+        }
+        ArrayList<File> sortedChildren = new ArrayList<File>(Arrays.asList(children));
+        Collections.sort(sortedChildren);
+        for (File child : sortedChildren) {
+            if (exceptions != null && exceptions.contains(child.getAbsolutePath())) {
+                continue;
+            }
+            String name = prefix + child.getName();
+            if (child.isDirectory()) {
+                entries.add(new Entry(name, true, 0, 0));
+                files.add(child);
+                listContent(child, name + "/", exceptions, entries, files);
+            } else {
+                entries.add(new Entry(name, false, child.length(), child.lastModified()));
+                files.add(child);
+            }
+        }
+    }
+
+    /**
+     * Waits for the compression of a block and writes it.
+     *
+     * @param pendingBlock the block
+     * @param output the output stream
+     * @param offset the current offset in the container
+     * @param waitingHandler a waiting handler, can be null
+     *
+     * @return the offset after the block
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the block
+     * @throws InterruptedException exception thrown whenever a threading
+     * error occurred while compressing the block
+     */
+    private static long writeBlock(PendingBlock pendingBlock, DataOutputStream output, long offset, WaitingHandler waitingHandler)
+            throws IOException, InterruptedException {
+        CompressedBlock compressedBlock = getResult(pendingBlock.future);
+        byte[] compressed = compressedBlock.compressed;
+        output.write(compressed);
+        Entry entry = pendingBlock.entry;
+        int blockIndex = pendingBlock.blockIndex;
+        entry.blockOffsets[blockIndex] = offset;
+        entry.compressedLengths[blockIndex] = compressed.length;
+        entry.uncompressedLengths[blockIndex] = pendingBlock.uncompressedLength;
+        entry.checksums[blockIndex] = pendingBlock.checksum;
+        entry.digests[blockIndex] = compressedBlock.digest;
+        if (waitingHandler != null) {
+            waitingHandler.increaseSecondaryProgressCounter();
+        }
+        return offset + compressed.length;
+    }
+
+    /**
+     * Returns the result of a future, rethrowing the exceptions encountered.
+     *
+     * @param <T> the type of result
+     * @param future the future
+     *
+     * @return the result of the future
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * processing a block
+     * @throws InterruptedException exception thrown whenever a threading
+     * error occurred while processing a block
+     */
+    private static <T> T getResult(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("An error occurred while processing the cpsx container.", cause);
+        }
+    }
+
+    /**
+     * Reads the latest index of a container.
+     *
+     * @param archive the container
+     *
+     * @return the index of the container
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the file
+     */
+    private static Index readIndex(File archive) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(archive, "r");
+        try {
+            long length = raf.length();
+            raf.seek(length - TRAILER_SIZE);
+            long indexOffset = raf.readLong();
+            byte[] magic = new byte[MAGIC.length];
+            raf.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC) || indexOffset < MAGIC.length || indexOffset > length - TRAILER_SIZE) {
+                throw new IOException("The file " + archive.getName() + " is not a valid cpsx container.");
+            }
+            byte[] indexBytes = new byte[(int) (length - TRAILER_SIZE - indexOffset)];
+            raf.seek(indexOffset);
+            raf.readFully(indexBytes);
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(indexBytes));
+            long archiveTime = input.readLong();
+            int nEntries = input.readInt();
+            ArrayList<Entry> entries = new ArrayList<Entry>(nEntries);
+            for (int i = 0; i < nEntries; i++) {
+                String name = input.readUTF();
+                boolean directory = input.readBoolean();
+                long entryLength = input.readLong();
+                long lastModified = input.readLong();
+                Entry entry = new Entry(name, directory, entryLength, lastModified);
+                int nBlocks = input.readInt();
+                if (nBlocks != entry.getNBlocks()) {
+                    throw new IOException("The file " + archive.getName() + " is not a valid cpsx container.");
+                }
+                for (int j = 0; j < nBlocks; j++) {
+                    entry.blockOffsets[j] = input.readLong();
+                    entry.compressedLengths[j] = input.readInt();
+                    entry.uncompressedLengths[j] = input.readInt();
+                    entry.checksums[j] = input.readInt();
+                    input.readFully(entry.digests[j]);
+                }
+                entries.add(entry);
+            }
+            return new Index(entries, archiveTime, indexOffset);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads and decompresses a block.
+     *
+     * @param channel the channel of the container, positional reads are thread
+     * safe
+     * @param entry the entry
+     * @param blockIndex the index of the block in the entry
+     *
+     * @return the decompressed block
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the block or if the block is corrupted
+     */
+    private static byte[] readBlock(FileChannel channel, Entry entry, int blockIndex) throws IOException {
+        long position = entry.blockOffsets[blockIndex];
+        byte[] compressed = new byte[entry.compressedLengths[blockIndex]];
+        ByteBuffer buffer = ByteBuffer.wrap(compressed);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of cpsx container.");
+            }
+        }
+        byte[] result = new byte[entry.uncompressedLengths[blockIndex]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < result.length) {
+                int inflated = inflater.inflate(result, length, result.length - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Corrupted block in cpsx container.");
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted block in cpsx container.", e);
+        } finally {
+            inflater.end();
+        }
+        if (getChecksum(result) != entry.checksums[blockIndex]) {
+            throw new IOException("Corrupted block in cpsx container.");
+        }
+        return result;
+    }
+
+    /**
+     * Returns the CRC32 checksum of a block.
+     *
+     * @param block the block
+     *
+     * @return the checksum of the block
+     */
+    private static int getChecksum(byte[] block) {
+        CRC32 crc = new CRC32();
+        crc.update(block);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns the SHA-256 digest of a block.
+     *
+     * @param block the block
+     *
+     * @return the digest of the block
+     */
+    private static byte[] getDigest(byte[] block) {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM).digest(block);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads bytes until the given array is full.
+     *
+     * @param input the input stream
+     * @param block the array to fill
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the stream or if the end of the stream was reached
+     */
+    private static void readFully(FileInputStream input, byte[] block) throws IOException {
+        int length = 0;
+        while (length < block.length) {
+            int read = input.read(block, length, block.length - length);
+            if (read < 0) {
+                throw new IOException("File modified while archiving.");
+            }
+            length += read;
+        }
+    }
+
+    /**
+     * The index of a container.
+     */
+    private static class Index {
+
+        /**
+         * The entries of the container.
+         */
+        private final ArrayList<Entry> entries;
+        /**
+         * The time at which the index was written.
+         */
+        private final long archiveTime;
+        /**
+         * The position of the index in the container.
+         */
+        private final long indexOffset;
+
+        /**
+         * Constructor.
+         *
+         * @param entries the entries of the container
+         * @param archiveTime the time at which the index was written
+         * @param indexOffset the position of the index in the container
+         */
+        public Index(ArrayList<Entry> entries, long archiveTime, long indexOffset) {
+            this.entries = entries;
+            this.archiveTime = archiveTime;
+            this.indexOffset = indexOffset;
+        }
+
+        /**
+         * Returns the number of bytes used by the blocks referenced by the
+         * index.
+         *
+         * @return the number of bytes used by the blocks referenced by the
+         * index
+         */
+        public long getLiveSpace() {
+            long result = 0;
+            for (Entry entry : entries) {
+                for (int i = 0; i < entry.getNBlocks(); i++) {
+                    result += entry.compressedLengths[i];
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the number of bytes used by outdated blocks and indexes
+         * before the index.
+         *
+         * @return the number of bytes used by outdated blocks and indexes
+         */
+        public long getDeadSpace() {
+            return indexOffset - MAGIC.length - getLiveSpace();
+        }
+    }
+
+    /**
+     * An entry of the container.
+     */
+    private static class Entry {
+
+        /**
+         * The name of the entry.
+         */
+        private final String name;
+        /**
+         * Indicates whether the entry is a directory.
+         */
+        private final boolean directory;
+        /**
+         * The uncompressed length of the entry.
+         */
+        private final long length;
+        /**
+         * The last modification time of the file when archived, 0 if not
+         * known.
+         */
+        private final long lastModified;
+        /**
+         * The offset of every block in the container.
+         */
+        private final long[] blockOffsets;
+        /**
+         * The compressed length of every block.
+         */
+        private final int[] compressedLengths;
+        /**
+         * The uncompressed length of every block.
+         */
+        private final int[] uncompressedLengths;
+        /**
+         * The CRC32 checksum of every uncompressed block.
+         */
+        private final int[] checksums;
+        /**
+         * The SHA-256 digest of every uncompressed block.
+         */
+        private final byte[][] digests;
+
+        /**
+         * Constructor.
+         *
+         * @param name the name of the entry
+         * @param directory indicates whether the entry is a directory
+         * @param length the uncompressed length of the entry
+         * @param lastModified the last modification time of the file
+         */
+        public Entry(String name, boolean directory, long length, long lastModified) {
+            this.name = name;
+            this.directory = directory;
+            this.length = length;
+            this.lastModified = lastModified;
+            int nBlocks = (int) ((length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+            blockOffsets = new long[nBlocks];
+            compressedLengths = new int[nBlocks];
+            uncompressedLengths = new int[nBlocks];
+            checksums = new int[nBlocks];
+            digests = new byte[nBlocks][DIGEST_LENGTH];
+        }
+
+        /**
+         * Returns the number of blocks of the entry.
+         *
+         * @return the number of blocks of the entry
+         */
+        public int getNBlocks() {
+            return blockOffsets.length;
+        }
+
+        /**
+         * Indicates whether the given entry of the folder to archive is
+         * unchanged compared to this entry without reading the file: same
+         * length and same modification time, the modification time preceding
+         * the writing of the container by a safe margin.
+         *
+         * @param newEntry the entry of the folder to archive
+         * @param archiveTime the time at which this entry was archived
+         *
+         * @return a boolean indicating whether the new entry is unchanged
+         */
+        public boolean isUnchanged(Entry newEntry, long archiveTime) {
+            return !directory && length == newEntry.length && lastModified > 0
+                    && lastModified == newEntry.lastModified
+                    && lastModified < archiveTime - MODIFICATION_TIME_MARGIN;
+        }
+
+        /**
+         * Indicates whether this entry contains a block with the same length
+         * and checksum as the given block. The block can only be considered
+         * identical if its digest is also identical.
+         *
+         * @param blockIndex the index of the block
+         * @param uncompressedLength the uncompressed length of the block
+         * @param checksum the checksum of the block
+         *
+         * @return a boolean indicating whether this entry contains a block
+         * with the same length and checksum
+         */
+        public boolean hasBlock(int blockIndex, int uncompressedLength, int checksum) {
+            return blockIndex < getNBlocks()
+                    && uncompressedLengths[blockIndex] == uncompressedLength
+                    && checksums[blockIndex] == checksum;
+        }
+
+        /**
+         * Copies the location of a block from another entry.
+         *
+         * @param otherEntry the other entry
+         * @param blockIndex the index of the block
+         */
+        public void copyBlock(Entry otherEntry, int blockIndex) {
+            blockOffsets[blockIndex] = otherEntry.blockOffsets[blockIndex];
+            compressedLengths[blockIndex] = otherEntry.compressedLengths[blockIndex];
+            uncompressedLengths[blockIndex] = otherEntry.uncompressedLengths[blockIndex];
+            checksums[blockIndex] = otherEntry.checksums[blockIndex];
+            digests[blockIndex] = otherEntry.digests[blockIndex];
+        }
+
+        /**
+         * Copies the location of all blocks from another entry with the same
+         * length.
+         *
+         * @param otherEntry the other entry
+         */
+        public void copyBlocks(Entry otherEntry) {
+            for (int i = 0; i < getNBlocks(); i++) {
+                copyBlock(otherEntry, i);
+            }
+        }
+    }
+
+    /**
+     * A block being compressed.
+     */
+    private static class PendingBlock {
+
+        /**
+         * The entry of the block.
+         */
+        private final Entry entry;
+        /**
+         * The index of the block in the entry.
+         */
+        private final int blockIndex;
+        /**
+         * The uncompressed length of the block.
+         */
+        private final int uncompressedLength;
+        /**
+         * The checksum of the uncompressed block.
+         */
+        private final int checksum;
+        /**
+         * The future compressed block.
+         */
+        private final Future<CompressedBlock> future;
+
+        /**
+         * Constructor.
+         *
+         * @param entry the entry of the block
+         * @param blockIndex the index of the block in the entry
+         * @param uncompressedLength the uncompressed length of the block
+         * @param checksum the checksum of the uncompressed block
+         * @param future the future compressed block
+         */
+        public PendingBlock(Entry entry, int blockIndex, int uncompressedLength, int checksum, Future<CompressedBlock> future) {
+            this.entry = entry;
+            this.blockIndex = blockIndex;
+            this.uncompressedLength = uncompressedLength;
+            this.checksum = checksum;
+            this.future = future;
+        }
+    }
+
+    /**
+     * A compressed block and the digest of the uncompressed block.
+     */
+    private static class CompressedBlock {
+
+        /**
+         * The compressed block.
+         */
+        private final byte[] compressed;
+        /**
+         * The SHA-256 digest of the uncompressed block.
+         */
+        private final byte[] digest;
+
+        /**
+         * Constructor.
+         *
+         * @param compressed the compressed block
+         * @param digest the digest of the uncompressed block
+         */
+        public CompressedBlock(byte[] compressed, byte[] digest) {
+            this.compressed = compressed;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * Callable compressing a block and computing its digest.
+     */
+    private static class BlockCompressor implements Callable<CompressedBlock> {
+
+        /**
+         * The block to compress.
+         */
+        private final byte[] block;
+
+        /**
+         * Constructor.
+         *
+         * @param block the block to compress
+         */
+        public BlockCompressor(byte[] block) {
+            this.block = block;
+        }
+
+        @Override
+        public CompressedBlock call() {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(block);
+                deflater.finish();
+                byte[] buffer = new byte[block.length + block.length / 1000 + 64];
+                int length = 0;
+                while (!deflater.finished()) {
+                    if (length == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                    }
+                    length += deflater.deflate(buffer, length, buffer.length - length);
+                }
+                return new CompressedBlock(Arrays.copyOf(buffer, length), getDigest(block));
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Callable decompressing a block in the destination file.
+     */
+    private static class BlockExtractor implements Callable<Object> {
+
+        /**
+         * The channel of the container.
+         */
+        private final FileChannel channel;
+        /**
+         * The entry of the block.
+         */
+        private final Entry entry;
+        /**
+         * The index of the block in the entry.
+         */
+        private final int blockIndex;
+        /**
+         * The destination file.
+         */
+        private final File destinationFile;
+        /**
+         * A waiting handler, can be null.
+         */
+        private final WaitingHandler waitingHandler;
+
+        /**
+         * Constructor.
+         *
+         * @param channel the channel of the container
+         * @param entry the entry of the block
+         * @param blockIndex the index of the block in the entry
+         * @param destinationFile the destination file
+         * @param waitingHandler a waiting handler, can be null
+         */
+        public BlockExtractor(FileChannel channel, Entry entry, int blockIndex, File destinationFile, WaitingHandler waitingHandler) {
+            this.channel = channel;
+            this.entry = entry;
+            this.blockIndex = blockIndex;
+            this.destinationFile = destinationFile;
+            this.waitingHandler = waitingHandler;
+        }
+
+        @Override
+        public Object call() throws IOException {
+            if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                return null;
+            }
+            byte[] block = readBlock(channel, entry, blockIndex);
+            long position = (long) blockIndex * BLOCK_SIZE;
+            RandomAccessFile destination = new RandomAccessFile(destinationFile, "rw");
+            try {
+                destination.seek(position);
+                destination.write(block);
+            } finally {
+                destination.close();
+            }
+            if (waitingHandler != null) {
+                waitingHandler.increaseSecondaryProgressCounter();
+            }
+            return null;
+        }
+    }
+}
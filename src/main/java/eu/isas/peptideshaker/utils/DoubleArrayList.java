@@ -0,0 +1,143 @@
+package eu.isas.peptideshaker.utils;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive doubles avoiding the boxing of the values in
+ * large samples. This class is not thread safe.
+ *
+ * @author Marc Vaudel
+ */
+public class DoubleArrayList {
+
+    /**
+     * The values, only the first size values are set.
+     */
+    private double[] values;
+    /**
+     * The number of values in the list.
+     */
+    private int size = 0;
+
+    /**
+     * Constructor.
+     */
+    public DoubleArrayList() {
+        this(16);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param initialCapacity the initial capacity of the list
+     */
+    public DoubleArrayList(int initialCapacity) {
+        values = new double[Math.max(initialCapacity, 1)];
+    }
+
+    /**
+     * Adds a value to the list.
+     *
+     * @param value the value to add
+     */
+    public void add(double value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, 2 * values.length);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Adds all the values of another list.
+     *
+     * @param otherList the other list
+     */
+    public void addAll(DoubleArrayList otherList) {
+        int newSize = size + otherList.size;
+        if (newSize > values.length) {
+            values = Arrays.copyOf(values, Math.max(newSize, 2 * values.length));
+        }
+        System.arraycopy(otherList.values, 0, values, size, otherList.size);
+        size = newSize;
+    }
+
+    /**
+     * Returns the value at the given index.
+     *
+     * @param index the index
+     *
+     * @return the value at the given index
+     */
+    public double get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size + ".");
+        }
+        return values[index];
+    }
+
+    /**
+     * Returns the number of values in the list.
+     *
+     * @return the number of values in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Indicates whether the list is empty.
+     *
+     * @return a boolean indicating whether the list is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Sorts the values in ascending order.
+     */
+    public void sort() {
+        Arrays.sort(values, 0, size);
+    }
+
+    /**
+     * Returns the values as an array.
+     *
+     * @return the values as an array
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Returns the given percentile of the values, interpolating linearly
+     * between the two closest values. The values must be sorted in ascending
+     * order.
+     *
+     * @param percentile the percentile, between 0 and 1
+     *
+     * @return the percentile of the values
+     */
+    public double getPercentileSorted(double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("Incorrect percentile " + percentile + ", should be between 0 and 1.");
+        }
+        if (size == 0) {
+            throw new IllegalArgumentException("Attempting to estimate the percentile of an empty list.");
+        }
+        double index = percentile * (size - 1);
+        int lowerIndex = (int) index;
+        double rest = index - lowerIndex;
+        if (rest == 0) {
+            return values[lowerIndex];
+        }
+        return values[lowerIndex] + rest * (values[lowerIndex + 1] - values[lowerIndex]);
+    }
+
+    /**
+     * Clears the list.
+     */
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,220 @@
+package eu.isas.peptideshaker.utils;
+
+import java.util.Arrays;
+
+/**
+ * Bounded uniform sample of primitive doubles. Every value is added with the
+ * key of the item it was computed from, the sample keeps the values of the
+ * keys of lowest hash. The sample is thus a pseudo-random sample which does
+ * not depend on the order of the values, and samples built on different
+ * parts of the data can be merged into a sample of the whole data. This
+ * class is not thread safe.
+ *
+ * @author Marc Vaudel
+ */
+public class DoubleReservoir {
+
+    /**
+     * The maximal number of values in the sample.
+     */
+    private final int capacity;
+    /**
+     * The hashes of the keys of the values in the sample, organized as a max
+     * heap.
+     */
+    private long[] hashes;
+    /**
+     * The values of the sample in the order of the hashes.
+     */
+    private double[] values;
+    /**
+     * The number of values in the sample.
+     */
+    private int size = 0;
+    /**
+     * The number of values added to the sample.
+     */
+    private long nValues = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the maximal number of values in the sample
+     */
+    public DoubleReservoir(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of the sample must be positive.");
+        }
+        this.capacity = capacity;
+        int initialCapacity = Math.min(capacity, 128);
+        hashes = new long[initialCapacity];
+        values = new double[initialCapacity];
+    }
+
+    /**
+     * Adds a value to the sample.
+     *
+     * @param key the key of the item the value was computed from
+     * @param value the value
+     */
+    public void add(String key, double value) {
+        nValues++;
+        add(getHash(key), value);
+    }
+
+    /**
+     * Adds the values of another sample, the result is a sample of the values
+     * added to both samples.
+     *
+     * @param otherReservoir the other sample
+     */
+    public void addAll(DoubleReservoir otherReservoir) {
+        nValues += otherReservoir.nValues;
+        for (int i = 0; i < otherReservoir.size; i++) {
+            add(otherReservoir.hashes[i], otherReservoir.values[i]);
+        }
+    }
+
+    /**
+     * Adds a value to the sample if its hash is among the lowest.
+     *
+     * @param hash the hash of the key of the value
+     * @param value the value
+     */
+    private void add(long hash, double value) {
+        if (size < capacity) {
+            if (size == hashes.length) {
+                int newLength = (int) Math.min(capacity, 2L * hashes.length);
+                hashes = Arrays.copyOf(hashes, newLength);
+                values = Arrays.copyOf(values, newLength);
+            }
+            int index = size++;
+            hashes[index] = hash;
+            values[index] = value;
+            siftUp(index);
+        } else if (compare(hash, value, 0) < 0) {
+            hashes[0] = hash;
+            values[0] = value;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Compares a hash and value with the element at the given index of the
+     * heap. Values are compared when the hashes are equal so that the content
+     * of the sample does not depend on the order of the values.
+     *
+     * @param hash the hash
+     * @param value the value
+     * @param index the index of the element in the heap
+     *
+     * @return a negative integer, zero, or a positive integer as the hash and
+     * value are lower than, equal to, or greater than the element
+     */
+    private int compare(long hash, double value, int index) {
+        if (hash != hashes[index]) {
+            return hash < hashes[index] ? -1 : 1;
+        }
+        return Double.compare(value, values[index]);
+    }
+
+    /**
+     * Moves the element at the given index up the heap.
+     *
+     * @param index the index of the element
+     */
+    private void siftUp(int index) {
+        long hash = hashes[index];
+        double value = values[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (compare(hash, value, parent) <= 0) {
+                break;
+            }
+            hashes[index] = hashes[parent];
+            values[index] = values[parent];
+            index = parent;
+        }
+        hashes[index] = hash;
+        values[index] = value;
+    }
+
+    /**
+     * Moves the element at the given index down the heap.
+     *
+     * @param index the index of the element
+     */
+    private void siftDown(int index) {
+        long hash = hashes[index];
+        double value = values[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && compare(hashes[right], values[right], child) > 0) {
+                child = right;
+            }
+            if (compare(hash, value, child) >= 0) {
+                break;
+            }
+            hashes[index] = hashes[child];
+            values[index] = values[child];
+            index = child;
+        }
+        hashes[index] = hash;
+        values[index] = value;
+    }
+
+    /**
+     * Returns a 64 bits hash of a key.
+     *
+     * @param key the key
+     *
+     * @return the hash of the key
+     */
+    private static long getHash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Returns the number of values added to the sample.
+     *
+     * @return the number of values added to the sample
+     */
+    public long getnValues() {
+        return nValues;
+    }
+
+    /**
+     * Returns the number of values in the sample.
+     *
+     * @return the number of values in the sample
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the values of the sample sorted in ascending order.
+     *
+     * @return the values of the sample sorted in ascending order
+     */
+    public DoubleArrayList getSortedValues() {
+        DoubleArrayList result = new DoubleArrayList(size);
+        for (int i = 0; i < size; i++) {
+            result.add(values[i]);
+        }
+        result.sort();
+        return result;
+    }
+}
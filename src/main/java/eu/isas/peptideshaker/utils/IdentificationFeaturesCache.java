@@ -1,12 +1,23 @@
 package eu.isas.peptideshaker.utils;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * This class caches the identification features calculated by the
- * IdentificationFeaturesGenerator for later reuse.
+ * IdentificationFeaturesGenerator for later reuse. Every object type has its
+ * own bounded cache evicting the least recently used objects. The caches are
+ * split in segments locked independently so that threads accessing
+ * different matches do not wait for each other. Numeric features are stored
+ * in primitive columns where every match is attributed an index, every
+ * column has its own lock and the number of indexed matches is bounded.
  *
  * @author Marc Vaudel
  */
@@ -30,6 +41,11 @@ public class IdentificationFeaturesCache implements Serializable {
          * The amino acid coverage of a given protein.
          */
         AA_coverage,
+        /**
+         * The start indexes of a peptide on a protein sequence. Stored as a
+         * small object.
+         */
+        peptide_start_indexes,
         /**
          * The sequence coverage of a given protein using validated peptides
          * stored as small object.
@@ -109,33 +125,60 @@ public class IdentificationFeaturesCache implements Serializable {
         containsEnzymaticPeptides;
     }
     /**
-     * The number of values kept in memory for small objects.
+     * The key of the cache in the settings table of a cps file.
+     */
+    public static final String nameInCpsSettingsTable = "PeptideShaker_identification_features_cache";
+    /**
+     * The number of values kept in memory for every type of small object.
+     */
+    private static final int SMALL_OBJECTS_CACHE_SIZE = 1000000;
+    /**
+     * The number of values kept in memory for every type of big object.
+     */
+    private static final int BIG_OBJECTS_CACHE_SIZE = 1000;
+    /**
+     * The number of segments of the cache of every type.
      */
-    private final int smallObjectsCacheSize = 1000000;
+    private static final int N_SEGMENTS = 16;
     /**
-     * The number of values kept in memory for big objects.
+     * The maximal number of matches indexed in the numeric columns. The
+     * numeric features of further matches are not cached.
      */
-    private final int bigObjectsCacheSize = 1000;
+    private static final int MAX_INDEXED_MATCHES = 4 * SMALL_OBJECTS_CACHE_SIZE;
     /**
-     * Separator used to concatenate strings.
+     * The initial number of matches of the numeric columns.
      */
-    private static final String cacheSeparator = "_ccs_";
+    private static final int INITIAL_COLUMN_SIZE = 1024;
     /**
-     * The cached protein matches for small objects.
+     * Value returned for integer features not in cache.
      */
-    private ArrayList<String> smallObjectsInCache = new ArrayList<String>();
+    public static final int NO_INT_VALUE = Integer.MIN_VALUE;
     /**
-     * The cached protein matches for big objects.
+     * The cache of every type of object which is not stored in a numeric
+     * column.
      */
-    private ArrayList<String> bigObjectsInCache = new ArrayList<String>();
+    private EnumMap<ObjectType, ObjectCache> objectsCaches = createObjectsCaches();
     /**
-     * Mapping of the stored big objects.
+     * The keys of the matches, the id of a match is its index in the numeric
+     * columns.
      */
-    private HashMap<ObjectType, HashMap<String, Object>> bigObjectsCache = new HashMap<ObjectType, HashMap<String, Object>>();
+    private KeyDictionary matchKeys = new KeyDictionary();
     /**
-     * Mapping of the stored small objects.
+     * The columns of the integer features, missing values are set to
+     * NO_INT_VALUE. All integer types are mapped at creation, possibly to
+     * null, so that the map is never structurally modified.
      */
-    private HashMap<ObjectType, HashMap<String, Object>> smallObjectsCache = new HashMap<ObjectType, HashMap<String, Object>>();
+    private EnumMap<ObjectType, int[]> intColumns = createIntColumns();
+    /**
+     * The columns of the double features, missing values are set to NaN. All
+     * double types are mapped at creation, possibly to null, so that the map
+     * is never structurally modified.
+     */
+    private EnumMap<ObjectType, double[]> doubleColumns = createDoubleColumns();
+    /**
+     * The lock of the column of every numeric type.
+     */
+    private transient EnumMap<ObjectType, ReentrantReadWriteLock> columnLocks = createColumnLocks();
     /**
      * The protein list.
      */
@@ -182,54 +225,37 @@ public class IdentificationFeaturesCache implements Serializable {
      * Indicates whether the cache is read only.
      */
     private boolean readOnly = false;
+    /**
+     * Indicates whether the cache was modified since it was last saved or
+     * loaded. The selection of the user in the GUI, i.e. the current protein
+     * and peptide with their peptide and PSM lists, does not mark the cache
+     * as modified.
+     */
+    private transient volatile boolean modified = true;
 
     /**
      * Clears all objects of the given type.
      *
      * @param type the object type
      */
-    public synchronized void removeObjects(ObjectType type) {
+    public void removeObjects(ObjectType type) {
         if (!readOnly) {
-            String typeKey = getTypeAsString(type);
-            ArrayList<String> toRemove = new ArrayList<String>();
-
-            switch (type) {
-                case coverable_AA_p:
-                case AA_coverage:
-                case tryptic_protein:
-                    bigObjectsCache.remove(type);
-                    for (String key : bigObjectsInCache) {
-                        if (key.contains(typeKey)) {
-                            toRemove.add(key);
-                        }
-                    }
-                    for (String key : toRemove) {
-                        bigObjectsInCache.remove(key);
+            if (isIntegerType(type) || isDoubleType(type)) {
+                ReentrantReadWriteLock lock = columnLocks.get(type);
+                lock.writeLock().lock();
+                try {
+                    if (isIntegerType(type)) {
+                        intColumns.put(type, null);
+                    } else {
+                        doubleColumns.put(type, null);
                     }
-                    break;
-                case sequence_coverage:
-                case sequence_validation_coverage:
-                case expected_coverage:
-                case spectrum_counting:
-                case number_of_spectra:
-                case number_of_validated_spectra:
-                case number_of_validated_peptides:
-                case number_of_confident_spectra:
-                case number_of_confident_peptides:
-                case max_psm_mz_for_peptides:
-                case unique_peptides:
-                case containsEnzymaticPeptides:
-                    smallObjectsCache.remove(type);
-                    for (String key : smallObjectsInCache) {
-                        if (key.contains(typeKey)) {
-                            toRemove.add(key);
-                        }
-                    }
-                    for (String key : toRemove) {
-                        smallObjectsInCache.remove(key);
-                    }
-                    break;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } else {
+                objectsCaches.get(type).clear();
             }
+            modified = true;
         }
     }
 
@@ -240,113 +266,214 @@ public class IdentificationFeaturesCache implements Serializable {
      * @param objectKey the object key
      * @param object the object to store
      */
-    public synchronized void addObject(ObjectType type, String objectKey, Object object) {
-        if (!readOnly) {
-            switch (type) {
-                case coverable_AA_p:
-                case AA_coverage:
-                case tryptic_protein:
-                    if (!bigObjectsCache.containsKey(type)) {
-                        bigObjectsCache.put(type, new HashMap<String, Object>());
-                    }
+    public void addObject(ObjectType type, String objectKey, Object object) {
+        if (isIntegerType(type)) {
+            addIntValue(type, objectKey, object == null ? NO_INT_VALUE : ((Number) object).intValue());
+        } else if (isDoubleType(type)) {
+            addDoubleValue(type, objectKey, object == null ? Double.NaN : ((Number) object).doubleValue());
+        } else if (!readOnly) {
+            objectsCaches.get(type).put(objectKey, object);
+            modified = true;
+        }
+    }
+
+    /**
+     * Returns an object if present in the cache. Null if not.
+     *
+     * @param type the type of the object
+     * @param objectKey the key of the object
+     * @return the desired object
+     */
+    public Object getObject(ObjectType type, String objectKey) {
+        if (isIntegerType(type)) {
+            int value = getIntValue(type, objectKey);
+            return value == NO_INT_VALUE ? null : value;
+        } else if (isDoubleType(type)) {
+            double value = getDoubleValue(type, objectKey);
+            return Double.isNaN(value) ? null : value;
+        }
+        return objectsCaches.get(type).get(objectKey);
+    }
 
-                    Object oldValue = bigObjectsCache.get(type).put(objectKey, object);
+    /**
+     * Indicates whether an object is present in the cache.
+     *
+     * @param type the type of the object
+     * @param objectKey the key of the object
+     *
+     * @return a boolean indicating whether an object is present in the cache
+     */
+    public boolean contains(ObjectType type, String objectKey) {
+        if (isIntegerType(type)) {
+            return getIntValue(type, objectKey) != NO_INT_VALUE;
+        } else if (isDoubleType(type)) {
+            return !Double.isNaN(getDoubleValue(type, objectKey));
+        }
+        return objectsCaches.get(type).get(objectKey) != null;
+    }
 
-                    if (oldValue == null) { // don't add if the object was already in the cache
-                        bigObjectsInCache.add(getCacheKey(type, objectKey));
-                    }
+    /**
+     * Returns the value of an integer feature, NO_INT_VALUE if not in cache.
+     *
+     * @param type the type of feature
+     * @param matchKey the key of the match
+     *
+     * @return the value of the feature
+     */
+    public int getIntValue(ObjectType type, String matchKey) {
+        ReentrantReadWriteLock lock = columnLocks.get(type);
+        lock.readLock().lock();
+        try {
+            int[] column = intColumns.get(type);
+            if (column != null) {
+                int index = matchKeys.indexOf(matchKey);
+                if (index >= 0 && index < column.length) {
+                    return column[index];
+                }
+            }
+            return NO_INT_VALUE;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-                    while (bigObjectsInCache.size() >= bigObjectsCacheSize && !bigObjectsInCache.isEmpty()) {
-                        String firstObjectKey = bigObjectsInCache.get(0);
-                        ObjectType oldType = getType(firstObjectKey);
-                        String oldKey = getObjectKey(firstObjectKey);
-                        HashMap<String, Object> cacheForType = bigObjectsCache.get(oldType);
-                        if (cacheForType != null) {
-                            cacheForType.remove(oldKey);
-                            if (cacheForType.isEmpty()) {
-                                bigObjectsCache.remove(oldType);
-                            }
-                        }
-                        bigObjectsInCache.remove(0);
-                    }
-                    break;
-                case sequence_coverage:
-                case sequence_validation_coverage:
-                case expected_coverage:
-                case spectrum_counting:
-                case number_of_spectra:
-                case number_of_validated_spectra:
-                case number_of_validated_peptides:
-                case number_of_confident_spectra:
-                case number_of_confident_peptides:
-                case max_psm_mz_for_peptides:
-                case unique_peptides:
-                case containsEnzymaticPeptides:
-                    if (!smallObjectsCache.containsKey(type)) {
-                        smallObjectsCache.put(type, new HashMap<String, Object>());
+    /**
+     * Sets the value of an integer feature.
+     *
+     * @param type the type of feature
+     * @param matchKey the key of the match
+     * @param value the value of the feature
+     */
+    public void addIntValue(ObjectType type, String matchKey, int value) {
+        if (!readOnly) {
+            int index = getMatchIndex(matchKey);
+            if (index < 0) {
+                return;
+            }
+            ReentrantReadWriteLock lock = columnLocks.get(type);
+            lock.writeLock().lock();
+            try {
+                int[] column = intColumns.get(type);
+                if (column == null || index >= column.length) {
+                    int newSize = getColumnSize(column == null ? 0 : column.length, index);
+                    int oldSize;
+                    if (column == null) {
+                        oldSize = 0;
+                        column = new int[newSize];
+                    } else {
+                        oldSize = column.length;
+                        column = Arrays.copyOf(column, newSize);
                     }
+                    Arrays.fill(column, oldSize, newSize, NO_INT_VALUE);
+                    intColumns.put(type, column);
+                }
+                column[index] = value;
+                modified = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
 
-                    oldValue = smallObjectsCache.get(type).put(objectKey, object);
+    /**
+     * Returns the value of a double feature, NaN if not in cache.
+     *
+     * @param type the type of feature
+     * @param matchKey the key of the match
+     *
+     * @return the value of the feature
+     */
+    public double getDoubleValue(ObjectType type, String matchKey) {
+        ReentrantReadWriteLock lock = columnLocks.get(type);
+        lock.readLock().lock();
+        try {
+            double[] column = doubleColumns.get(type);
+            if (column != null) {
+                int index = matchKeys.indexOf(matchKey);
+                if (index >= 0 && index < column.length) {
+                    return column[index];
+                }
+            }
+            return Double.NaN;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-                    if (oldValue == null) {
-                        smallObjectsInCache.add(getCacheKey(type, objectKey));
+    /**
+     * Sets the value of a double feature. NaN values are not cached.
+     *
+     * @param type the type of feature
+     * @param matchKey the key of the match
+     * @param value the value of the feature
+     */
+    public void addDoubleValue(ObjectType type, String matchKey, double value) {
+        if (!readOnly) {
+            int index = getMatchIndex(matchKey);
+            if (index < 0) {
+                return;
+            }
+            ReentrantReadWriteLock lock = columnLocks.get(type);
+            lock.writeLock().lock();
+            try {
+                double[] column = doubleColumns.get(type);
+                if (column == null || index >= column.length) {
+                    int newSize = getColumnSize(column == null ? 0 : column.length, index);
+                    int oldSize;
+                    if (column == null) {
+                        oldSize = 0;
+                        column = new double[newSize];
+                    } else {
+                        oldSize = column.length;
+                        column = Arrays.copyOf(column, newSize);
                     }
+                    Arrays.fill(column, oldSize, newSize, Double.NaN);
+                    doubleColumns.put(type, column);
+                }
+                column[index] = value;
+                modified = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
 
-                    while (smallObjectsInCache.size() >= smallObjectsCacheSize && !smallObjectsInCache.isEmpty()) {
-                        String firstObjectKey = smallObjectsInCache.get(0);
-                        ObjectType oldType = getType(firstObjectKey);
-                        String oldKey = getObjectKey(firstObjectKey);
-                        HashMap<String, Object> cacheForType = smallObjectsCache.get(oldType);
-                        if (cacheForType != null) {
-                            cacheForType.remove(oldKey);
-                            if (cacheForType.isEmpty()) {
-                                smallObjectsCache.remove(oldType);
-                            }
-                        }
-                        smallObjectsInCache.remove(0);
-                    }
-                    break;
+    /**
+     * Returns the index of a match in the numeric columns, attributing a new
+     * index if the match was not indexed yet and the maximal number of
+     * indexed matches is not reached.
+     *
+     * @param matchKey the key of the match
+     *
+     * @return the index of the match, -1 if the match cannot be indexed
+     */
+    private int getMatchIndex(String matchKey) {
+        int index = matchKeys.indexOf(matchKey);
+        if (index >= 0) {
+            return index;
+        }
+        synchronized (matchKeys) {
+            if (matchKeys.size() >= MAX_INDEXED_MATCHES) {
+                return matchKeys.indexOf(matchKey);
             }
+            return matchKeys.getId(matchKey);
         }
     }
 
     /**
-     * Returns an object if present in the cache. Null if not.
+     * Returns the size to use for a column to contain the given index.
      *
-     * @param type the type of the object
-     * @param objectKey the key of the object
-     * @return the desired object
+     * @param currentSize the current size of the column
+     * @param index the index to contain
+     *
+     * @return the size to use for the column
      */
-    public Object getObject(ObjectType type, String objectKey) {
-        switch (type) {
-            case coverable_AA_p:
-            case AA_coverage:
-            case tryptic_protein:
-                HashMap<String, Object> cacheForType = bigObjectsCache.get(type);
-                if (cacheForType != null) {
-                    return cacheForType.get(objectKey);
-                }
-                return null;
-            case sequence_coverage:
-            case sequence_validation_coverage:
-            case expected_coverage:
-            case spectrum_counting:
-            case number_of_spectra:
-            case number_of_validated_spectra:
-            case number_of_validated_peptides:
-            case number_of_confident_spectra:
-            case number_of_confident_peptides:
-            case max_psm_mz_for_peptides:
-            case unique_peptides:
-            case containsEnzymaticPeptides:
-                cacheForType = smallObjectsCache.get(type);
-                if (cacheForType != null) {
-                    return cacheForType.get(objectKey);
-                }
-                return null;
-            default:
-                return null;
+    private static int getColumnSize(int currentSize, int index) {
+        int newSize = Math.max(currentSize, INITIAL_COLUMN_SIZE);
+        while (newSize <= index) {
+            newSize *= 2;
         }
+        return newSize;
     }
 
     /**
@@ -401,6 +528,7 @@ public class IdentificationFeaturesCache implements Serializable {
      */
     public void setFiltered(boolean filtered) {
         this.filtered = filtered;
+        modified = true;
     }
 
     /**
@@ -477,6 +605,7 @@ public class IdentificationFeaturesCache implements Serializable {
      */
     public void setProteinList(ArrayList<String> proteinList) {
         this.proteinList = proteinList;
+        modified = true;
     }
 
     /**
@@ -496,6 +625,7 @@ public class IdentificationFeaturesCache implements Serializable {
      */
     public void setProteinListAfterHiding(ArrayList<String> proteinListAfterHiding) {
         this.proteinListAfterHiding = proteinListAfterHiding;
+        modified = true;
     }
 
     /**
@@ -532,130 +662,301 @@ public class IdentificationFeaturesCache implements Serializable {
      */
     public void setValidatedProteinList(ArrayList<String> validatedProteinList) {
         this.validatedProteinList = validatedProteinList;
+        modified = true;
     }
 
     /**
-     * Convenience method returning a string as key for the object of the given
-     * type identified by the given key.
+     * Indicates whether the cache was modified since it was last saved or
+     * loaded.
      *
-     * @param type the type of object
-     * @param objectKey the key of the object
-     * @return the key to be used in cache
+     * @return a boolean indicating whether the cache was modified
      */
-    private String getCacheKey(ObjectType type, String objectKey) {
-        return getTypeAsString(type) + cacheSeparator + objectKey;
+    public boolean isModified() {
+        return modified;
     }
 
     /**
-     * Returns the object type as string.
+     * Sets whether the cache was modified since it was last saved or loaded.
      *
-     * @param type the type of object
-     * @return the corresponding key
+     * @param modified a boolean indicating whether the cache was modified
+     */
+    public void setModified(boolean modified) {
+        this.modified = modified;
+    }
+
+    /**
+     * Sets the cache in read only.
+     *
+     * @param readOnly boolean indicating whether the cache should be in read
+     * only
      */
-    private String getTypeAsString(ObjectType type) {
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Creates an empty cache for every object type.
+     *
+     * @return an empty cache for every object type
+     */
+    private static EnumMap<ObjectType, ObjectCache> createObjectsCaches() {
+        EnumMap<ObjectType, ObjectCache> result = new EnumMap<ObjectType, ObjectCache>(ObjectType.class);
+        for (ObjectType type : ObjectType.values()) {
+            if (!isIntegerType(type) && !isDoubleType(type)) {
+                result.put(type, new ObjectCache(getCacheSize(type)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Indicates whether the given type of feature is stored in an integer
+     * column.
+     *
+     * @param type the type of feature
+     *
+     * @return a boolean indicating whether the given type of feature is stored
+     * in an integer column
+     */
+    private static boolean isIntegerType(ObjectType type) {
         switch (type) {
-            case coverable_AA_p:
-                return "coverable_AA_p";
-            case AA_coverage:
-                return "AA_coverage";
-            case sequence_coverage:
-                return "sequence_coverage";
-            case sequence_validation_coverage:
-                return "sequence_validation_coverage";
-            case expected_coverage:
-                return "expected_coverage";
-            case spectrum_counting:
-                return "spectrum_counting";
             case number_of_spectra:
-                return "#spectra";
             case number_of_validated_spectra:
-                return "#validated_spectra";
-            case number_of_validated_peptides:
-                return "#validated_peptides";
             case number_of_confident_spectra:
-                return "#confident_spectra";
+            case number_of_validated_peptides:
             case number_of_confident_peptides:
-                return "#confident_peptides";
+            case unique_peptides:
+            case protein_groups_for_peptide:
+            case unique_validated_peptides:
+            case unique_peptides_group:
+            case unique_validated_peptides_group:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Indicates whether the given type of feature is stored in a double
+     * column.
+     *
+     * @param type the type of feature
+     *
+     * @return a boolean indicating whether the given type of feature is stored
+     * in a double column
+     */
+    private static boolean isDoubleType(ObjectType type) {
+        switch (type) {
+            case sequence_coverage:
+            case expected_coverage:
+            case spectrum_counting:
             case max_psm_mz_for_peptides:
-                return "max_psm_mz_for_peptides";
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the number of objects of the given type to keep in memory.
+     *
+     * @param type the type of object
+     *
+     * @return the number of objects of the given type to keep in memory
+     */
+    private static int getCacheSize(ObjectType type) {
+        switch (type) {
+            case coverable_AA_p:
+            case AA_coverage:
             case tryptic_protein:
-                return "tryptic_protein";
-            case unique_peptides:
-                return "unique_peptides";
-            case containsEnzymaticPeptides:
-                return "contains_enzymatic_peptides";
+                return BIG_OBJECTS_CACHE_SIZE;
             default:
-                return "default";
+                return SMALL_OBJECTS_CACHE_SIZE;
         }
     }
 
     /**
-     * Convenience method returning the type of object base on the objects cache
-     * key.
-     *
-     * @param cacheKey the object cache key
-     * @return the type of object
-     */
-    private ObjectType getType(String cacheKey) {
-        String objectTypeAsString = cacheKey.split(cacheSeparator)[0];
-        if (objectTypeAsString.equals("coverable_AA_p")) {
-            return ObjectType.coverable_AA_p;
-        } else if (objectTypeAsString.equals("AA_coverage")) {
-            return ObjectType.AA_coverage;
-        } else if (objectTypeAsString.equals("sequence_coverage")) {
-            return ObjectType.sequence_coverage;
-        } else if (objectTypeAsString.equals("sequence_validation_coverage")) {
-            return ObjectType.sequence_validation_coverage;
-        } else if (objectTypeAsString.equals("expected_coverage")) {
-            return ObjectType.expected_coverage;
-        } else if (objectTypeAsString.equals("spectrum_counting")) {
-            return ObjectType.spectrum_counting;
-        } else if (objectTypeAsString.equals("#spectra")) {
-            return ObjectType.number_of_spectra;
-        } else if (objectTypeAsString.equals("#validated_spectra")) {
-            return ObjectType.number_of_validated_spectra;
-        } else if (objectTypeAsString.equals("#validated_peptides")) {
-            return ObjectType.number_of_validated_peptides;
-        } else if (objectTypeAsString.equals("#confident_spectra")) {
-            return ObjectType.number_of_confident_spectra;
-        } else if (objectTypeAsString.equals("#confident_peptides")) {
-            return ObjectType.number_of_confident_peptides;
-        } else if (objectTypeAsString.equals("max_psm_mz_for_peptides")) {
-            return ObjectType.max_psm_mz_for_peptides;
-        } else if (objectTypeAsString.equals("tryptic_protein")) {
-            return ObjectType.tryptic_protein;
-        } else if (objectTypeAsString.equals("unique_peptides")) {
-            return ObjectType.unique_peptides;
-        } else if (objectTypeAsString.equals("contains_enzymatic_peptides")) { 
-            return ObjectType.containsEnzymaticPeptides;
-        } else {
-            return null;
+     * Returns the map of the integer columns where all integer types are
+     * mapped to null.
+     *
+     * @return the map of the integer columns
+     */
+    private static EnumMap<ObjectType, int[]> createIntColumns() {
+        EnumMap<ObjectType, int[]> result = new EnumMap<ObjectType, int[]>(ObjectType.class);
+        for (ObjectType type : ObjectType.values()) {
+            if (isIntegerType(type)) {
+                result.put(type, null);
+            }
         }
+        return result;
     }
 
     /**
-     * Convenience method returning the object key based on the cache key.
+     * Returns the map of the double columns where all double types are mapped
+     * to null.
      *
-     * @param cacheKey the cache key
-     * @return the object key
+     * @return the map of the double columns
      */
-    private String getObjectKey(String cacheKey) {
-        StringBuilder buf = new StringBuilder();
-        String escapedString = java.util.regex.Pattern.quote(cacheKey);
-        String[] splittedKey = cacheKey.split(escapedString);
-        for (int i = 1; i < splittedKey.length; i++) {
-            buf.append(splittedKey[i]);
+    private static EnumMap<ObjectType, double[]> createDoubleColumns() {
+        EnumMap<ObjectType, double[]> result = new EnumMap<ObjectType, double[]>(ObjectType.class);
+        for (ObjectType type : ObjectType.values()) {
+            if (isDoubleType(type)) {
+                result.put(type, null);
+            }
         }
-        return buf.toString();
+        return result;
     }
 
     /**
-     * Sets the cache in read only.
+     * Returns a lock for the column of every numeric type.
      *
-     * @param readOnly boolean indicating whether the cache should be in read
-     * only
+     * @return the locks of the numeric columns
      */
-    public void setReadOnly(boolean readOnly) {
-        this.readOnly = readOnly;
+    private static EnumMap<ObjectType, ReentrantReadWriteLock> createColumnLocks() {
+        EnumMap<ObjectType, ReentrantReadWriteLock> result = new EnumMap<ObjectType, ReentrantReadWriteLock>(ObjectType.class);
+        for (ObjectType type : ObjectType.values()) {
+            if (isIntegerType(type) || isDoubleType(type)) {
+                result.put(type, new ReentrantReadWriteLock());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the cache from a stream. Caches saved by versions without numeric
+     * columns store the features in a different structure, in which case the
+     * features are discarded and will be estimated again when needed.
+     *
+     * @param in the stream to read from
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the stream
+     * @throws ClassNotFoundException exception thrown whenever a class of the
+     * stream was not found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (matchKeys == null) {
+            objectsCaches = createObjectsCaches();
+            matchKeys = new KeyDictionary();
+            intColumns = createIntColumns();
+            doubleColumns = createDoubleColumns();
+        }
+        columnLocks = createColumnLocks();
+        modified = false;
+    }
+
+    /**
+     * Bounded cache for the objects of a given type. The keys are distributed
+     * on segments locked independently, every segment evicts its least
+     * recently used object when full.
+     */
+    private static class ObjectCache implements Serializable {
+
+        /**
+         * Serial number for backward compatibility.
+         */
+        static final long serialVersionUID = 3658143812290861442L;
+        /**
+         * The segments of the cache.
+         */
+        private final Segment[] segments;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity the number of objects to keep in memory
+         */
+        public ObjectCache(int capacity) {
+            segments = new Segment[N_SEGMENTS];
+            int segmentCapacity = Math.max(capacity / N_SEGMENTS, 1);
+            for (int i = 0; i < N_SEGMENTS; i++) {
+                segments[i] = new Segment(segmentCapacity);
+            }
+        }
+
+        /**
+         * Returns the segment where the object of the given key is stored.
+         *
+         * @param objectKey the key of the object
+         *
+         * @return the segment where the object of the given key is stored
+         */
+        private Segment getSegment(String objectKey) {
+            int hash = objectKey.hashCode();
+            hash ^= hash >>> 16;
+            return segments[hash & (N_SEGMENTS - 1)];
+        }
+
+        /**
+         * Returns the object of the given key, null if not in cache.
+         *
+         * @param objectKey the key of the object
+         *
+         * @return the object of the given key
+         */
+        public Object get(String objectKey) {
+            Segment segment = getSegment(objectKey);
+            synchronized (segment) {
+                return segment.get(objectKey);
+            }
+        }
+
+        /**
+         * Stores an object in the cache.
+         *
+         * @param objectKey the key of the object
+         * @param object the object
+         */
+        public void put(String objectKey, Object object) {
+            Segment segment = getSegment(objectKey);
+            synchronized (segment) {
+                segment.put(objectKey, object);
+            }
+        }
+
+        /**
+         * Removes all objects from the cache.
+         */
+        public void clear() {
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    segment.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Segment of an object cache. The segment is a map in access order
+     * evicting its eldest entry when its capacity is exceeded. This class is
+     * not thread safe.
+     */
+    private static class Segment extends LinkedHashMap<String, Object> {
+
+        /**
+         * Serial number for backward compatibility.
+         */
+        static final long serialVersionUID = -4471880317785320952L;
+        /**
+         * The maximal number of objects in this segment.
+         */
+        private final int capacity;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity the maximal number of objects in this segment
+         */
+        public Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+            // the capacity is not set yet while the map is deserialized
+            return capacity > 0 && size() > capacity;
+        }
     }
 }
@@ -1,5 +1,7 @@
 package eu.isas.peptideshaker.utils;
 
+import com.compomics.util.db.ObjectsDB;
+import com.compomics.util.exceptions.ExceptionHandler;
 import com.compomics.util.experiment.units.MetricsPrefix;
 import com.compomics.util.experiment.biology.AminoAcidPattern;
 import com.compomics.util.experiment.biology.Enzyme;
@@ -39,9 +41,13 @@ import eu.isas.peptideshaker.scoring.MatchValidationLevel;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.math.MathException;
 import uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException;
 
@@ -53,6 +59,11 @@ import uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException;
  */
 public class IdentificationFeaturesGenerator {
 
+    /**
+     * The maximal number of precursor mass errors used to estimate the mass
+     * error distribution of a spectrum file.
+     */
+    public static final int MASS_ERROR_SAMPLE_SIZE = 10000;
     // @TODO: move to utilities once the back-end allows it
     /**
      * The sequence factory.
@@ -70,7 +81,7 @@ public class IdentificationFeaturesGenerator {
      * The identification features cache where the recently accessed
      * identification features are stored
      */
-    private IdentificationFeaturesCache identificationFeaturesCache = new IdentificationFeaturesCache();
+    private volatile IdentificationFeaturesCache identificationFeaturesCache = new IdentificationFeaturesCache();
     /**
      * The metrics picked-up wile loading the data.
      */
@@ -109,16 +120,22 @@ public class IdentificationFeaturesGenerator {
     }
 
     /**
-     * Sets a mass error distribution in the massErrorDistribution map.
+     * Sets a mass error distribution in the massErrorDistribution map. The
+     * distribution is centered on the median and its standard deviations are
+     * estimated from the 15.87 and 84.13 percentiles.
      *
      * @param spectrumFile the spectrum file of interest
-     * @param precursorMzDeviations list of precursor mass errors
+     * @param precursorMzDeviations list of precursor mass errors sorted in
+     * ascending order
      */
-    public void setMassErrorDistribution(String spectrumFile, ArrayList<Double> precursorMzDeviations) {
+    public void setMassErrorDistribution(String spectrumFile, DoubleArrayList precursorMzDeviations) {
         if (massErrorDistribution == null) {
             massErrorDistribution = new HashMap<String, NonSymmetricalNormalDistribution>(1);
         }
-        NonSymmetricalNormalDistribution distribution = NonSymmetricalNormalDistribution.getRobustNonSymmetricalNormalDistributionFromSortedList(precursorMzDeviations);
+        double median = precursorMzDeviations.getPercentileSorted(0.5);
+        double stdDown = median - precursorMzDeviations.getPercentileSorted(0.1587);
+        double stdUp = precursorMzDeviations.getPercentileSorted(0.8413) - median;
+        NonSymmetricalNormalDistribution distribution = new NonSymmetricalNormalDistribution(median, stdDown, stdUp);
         massErrorDistribution.put(spectrumFile, distribution);
     }
 
@@ -151,7 +168,8 @@ public class IdentificationFeaturesGenerator {
 
     /**
      * Estimates the precursor mass errors of validated peptides in a file and
-     * sets in in the massErrorDistribution map.
+     * sets in in the massErrorDistribution map. The distribution is estimated
+     * on a sample of at most MASS_ERROR_SAMPLE_SIZE mass errors.
      *
      * @param spectrumFile the spectrum file of interest
      *
@@ -167,7 +185,7 @@ public class IdentificationFeaturesGenerator {
      * occurred while reading an mzML file
      */
     private void estimateMassErrorDistribution(String spectrumFile) throws SQLException, IOException, ClassNotFoundException, InterruptedException, MzMLUnmarshallerException {
-        ArrayList<Double> precursorMzDeviations = new ArrayList<Double>(512);
+        DoubleReservoir precursorMzDeviations = new DoubleReservoir(MASS_ERROR_SAMPLE_SIZE);
         PSParameter psParameter = new PSParameter();
         ArrayList<UrParameter> parameters = new ArrayList<UrParameter>(1);
         parameters.add(psParameter);
@@ -183,11 +201,11 @@ public class IdentificationFeaturesGenerator {
                     double precursorMz = spectrumFactory.getPrecursorMz(spectrumKey);
                     SearchParameters searchParameters = identificationParameters.getSearchParameters();
                     double precursorMzError = peptideAssumption.getDeltaMass(precursorMz, searchParameters.isPrecursorAccuracyTypePpm(), searchParameters.getMinIsotopicCorrection(), searchParameters.getMaxIsotopicCorrection());
-                    precursorMzDeviations.add(precursorMzError);
+                    precursorMzDeviations.add(spectrumKey, precursorMzError);
                 }
             }
         }
-        setMassErrorDistribution(spectrumFile, precursorMzDeviations);
+        setMassErrorDistribution(spectrumFile, precursorMzDeviations.getSortedValues());
     }
 
     /**
@@ -212,11 +230,36 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public double[] getCoverableAA(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        double[] result = (double[]) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.coverable_AA_p, proteinMatchKey);
-        if (result == null) {
-            result = estimateCoverableAA(proteinMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.coverable_AA_p, proteinMatchKey, result);
+        return getCoverableAAIntervals(proteinMatchKey).toDoubleArray();
+    }
+
+    /**
+     * Returns the likelihood to find identify the amino acids of the protein
+     * sequence as intervals of constant likelihood. 0 is the first amino acid.
+     *
+     * @param proteinMatchKey the key of the protein of interest
+     *
+     * @return the likelihood to identify the amino acids as intervals
+     *
+     * @throws java.sql.SQLException exception thrown whenever an error occurred
+     * while interacting with a database (from the protein tree or
+     * identification)
+     * @throws java.io.IOException exception thrown whenever an error occurred
+     * while reading or writing a file
+     * @throws java.lang.ClassNotFoundException exception thrown whenever an
+     * error occurred while deserializing an object from a database (from the
+     * protein tree or identification)
+     * @throws java.lang.InterruptedException exception thrown whenever a
+     * threading error occurred while interacting with a database (from the
+     * protein tree or identification)
+     */
+    public SequenceIntervals getCoverableAAIntervals(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+        Object cachedObject = getIdentificationFeaturesCache().getObject(IdentificationFeaturesCache.ObjectType.coverable_AA_p, proteinMatchKey);
+        if (cachedObject instanceof SequenceIntervals) {
+            return (SequenceIntervals) cachedObject;
         }
+        SequenceIntervals result = estimateCoverableAA(proteinMatchKey);
+        getIdentificationFeaturesCache().addObject(IdentificationFeaturesCache.ObjectType.coverable_AA_p, proteinMatchKey, result);
         return result;
     }
 
@@ -241,11 +284,37 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public int[] getAACoverage(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        int[] result = (int[]) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.AA_coverage, proteinMatchKey);
-        if (result == null) {
-            result = estimateAACoverage(proteinMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.AA_coverage, proteinMatchKey, result);
+        return getAACoverageIntervals(proteinMatchKey).toIntArray();
+    }
+
+    /**
+     * Returns the validation level of the amino acids of the given protein as
+     * intervals of constant validation level. Amino acids not covered by any
+     * peptide have the validation level none.
+     *
+     * @param proteinMatchKey the key of the protein of interest
+     *
+     * @return the validation level of the amino acids as intervals
+     *
+     * @throws java.sql.SQLException exception thrown whenever an error occurred
+     * while interacting with a database (from the protein tree or
+     * identification)
+     * @throws java.io.IOException exception thrown whenever an error occurred
+     * while reading or writing a file
+     * @throws java.lang.ClassNotFoundException exception thrown whenever an
+     * error occurred while deserializing an object from a database (from the
+     * protein tree or identification)
+     * @throws java.lang.InterruptedException exception thrown whenever a
+     * threading error occurred while interacting with a database (from the
+     * protein tree or identification)
+     */
+    public SequenceIntervals getAACoverageIntervals(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+        Object cachedObject = getIdentificationFeaturesCache().getObject(IdentificationFeaturesCache.ObjectType.AA_coverage, proteinMatchKey);
+        if (cachedObject instanceof SequenceIntervals) {
+            return (SequenceIntervals) cachedObject;
         }
+        SequenceIntervals result = estimateAACoverage(proteinMatchKey);
+        getIdentificationFeaturesCache().addObject(IdentificationFeaturesCache.ObjectType.AA_coverage, proteinMatchKey, result);
         return result;
     }
 
@@ -269,8 +338,8 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public void updateCoverableAA(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        double[] result = estimateCoverableAA(proteinMatchKey);
-        identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.coverable_AA_p, proteinMatchKey, result);
+        SequenceIntervals result = estimateCoverableAA(proteinMatchKey);
+        getIdentificationFeaturesCache().addObject(IdentificationFeaturesCache.ObjectType.coverable_AA_p, proteinMatchKey, result);
     }
 
     /**
@@ -321,18 +390,11 @@ public class IdentificationFeaturesGenerator {
     private HashMap<Integer, Double> estimateSequenceCoverage(String proteinMatchKey)
             throws SQLException, IOException, ClassNotFoundException, InterruptedException {
 
-        int[] aaCoverage = getAACoverage(proteinMatchKey);
+        SequenceIntervals aaCoverage = getAACoverageIntervals(proteinMatchKey);
+        double sequenceLength = aaCoverage.getSequenceLength();
         HashMap<Integer, Double> result = new HashMap<Integer, Double>();
         for (int validationLevel : MatchValidationLevel.getValidationLevelIndexes()) {
-            result.put(validationLevel, 0.0);
-        }
-        for (int validationLevel : aaCoverage) {
-            result.put(validationLevel, result.get(validationLevel) + 1);
-        }
-        ProteinMatch proteinMatch = identification.getProteinMatch(proteinMatchKey);
-        String sequence = sequenceFactory.getProtein(proteinMatch.getMainMatch()).getSequence();
-        for (int validationLevel : MatchValidationLevel.getValidationLevelIndexes()) {
-            result.put(validationLevel, result.get(validationLevel) / sequence.length());
+            result.put(validationLevel, aaCoverage.getLength(validationLevel) / sequenceLength);
         }
         return result;
     }
@@ -359,19 +421,21 @@ public class IdentificationFeaturesGenerator {
      */
     private Double estimateValidatedSequenceCoverage(String proteinMatchKey)
             throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+        return getValidatedSequenceCoverage(getAACoverageIntervals(proteinMatchKey));
+    }
 
-        int[] aaCoverage = getAACoverage(proteinMatchKey);
-        double nAAValidated = 0;
-        for (int validationLevel : aaCoverage) {
-            if (validationLevel == MatchValidationLevel.doubtful.getIndex()
-                    || validationLevel == MatchValidationLevel.confident.getIndex()) {
-                nAAValidated++;
-            }
-        }
-        ProteinMatch proteinMatch = identification.getProteinMatch(proteinMatchKey);
-        String sequence = sequenceFactory.getProtein(proteinMatch.getMainMatch()).getSequence();
-        double result = nAAValidated / sequence.length();
-        return result;
+    /**
+     * Returns the sequence coverage by validated peptides of the given amino
+     * acid coverage.
+     *
+     * @param aaCoverage the amino acid coverage of a protein
+     *
+     * @return the sequence coverage
+     */
+    private static double getValidatedSequenceCoverage(SequenceIntervals aaCoverage) {
+        double nAAValidated = aaCoverage.getLength(MatchValidationLevel.doubtful.getIndex())
+                + aaCoverage.getLength(MatchValidationLevel.confident.getIndex());
+        return nAAValidated / aaCoverage.getSequenceLength();
     }
 
     /**
@@ -400,12 +464,12 @@ public class IdentificationFeaturesGenerator {
      */
     public int[] estimateAACoverage(String proteinMatchKey, boolean enzymatic)
             throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        return estimateAACoverage(proteinMatchKey, false, enzymatic);
+        return estimateAACoverage(proteinMatchKey, false, enzymatic).toIntArray();
     }
 
     /**
      * Returns amino acid coverage of this protein by all peptides or by
-     * enzymatic or non-enzymatic peptides only in an array where the index of
+     * enzymatic or non-enzymatic peptides only as intervals where the index of
      * the best validation level of every peptide covering a given amino acid is
      * given. 0 is the first amino acid.
      *
@@ -428,20 +492,24 @@ public class IdentificationFeaturesGenerator {
      * occurred while interacting with a database (from the protein tree or
      * identification)
      */
-    private int[] estimateAACoverage(String proteinMatchKey, boolean allPeptides, boolean enzymatic) // @TODO: add waiting handler?
+    private SequenceIntervals estimateAACoverage(String proteinMatchKey, boolean allPeptides, boolean enzymatic) // @TODO: add waiting handler?
             throws SQLException, IOException, ClassNotFoundException, InterruptedException {
 
         ProteinMatch proteinMatch = identification.getProteinMatch(proteinMatchKey);
-        Protein currentProtein = sequenceFactory.getProtein(proteinMatch.getMainMatch());
+        String proteinAccession = proteinMatch.getMainMatch();
+        Protein currentProtein = sequenceFactory.getProtein(proteinAccession);
         String sequence = currentProtein.getSequence();
+        DigestionPreferences digestionPreferences = identificationParameters.getSearchParameters().getDigestionPreferences();
 
-        HashMap<Integer, ArrayList<Integer>> aminoAcids = new HashMap<Integer, ArrayList<Integer>>();
-        HashMap<Integer, boolean[]> coverage = new HashMap<Integer, boolean[]>();
         PSParameter psParameter = new PSParameter();
         ArrayList<UrParameter> parameters = new ArrayList<UrParameter>(1);
         parameters.add(psParameter);
 
-        // iterate the peptides and store the coverage for each peptide validation level
+        // iterate the peptides and store the interval covered by every peptide and its validation level
+        int nIntervals = 0;
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int[] levels = new int[16];
         PeptideMatchesIterator peptideMatchesIterator = identification.getPeptideMatchesIterator(proteinMatch.getPeptideMatchesKeys(), parameters, false, null, null);
         PeptideMatch peptideMatch;
 
@@ -452,7 +520,6 @@ public class IdentificationFeaturesGenerator {
             String peptideSequence = Peptide.getSequence(peptideKey);
             boolean enzymaticPeptide = true;
             if (!allPeptides) {
-                DigestionPreferences digestionPreferences = identificationParameters.getSearchParameters().getDigestionPreferences();
                 if (digestionPreferences.getCleavagePreference() == DigestionPreferences.CleavagePreference.enzyme) {
                     enzymaticPeptide = currentProtein.isEnzymaticPeptide(peptideSequence, digestionPreferences.getEnzymes(),
                             identificationParameters.getSequenceMatchingPreferences());
@@ -460,53 +527,122 @@ public class IdentificationFeaturesGenerator {
             }
             if (allPeptides || enzymatic && enzymaticPeptide || !enzymatic && !enzymaticPeptide) {
                 int validationLevel = psParameter.getMatchValidationLevel().getIndex();
-                boolean[] validationLevelCoverage = coverage.get(validationLevel);
-                ArrayList<Integer> levelAminoAcids = aminoAcids.get(validationLevel);
-                if (validationLevelCoverage == null) {
-                    validationLevelCoverage = new boolean[sequence.length() + 1];
-                    coverage.put(validationLevel, validationLevelCoverage);
-                    levelAminoAcids = new ArrayList<Integer>();
-                    aminoAcids.put(validationLevel, levelAminoAcids);
-                }
-                AminoAcidPattern aminoAcidPattern = AminoAcidPattern.getAminoAcidPatternFromString(peptideSequence);
-                for (int index : aminoAcidPattern.getIndexes(sequence, identificationParameters.getSequenceMatchingPreferences())) {
-                    int peptideTempStart = index - 1;
-                    int peptideTempEnd = peptideTempStart + peptideSequence.length();
-                    for (int j = peptideTempStart; j < peptideTempEnd; j++) {
-                        boolean found = validationLevelCoverage[j];
-                        if (!found) {
-                            validationLevelCoverage[j] = true;
-                            levelAminoAcids.add(j);
-                        }
+                for (int peptideStart : getPeptideStartIndexes(proteinAccession, sequence, peptideSequence)) {
+                    if (nIntervals == starts.length) {
+                        starts = Arrays.copyOf(starts, 2 * nIntervals);
+                        ends = Arrays.copyOf(ends, 2 * nIntervals);
+                        levels = Arrays.copyOf(levels, 2 * nIntervals);
                     }
+                    starts[nIntervals] = peptideStart;
+                    ends[nIntervals] = peptideStart + peptideSequence.length();
+                    levels[nIntervals] = validationLevel;
+                    nIntervals++;
                 }
             }
         }
 
-        int[] result = new int[sequence.length()];
-        for (int i = 0; i < sequence.length(); i++) {
-            result[i] = MatchValidationLevel.none.getIndex();
+        // sort and merge the intervals of every validation level, best level first
+        ArrayList<Integer> validationLevels = new ArrayList<Integer>(4);
+        for (int i = 0; i < nIntervals; i++) {
+            if (!validationLevels.contains(levels[i])) {
+                validationLevels.add(levels[i]);
+            }
         }
-        ArrayList<Integer> validationLevels = new ArrayList<Integer>(coverage.keySet());
         Collections.sort(validationLevels, Collections.reverseOrder());
-        for (int validationLevel : validationLevels) {
-            boolean[] validationLevelCoverage = coverage.get(validationLevel);
-            if (validationLevelCoverage != null) {
-                ArrayList<Integer> levelAminoAcids = aminoAcids.get(validationLevel);
-                for (int aa : levelAminoAcids) {
-                    int previousLevel = result[aa];
-                    if (previousLevel == MatchValidationLevel.none.getIndex()) {
-                        result[aa] = validationLevel;
+        int nLevels = validationLevels.size();
+        int[][] levelStarts = new int[nLevels][];
+        int[][] levelEnds = new int[nLevels][];
+        int[] levelSizes = new int[nLevels];
+        int[] boundaries = new int[2 * nIntervals];
+        int nBoundaries = 0;
+        for (int i = 0; i < nLevels; i++) {
+            int validationLevel = validationLevels.get(i);
+            int[] tempStarts = new int[nIntervals];
+            int[] tempEnds = new int[nIntervals];
+            int size = 0;
+            for (int j = 0; j < nIntervals; j++) {
+                if (levels[j] == validationLevel) {
+                    tempStarts[size] = starts[j];
+                    tempEnds[size] = ends[j];
+                    size++;
+                }
+            }
+            size = SequenceIntervals.sortAndMerge(tempStarts, tempEnds, size);
+            levelStarts[i] = tempStarts;
+            levelEnds[i] = tempEnds;
+            levelSizes[i] = size;
+            for (int j = 0; j < size; j++) {
+                boundaries[nBoundaries++] = tempStarts[j];
+                boundaries[nBoundaries++] = tempEnds[j];
+            }
+        }
+        Arrays.sort(boundaries, 0, nBoundaries);
+
+        // attribute to every elementary interval the best validation level covering it
+        int nSegments = 0;
+        int[] segmentStarts = new int[Math.max(nBoundaries, 1)];
+        int[] segmentEnds = new int[Math.max(nBoundaries, 1)];
+        double[] segmentLevels = new double[Math.max(nBoundaries, 1)];
+        int[] levelIndexes = new int[nLevels];
+        for (int i = 0; i < nBoundaries - 1; i++) {
+            int start = boundaries[i];
+            int end = boundaries[i + 1];
+            if (start == end) {
+                continue;
+            }
+            for (int j = 0; j < nLevels; j++) {
+                int levelIndex = levelIndexes[j];
+                while (levelIndex < levelSizes[j] && levelEnds[j][levelIndex] <= start) {
+                    levelIndex++;
+                }
+                levelIndexes[j] = levelIndex;
+                if (levelIndex < levelSizes[j] && levelStarts[j][levelIndex] <= start) {
+                    int validationLevel = validationLevels.get(j);
+                    if (nSegments > 0 && segmentEnds[nSegments - 1] == start && segmentLevels[nSegments - 1] == validationLevel) {
+                        segmentEnds[nSegments - 1] = end;
+                    } else {
+                        segmentStarts[nSegments] = start;
+                        segmentEnds[nSegments] = end;
+                        segmentLevels[nSegments] = validationLevel;
+                        nSegments++;
                     }
+                    break;
                 }
             }
         }
 
+        return new SequenceIntervals(sequence.length(), MatchValidationLevel.none.getIndex(),
+                Arrays.copyOf(segmentStarts, nSegments), Arrays.copyOf(segmentEnds, nSegments), Arrays.copyOf(segmentLevels, nSegments));
+    }
+
+    /**
+     * Returns the start indexes of a peptide on a protein sequence. 0 is the
+     * first amino acid. The indexes are cached as they do not depend on the
+     * validation of the matches.
+     *
+     * @param proteinAccession the accession of the protein
+     * @param proteinSequence the sequence of the protein
+     * @param peptideSequence the sequence of the peptide
+     *
+     * @return the start indexes of the peptide on the protein sequence
+     */
+    private int[] getPeptideStartIndexes(String proteinAccession, String proteinSequence, String peptideSequence) {
+        String key = proteinAccession + "_" + peptideSequence;
+        int[] result = (int[]) getIdentificationFeaturesCache().getObject(IdentificationFeaturesCache.ObjectType.peptide_start_indexes, key);
+        if (result == null) {
+            AminoAcidPattern aminoAcidPattern = AminoAcidPattern.getAminoAcidPatternFromString(peptideSequence);
+            ArrayList<Integer> indexes = aminoAcidPattern.getIndexes(proteinSequence, identificationParameters.getSequenceMatchingPreferences());
+            result = new int[indexes.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = indexes.get(i) - 1;
+            }
+            getIdentificationFeaturesCache().addObject(IdentificationFeaturesCache.ObjectType.peptide_start_indexes, key, result);
+        }
         return result;
     }
 
     /**
-     * Returns amino acid coverage of this protein in an array where the index
+     * Returns amino acid coverage of this protein as intervals where the index
      * of the best validation level of every peptide covering a given amino acid
      * is given. 0 is the first amino acid.
      *
@@ -526,19 +662,19 @@ public class IdentificationFeaturesGenerator {
      * threading error occurred while interacting with a database (from the
      * protein tree or identification)
      */
-    private int[] estimateAACoverage(String proteinMatchKey)
+    private SequenceIntervals estimateAACoverage(String proteinMatchKey)
             throws SQLException, IOException, ClassNotFoundException, InterruptedException {
         return estimateAACoverage(proteinMatchKey, true, true);
     }
 
     /**
-     * Returns an array of the probability to cover the sequence of the given
-     * protein. aa index &gt; probability, 0 is the first amino acid
+     * Returns the probability to cover the sequence of the given protein as
+     * intervals of constant probability between cleavage sites. 0 is the first
+     * amino acid.
      *
      * @param proteinMatchKey the key of the protein of interest
      *
-     * @return an array of boolean indicating whether the amino acids of given
-     * peptides can generate peptides
+     * @return the probability to cover the amino acids as intervals
      *
      * @throws java.sql.SQLException exception thrown whenever an error occurred
      * while interacting with a database (from the protein tree or
@@ -552,36 +688,39 @@ public class IdentificationFeaturesGenerator {
      * threading error occurred while interacting with a database (from the
      * protein tree or identification)
      */
-    private double[] estimateCoverableAA(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+    private SequenceIntervals estimateCoverableAA(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
 
         ProteinMatch proteinMatch = identification.getProteinMatch(proteinMatchKey);
         String sequence = sequenceFactory.getProtein(proteinMatch.getMainMatch()).getSequence();
-        double[] result = new double[sequence.length()];
         Distribution peptideLengthDistribution = metrics.getPeptideLengthDistribution();
         DigestionPreferences digestionPreferences = identificationParameters.getSearchParameters().getDigestionPreferences();
 
         // special case for no cleavage searches
         if (digestionPreferences.getCleavagePreference() != DigestionPreferences.CleavagePreference.enzyme) {
-            for (int i = 0; i < result.length; i++) {
-                result[i] = 1.0;
-            }
-            return result;
+            return new SequenceIntervals(sequence.length(), 1.0, new int[0], new int[0], new double[0]);
         }
 
+        int nSegments = 0;
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        double[] probabilities = new double[16];
         int lastCleavage = -1;
         char previousChar = sequence.charAt(0), nextChar;
 
-        for (int i = 0; i < sequence.length() - 1; i++) {
-            double p = 1;
-            nextChar = sequence.charAt(i + 1);
-            boolean cleavage = false;
-            for (Enzyme enzyme : digestionPreferences.getEnzymes()) {
-                if (enzyme.isCleavageSite(previousChar, nextChar)) {
-                    cleavage = true;
-                    break;
+        for (int i = 0; i < sequence.length(); i++) {
+            boolean cleavage = i == sequence.length() - 1;
+            if (!cleavage) {
+                nextChar = sequence.charAt(i + 1);
+                for (Enzyme enzyme : digestionPreferences.getEnzymes()) {
+                    if (enzyme.isCleavageSite(previousChar, nextChar)) {
+                        cleavage = true;
+                        break;
+                    }
                 }
+                previousChar = nextChar;
             }
             if (cleavage) {
+                double p = 1;
                 int length = i - lastCleavage;
                 if (peptideLengthDistribution == null) { // < 100 validated peptide
                     int pepMax = identificationParameters.getPeptideAssumptionFilter().getMaxPepLength();
@@ -591,30 +730,25 @@ public class IdentificationFeaturesGenerator {
                 } else {
                     p = peptideLengthDistribution.getProbabilityAt(length);
                 }
-                for (int j = lastCleavage + 1; j <= i; j++) {
-                    result[j] = p;
+                if (nSegments > 0 && probabilities[nSegments - 1] == p) {
+                    ends[nSegments - 1] = i + 1;
+                } else {
+                    if (nSegments == starts.length) {
+                        starts = Arrays.copyOf(starts, 2 * nSegments);
+                        ends = Arrays.copyOf(ends, 2 * nSegments);
+                        probabilities = Arrays.copyOf(probabilities, 2 * nSegments);
+                    }
+                    starts[nSegments] = lastCleavage + 1;
+                    ends[nSegments] = i + 1;
+                    probabilities[nSegments] = p;
+                    nSegments++;
                 }
                 lastCleavage = i;
             }
-            previousChar = nextChar;
         }
 
-        double p = 1;
-
-        int length = sequence.length() - 1 - lastCleavage;
-        if (peptideLengthDistribution == null) { // < 100 validated peptide
-            int pepMax = identificationParameters.getPeptideAssumptionFilter().getMaxPepLength();
-            if (length > pepMax) {
-                p = 0;
-            }
-        } else {
-            p = peptideLengthDistribution.getProbabilityAt(length);
-        }
-        for (int j = lastCleavage + 1; j < sequence.length(); j++) {
-            result[j] = p;
-        }
-
-        return result;
+        return new SequenceIntervals(sequence.length(), 0.0,
+                Arrays.copyOf(starts, nSegments), Arrays.copyOf(ends, nSegments), Arrays.copyOf(probabilities, nSegments));
     }
 
     /**
@@ -637,11 +771,11 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public Double getValidatedSequenceCoverage(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        Double result = (Double) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.sequence_coverage, proteinMatchKey);
+        double result = getIdentificationFeaturesCache().getDoubleValue(IdentificationFeaturesCache.ObjectType.sequence_coverage, proteinMatchKey);
 
-        if (result == null) {
+        if (Double.isNaN(result)) {
             result = estimateValidatedSequenceCoverage(proteinMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.sequence_coverage, proteinMatchKey, result);
+            getIdentificationFeaturesCache().addDoubleValue(IdentificationFeaturesCache.ObjectType.sequence_coverage, proteinMatchKey, result);
         }
         return result;
     }
@@ -654,7 +788,7 @@ public class IdentificationFeaturesGenerator {
      * @return true if the sequence coverage is in cache
      */
     public boolean validatedSequenceCoverageInCache(String proteinMatchKey) {
-        return identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.sequence_validation_coverage, proteinMatchKey) != null;
+        return getIdentificationFeaturesCache().contains(IdentificationFeaturesCache.ObjectType.sequence_validation_coverage, proteinMatchKey);
     }
 
     /**
@@ -677,11 +811,11 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public HashMap<Integer, Double> getSequenceCoverage(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        HashMap<Integer, Double> result = (HashMap<Integer, Double>) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.sequence_validation_coverage, proteinMatchKey);
+        HashMap<Integer, Double> result = (HashMap<Integer, Double>) getIdentificationFeaturesCache().getObject(IdentificationFeaturesCache.ObjectType.sequence_validation_coverage, proteinMatchKey);
 
         if (result == null) {
             result = estimateSequenceCoverage(proteinMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.sequence_validation_coverage, proteinMatchKey, result);
+            getIdentificationFeaturesCache().addObject(IdentificationFeaturesCache.ObjectType.sequence_validation_coverage, proteinMatchKey, result);
         }
         return result;
     }
@@ -694,7 +828,7 @@ public class IdentificationFeaturesGenerator {
      * @return true if the sequence coverage is in cache
      */
     public boolean sequenceCoverageInCache(String proteinMatchKey) {
-        return identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.sequence_validation_coverage, proteinMatchKey) != null;
+        return getIdentificationFeaturesCache().contains(IdentificationFeaturesCache.ObjectType.sequence_validation_coverage, proteinMatchKey);
     }
 
     /**
@@ -719,11 +853,11 @@ public class IdentificationFeaturesGenerator {
      */
     public ArrayList<String> getNonEnzymatic(String proteinMatchKey, DigestionPreferences digestionPreferences)
             throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        ArrayList<String> result = (ArrayList<String>) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.tryptic_protein, proteinMatchKey);
+        ArrayList<String> result = (ArrayList<String>) getIdentificationFeaturesCache().getObject(IdentificationFeaturesCache.ObjectType.tryptic_protein, proteinMatchKey);
 
         if (result == null) {
             result = estimateNonEnzymatic(proteinMatchKey, digestionPreferences);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.tryptic_protein, proteinMatchKey, result);
+            getIdentificationFeaturesCache().addObject(IdentificationFeaturesCache.ObjectType.tryptic_protein, proteinMatchKey, result);
         }
         return result;
     }
@@ -804,7 +938,7 @@ public class IdentificationFeaturesGenerator {
     public void updateSequenceCoverage(String proteinMatchKey)
             throws SQLException, IOException, ClassNotFoundException, InterruptedException {
         HashMap<Integer, Double> result = estimateSequenceCoverage(proteinMatchKey);
-        identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.sequence_validation_coverage, proteinMatchKey, result);
+        getIdentificationFeaturesCache().addObject(IdentificationFeaturesCache.ObjectType.sequence_validation_coverage, proteinMatchKey, result);
     }
 
     /**
@@ -1004,11 +1138,11 @@ public class IdentificationFeaturesGenerator {
             throws IOException, SQLException, ClassNotFoundException, InterruptedException {
 
         if (method == spectrumCountingPreferences.getSelectedMethod()) {
-            Double result = (Double) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.spectrum_counting, proteinMatchKey);
+            double result = getIdentificationFeaturesCache().getDoubleValue(IdentificationFeaturesCache.ObjectType.spectrum_counting, proteinMatchKey);
 
-            if (result == null) {
+            if (Double.isNaN(result)) {
                 result = estimateSpectrumCounting(proteinMatchKey);
-                identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.spectrum_counting, proteinMatchKey, result);
+                getIdentificationFeaturesCache().addDoubleValue(IdentificationFeaturesCache.ObjectType.spectrum_counting, proteinMatchKey, result);
             }
             return result;
         } else {
@@ -1028,8 +1162,7 @@ public class IdentificationFeaturesGenerator {
      * @return true if the data is cached
      */
     public boolean spectrumCountingInCache(String proteinMatchKey) {
-        Double result = (Double) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.spectrum_counting, proteinMatchKey);
-        return result != null;
+        return getIdentificationFeaturesCache().contains(IdentificationFeaturesCache.ObjectType.spectrum_counting, proteinMatchKey);
     }
 
     /**
@@ -1219,10 +1352,10 @@ public class IdentificationFeaturesGenerator {
      */
     public Double getObservableCoverage(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException, MathException {
 
-        Double result = (Double) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.expected_coverage, proteinMatchKey);
-        if (result == null) {
+        double result = getIdentificationFeaturesCache().getDoubleValue(IdentificationFeaturesCache.ObjectType.expected_coverage, proteinMatchKey);
+        if (Double.isNaN(result)) {
             result = estimateObservableCoverage(proteinMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.expected_coverage, proteinMatchKey, result);
+            getIdentificationFeaturesCache().addDoubleValue(IdentificationFeaturesCache.ObjectType.expected_coverage, proteinMatchKey, result);
         }
 
         return result;
@@ -1236,7 +1369,7 @@ public class IdentificationFeaturesGenerator {
      * @return true if the data is in cache
      */
     public boolean observableCoverageInCache(String proteinMatchKey) {
-        return identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.expected_coverage, proteinMatchKey) != null;
+        return getIdentificationFeaturesCache().contains(IdentificationFeaturesCache.ObjectType.expected_coverage, proteinMatchKey);
     }
 
     /**
@@ -1262,7 +1395,7 @@ public class IdentificationFeaturesGenerator {
      */
     public void updateObservableCoverage(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException, MathException {
         Double result = estimateObservableCoverage(proteinMatchKey);
-        identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.expected_coverage, proteinMatchKey, result);
+        getIdentificationFeaturesCache().addObject(IdentificationFeaturesCache.ObjectType.expected_coverage, proteinMatchKey, result);
     }
 
     /**
@@ -1526,11 +1659,11 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public int getNUniquePeptides(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        Integer result = (Integer) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.unique_peptides, proteinMatchKey);
+        int result = getIdentificationFeaturesCache().getIntValue(IdentificationFeaturesCache.ObjectType.unique_peptides, proteinMatchKey);
 
-        if (result == null) {
+        if (result == IdentificationFeaturesCache.NO_INT_VALUE) {
             result = estimateNUniquePeptides(proteinMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.unique_peptides, proteinMatchKey, result);
+            getIdentificationFeaturesCache().addIntValue(IdentificationFeaturesCache.ObjectType.unique_peptides, proteinMatchKey, result);
         }
         return result;
     }
@@ -1591,11 +1724,11 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public int getNUniqueValidatedPeptides(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        Integer result = (Integer) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.unique_validated_peptides, proteinMatchKey);
+        int result = getIdentificationFeaturesCache().getIntValue(IdentificationFeaturesCache.ObjectType.unique_validated_peptides, proteinMatchKey);
 
-        if (result == null) {
+        if (result == IdentificationFeaturesCache.NO_INT_VALUE) {
             result = estimateNUniqueValidatedPeptides(proteinMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.unique_validated_peptides, proteinMatchKey, result);
+            getIdentificationFeaturesCache().addIntValue(IdentificationFeaturesCache.ObjectType.unique_validated_peptides, proteinMatchKey, result);
         }
         return result;
     }
@@ -1664,11 +1797,11 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public int getNUniquePeptidesGroup(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        Integer result = (Integer) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.unique_peptides_group, proteinMatchKey);
+        int result = getIdentificationFeaturesCache().getIntValue(IdentificationFeaturesCache.ObjectType.unique_peptides_group, proteinMatchKey);
 
-        if (result == null) {
+        if (result == IdentificationFeaturesCache.NO_INT_VALUE) {
             result = estimateNUniquePeptidesGroup(proteinMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.unique_peptides_group, proteinMatchKey, result);
+            getIdentificationFeaturesCache().addIntValue(IdentificationFeaturesCache.ObjectType.unique_peptides_group, proteinMatchKey, result);
         }
         return result;
     }
@@ -1729,11 +1862,11 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public int getNUniqueValidatedPeptidesGroup(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        Integer result = (Integer) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.unique_validated_peptides_group, proteinMatchKey);
+        int result = getIdentificationFeaturesCache().getIntValue(IdentificationFeaturesCache.ObjectType.unique_validated_peptides_group, proteinMatchKey);
 
-        if (result == null) {
+        if (result == IdentificationFeaturesCache.NO_INT_VALUE) {
             result = estimateNUniqueValidatedPeptidesGroup(proteinMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.unique_validated_peptides_group, proteinMatchKey, result);
+            getIdentificationFeaturesCache().addIntValue(IdentificationFeaturesCache.ObjectType.unique_validated_peptides_group, proteinMatchKey, result);
         }
         return result;
     }
@@ -1802,11 +1935,11 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public boolean hasEnzymaticPeptides(ProteinMatch proteinMatch, String proteinAccession) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        Boolean result = (Boolean) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.containsEnzymaticPeptides, proteinAccession);
+        Boolean result = (Boolean) getIdentificationFeaturesCache().getObject(IdentificationFeaturesCache.ObjectType.containsEnzymaticPeptides, proteinAccession);
 
         if (result == null) {
             result = checkEnzymaticPeptides(proteinMatch, proteinAccession);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.containsEnzymaticPeptides, proteinAccession, result);
+            getIdentificationFeaturesCache().addObject(IdentificationFeaturesCache.ObjectType.containsEnzymaticPeptides, proteinAccession, result);
         }
         return result;
     }
@@ -1861,11 +1994,11 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public int getNValidatedPeptides(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        Integer result = (Integer) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.number_of_validated_peptides, proteinMatchKey);
+        int result = getIdentificationFeaturesCache().getIntValue(IdentificationFeaturesCache.ObjectType.number_of_validated_peptides, proteinMatchKey);
 
-        if (result == null) {
+        if (result == IdentificationFeaturesCache.NO_INT_VALUE) {
             result = estimateNValidatedPeptides(proteinMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.number_of_validated_peptides, proteinMatchKey, result);
+            getIdentificationFeaturesCache().addIntValue(IdentificationFeaturesCache.ObjectType.number_of_validated_peptides, proteinMatchKey, result);
         }
 
         return result;
@@ -1891,11 +2024,11 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public int getNConfidentPeptides(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        Integer result = (Integer) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.number_of_confident_peptides, proteinMatchKey);
+        int result = getIdentificationFeaturesCache().getIntValue(IdentificationFeaturesCache.ObjectType.number_of_confident_peptides, proteinMatchKey);
 
-        if (result == null) {
+        if (result == IdentificationFeaturesCache.NO_INT_VALUE) {
             result = estimateNConfidentPeptides(proteinMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.number_of_confident_peptides, proteinMatchKey, result);
+            getIdentificationFeaturesCache().addIntValue(IdentificationFeaturesCache.ObjectType.number_of_confident_peptides, proteinMatchKey, result);
         }
 
         return result;
@@ -1920,7 +2053,7 @@ public class IdentificationFeaturesGenerator {
      */
     public void updateNConfidentPeptides(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
         Integer result = estimateNConfidentPeptides(proteinMatchKey);
-        identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.number_of_confident_peptides, proteinMatchKey, result);
+        getIdentificationFeaturesCache().addObject(IdentificationFeaturesCache.ObjectType.number_of_confident_peptides, proteinMatchKey, result);
     }
 
     /**
@@ -1942,7 +2075,51 @@ public class IdentificationFeaturesGenerator {
      */
     public void updateNConfidentSpectra(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
         Integer result = estimateNConfidentSpectra(proteinMatchKey);
-        identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.number_of_confident_spectra, proteinMatchKey, result);
+        getIdentificationFeaturesCache().addObject(IdentificationFeaturesCache.ObjectType.number_of_confident_spectra, proteinMatchKey, result);
+    }
+
+    /**
+     * Updates the features of a protein match which depend on the validation
+     * level of its peptides. Only the features already in cache are estimated
+     * again.
+     *
+     * @param proteinMatchKey the key of the protein match
+     *
+     * @throws java.sql.SQLException exception thrown whenever an error occurred
+     * while interacting with a database (from the protein tree or
+     * identification)
+     * @throws java.io.IOException exception thrown whenever an error occurred
+     * while reading or writing a file
+     * @throws java.lang.ClassNotFoundException exception thrown whenever an
+     * error occurred while deserializing an object from a database (from the
+     * protein tree or identification)
+     * @throws java.lang.InterruptedException exception thrown whenever a
+     * threading error occurred while interacting with a database (from the
+     * protein tree or identification)
+     */
+    public void updatePeptideValidationDependentFeatures(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+        if (nValidatedPeptidesInCache(proteinMatchKey)) {
+            Integer result = estimateNValidatedPeptides(proteinMatchKey);
+            getIdentificationFeaturesCache().addObject(IdentificationFeaturesCache.ObjectType.number_of_validated_peptides, proteinMatchKey, result);
+        }
+        if (getIdentificationFeaturesCache().contains(IdentificationFeaturesCache.ObjectType.number_of_confident_peptides, proteinMatchKey)) {
+            updateNConfidentPeptides(proteinMatchKey);
+        }
+        if (getIdentificationFeaturesCache().contains(IdentificationFeaturesCache.ObjectType.AA_coverage, proteinMatchKey)) {
+            SequenceIntervals result = estimateAACoverage(proteinMatchKey);
+            getIdentificationFeaturesCache().addObject(IdentificationFeaturesCache.ObjectType.AA_coverage, proteinMatchKey, result);
+        }
+        if (getIdentificationFeaturesCache().contains(IdentificationFeaturesCache.ObjectType.sequence_coverage, proteinMatchKey)) {
+            Double result = estimateValidatedSequenceCoverage(proteinMatchKey);
+            getIdentificationFeaturesCache().addObject(IdentificationFeaturesCache.ObjectType.sequence_coverage, proteinMatchKey, result);
+        }
+        if (sequenceCoverageInCache(proteinMatchKey)) {
+            updateSequenceCoverage(proteinMatchKey);
+        }
+        if (spectrumCountingInCache(proteinMatchKey)) {
+            double result = estimateSpectrumCounting(proteinMatchKey);
+            getIdentificationFeaturesCache().addDoubleValue(IdentificationFeaturesCache.ObjectType.spectrum_counting, proteinMatchKey, result);
+        }
     }
 
     /**
@@ -1954,7 +2131,7 @@ public class IdentificationFeaturesGenerator {
      * @return true if the information is in cache
      */
     public boolean nValidatedPeptidesInCache(String proteinMatchKey) {
-        return identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.number_of_validated_peptides, proteinMatchKey) != null;
+        return getIdentificationFeaturesCache().contains(IdentificationFeaturesCache.ObjectType.number_of_validated_peptides, proteinMatchKey);
     }
 
     /**
@@ -1977,10 +2154,10 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public Integer getNSpectra(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        Integer result = (Integer) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.number_of_spectra, proteinMatchKey);
-        if (result == null) {
+        int result = getIdentificationFeaturesCache().getIntValue(IdentificationFeaturesCache.ObjectType.number_of_spectra, proteinMatchKey);
+        if (result == IdentificationFeaturesCache.NO_INT_VALUE) {
             result = estimateNSpectra(proteinMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.number_of_spectra, proteinMatchKey, result);
+            getIdentificationFeaturesCache().addIntValue(IdentificationFeaturesCache.ObjectType.number_of_spectra, proteinMatchKey, result);
         }
         return result;
     }
@@ -1994,7 +2171,7 @@ public class IdentificationFeaturesGenerator {
      * @return true if the data is in cache
      */
     public boolean nSpectraInCache(String proteinMatchKey) {
-        return identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.number_of_spectra, proteinMatchKey) != null;
+        return getIdentificationFeaturesCache().contains(IdentificationFeaturesCache.ObjectType.number_of_spectra, proteinMatchKey);
     }
 
     /**
@@ -2053,7 +2230,7 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public int getMaxNSpectra() throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        return identificationFeaturesCache.getMaxSpectrumCount();
+        return getIdentificationFeaturesCache().getMaxSpectrumCount();
     }
 
     /**
@@ -2076,11 +2253,11 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public int getNValidatedSpectra(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        Integer result = (Integer) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.number_of_validated_spectra, proteinMatchKey);
+        int result = getIdentificationFeaturesCache().getIntValue(IdentificationFeaturesCache.ObjectType.number_of_validated_spectra, proteinMatchKey);
 
-        if (result == null) {
+        if (result == IdentificationFeaturesCache.NO_INT_VALUE) {
             result = estimateNValidatedSpectra(proteinMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.number_of_validated_spectra, proteinMatchKey, result);
+            getIdentificationFeaturesCache().addIntValue(IdentificationFeaturesCache.ObjectType.number_of_validated_spectra, proteinMatchKey, result);
         }
 
         return result;
@@ -2106,11 +2283,11 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public int getNConfidentSpectra(String proteinMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        Integer result = (Integer) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.number_of_confident_spectra, proteinMatchKey);
+        int result = getIdentificationFeaturesCache().getIntValue(IdentificationFeaturesCache.ObjectType.number_of_confident_spectra, proteinMatchKey);
 
-        if (result == null) {
+        if (result == IdentificationFeaturesCache.NO_INT_VALUE) {
             result = estimateNConfidentSpectra(proteinMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.number_of_confident_spectra, proteinMatchKey, result);
+            getIdentificationFeaturesCache().addIntValue(IdentificationFeaturesCache.ObjectType.number_of_confident_spectra, proteinMatchKey, result);
         }
 
         return result;
@@ -2125,8 +2302,7 @@ public class IdentificationFeaturesGenerator {
      * @return true if the data is in cache
      */
     public boolean nValidatedSpectraInCache(String proteinMatchKey) {
-        Integer result = (Integer) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.number_of_validated_spectra, proteinMatchKey);
-        return result != null;
+        return getIdentificationFeaturesCache().contains(IdentificationFeaturesCache.ObjectType.number_of_validated_spectra, proteinMatchKey);
     }
 
     /**
@@ -2237,11 +2413,11 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public int getNValidatedSpectraForPeptide(String peptideMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        Integer result = (Integer) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.number_of_validated_spectra, peptideMatchKey);
+        int result = getIdentificationFeaturesCache().getIntValue(IdentificationFeaturesCache.ObjectType.number_of_validated_spectra, peptideMatchKey);
 
-        if (result == null) {
+        if (result == IdentificationFeaturesCache.NO_INT_VALUE) {
             result = estimateNValidatedSpectraForPeptide(peptideMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.number_of_validated_spectra, peptideMatchKey, result);
+            getIdentificationFeaturesCache().addIntValue(IdentificationFeaturesCache.ObjectType.number_of_validated_spectra, peptideMatchKey, result);
         }
 
         return result;
@@ -2267,11 +2443,11 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public int getNConfidentSpectraForPeptide(String peptideMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        Integer result = (Integer) identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.number_of_confident_spectra, peptideMatchKey);
+        int result = getIdentificationFeaturesCache().getIntValue(IdentificationFeaturesCache.ObjectType.number_of_confident_spectra, peptideMatchKey);
 
-        if (result == null) {
+        if (result == IdentificationFeaturesCache.NO_INT_VALUE) {
             result = estimateNConfidentSpectraForPeptide(peptideMatchKey);
-            identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.number_of_confident_spectra, peptideMatchKey, result);
+            getIdentificationFeaturesCache().addIntValue(IdentificationFeaturesCache.ObjectType.number_of_confident_spectra, peptideMatchKey, result);
         }
 
         return result;
@@ -2296,7 +2472,7 @@ public class IdentificationFeaturesGenerator {
      */
     public void updateNConfidentSpectraForPeptide(String peptideMatchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
         Integer result = estimateNConfidentSpectraForPeptide(peptideMatchKey);
-        identificationFeaturesCache.addObject(IdentificationFeaturesCache.ObjectType.number_of_confident_spectra, peptideMatchKey, result);
+        getIdentificationFeaturesCache().addObject(IdentificationFeaturesCache.ObjectType.number_of_confident_spectra, peptideMatchKey, result);
     }
 
     /**
@@ -2308,7 +2484,7 @@ public class IdentificationFeaturesGenerator {
      * @return true if the data is in cache
      */
     public boolean nValidatedSpectraForPeptideInCache(String peptideMatchKey) {
-        return identificationFeaturesCache.getObject(IdentificationFeaturesCache.ObjectType.number_of_validated_spectra, peptideMatchKey) != null;
+        return getIdentificationFeaturesCache().contains(IdentificationFeaturesCache.ObjectType.number_of_validated_spectra, peptideMatchKey);
     }
 
     /**
@@ -2389,7 +2565,7 @@ public class IdentificationFeaturesGenerator {
      * Clears the spectrum counting data in cache.
      */
     public void clearSpectrumCounting() {
-        identificationFeaturesCache.removeObjects(IdentificationFeaturesCache.ObjectType.spectrum_counting);
+        getIdentificationFeaturesCache().removeObjects(IdentificationFeaturesCache.ObjectType.spectrum_counting);
     }
 
     /**
@@ -2837,15 +3013,16 @@ public class IdentificationFeaturesGenerator {
      */
     public ArrayList<String> getValidatedProteins(WaitingHandler waitingHandler, FilterPreferences filterPreferences)
             throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        ArrayList<String> result = identificationFeaturesCache.getValidatedProteinList();
+        ArrayList<String> result = getIdentificationFeaturesCache().getValidatedProteinList();
         if (result == null) {
             getProcessedProteinKeys(waitingHandler, filterPreferences);
         }
-        return identificationFeaturesCache.getValidatedProteinList();
+        return getIdentificationFeaturesCache().getValidatedProteinList();
     }
 
     /**
-     * Returns the sorted list of protein keys.
+     * Returns the sorted list of protein keys. The protein features are
+     * estimated using as many threads as available processors.
      *
      * @param filterPreferences the filtering preferences used. can be null
      * @param waitingHandler the waiting handler, can be null
@@ -2866,8 +3043,35 @@ public class IdentificationFeaturesGenerator {
      */
     public ArrayList<String> getProcessedProteinKeys(WaitingHandler waitingHandler, FilterPreferences filterPreferences)
             throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+        return getProcessedProteinKeys(waitingHandler, filterPreferences, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns the sorted list of protein keys.
+     *
+     * @param filterPreferences the filtering preferences used. can be null
+     * @param waitingHandler the waiting handler, can be null
+     * @param nThreads the number of threads to use to estimate the protein
+     * features
+     *
+     * @return the sorted list of protein keys
+     *
+     * @throws java.sql.SQLException exception thrown whenever an error occurred
+     * while interacting with a database (from the protein tree or
+     * identification)
+     * @throws java.io.IOException exception thrown whenever an error occurred
+     * while reading or writing a file
+     * @throws java.lang.ClassNotFoundException exception thrown whenever an
+     * error occurred while deserializing an object from a database (from the
+     * protein tree or identification)
+     * @throws java.lang.InterruptedException exception thrown whenever a
+     * threading error occurred while interacting with a database (from the
+     * protein tree or identification)
+     */
+    public ArrayList<String> getProcessedProteinKeys(WaitingHandler waitingHandler, FilterPreferences filterPreferences, int nThreads)
+            throws SQLException, IOException, ClassNotFoundException, InterruptedException {
 
-        if (identificationFeaturesCache.getProteinList() == null) {
+        if (getIdentificationFeaturesCache().getProteinList() == null) {
             if (waitingHandler != null) {
                 waitingHandler.resetSecondaryProgressCounter();
                 waitingHandler.setWaitingText("Loading Protein Information. Please Wait...");
@@ -2882,90 +3086,51 @@ public class IdentificationFeaturesGenerator {
                     || metrics.getMaxMW() == null
                     || metrics.getMaxMW() <= 0;
 
-            // sort the proteins according to the protein score, then number of peptides (inverted), then number of spectra (inverted).
-            HashMap<Double, HashMap<Integer, HashMap<Integer, ArrayList<String>>>> orderMap
-                    = new HashMap<Double, HashMap<Integer, HashMap<Integer, ArrayList<String>>>>();
-            ArrayList<Double> scores = new ArrayList<Double>();
-            PSParameter probabilities = new PSParameter();
-            int maxPeptides = 0, maxSpectra = 0;
-            double maxSpectrumCounting = 0, maxMW = 0;
-            int nValidatedProteins = 0;
-            int nConfidentProteins = 0;
-
+            // extract the features of the proteins in parallel
             PSParameter psParameter = new PSParameter();
             ArrayList<UrParameter> parameters = new ArrayList<UrParameter>(1);
             parameters.add(psParameter);
             ProteinMatchesIterator proteinMatchesIterator = identification.getProteinMatchesIterator(parameters, true, parameters, true, parameters, waitingHandler);
-            ProteinMatch proteinMatch;
 
-            while ((proteinMatch = proteinMatchesIterator.next()) != null) {
-
-                String proteinKey = proteinMatch.getKey();
-
-                if (!ProteinMatch.isDecoy(proteinKey)) {
-                    probabilities = (PSParameter) identification.getProteinMatchParameter(proteinKey, probabilities);
-                    if (!probabilities.isHidden()) {
-                        double score = probabilities.getProteinProbabilityScore();
-                        int nPeptides = -proteinMatch.getPeptideMatchesKeys().size();
-                        int nSpectra = -getNSpectra(proteinKey);
-
-                        if (needMaxValues) {
-
-                            if (-nPeptides > maxPeptides) {
-                                maxPeptides = -nPeptides;
-                            }
-
-                            if (-nSpectra > maxSpectra) {
-                                maxSpectra = -nSpectra;
-                            }
-
-                            double tempSpectrumCounting = getNormalizedSpectrumCounting(proteinKey);
-
-                            if (tempSpectrumCounting > maxSpectrumCounting) {
-                                maxSpectrumCounting = tempSpectrumCounting;
-                            }
-
-                            Protein currentProtein = sequenceFactory.getProtein(proteinMatch.getMainMatch());
-
-                            if (currentProtein != null) {
-                                double mw = sequenceFactory.computeMolecularWeight(proteinMatch.getMainMatch());
-                                if (mw > maxMW) {
-                                    maxMW = mw;
-                                }
-                            }
-
-                            if (probabilities.getMatchValidationLevel().isValidated()) {
-                                nValidatedProteins++;
-                                if (probabilities.getMatchValidationLevel() == MatchValidationLevel.confident) {
-                                    nConfidentProteins++;
-                                }
-                            }
-                        }
-
-                        if (!orderMap.containsKey(score)) {
-                            orderMap.put(score, new HashMap<Integer, HashMap<Integer, ArrayList<String>>>());
-                            scores.add(score);
-                        }
-
-                        if (!orderMap.get(score).containsKey(nPeptides)) {
-                            orderMap.get(score).put(nPeptides, new HashMap<Integer, ArrayList<String>>());
-                        }
-
-                        if (!orderMap.get(score).get(nPeptides).containsKey(nSpectra)) {
-                            orderMap.get(score).get(nPeptides).put(nSpectra, new ArrayList<String>());
-                        }
+            ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+            ArrayList<ProteinOrderRunnable> runnables = new ArrayList<ProteinOrderRunnable>(nThreads);
+            for (int i = 1; i <= nThreads; i++) {
+                ProteinOrderRunnable runnable = new ProteinOrderRunnable(proteinMatchesIterator, needMaxValues, waitingHandler);
+                pool.submit(runnable);
+                runnables.add(runnable);
+            }
+            pool.shutdown();
+            if (!pool.awaitTermination(7, TimeUnit.DAYS)) {
+                throw new InterruptedException("Protein sorting timed out. Please contact the developers.");
+            }
 
-                        orderMap.get(score).get(nPeptides).get(nSpectra).add(proteinKey);
-                    }
-                }
+            int nProteins = 0;
+            for (ProteinOrderRunnable runnable : runnables) {
+                runnable.throwException();
+                nProteins += runnable.getProteinRecords().size();
+            }
 
-                if (waitingHandler != null) {
-                    waitingHandler.increaseSecondaryProgressCounter();
+            if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                return null;
+            }
 
-                    if (waitingHandler.isRunCanceled()) {
-                        return null;
-                    }
+            // sort the proteins according to the protein score, then number of peptides (inverted), then number of spectra (inverted).
+            ProteinRecord[] proteinRecords = new ProteinRecord[nProteins];
+            int maxPeptides = 0, maxSpectra = 0;
+            double maxSpectrumCounting = 0, maxMW = 0;
+            int nValidatedProteins = 0;
+            int nConfidentProteins = 0;
+            int index = 0;
+            for (ProteinOrderRunnable runnable : runnables) {
+                for (ProteinRecord proteinRecord : runnable.getProteinRecords()) {
+                    proteinRecords[index++] = proteinRecord;
                 }
+                maxPeptides = Math.max(maxPeptides, runnable.getMaxPeptides());
+                maxSpectra = Math.max(maxSpectra, runnable.getMaxSpectra());
+                maxSpectrumCounting = Math.max(maxSpectrumCounting, runnable.getMaxSpectrumCounting());
+                maxMW = Math.max(maxMW, runnable.getMaxMW());
+                nValidatedProteins += runnable.getnValidatedProteins();
+                nConfidentProteins += runnable.getnConfidentProteins();
             }
 
             if (needMaxValues) {
@@ -2977,43 +3142,20 @@ public class IdentificationFeaturesGenerator {
                 metrics.setnConfidentProteins(nConfidentProteins);
             }
 
-            ArrayList<String> proteinList = new ArrayList<String>();
-
-            ArrayList<Double> scoreList = new ArrayList<Double>(orderMap.keySet());
-            Collections.sort(scoreList);
-
             if (waitingHandler != null) {
                 waitingHandler.resetSecondaryProgressCounter();
                 waitingHandler.setWaitingText("Updating Protein Table. Please Wait...");
-                waitingHandler.setMaxSecondaryProgressCounter(identification.getProteinIdentification().size());
+                waitingHandler.setSecondaryProgressCounterIndeterminate(true);
             }
 
-            for (double currentScore : scoreList) {
-
-                ArrayList<Integer> nPeptideList = new ArrayList<Integer>(orderMap.get(currentScore).keySet());
-                Collections.sort(nPeptideList);
-
-                for (int currentNPeptides : nPeptideList) {
-
-                    ArrayList<Integer> nPsmList = new ArrayList<Integer>(orderMap.get(currentScore).get(currentNPeptides).keySet());
-                    Collections.sort(nPsmList);
-
-                    for (int currentNPsms : nPsmList) {
-                        ArrayList<String> tempList = orderMap.get(currentScore).get(currentNPeptides).get(currentNPsms);
-                        Collections.sort(tempList);
-                        proteinList.addAll(tempList);
-                        if (waitingHandler != null) {
-                            waitingHandler.setMaxSecondaryProgressCounter(tempList.size());
+            Arrays.sort(proteinRecords);
 
-                            if (waitingHandler.isRunCanceled()) {
-                                return null;
-                            }
-                        }
-                    }
-                }
+            ArrayList<String> proteinList = new ArrayList<String>(nProteins);
+            for (ProteinRecord proteinRecord : proteinRecords) {
+                proteinList.add(proteinRecord.proteinKey);
             }
 
-            identificationFeaturesCache.setProteinList(proteinList);
+            getIdentificationFeaturesCache().setProteinList(proteinList);
 
             if (waitingHandler != null) {
                 waitingHandler.setPrimaryProgressCounterIndeterminate(true);
@@ -3024,14 +3166,14 @@ public class IdentificationFeaturesGenerator {
             }
         }
 
-        if (hidingNeeded(filterPreferences) || identificationFeaturesCache.getProteinListAfterHiding() == null) {
+        if (hidingNeeded(filterPreferences) || getIdentificationFeaturesCache().getProteinListAfterHiding() == null) {
             ArrayList<String> proteinListAfterHiding = new ArrayList<String>();
             ArrayList<String> validatedProteinList = new ArrayList<String>();
             PSParameter psParameter = new PSParameter();
             int nValidatedProteins = 0;
             int nConfidentProteins = 0;
 
-            for (String proteinKey : identificationFeaturesCache.getProteinList()) {
+            for (String proteinKey : getIdentificationFeaturesCache().getProteinList()) {
                 if (!ProteinMatch.isDecoy(proteinKey)) {
                     psParameter = (PSParameter) identification.getProteinMatchParameter(proteinKey, psParameter);
                     if (!psParameter.isHidden()) {
@@ -3055,13 +3197,13 @@ public class IdentificationFeaturesGenerator {
                 }
             }
 
-            identificationFeaturesCache.setProteinListAfterHiding(proteinListAfterHiding);
-            identificationFeaturesCache.setValidatedProteinList(validatedProteinList);
+            getIdentificationFeaturesCache().setProteinListAfterHiding(proteinListAfterHiding);
+            getIdentificationFeaturesCache().setValidatedProteinList(validatedProteinList);
             metrics.setnValidatedProteins(nValidatedProteins);
             metrics.setnConfidentProteins(nConfidentProteins);
         }
 
-        return identificationFeaturesCache.getProteinListAfterHiding();
+        return getIdentificationFeaturesCache().getProteinListAfterHiding();
     }
 
     /**
@@ -3086,10 +3228,10 @@ public class IdentificationFeaturesGenerator {
      */
     public ArrayList<String> getProteinKeys(WaitingHandler waitingHandler, FilterPreferences filterPreferences)
             throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        if (identificationFeaturesCache.getProteinList() == null) {
+        if (getIdentificationFeaturesCache().getProteinList() == null) {
             getProcessedProteinKeys(waitingHandler, filterPreferences);
         }
-        return identificationFeaturesCache.getProteinList();
+        return getIdentificationFeaturesCache().getProteinList();
     }
 
     /**
@@ -3112,7 +3254,7 @@ public class IdentificationFeaturesGenerator {
      * protein tree or identification)
      */
     public ArrayList<String> getSortedPeptideKeys(String proteinKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
-        if (!proteinKey.equals(identificationFeaturesCache.getCurrentProteinKey()) || identificationFeaturesCache.getPeptideList() == null) {
+        if (!proteinKey.equals(getIdentificationFeaturesCache().getCurrentProteinKey()) || getIdentificationFeaturesCache().getPeptideList() == null) {
 
             ProteinMatch proteinMatch = identification.getProteinMatch(proteinKey);
             HashMap<Double, HashMap<Integer, ArrayList<String>>> peptideMap = new HashMap<Double, HashMap<Integer, ArrayList<String>>>();
@@ -3148,7 +3290,7 @@ public class IdentificationFeaturesGenerator {
                 }
             }
 
-            identificationFeaturesCache.setMaxSpectrumCount(maxSpectrumCount);
+            getIdentificationFeaturesCache().setMaxSpectrumCount(maxSpectrumCount);
 
             ArrayList<Double> scores = new ArrayList<Double>(peptideMap.keySet());
             Collections.sort(scores);
@@ -3164,10 +3306,10 @@ public class IdentificationFeaturesGenerator {
                 }
             }
 
-            identificationFeaturesCache.setPeptideList(peptideList);
-            identificationFeaturesCache.setCurrentProteinKey(proteinKey);
+            getIdentificationFeaturesCache().setPeptideList(peptideList);
+            getIdentificationFeaturesCache().setCurrentProteinKey(proteinKey);
         }
-        return identificationFeaturesCache.getPeptideList();
+        return getIdentificationFeaturesCache().getPeptideList();
     }
 
     /**
@@ -3195,7 +3337,7 @@ public class IdentificationFeaturesGenerator {
      */
     public ArrayList<String> getSortedPsmKeys(String peptideKey, boolean sortOnRt, boolean forceUpdate) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
 
-        if (!peptideKey.equals(identificationFeaturesCache.getCurrentPeptideKey()) || identificationFeaturesCache.getPsmList() == null || forceUpdate) {
+        if (!peptideKey.equals(getIdentificationFeaturesCache().getCurrentPeptideKey()) || getIdentificationFeaturesCache().getPsmList() == null || forceUpdate) {
 
             PeptideMatch currentPeptideMatch = identification.getPeptideMatch(peptideKey);
             HashMap<Integer, HashMap<Double, ArrayList<String>>> orderingMap = new HashMap<Integer, HashMap<Double, ArrayList<String>>>();
@@ -3247,7 +3389,7 @@ public class IdentificationFeaturesGenerator {
                 }
             }
 
-            identificationFeaturesCache.setnValidatedPsms(nValidatedPsms);
+            getIdentificationFeaturesCache().setnValidatedPsms(nValidatedPsms);
 
             ArrayList<Integer> charges = new ArrayList<Integer>(orderingMap.keySet());
             Collections.sort(charges);
@@ -3263,11 +3405,11 @@ public class IdentificationFeaturesGenerator {
                 }
             }
 
-            identificationFeaturesCache.setPsmList(psmList);
-            identificationFeaturesCache.setCurrentPeptideKey(peptideKey);
+            getIdentificationFeaturesCache().setPsmList(psmList);
+            getIdentificationFeaturesCache().setCurrentPeptideKey(peptideKey);
         }
 
-        return identificationFeaturesCache.getPsmList();
+        return getIdentificationFeaturesCache().getPsmList();
     }
 
     /**
@@ -3277,7 +3419,7 @@ public class IdentificationFeaturesGenerator {
      * @return the number of validated PSMs for the last selected peptide
      */
     public int getNValidatedPsms() {
-        return identificationFeaturesCache.getnValidatedPsms();
+        return getIdentificationFeaturesCache().getnValidatedPsms();
     }
 
     /**
@@ -3293,13 +3435,13 @@ public class IdentificationFeaturesGenerator {
             return false;
         }
 
-        if (identificationFeaturesCache.isFiltered()) {
+        if (getIdentificationFeaturesCache().isFiltered()) {
             return true;
         }
 
         for (ProteinFilter proteinFilter : filterPreferences.getProteinHideFilters().values()) {
             if (proteinFilter.isActive()) {
-                identificationFeaturesCache.setFiltered(true);
+                getIdentificationFeaturesCache().setFiltered(true);
                 return true;
             }
         }
@@ -3313,7 +3455,7 @@ public class IdentificationFeaturesGenerator {
      * @param proteinList the ordered protein list
      */
     public void setProteinKeys(ArrayList<String> proteinList) {
-        identificationFeaturesCache.setProteinList(proteinList);
+        getIdentificationFeaturesCache().setProteinList(proteinList);
     }
 
     /**
@@ -3334,6 +3476,35 @@ public class IdentificationFeaturesGenerator {
         this.identificationFeaturesCache = identificationFeaturesCache;
     }
 
+    /**
+     * Loads the identification features cache saved separately from the
+     * settings in the given database. If no cache is found in the database,
+     * the current cache is kept.
+     *
+     * @param objectsDB the database containing the identification features
+     * cache
+     *
+     * @return a boolean indicating whether a cache was found in the database
+     *
+     * @throws SQLException exception thrown whenever an error occurred while
+     * querying the database
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the database
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing the cache
+     * @throws InterruptedException exception thrown whenever a threading
+     * issue occurred while querying the database
+     */
+    public boolean loadIdentificationFeaturesCache(ObjectsDB objectsDB) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+        if (!objectsDB.inDB(CpsParent.settingsTableName, IdentificationFeaturesCache.nameInCpsSettingsTable, false)) {
+            return false;
+        }
+        IdentificationFeaturesCache loadedCache = (IdentificationFeaturesCache) objectsDB.retrieveObject(CpsParent.settingsTableName, IdentificationFeaturesCache.nameInCpsSettingsTable, true, false);
+        loadedCache.setReadOnly(false);
+        identificationFeaturesCache = loadedCache;
+        return true;
+    }
+
     /**
      * Returns the metrics.
      *
@@ -3403,4 +3574,500 @@ public class IdentificationFeaturesGenerator {
         }
         return nValidated;
     }
+
+    /**
+     * Estimates the standard features of all peptide and protein matches and
+     * stores them in cache. The matches are processed in parallel and the
+     * matches parameters are loaded by batches. Only the features stored in
+     * the columns of the cache are estimated, the coverage objects are
+     * estimated when needed.
+     *
+     * @param nThreads the number of threads to use
+     * @param waitingHandler a waiting handler to display progress and allow
+     * canceling the process
+     * @param exceptionHandler handler for exceptions
+     *
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the database
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the object in the database
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while casting the database input in the desired match class
+     * @throws InterruptedException thrown whenever a threading issue occurred
+     * while estimating the features
+     */
+    public void precomputeFeatures(int nThreads, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler)
+            throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+
+        waitingHandler.setSecondaryProgressCounterIndeterminate(false);
+        waitingHandler.resetSecondaryProgressCounter();
+        waitingHandler.setMaxSecondaryProgressCounter(identification.getPeptideIdentification().size() + identification.getProteinIdentification().size());
+
+        ArrayList<UrParameter> parameters = new ArrayList<UrParameter>(1);
+        parameters.add(new PSParameter());
+
+        // peptide features
+        PeptideMatchesIterator peptideMatchesIterator = identification.getPeptideMatchesIterator(parameters, true, parameters, waitingHandler);
+        ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+        for (int i = 1; i <= nThreads && !waitingHandler.isRunCanceled(); i++) {
+            pool.submit(new PeptideFeaturesRunnable(peptideMatchesIterator, waitingHandler, exceptionHandler));
+        }
+        pool.shutdown();
+        if (!pool.awaitTermination(7, TimeUnit.DAYS)) {
+            throw new InterruptedException("Peptide features estimation timed out. Please contact the developers.");
+        }
+        if (waitingHandler.isRunCanceled()) {
+            return;
+        }
+
+        // protein features
+        ProteinMatchesIterator proteinMatchesIterator = identification.getProteinMatchesIterator(parameters, true, parameters, true, parameters, waitingHandler);
+        pool = Executors.newFixedThreadPool(nThreads);
+        for (int i = 1; i <= nThreads && !waitingHandler.isRunCanceled(); i++) {
+            pool.submit(new ProteinFeaturesRunnable(proteinMatchesIterator, waitingHandler, exceptionHandler));
+        }
+        pool.shutdown();
+        if (!pool.awaitTermination(7, TimeUnit.DAYS)) {
+            throw new InterruptedException("Protein features estimation timed out. Please contact the developers.");
+        }
+
+        waitingHandler.setSecondaryProgressCounterIndeterminate(true);
+    }
+
+    /**
+     * Estimates the sequence coverage by validated peptides of a protein match
+     * and stores it in cache if not already there. Contrary to
+     * getValidatedSequenceCoverage, the amino acid coverage is not stored in
+     * the cache of big objects, where it would replace the coverage of the
+     * matches inspected by the user.
+     *
+     * @param proteinMatchKey the key of the protein match
+     *
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the database
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the object in the database
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while casting the database input in the desired match class
+     * @throws InterruptedException thrown whenever a threading issue occurred
+     * while interacting with the database
+     */
+    private void precomputeValidatedSequenceCoverage(String proteinMatchKey)
+            throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+        if (Double.isNaN(getIdentificationFeaturesCache().getDoubleValue(IdentificationFeaturesCache.ObjectType.sequence_coverage, proteinMatchKey))) {
+            Object cachedObject = getIdentificationFeaturesCache().getObject(IdentificationFeaturesCache.ObjectType.AA_coverage, proteinMatchKey);
+            SequenceIntervals aaCoverage = cachedObject instanceof SequenceIntervals ? (SequenceIntervals) cachedObject : estimateAACoverage(proteinMatchKey);
+            getIdentificationFeaturesCache().addDoubleValue(IdentificationFeaturesCache.ObjectType.sequence_coverage, proteinMatchKey, getValidatedSequenceCoverage(aaCoverage));
+        }
+    }
+
+    /**
+     * Runnable estimating the features of peptide matches.
+     *
+     * @author Marc Vaudel
+     */
+    private class PeptideFeaturesRunnable implements Runnable {
+
+        /**
+         * An iterator for the peptide matches.
+         */
+        private PeptideMatchesIterator peptideMatchesIterator;
+        /**
+         * The waiting handler.
+         */
+        private WaitingHandler waitingHandler;
+        /**
+         * Handler for the exceptions.
+         */
+        private ExceptionHandler exceptionHandler;
+
+        /**
+         * Constructor.
+         *
+         * @param peptideMatchesIterator a peptide matches iterator
+         * @param waitingHandler a waiting handler to display progress and allow
+         * canceling the process
+         * @param exceptionHandler handler for exceptions
+         */
+        public PeptideFeaturesRunnable(PeptideMatchesIterator peptideMatchesIterator, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+            this.peptideMatchesIterator = peptideMatchesIterator;
+            this.waitingHandler = waitingHandler;
+            this.exceptionHandler = exceptionHandler;
+        }
+
+        @Override
+        public void run() {
+            try {
+                PeptideMatch peptideMatch;
+                while ((peptideMatch = peptideMatchesIterator.next()) != null && !waitingHandler.isRunCanceled()) {
+                    String peptideKey = peptideMatch.getKey();
+                    getNValidatedSpectraForPeptide(peptideKey);
+                    getNConfidentSpectraForPeptide(peptideKey);
+                    waitingHandler.increaseSecondaryProgressCounter();
+                }
+            } catch (Exception e) {
+                exceptionHandler.catchException(e);
+                waitingHandler.setRunCanceled();
+            }
+        }
+    }
+
+    /**
+     * Runnable estimating the features of protein matches.
+     *
+     * @author Marc Vaudel
+     */
+    private class ProteinFeaturesRunnable implements Runnable {
+
+        /**
+         * An iterator for the protein matches.
+         */
+        private ProteinMatchesIterator proteinMatchesIterator;
+        /**
+         * The waiting handler.
+         */
+        private WaitingHandler waitingHandler;
+        /**
+         * Handler for the exceptions.
+         */
+        private ExceptionHandler exceptionHandler;
+
+        /**
+         * Constructor.
+         *
+         * @param proteinMatchesIterator a protein matches iterator
+         * @param waitingHandler a waiting handler to display progress and allow
+         * canceling the process
+         * @param exceptionHandler handler for exceptions
+         */
+        public ProteinFeaturesRunnable(ProteinMatchesIterator proteinMatchesIterator, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+            this.proteinMatchesIterator = proteinMatchesIterator;
+            this.waitingHandler = waitingHandler;
+            this.exceptionHandler = exceptionHandler;
+        }
+
+        @Override
+        public void run() {
+            try {
+                ProteinMatch proteinMatch;
+                while ((proteinMatch = proteinMatchesIterator.next()) != null && !waitingHandler.isRunCanceled()) {
+                    String proteinKey = proteinMatch.getKey();
+                    getNSpectra(proteinKey);
+                    getNValidatedSpectra(proteinKey);
+                    getNConfidentSpectra(proteinKey);
+                    getNValidatedPeptides(proteinKey);
+                    getNConfidentPeptides(proteinKey);
+                    getNUniquePeptides(proteinKey);
+                    getNUniqueValidatedPeptides(proteinKey);
+                    precomputeValidatedSequenceCoverage(proteinKey);
+                    getObservableCoverage(proteinKey);
+                    getSpectrumCounting(proteinKey);
+                    waitingHandler.increaseSecondaryProgressCounter();
+                }
+            } catch (Exception e) {
+                exceptionHandler.catchException(e);
+                waitingHandler.setRunCanceled();
+            }
+        }
+    }
+
+    /**
+     * The features used to order a protein match in the protein list.
+     *
+     * @author Marc Vaudel
+     */
+    private static class ProteinRecord implements Comparable<ProteinRecord> {
+
+        /**
+         * The key of the protein match.
+         */
+        private final String proteinKey;
+        /**
+         * The protein probability score.
+         */
+        private final double score;
+        /**
+         * The number of peptides.
+         */
+        private final int nPeptides;
+        /**
+         * The number of spectra.
+         */
+        private final int nSpectra;
+
+        /**
+         * Constructor.
+         *
+         * @param proteinKey the key of the protein match
+         * @param score the protein probability score
+         * @param nPeptides the number of peptides
+         * @param nSpectra the number of spectra
+         */
+        public ProteinRecord(String proteinKey, double score, int nPeptides, int nSpectra) {
+            this.proteinKey = proteinKey;
+            this.score = score;
+            this.nPeptides = nPeptides;
+            this.nSpectra = nSpectra;
+        }
+
+        /**
+         * Orders the proteins by increasing score, then decreasing number of
+         * peptides, then decreasing number of spectra, then key.
+         *
+         * @param other the other protein record
+         *
+         * @return the comparison result
+         */
+        @Override
+        public int compareTo(ProteinRecord other) {
+            int result = Double.compare(score, other.score);
+            if (result != 0) {
+                return result;
+            }
+            if (nPeptides != other.nPeptides) {
+                return nPeptides > other.nPeptides ? -1 : 1;
+            }
+            if (nSpectra != other.nSpectra) {
+                return nSpectra > other.nSpectra ? -1 : 1;
+            }
+            return proteinKey.compareTo(other.proteinKey);
+        }
+    }
+
+    /**
+     * Runnable extracting the features needed to order the protein matches.
+     * Every runnable keeps its own records and maxima, they are merged once
+     * all runnables are done.
+     *
+     * @author Marc Vaudel
+     */
+    private class ProteinOrderRunnable implements Runnable {
+
+        /**
+         * An iterator for the protein matches.
+         */
+        private final ProteinMatchesIterator proteinMatchesIterator;
+        /**
+         * Indicates whether the maximal values need to be estimated.
+         */
+        private final boolean needMaxValues;
+        /**
+         * The waiting handler, can be null.
+         */
+        private final WaitingHandler waitingHandler;
+        /**
+         * The records of the proteins processed by this runnable.
+         */
+        private final ArrayList<ProteinRecord> proteinRecords = new ArrayList<ProteinRecord>();
+        /**
+         * The maximal number of peptides.
+         */
+        private int maxPeptides = 0;
+        /**
+         * The maximal number of spectra.
+         */
+        private int maxSpectra = 0;
+        /**
+         * The maximal spectrum counting.
+         */
+        private double maxSpectrumCounting = 0;
+        /**
+         * The maximal molecular weight.
+         */
+        private double maxMW = 0;
+        /**
+         * The number of validated proteins.
+         */
+        private int nValidatedProteins = 0;
+        /**
+         * The number of confident proteins.
+         */
+        private int nConfidentProteins = 0;
+        /**
+         * Exception encountered while processing the matches, null if none.
+         */
+        private Exception exception = null;
+
+        /**
+         * Constructor.
+         *
+         * @param proteinMatchesIterator a protein matches iterator
+         * @param needMaxValues indicates whether the maximal values need to be
+         * estimated
+         * @param waitingHandler a waiting handler to display progress and allow
+         * canceling the process, can be null
+         */
+        public ProteinOrderRunnable(ProteinMatchesIterator proteinMatchesIterator, boolean needMaxValues, WaitingHandler waitingHandler) {
+            this.proteinMatchesIterator = proteinMatchesIterator;
+            this.needMaxValues = needMaxValues;
+            this.waitingHandler = waitingHandler;
+        }
+
+        @Override
+        public void run() {
+            try {
+                PSParameter psParameter = new PSParameter();
+                ProteinMatch proteinMatch;
+                while ((proteinMatch = proteinMatchesIterator.next()) != null) {
+
+                    if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                        return;
+                    }
+
+                    String proteinKey = proteinMatch.getKey();
+
+                    if (!ProteinMatch.isDecoy(proteinKey)) {
+                        psParameter = (PSParameter) identification.getProteinMatchParameter(proteinKey, psParameter);
+                        if (!psParameter.isHidden()) {
+                            double score = psParameter.getProteinProbabilityScore();
+                            int nPeptides = proteinMatch.getPeptideMatchesKeys().size();
+                            int nSpectra = getNSpectra(proteinKey);
+
+                            if (needMaxValues) {
+
+                                if (nPeptides > maxPeptides) {
+                                    maxPeptides = nPeptides;
+                                }
+
+                                if (nSpectra > maxSpectra) {
+                                    maxSpectra = nSpectra;
+                                }
+
+                                double tempSpectrumCounting = getNormalizedSpectrumCounting(proteinKey);
+
+                                if (tempSpectrumCounting > maxSpectrumCounting) {
+                                    maxSpectrumCounting = tempSpectrumCounting;
+                                }
+
+                                Protein currentProtein = sequenceFactory.getProtein(proteinMatch.getMainMatch());
+
+                                if (currentProtein != null) {
+                                    double mw = sequenceFactory.computeMolecularWeight(proteinMatch.getMainMatch());
+                                    if (mw > maxMW) {
+                                        maxMW = mw;
+                                    }
+                                }
+
+                                if (psParameter.getMatchValidationLevel().isValidated()) {
+                                    nValidatedProteins++;
+                                    if (psParameter.getMatchValidationLevel() == MatchValidationLevel.confident) {
+                                        nConfidentProteins++;
+                                    }
+                                }
+                            }
+
+                            proteinRecords.add(new ProteinRecord(proteinKey, score, nPeptides, nSpectra));
+                        }
+                    }
+
+                    if (waitingHandler != null) {
+                        waitingHandler.increaseSecondaryProgressCounter();
+                    }
+                }
+            } catch (Exception e) {
+                exception = e;
+                if (waitingHandler != null) {
+                    waitingHandler.setRunCanceled();
+                }
+            }
+        }
+
+        /**
+         * Throws the exception encountered while processing the matches, if
+         * any.
+         *
+         * @throws SQLException exception thrown whenever an error occurred
+         * while interacting with a database
+         * @throws IOException exception thrown whenever an error occurred while
+         * reading or writing a file
+         * @throws ClassNotFoundException exception thrown whenever an error
+         * occurred while deserializing an object from a database
+         * @throws InterruptedException exception thrown whenever a threading
+         * error occurred while interacting with a database
+         */
+        public void throwException() throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+            if (exception == null) {
+                return;
+            }
+            if (exception instanceof SQLException) {
+                throw (SQLException) exception;
+            }
+            if (exception instanceof IOException) {
+                throw (IOException) exception;
+            }
+            if (exception instanceof ClassNotFoundException) {
+                throw (ClassNotFoundException) exception;
+            }
+            if (exception instanceof InterruptedException) {
+                throw (InterruptedException) exception;
+            }
+            if (exception instanceof RuntimeException) {
+                throw (RuntimeException) exception;
+            }
+            throw new IllegalStateException(exception);
+        }
+
+        /**
+         * Returns the records of the proteins processed by this runnable.
+         *
+         * @return the records of the proteins processed by this runnable
+         */
+        public ArrayList<ProteinRecord> getProteinRecords() {
+            return proteinRecords;
+        }
+
+        /**
+         * Returns the maximal number of peptides.
+         *
+         * @return the maximal number of peptides
+         */
+        public int getMaxPeptides() {
+            return maxPeptides;
+        }
+
+        /**
+         * Returns the maximal number of spectra.
+         *
+         * @return the maximal number of spectra
+         */
+        public int getMaxSpectra() {
+            return maxSpectra;
+        }
+
+        /**
+         * Returns the maximal spectrum counting.
+         *
+         * @return the maximal spectrum counting
+         */
+        public double getMaxSpectrumCounting() {
+            return maxSpectrumCounting;
+        }
+
+        /**
+         * Returns the maximal molecular weight.
+         *
+         * @return the maximal molecular weight
+         */
+        public double getMaxMW() {
+            return maxMW;
+        }
+
+        /**
+         * Returns the number of validated proteins.
+         *
+         * @return the number of validated proteins
+         */
+        public int getnValidatedProteins() {
+            return nValidatedProteins;
+        }
+
+        /**
+         * Returns the number of confident proteins.
+         *
+         * @return the number of confident proteins
+         */
+        public int getnConfidentProteins() {
+            return nConfidentProteins;
+        }
+    }
 }
@@ -0,0 +1,295 @@
+package eu.isas.peptideshaker.utils;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Dictionary attributing a dense integer id to every key, ids being attributed
+ * in order of insertion starting from 0. The keys are stored in an array
+ * indexed by id and looked up using an open addressing table of primitive
+ * longs holding the hash and id of every key, avoiding the entries and boxed
+ * values of a map. Lookups do not lock, insertions are synchronized. Only the
+ * keys are serialized, the table is rebuilt when reading.
+ *
+ * @author Marc Vaudel
+ */
+public class KeyDictionary implements Serializable {
+
+    /**
+     * Serial number for backward compatibility.
+     */
+    static final long serialVersionUID = 5106938526357425702L;
+    /**
+     * The initial number of keys.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * Value returned by the lookup when the table is being updated and the
+     * key needs to be looked up again while holding the lock.
+     */
+    private static final int RETRY = -2;
+    /**
+     * The keys indexed by id, only the first size keys are set.
+     */
+    private transient volatile String[] keys;
+    /**
+     * The hash table, every slot contains the hash of a key in the high bits
+     * and its id plus one in the low bits, 0 for empty slots. The length of
+     * the table is a power of two and at least twice the number of keys. When
+     * replaced, the keys array is always replaced first.
+     */
+    private transient volatile long[] table;
+    /**
+     * The number of keys.
+     */
+    private transient volatile int size = 0;
+
+    /**
+     * Constructor.
+     */
+    public KeyDictionary() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param expectedSize the expected number of keys
+     */
+    public KeyDictionary(int expectedSize) {
+        int capacity = Math.max(expectedSize, INITIAL_CAPACITY);
+        keys = new String[capacity];
+        table = new long[getTableSize(capacity)];
+    }
+
+    /**
+     * Returns the id of the given key, attributing a new id if the key is not
+     * in the dictionary yet.
+     *
+     * @param key the key
+     *
+     * @return the id of the key
+     */
+    public int getId(String key) {
+        int id = lookup(key);
+        if (id >= 0) {
+            return id;
+        }
+        return addKey(key);
+    }
+
+    /**
+     * Returns the id of the given key, -1 if not in the dictionary.
+     *
+     * @param key the key
+     *
+     * @return the id of the key
+     */
+    public int indexOf(String key) {
+        int id = lookup(key);
+        if (id == RETRY) {
+            synchronized (this) {
+                return lookup(key);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Returns the key of the given id.
+     *
+     * @param id the id
+     *
+     * @return the key of the given id
+     */
+    public String getKey(int id) {
+        String[] currentKeys = keys;
+        if (id >= 0 && id < currentKeys.length && currentKeys[id] != null) {
+            return currentKeys[id];
+        }
+        synchronized (this) {
+            if (id < 0 || id >= size) {
+                throw new IndexOutOfBoundsException("Id " + id + " out of bounds for size " + size + ".");
+            }
+            return keys[id];
+        }
+    }
+
+    /**
+     * Returns the number of keys in the dictionary.
+     *
+     * @return the number of keys in the dictionary
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the keys as an array indexed by id.
+     *
+     * @return the keys as an array indexed by id
+     */
+    public synchronized String[] toArray() {
+        return Arrays.copyOf(keys, size);
+    }
+
+    /**
+     * Looks up the id of a key without locking.
+     *
+     * @param key the key
+     *
+     * @return the id of the key, -1 if not found, RETRY if an insertion was
+     * not visible yet
+     */
+    private int lookup(String key) {
+        long[] currentTable = table;
+        String[] currentKeys = keys;
+        int hash = hash(key);
+        int mask = currentTable.length - 1;
+        int slot = hash & mask;
+        while (true) {
+            long entry = currentTable[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if ((int) (entry >>> 32) == hash) {
+                int id = (int) entry - 1;
+                if (id >= currentKeys.length || currentKeys[id] == null) {
+                    return RETRY;
+                }
+                if (currentKeys[id].equals(key)) {
+                    return id;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Adds a key to the dictionary if not present.
+     *
+     * @param key the key
+     *
+     * @return the id of the key
+     */
+    private synchronized int addKey(String key) {
+        long[] currentTable = table;
+        int hash = hash(key);
+        int mask = currentTable.length - 1;
+        int slot = hash & mask;
+        while (currentTable[slot] != 0) {
+            long entry = currentTable[slot];
+            int id = (int) entry - 1;
+            if ((int) (entry >>> 32) == hash && keys[id].equals(key)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int id = size;
+        if (id == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * keys.length);
+        }
+        keys[id] = key;
+        currentTable[slot] = getEntry(hash, id);
+        size = id + 1;
+        if (2 * size > currentTable.length) {
+            rehash(2 * currentTable.length);
+        }
+        return id;
+    }
+
+    /**
+     * Rebuilds the table with the given size. The caller must hold the lock
+     * of the dictionary.
+     *
+     * @param tableSize the new size of the table, must be a power of two
+     */
+    private void rehash(int tableSize) {
+        long[] newTable = new long[tableSize];
+        int mask = tableSize - 1;
+        String[] currentKeys = keys;
+        for (int id = 0; id < size; id++) {
+            int hash = hash(currentKeys[id]);
+            int slot = hash & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = getEntry(hash, id);
+        }
+        table = newTable;
+    }
+
+    /**
+     * Returns the entry of the table for a key.
+     *
+     * @param hash the hash of the key
+     * @param id the id of the key
+     *
+     * @return the entry of the table
+     */
+    private static long getEntry(int hash, int id) {
+        return ((long) hash << 32) | (id + 1);
+    }
+
+    /**
+     * Returns the hash of a key, spreading the high bits to the low bits used
+     * by the table.
+     *
+     * @param key the key
+     *
+     * @return the hash of the key
+     */
+    private static int hash(String key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns the size of the table needed for the given number of keys.
+     *
+     * @param nKeys the number of keys
+     *
+     * @return the size of the table
+     */
+    private static int getTableSize(int nKeys) {
+        int tableSize = 1;
+        while (tableSize < 2 * nKeys) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+
+    /**
+     * Writes the keys to a stream.
+     *
+     * @param out the stream to write to
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the stream
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(Arrays.copyOf(keys, size));
+    }
+
+    /**
+     * Reads the keys from a stream and rebuilds the table.
+     *
+     * @param in the stream to read from
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the stream
+     * @throws ClassNotFoundException exception thrown whenever a class of the
+     * stream was not found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        String[] savedKeys = (String[]) in.readObject();
+        size = savedKeys.length;
+        keys = Arrays.copyOf(savedKeys, Math.max(size, INITIAL_CAPACITY));
+        rehash(getTableSize(keys.length));
+    }
+}
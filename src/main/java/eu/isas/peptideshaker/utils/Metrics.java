@@ -125,6 +125,11 @@ public class Metrics implements Serializable {
      * The sum of all spectrum counting masses.
      */
     private Double totalSpectrumCountingMass = null;
+    /**
+     * Indicates whether the metrics were modified since they were last saved
+     * or loaded.
+     */
+    private transient boolean modified = true;
 
     /**
      * Constructor.
@@ -146,6 +151,7 @@ public class Metrics implements Serializable {
      */
     public void clearFoundCharges() {
         foundCharges.clear();
+        modified = true;
     }
 
     /**
@@ -159,6 +165,7 @@ public class Metrics implements Serializable {
                 this.foundCharges.add(newCharge);
             }
         }
+        modified = true;
     }
 
     /**
@@ -177,6 +184,7 @@ public class Metrics implements Serializable {
      */
     public void setMaxPeptidePrecursorErrorDa(double maxPeptidePrecursorErrorDa) {
         this.maxPrecursorErrorDa = maxPeptidePrecursorErrorDa;
+        modified = true;
     }
 
     /**
@@ -196,6 +204,7 @@ public class Metrics implements Serializable {
      */
     public void setMaxPeptidePrecursorErrorPpm(double maxPeptidePrecursorErrorPpm) {
         this.maxPrecursorErrorPpm = maxPeptidePrecursorErrorPpm;
+        modified = true;
     }
 
     /**
@@ -214,6 +223,7 @@ public class Metrics implements Serializable {
      */
     public void setMaxTagPrecursorErrorDa(double maxTagPrecursorErrorDa) {
         this.maxTagPrecursorErrorDa = maxTagPrecursorErrorDa;
+        modified = true;
     }
 
     /**
@@ -232,6 +242,7 @@ public class Metrics implements Serializable {
      */
     public void setMaxTagPrecursorErrorPpm(double maxTagPrecursorErrorPpm) {
         this.maxTagPrecursorErrorPpm = maxTagPrecursorErrorPpm;
+        modified = true;
     }
 
     /**
@@ -250,6 +261,7 @@ public class Metrics implements Serializable {
      */
     public void setMaxMW(Double maxMW) {
         this.maxMW = maxMW;
+        modified = true;
     }
 
     /**
@@ -269,6 +281,7 @@ public class Metrics implements Serializable {
      */
     public void setMaxNPeptides(Integer maxNPeptides) {
         this.maxNPeptides = maxNPeptides;
+        modified = true;
     }
 
     /**
@@ -288,6 +301,7 @@ public class Metrics implements Serializable {
      */
     public void setMaxNSpectra(Integer maxNSpectra) {
         this.maxNSpectra = maxNSpectra;
+        modified = true;
     }
 
     /**
@@ -309,6 +323,7 @@ public class Metrics implements Serializable {
      */
     public void setMaxSpectrumCounting(Double maxSpectrumCounting) {
         this.maxSpectrumCounting = maxSpectrumCounting;
+        modified = true;
     }
 
     /**
@@ -327,6 +342,7 @@ public class Metrics implements Serializable {
      */
     public void setProteinKeys(ArrayList<String> proteinKeys) {
         this.proteinKeys = proteinKeys;
+        modified = true;
     }
 
     /**
@@ -336,6 +352,7 @@ public class Metrics implements Serializable {
      */
     public void setMaxProteinKeyLength(Integer maxProteinKeyLength) {
         this.maxProteinKeyLength = maxProteinKeyLength;
+        modified = true;
     }
 
     /**
@@ -367,6 +384,7 @@ public class Metrics implements Serializable {
      */
     public void setnValidatedProteins(int nValidatedProteins) {
         this.nValidatedProteins = nValidatedProteins;
+        modified = true;
     }
 
     /**
@@ -385,6 +403,7 @@ public class Metrics implements Serializable {
      */
     public void setnConfidentProteins(int nConfidentProteins) {
         this.nConfidentProteins = nConfidentProteins;
+        modified = true;
     }
 
     /**
@@ -404,6 +423,7 @@ public class Metrics implements Serializable {
      */
     public void setFoundModifications(ArrayList<String> foundModifications) {
         this.foundModifications = foundModifications;
+        modified = true;
     }
 
     /**
@@ -414,6 +434,7 @@ public class Metrics implements Serializable {
      */
     public void setFractionPsmMatches(HashMap<String, ArrayList<String>> fractionPsmMatches) {
         this.fractionPsmMatches = fractionPsmMatches;
+        modified = true;
     }
 
     /**
@@ -438,6 +459,7 @@ public class Metrics implements Serializable {
      */
     public void setTotalPeptidesPerFraction(HashMap<String, Integer> totalPeptidesPerFractions) {
         this.totalPeptidesPerFractions = totalPeptidesPerFractions;
+        modified = true;
     }
 
     /**
@@ -473,6 +495,7 @@ public class Metrics implements Serializable {
      */
     public void setObservedFractionalMassesAll(HashMap<String, ArrayList<Double>> observedFractionalMassesAll) {
         this.observedFractionalMassesAll = observedFractionalMassesAll;
+        modified = true;
     }
 
     /**
@@ -492,6 +515,7 @@ public class Metrics implements Serializable {
      */
     public void setMaxValidatedPeptidesPerFraction(Integer maxValidatedPeptidesPerFraction) {
         this.maxValidatedPeptidesPerFraction = maxValidatedPeptidesPerFraction;
+        modified = true;
     }
 
     /**
@@ -511,6 +535,7 @@ public class Metrics implements Serializable {
      */
     public void setMaxValidatedSpectraPerFraction(Integer maxValidatedSpectraPerFraction) {
         this.maxValidatedSpectraPerFraction = maxValidatedSpectraPerFraction;
+        modified = true;
     }
 
     /**
@@ -530,6 +555,7 @@ public class Metrics implements Serializable {
      */
     public void setMaxProteinAveragePrecursorIntensity(Double maxProteinAveragePrecursorIntensity) {
         this.maxProteinAveragePrecursorIntensity = maxProteinAveragePrecursorIntensity;
+        modified = true;
     }
 
     /**
@@ -549,6 +575,7 @@ public class Metrics implements Serializable {
      */
     public void setMaxProteinSummedPrecursorIntensity(Double maxProteinSummedPrecursorIntensity) {
         this.maxProteinSummedPrecursorIntensity = maxProteinSummedPrecursorIntensity;
+        modified = true;
     }
 
     /**
@@ -568,6 +595,7 @@ public class Metrics implements Serializable {
      */
     public void setPeptideLengthDistribution(NonSymmetricalNormalDistribution peptideLengthDistribution) {
         this.peptideLengthDistribution = peptideLengthDistribution;
+        modified = true;
     }
 
     /**
@@ -586,6 +614,7 @@ public class Metrics implements Serializable {
      */
     public void setOrderedSpectrumKeys(HashMap<String, ArrayList<String>> orderedSpectrumKeys) {
         this.orderedSpectrumKeys = orderedSpectrumKeys;
+        modified = true;
     }
 
     /**
@@ -596,6 +625,7 @@ public class Metrics implements Serializable {
             orderedSpectrumKeys.clear();
         }
         orderedSpectrumKeys = null;
+        modified = true;
     }
 
     /**
@@ -614,6 +644,7 @@ public class Metrics implements Serializable {
      */
     public void setTotalSpectrumCountingMass(double totalSpectrumCountingMass) {
         this.totalSpectrumCountingMass = totalSpectrumCountingMass;
+        modified = true;
     }
 
     /**
@@ -632,6 +663,27 @@ public class Metrics implements Serializable {
      */
     public void setTotalSpectrumCounting(Double totalSpectrumCountingIndexes) {
         this.totalSpectrumCounting = totalSpectrumCountingIndexes;
+        modified = true;
+    }
+
+    /**
+     * Indicates whether the metrics were modified since they were last saved
+     * or loaded.
+     *
+     * @return a boolean indicating whether the metrics were modified
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Sets whether the metrics were modified since they were last saved or
+     * loaded.
+     *
+     * @param modified a boolean indicating whether the metrics were modified
+     */
+    public void setModified(boolean modified) {
+        this.modified = modified;
     }
 
 }
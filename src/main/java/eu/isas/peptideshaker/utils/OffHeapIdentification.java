@@ -0,0 +1,364 @@
+package eu.isas.peptideshaker.utils;
+
+import com.compomics.util.db.ObjectsCache;
+import com.compomics.util.experiment.identification.identifications.Ms2Identification;
+import com.compomics.util.experiment.personalization.UrParameter;
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MS2 identification storing the parameters of the matches in off-heap
+ * memory mapped stores instead of the identification database. The matches
+ * themselves and all other objects remain in the database.
+ *
+ * There is one store per match level and parameter class, located in a sub
+ * folder of the database folder so that it is saved and loaded along with the
+ * database. As the parameters are not cached, a parameter must be updated
+ * after every modification. Loading parameters in cache is not needed and
+ * does nothing. Removing a match removes its parameters from the stores.
+ * Closing the identification closes the stores, they are opened again when
+ * the connection is restored.
+ *
+ * @author Marc Vaudel
+ */
+public class OffHeapIdentification extends Ms2Identification {
+
+    /**
+     * Serial number for backward compatibility.
+     */
+    static final long serialVersionUID = -3207485523542379180L;
+    /**
+     * The name of the folder containing the stores in the database folder.
+     */
+    public static final String STORE_FOLDER_NAME = "match_store";
+    /**
+     * Prefix for the stores of the protein match parameters.
+     */
+    private static final String PROTEIN_PREFIX = "protein_";
+    /**
+     * Prefix for the stores of the peptide match parameters.
+     */
+    private static final String PEPTIDE_PREFIX = "peptide_";
+    /**
+     * Prefix for the stores of the spectrum match parameters.
+     */
+    private static final String SPECTRUM_PREFIX = "spectrum_";
+    /**
+     * The folder containing the stores.
+     */
+    private transient File storeFolder = null;
+    /**
+     * The stores indexed by name.
+     */
+    private transient ConcurrentHashMap<String, OffHeapMatchStore> stores = null;
+
+    /**
+     * Constructor.
+     *
+     * @param reference the reference of the identification
+     */
+    public OffHeapIdentification(String reference) {
+        super(reference);
+    }
+
+    @Override
+    public void establishConnection(String dbFolder, boolean deleteOldDatabase, ObjectsCache objectsCache) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+        super.establishConnection(dbFolder, deleteOldDatabase, objectsCache);
+        openStores(new File(dbFolder, STORE_FOLDER_NAME), deleteOldDatabase);
+    }
+
+    @Override
+    public void restoreConnection(String dbFolder, boolean deleteOldDatabase, ObjectsCache objectsCache) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+        super.restoreConnection(dbFolder, deleteOldDatabase, objectsCache);
+        openStores(new File(dbFolder, STORE_FOLDER_NAME), deleteOldDatabase);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            super.close();
+        } finally {
+            try {
+                closeStores();
+            } catch (IOException e) {
+                throw new SQLException("An error occurred while closing the match stores.", e);
+            }
+        }
+    }
+
+    /**
+     * Sets the folder of the stores, opening the stores lazily. If the stores
+     * were already opened in the same folder they are kept open.
+     *
+     * @param folder the folder containing the stores
+     * @param deleteExisting if true, the existing stores are deleted
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * closing or deleting the previous stores
+     */
+    private synchronized void openStores(File folder, boolean deleteExisting) throws IOException {
+        if (stores != null && !deleteExisting && folder.equals(storeFolder)) {
+            return;
+        }
+        closeStores();
+        if (deleteExisting && folder.exists()) {
+            File[] files = folder.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.delete()) {
+                        throw new IOException("Impossible to delete " + file.getAbsolutePath() + ".");
+                    }
+                }
+            }
+        }
+        storeFolder = folder;
+        stores = new ConcurrentHashMap<String, OffHeapMatchStore>();
+    }
+
+    /**
+     * Closes the stores, releasing the mapped files.
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * closing the stores
+     */
+    private synchronized void closeStores() throws IOException {
+        if (stores != null) {
+            IOException exception = null;
+            for (OffHeapMatchStore store : stores.values()) {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    if (exception == null) {
+                        exception = e;
+                    }
+                }
+            }
+            stores = null;
+            if (exception != null) {
+                throw exception;
+            }
+        }
+    }
+
+    /**
+     * Returns the store for the given prefix and parameter, opening it if
+     * needed.
+     *
+     * @param prefix the prefix of the match level
+     * @param urParameter the parameter
+     *
+     * @return the store
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * opening the store
+     */
+    private OffHeapMatchStore getStore(String prefix, UrParameter urParameter) throws IOException {
+        return getStore(prefix + urParameter.getClass().getName());
+    }
+
+    /**
+     * Returns the store of the given name, opening it if needed.
+     *
+     * @param name the name of the store
+     *
+     * @return the store
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * opening the store
+     */
+    private OffHeapMatchStore getStore(String name) throws IOException {
+        ConcurrentHashMap<String, OffHeapMatchStore> currentStores = stores;
+        if (currentStores == null) {
+            throw new IllegalStateException("Connection to the match store not established.");
+        }
+        OffHeapMatchStore store = currentStores.get(name);
+        if (store == null) {
+            synchronized (this) {
+                store = stores.get(name);
+                if (store == null) {
+                    store = new OffHeapMatchStore(storeFolder, name, false);
+                    stores.put(name, store);
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Removes the parameters of a match from all the stores of its match
+     * level, including the stores not opened yet.
+     *
+     * @param prefix the prefix of the match level
+     * @param key the key of the match
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * opening or writing a store
+     */
+    private void removeParameters(String prefix, String key) throws IOException {
+        if (stores == null) {
+            throw new IllegalStateException("Connection to the match store not established.");
+        }
+        ArrayList<String> names = new ArrayList<String>();
+        File[] files = storeFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String fileName = file.getName();
+                if (fileName.startsWith(prefix) && fileName.endsWith(OffHeapMatchStore.INDEX_SUFFIX)) {
+                    names.add(fileName.substring(0, fileName.length() - OffHeapMatchStore.INDEX_SUFFIX.length()));
+                }
+            }
+        }
+        for (String name : names) {
+            getStore(name).remove(key);
+        }
+    }
+
+    /**
+     * Returns the parameter stored for a match, null if not found.
+     *
+     * @param prefix the prefix of the match level
+     * @param key the key of the match
+     * @param urParameter the parameter
+     *
+     * @return the parameter stored for the match
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the store
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing the parameter
+     */
+    private UrParameter getParameter(String prefix, String key, UrParameter urParameter) throws IOException, ClassNotFoundException {
+        byte[] bytes = getStore(prefix, urParameter).get(key);
+        if (bytes == null) {
+            return null;
+        }
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return (UrParameter) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Stores the parameter of a match.
+     *
+     * @param prefix the prefix of the match level
+     * @param key the key of the match
+     * @param urParameter the parameter
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the store
+     */
+    private void setParameter(String prefix, String key, UrParameter urParameter) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        try {
+            out.writeObject(urParameter);
+        } finally {
+            out.close();
+        }
+        getStore(prefix, urParameter).put(key, bytes.toByteArray());
+    }
+
+    @Override
+    public UrParameter getProteinMatchParameter(String key, UrParameter urParameter) throws IOException, ClassNotFoundException {
+        return getParameter(PROTEIN_PREFIX, key, urParameter);
+    }
+
+    @Override
+    public UrParameter getPeptideMatchParameter(String key, UrParameter urParameter) throws IOException, ClassNotFoundException {
+        return getParameter(PEPTIDE_PREFIX, key, urParameter);
+    }
+
+    @Override
+    public UrParameter getSpectrumMatchParameter(String key, UrParameter urParameter) throws IOException, ClassNotFoundException {
+        return getParameter(SPECTRUM_PREFIX, key, urParameter);
+    }
+
+    @Override
+    public void addProteinMatchParameter(String key, UrParameter urParameter) throws IOException {
+        setParameter(PROTEIN_PREFIX, key, urParameter);
+    }
+
+    @Override
+    public void addPeptideMatchParameter(String key, UrParameter urParameter) throws IOException {
+        setParameter(PEPTIDE_PREFIX, key, urParameter);
+    }
+
+    @Override
+    public void addSpectrumMatchParameter(String key, UrParameter urParameter) throws IOException {
+        setParameter(SPECTRUM_PREFIX, key, urParameter);
+    }
+
+    @Override
+    public void updateProteinMatchParameter(String key, UrParameter urParameter) throws IOException {
+        setParameter(PROTEIN_PREFIX, key, urParameter);
+    }
+
+    @Override
+    public void updatePeptideMatchParameter(String key, UrParameter urParameter) throws IOException {
+        setParameter(PEPTIDE_PREFIX, key, urParameter);
+    }
+
+    @Override
+    public void updateSpectrumMatchParameter(String key, UrParameter urParameter) throws IOException {
+        setParameter(SPECTRUM_PREFIX, key, urParameter);
+    }
+
+    @Override
+    public void loadProteinMatchParameters(ArrayList<String> proteinKeys, UrParameter urParameter, WaitingHandler waitingHandler, boolean displayProgress) {
+        // the parameters are read directly from the store
+    }
+
+    @Override
+    public void loadProteinMatchParameters(UrParameter urParameter, WaitingHandler waitingHandler, boolean displayProgress) {
+        // the parameters are read directly from the store
+    }
+
+    @Override
+    public void loadPeptideMatchParameters(ArrayList<String> peptideKeys, UrParameter urParameter, WaitingHandler waitingHandler, boolean displayProgress) {
+        // the parameters are read directly from the store
+    }
+
+    @Override
+    public void loadPeptideMatchParameters(UrParameter urParameter, WaitingHandler waitingHandler, boolean displayProgress) {
+        // the parameters are read directly from the store
+    }
+
+    @Override
+    public void loadSpectrumMatchParameters(ArrayList<String> spectrumKeys, UrParameter urParameter, WaitingHandler waitingHandler, boolean displayProgress) {
+        // the parameters are read directly from the store
+    }
+
+    @Override
+    public void loadSpectrumMatchParameters(String fileName, UrParameter urParameter, WaitingHandler waitingHandler, boolean displayProgress) {
+        // the parameters are read directly from the store
+    }
+
+    @Override
+    public void removeProteinMatch(String matchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+        super.removeProteinMatch(matchKey);
+        removeParameters(PROTEIN_PREFIX, matchKey);
+    }
+
+    @Override
+    public void removePeptideMatch(String matchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+        super.removePeptideMatch(matchKey);
+        removeParameters(PEPTIDE_PREFIX, matchKey);
+    }
+
+    @Override
+    public void removeSpectrumMatch(String matchKey) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+        super.removeSpectrumMatch(matchKey);
+        removeParameters(SPECTRUM_PREFIX, matchKey);
+    }
+}
@@ -0,0 +1,750 @@
+package eu.isas.peptideshaker.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Append-only key value store backed by memory mapped files. The values are
+ * kept outside of the Java heap in a data file and located using an open
+ * addressing hash index stored in a second file.
+ *
+ * Every record of the data file contains the length of the key, the length of
+ * the value, the key in UTF-8 and the value. The data file is mapped in
+ * segments of fixed size and records never span two segments. Updating a key
+ * appends a new record and points the index to it, the previous record is
+ * left in place. Removing a key clears its slot and moves the following keys
+ * of the same cluster back so that no tombstone is needed, the record is left
+ * in place.
+ *
+ * The index file starts with a header containing the magic number, the
+ * version, the position and capacity of the table, the number of keys and the
+ * end of the data. Every slot of the table contains the high bits of the hash
+ * of a key and the position of its record plus one, 0 for empty slots. When
+ * the table is grown, the new table is written after the previous one and the
+ * header is updated.
+ *
+ * Reads can be conducted concurrently, writes are exclusive.
+ *
+ * @author Marc Vaudel
+ */
+public class OffHeapMatchStore {
+
+    /**
+     * The magic number of the index file.
+     */
+    private static final int MAGIC = 0x50534D53;
+    /**
+     * The version of the file format.
+     */
+    private static final int VERSION = 1;
+    /**
+     * The size of the header of the index file in bytes.
+     */
+    private static final int HEADER_SIZE = 40;
+    /**
+     * The size of the segments of the data file in bytes.
+     */
+    private static final int SEGMENT_SIZE = 32 * 1024 * 1024;
+    /**
+     * The size of the record header: the length of the key and of the value.
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+    /**
+     * The initial capacity of the table.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * The maximal capacity of the table, the table being mapped in a single
+     * buffer.
+     */
+    private static final int MAX_CAPACITY = 1 << 27;
+    /**
+     * The number of bits used to store the position of the records in the
+     * table.
+     */
+    private static final int POSITION_BITS = 40;
+    /**
+     * Mask for the position of the records in the table.
+     */
+    private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+    /**
+     * The encoding of the keys.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    /**
+     * The suffix of the data file.
+     */
+    public static final String DATA_SUFFIX = ".data";
+    /**
+     * The suffix of the index file.
+     */
+    public static final String INDEX_SUFFIX = ".index";
+    /**
+     * The data file.
+     */
+    private final File dataFile;
+    /**
+     * The index file.
+     */
+    private final File indexFile;
+    /**
+     * The random access to the data file.
+     */
+    private RandomAccessFile dataAccess;
+    /**
+     * The random access to the index file.
+     */
+    private RandomAccessFile indexAccess;
+    /**
+     * The mapped segments of the data file.
+     */
+    private final ArrayList<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+    /**
+     * The mapped header of the index file.
+     */
+    private MappedByteBuffer header;
+    /**
+     * The mapped table of the index file.
+     */
+    private MappedByteBuffer table;
+    /**
+     * The position of the table in the index file.
+     */
+    private long tablePosition;
+    /**
+     * The number of slots of the table, a power of two.
+     */
+    private int capacity;
+    /**
+     * The number of keys in the store.
+     */
+    private int size;
+    /**
+     * The end of the data in the data file.
+     */
+    private long dataEnd;
+    /**
+     * Indicates whether the store was modified since the last flush.
+     */
+    private boolean modified = false;
+    /**
+     * Lock allowing concurrent reads and exclusive writes.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor. Opens the store with the given name in the given folder,
+     * creating it if it does not exist.
+     *
+     * @param folder the folder where the store files are located
+     * @param name the name of the store
+     * @param deleteExisting if true, existing files are deleted
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * opening the files
+     */
+    public OffHeapMatchStore(File folder, String name, boolean deleteExisting) throws IOException {
+
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Impossible to create the folder " + folder.getAbsolutePath() + ".");
+        }
+        dataFile = new File(folder, name + DATA_SUFFIX);
+        indexFile = new File(folder, name + INDEX_SUFFIX);
+
+        if (deleteExisting) {
+            if (dataFile.exists() && !dataFile.delete()) {
+                throw new IOException("Impossible to delete " + dataFile.getAbsolutePath() + ".");
+            }
+            if (indexFile.exists() && !indexFile.delete()) {
+                throw new IOException("Impossible to delete " + indexFile.getAbsolutePath() + ".");
+            }
+        }
+
+        boolean newStore = !indexFile.exists() || indexFile.length() < HEADER_SIZE;
+        dataAccess = new RandomAccessFile(dataFile, "rw");
+        indexAccess = new RandomAccessFile(indexFile, "rw");
+        header = indexAccess.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+
+        if (newStore) {
+            tablePosition = HEADER_SIZE;
+            capacity = INITIAL_CAPACITY;
+            size = 0;
+            dataEnd = 0;
+            table = mapTable(tablePosition, capacity);
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            writeHeader();
+        } else {
+            if (header.getInt(0) != MAGIC) {
+                close();
+                throw new IOException(indexFile.getAbsolutePath() + " is not a match store index.");
+            }
+            int version = header.getInt(4);
+            if (version != VERSION) {
+                close();
+                throw new IOException("Match store version " + version + " not supported.");
+            }
+            tablePosition = header.getLong(8);
+            capacity = header.getInt(16);
+            size = header.getInt(20);
+            dataEnd = header.getLong(24);
+            table = mapTable(tablePosition, capacity);
+            for (int i = 0; i <= getSegmentIndex(dataEnd); i++) {
+                segments.add(mapSegment(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the value stored for the given key, null if not found.
+     *
+     * @param key the key
+     *
+     * @return the value stored for the given key
+     *
+     * @throws IOException exception thrown whenever the store is closed
+     */
+    public byte[] get(String key) throws IOException {
+        byte[] keyBytes = key.getBytes(UTF8);
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            int slot = findSlot(keyBytes, hash(keyBytes));
+            long entry = table.getLong(slot << 3);
+            if (entry == 0) {
+                return null;
+            }
+            long position = (entry & POSITION_MASK) - 1;
+            ByteBuffer segment = segments.get(getSegmentIndex(position)).duplicate();
+            int offset = getSegmentOffset(position);
+            int valueLength = segment.getInt(offset + 4);
+            byte[] value = new byte[valueLength];
+            segment.position(offset + RECORD_HEADER_SIZE + keyBytes.length);
+            segment.get(value);
+            return value;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indicates whether the store contains the given key.
+     *
+     * @param key the key
+     *
+     * @return a boolean indicating whether the store contains the given key
+     *
+     * @throws IOException exception thrown whenever the store is closed
+     */
+    public boolean contains(String key) throws IOException {
+        byte[] keyBytes = key.getBytes(UTF8);
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            int slot = findSlot(keyBytes, hash(keyBytes));
+            return table.getLong(slot << 3) != 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores a value for the given key, replacing the previous value if any.
+     *
+     * @param key the key
+     * @param value the value
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing to the files
+     */
+    public void put(String key, byte[] value) throws IOException {
+
+        byte[] keyBytes = getKeyBytes(key, value);
+
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            putRecord(keyBytes, value);
+            writeHeader();
+            modified = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stores a batch of values, replacing the previous values if any. The
+     * lock is acquired and the header written only once for the whole batch.
+     *
+     * @param keys the keys
+     * @param values the values in the same order as the keys
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing to the files
+     */
+    public void putAll(ArrayList<String> keys, ArrayList<byte[]> values) throws IOException {
+
+        if (keys.size() != values.size()) {
+            throw new IllegalArgumentException(keys.size() + " keys for " + values.size() + " values.");
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        ArrayList<byte[]> keysBytes = new ArrayList<byte[]>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            keysBytes.add(getKeyBytes(keys.get(i), values.get(i)));
+        }
+
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            for (int i = 0; i < keysBytes.size(); i++) {
+                putRecord(keysBytes.get(i), values.get(i));
+            }
+            writeHeader();
+            modified = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the given key from the store.
+     *
+     * @param key the key
+     *
+     * @return a boolean indicating whether the key was in the store
+     *
+     * @throws IOException exception thrown whenever the store is closed
+     */
+    public boolean remove(String key) throws IOException {
+
+        byte[] keyBytes = key.getBytes(UTF8);
+
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            int slot = findSlot(keyBytes, hash(keyBytes));
+            if (table.getLong(slot << 3) == 0) {
+                return false;
+            }
+            // backward shift deletion: move back the keys which would not be found anymore
+            int mask = capacity - 1;
+            int emptySlot = slot;
+            table.putLong(emptySlot << 3, 0);
+            int currentSlot = slot;
+            while (true) {
+                currentSlot = (currentSlot + 1) & mask;
+                long entry = table.getLong(currentSlot << 3);
+                if (entry == 0) {
+                    break;
+                }
+                int homeSlot = hash(getRecordKey((entry & POSITION_MASK) - 1)) & mask;
+                if (((currentSlot - homeSlot) & mask) >= ((currentSlot - emptySlot) & mask)) {
+                    table.putLong(emptySlot << 3, entry);
+                    table.putLong(currentSlot << 3, 0);
+                    emptySlot = currentSlot;
+                }
+            }
+            size--;
+            writeHeader();
+            modified = true;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the UTF-8 bytes of a key after checking that its record fits in
+     * a segment.
+     *
+     * @param key the key
+     * @param value the value to store for this key
+     *
+     * @return the bytes of the key
+     */
+    private static byte[] getKeyBytes(String key, byte[] value) {
+        byte[] keyBytes = key.getBytes(UTF8);
+        if (RECORD_HEADER_SIZE + keyBytes.length + value.length > SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Value of " + value.length + " bytes too large for the match store.");
+        }
+        return keyBytes;
+    }
+
+    /**
+     * Appends a record to the data file and points the index to it. The
+     * header is not written. The caller must hold the write lock.
+     *
+     * @param keyBytes the bytes of the key
+     * @param value the value
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing to the files
+     */
+    private void putRecord(byte[] keyBytes, byte[] value) throws IOException {
+
+        int recordSize = RECORD_HEADER_SIZE + keyBytes.length + value.length;
+        int hash = hash(keyBytes);
+
+        // records never span two segments
+        int segmentIndex = getSegmentIndex(dataEnd);
+        if (getSegmentOffset(dataEnd) + recordSize > SEGMENT_SIZE) {
+            segmentIndex++;
+            dataEnd = (long) segmentIndex * SEGMENT_SIZE;
+        }
+        while (segments.size() <= segmentIndex) {
+            segments.add(mapSegment(segments.size()));
+        }
+        if (dataEnd + recordSize >= POSITION_MASK) {
+            throw new IOException("Match store " + dataFile.getAbsolutePath() + " is full.");
+        }
+        ByteBuffer segment = segments.get(segmentIndex).duplicate();
+        segment.position(getSegmentOffset(dataEnd));
+        segment.putInt(keyBytes.length);
+        segment.putInt(value.length);
+        segment.put(keyBytes);
+        segment.put(value);
+
+        int slot = findSlot(keyBytes, hash);
+        boolean newKey = table.getLong(slot << 3) == 0;
+        table.putLong(slot << 3, getEntry(hash, dataEnd));
+        dataEnd += recordSize;
+        if (newKey) {
+            size++;
+            if (2 * size > capacity) {
+                growTable();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of keys in the store.
+     *
+     * @return the number of keys in the store
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the mapped content to the disk and updates the modification date
+     * of the files if the store was modified.
+     *
+     * @throws IOException exception thrown whenever the store is closed
+     */
+    public void flush() throws IOException {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            if (modified) {
+                for (MappedByteBuffer segment : segments) {
+                    segment.force();
+                }
+                table.force();
+                header.force();
+                long time = System.currentTimeMillis();
+                dataFile.setLastModified(time);
+                indexFile.setLastModified(time);
+                modified = false;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes and closes the store. The mapped buffers are released
+     * immediately when the platform allows it so that the files can be
+     * deleted, otherwise they are released by the garbage collector.
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * closing the files
+     */
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (dataAccess == null) {
+                return;
+            }
+            if (table != null) {
+                flush();
+            }
+            for (MappedByteBuffer segment : segments) {
+                unmap(segment);
+            }
+            segments.clear();
+            unmap(header);
+            unmap(table);
+            header = null;
+            table = null;
+            try {
+                dataAccess.close();
+            } finally {
+                indexAccess.close();
+                dataAccess = null;
+                indexAccess = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Releases a mapped buffer without waiting for the garbage collector. The
+     * buffer must not be accessed afterwards. Nothing is done if the platform
+     * does not allow it.
+     *
+     * @param buffer the buffer to release, can be null
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (Exception e) {
+            try {
+                // Java 8 and earlier
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (Exception e1) {
+                // released by the garbage collector
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of the table containing the given key, or the empty
+     * slot where it should be inserted. The caller must hold a lock.
+     *
+     * @param keyBytes the key in UTF-8
+     * @param hash the hash of the key
+     *
+     * @return the slot of the table
+     */
+    private int findSlot(byte[] keyBytes, int hash) {
+        int mask = capacity - 1;
+        int slot = hash & mask;
+        long hashBits = getHashBits(hash);
+        while (true) {
+            long entry = table.getLong(slot << 3);
+            if (entry == 0) {
+                return slot;
+            }
+            if ((entry & ~POSITION_MASK) == hashBits && keyEquals(keyBytes, (entry & POSITION_MASK) - 1)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Indicates whether the record at the given position has the given key.
+     *
+     * @param keyBytes the key in UTF-8
+     * @param position the position of the record in the data file
+     *
+     * @return a boolean indicating whether the record has the given key
+     */
+    private boolean keyEquals(byte[] keyBytes, long position) {
+        MappedByteBuffer segment = segments.get(getSegmentIndex(position));
+        int offset = getSegmentOffset(position);
+        if (segment.getInt(offset) != keyBytes.length) {
+            return false;
+        }
+        offset += RECORD_HEADER_SIZE;
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (segment.get(offset + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the key of the record at the given position.
+     *
+     * @param position the position of the record in the data file
+     *
+     * @return the key in UTF-8
+     */
+    private byte[] getRecordKey(long position) {
+        MappedByteBuffer segment = segments.get(getSegmentIndex(position));
+        int offset = getSegmentOffset(position);
+        byte[] keyBytes = new byte[segment.getInt(offset)];
+        for (int i = 0; i < keyBytes.length; i++) {
+            keyBytes[i] = segment.get(offset + RECORD_HEADER_SIZE + i);
+        }
+        return keyBytes;
+    }
+
+    /**
+     * Doubles the capacity of the table. The new table is written after the
+     * current one in the index file. The caller must hold the write lock.
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * mapping the new table
+     */
+    private void growTable() throws IOException {
+        if (capacity == MAX_CAPACITY) {
+            throw new IOException("Maximal number of keys reached for match store " + dataFile.getAbsolutePath() + ".");
+        }
+        int newCapacity = 2 * capacity;
+        long newPosition = tablePosition + 8L * capacity;
+        MappedByteBuffer newTable = mapTable(newPosition, newCapacity);
+        int mask = newCapacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            long entry = table.getLong(i << 3);
+            if (entry != 0) {
+                int slot = hash(getRecordKey((entry & POSITION_MASK) - 1)) & mask;
+                while (newTable.getLong(slot << 3) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                newTable.putLong(slot << 3, entry);
+            }
+        }
+        table = newTable;
+        tablePosition = newPosition;
+        capacity = newCapacity;
+    }
+
+    /**
+     * Writes the position and capacity of the table, the number of keys and
+     * the end of the data in the header.
+     */
+    private void writeHeader() {
+        header.putLong(8, tablePosition);
+        header.putInt(16, capacity);
+        header.putInt(20, size);
+        header.putLong(24, dataEnd);
+    }
+
+    /**
+     * Maps a table of the index file.
+     *
+     * @param position the position of the table in the index file
+     * @param nSlots the number of slots of the table
+     *
+     * @return the mapped table
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * mapping the file
+     */
+    private MappedByteBuffer mapTable(long position, int nSlots) throws IOException {
+        return indexAccess.getChannel().map(FileChannel.MapMode.READ_WRITE, position, 8L * nSlots);
+    }
+
+    /**
+     * Maps a segment of the data file.
+     *
+     * @param index the index of the segment
+     *
+     * @return the mapped segment
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * mapping the file
+     */
+    private MappedByteBuffer mapSegment(int index) throws IOException {
+        return dataAccess.getChannel().map(FileChannel.MapMode.READ_WRITE, (long) index * SEGMENT_SIZE, SEGMENT_SIZE);
+    }
+
+    /**
+     * Throws an exception if the store is closed.
+     *
+     * @throws IOException exception thrown whenever the store is closed
+     */
+    private void checkOpen() throws IOException {
+        if (table == null) {
+            throw new IOException("Match store " + dataFile.getAbsolutePath() + " is closed.");
+        }
+    }
+
+    /**
+     * Returns the index of the segment containing the given position.
+     *
+     * @param position a position in the data file
+     *
+     * @return the index of the segment
+     */
+    private static int getSegmentIndex(long position) {
+        return (int) (position / SEGMENT_SIZE);
+    }
+
+    /**
+     * Returns the offset of the given position in its segment.
+     *
+     * @param position a position in the data file
+     *
+     * @return the offset in the segment
+     */
+    private static int getSegmentOffset(long position) {
+        return (int) (position % SEGMENT_SIZE);
+    }
+
+    /**
+     * Returns the entry of the table for a record.
+     *
+     * @param hash the hash of the key
+     * @param position the position of the record
+     *
+     * @return the entry of the table
+     */
+    private static long getEntry(int hash, long position) {
+        return getHashBits(hash) | (position + 1);
+    }
+
+    /**
+     * Returns the bits of the hash stored in the table.
+     *
+     * @param hash the hash of the key
+     *
+     * @return the bits of the hash stored in the table
+     */
+    private static long getHashBits(int hash) {
+        return ((long) (hash >>> (POSITION_BITS - 32))) << POSITION_BITS;
+    }
+
+    /**
+     * Returns the hash of a key using the finalizer of MurmurHash3.
+     *
+     * @param keyBytes the key in UTF-8
+     *
+     * @return the hash of the key
+     */
+    private static int hash(byte[] keyBytes) {
+        int hash = 1;
+        for (byte b : keyBytes) {
+            hash = 31 * hash + b;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
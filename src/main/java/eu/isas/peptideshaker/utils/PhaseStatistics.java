@@ -0,0 +1,198 @@
+package eu.isas.peptideshaker.utils;
+
+import java.io.Serializable;
+
+/**
+ * The resources used by a phase of the processing, see ProcessingStatistics.
+ *
+ * @author Marc Vaudel
+ */
+public class PhaseStatistics implements Serializable {
+
+    /**
+     * Serial version UID for post-serialization compatibility.
+     */
+    static final long serialVersionUID = 2467170335824018923L;
+    /**
+     * The name of the phase.
+     */
+    private final String name;
+    /**
+     * The wall clock time in nanoseconds when the phase started.
+     */
+    final long startWallTime;
+    /**
+     * The CPU time of the process in nanoseconds when the phase started, -1
+     * if not available.
+     */
+    final long startCpuTime;
+    /**
+     * The bytes allocated by the process when the phase started, -1 if not
+     * available.
+     */
+    final long startAllocatedBytes;
+    /**
+     * The wall time of the phase in milliseconds.
+     */
+    private long wallTime = 0;
+    /**
+     * The CPU time of the phase in milliseconds, -1 if not available.
+     */
+    private long cpuTime = -1;
+    /**
+     * The bytes allocated during the phase, -1 if not available.
+     */
+    private long allocatedBytes = -1;
+    /**
+     * The largest heap usage observed during the phase in bytes.
+     */
+    private volatile long peakHeap = 0;
+    /**
+     * The number of items processed during the phase.
+     */
+    private long nItems = 0;
+    /**
+     * Indicates whether the phase is completed.
+     */
+    private volatile boolean completed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param name the name of the phase
+     * @param startWallTime the wall clock time in nanoseconds
+     * @param startCpuTime the CPU time of the process in nanoseconds, -1 if
+     * not available
+     * @param startAllocatedBytes the bytes allocated by the process, -1 if not
+     * available
+     * @param startHeap the current heap usage in bytes
+     */
+    PhaseStatistics(String name, long startWallTime, long startCpuTime, long startAllocatedBytes, long startHeap) {
+        this.name = name;
+        this.startWallTime = startWallTime;
+        this.startCpuTime = startCpuTime;
+        this.startAllocatedBytes = startAllocatedBytes;
+        this.peakHeap = startHeap;
+    }
+
+    /**
+     * Updates the peak heap usage with the given heap usage.
+     *
+     * @param heap the current heap usage in bytes
+     */
+    void updatePeakHeap(long heap) {
+        if (heap > peakHeap) {
+            peakHeap = heap;
+        }
+    }
+
+    /**
+     * Completes the phase.
+     *
+     * @param endWallTime the wall clock time in nanoseconds
+     * @param endCpuTime the CPU time of the process in nanoseconds, -1 if not
+     * available
+     * @param endAllocatedBytes the bytes allocated by the process, -1 if not
+     * available
+     * @param nItems the number of items processed
+     */
+    void complete(long endWallTime, long endCpuTime, long endAllocatedBytes, long nItems) {
+        wallTime = (endWallTime - startWallTime) / 1000000;
+        if (startCpuTime >= 0 && endCpuTime >= 0) {
+            cpuTime = (endCpuTime - startCpuTime) / 1000000;
+        }
+        if (startAllocatedBytes >= 0 && endAllocatedBytes >= 0) {
+            allocatedBytes = endAllocatedBytes - startAllocatedBytes;
+        }
+        this.nItems = nItems;
+        completed = true;
+    }
+
+    /**
+     * Returns the name of the phase.
+     *
+     * @return the name of the phase
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Indicates whether the phase is completed.
+     *
+     * @return a boolean indicating whether the phase is completed
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Returns the wall time of the phase in milliseconds.
+     *
+     * @return the wall time of the phase in milliseconds
+     */
+    public long getWallTime() {
+        return wallTime;
+    }
+
+    /**
+     * Returns the CPU time used by the process during the phase in
+     * milliseconds, all threads included.
+     *
+     * @return the CPU time of the phase in milliseconds, -1 if not available
+     */
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * Returns the bytes allocated during the phase.
+     *
+     * @return the bytes allocated during the phase, -1 if not available
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the allocation rate in bytes per second.
+     *
+     * @return the allocation rate in bytes per second, -1 if not available
+     */
+    public double getAllocationRate() {
+        if (allocatedBytes < 0 || wallTime == 0) {
+            return -1;
+        }
+        return 1000.0 * allocatedBytes / wallTime;
+    }
+
+    /**
+     * Returns the largest heap usage observed during the phase in bytes.
+     *
+     * @return the largest heap usage observed during the phase
+     */
+    public long getPeakHeap() {
+        return peakHeap;
+    }
+
+    /**
+     * Returns the number of items processed during the phase.
+     *
+     * @return the number of items processed during the phase
+     */
+    public long getnItems() {
+        return nItems;
+    }
+
+    /**
+     * Returns the throughput in items per second.
+     *
+     * @return the throughput in items per second, -1 if not available
+     */
+    public double getThroughput() {
+        if (wallTime == 0) {
+            return -1;
+        }
+        return 1000.0 * nItems / wallTime;
+    }
+}
@@ -0,0 +1,157 @@
+package eu.isas.peptideshaker.utils;
+
+import com.compomics.util.io.SerializationUtils;
+import eu.isas.peptideshaker.scoring.PSMaps;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+
+/**
+ * The state of the processing of the identifications after a completed
+ * phase. The state is saved in the database folder so that it is archived
+ * together with the matches in the checkpoint file, an interrupted save thus
+ * leaves the previous checkpoint in place. The other objects needed to resume
+ * the processing, like the metrics and the gene maps, are saved in the
+ * settings of the checkpoint file.
+ *
+ * @author Marc Vaudel
+ */
+public class ProcessingCheckpoint implements Serializable {
+
+    /**
+     * Serial version UID for post-serialization compatibility.
+     */
+    static final long serialVersionUID = -3719384529270416353L;
+    /**
+     * The suffix appended to the name of the cps file to get the name of the
+     * checkpoint file.
+     */
+    public static final String CHECKPOINT_FILE_SUFFIX = ".checkpoint";
+    /**
+     * The name of the file where the state is saved in the database folder.
+     */
+    public static final String STATE_FILE_NAME = "processing_checkpoint.cus";
+    /**
+     * The last completed phase.
+     */
+    private ProcessingPhase lastCompletedPhase;
+    /**
+     * The scoring maps.
+     */
+    private PSMaps psMaps;
+    /**
+     * Map of proteins found several times with the number of times they
+     * appeared as first hit.
+     */
+    private HashMap<String, Integer> proteinCount;
+
+    /**
+     * Constructor.
+     *
+     * @param lastCompletedPhase the last completed phase
+     * @param psMaps the scoring maps
+     * @param proteinCount map of proteins found several times with the number
+     * of times they appeared as first hit
+     */
+    public ProcessingCheckpoint(ProcessingPhase lastCompletedPhase, PSMaps psMaps, HashMap<String, Integer> proteinCount) {
+        this.lastCompletedPhase = lastCompletedPhase;
+        this.psMaps = psMaps;
+        this.proteinCount = proteinCount;
+    }
+
+    /**
+     * Returns the last completed phase.
+     *
+     * @return the last completed phase
+     */
+    public ProcessingPhase getLastCompletedPhase() {
+        return lastCompletedPhase;
+    }
+
+    /**
+     * Returns the scoring maps.
+     *
+     * @return the scoring maps
+     */
+    public PSMaps getPsMaps() {
+        return psMaps;
+    }
+
+    /**
+     * Returns the map of proteins found several times with the number of
+     * times they appeared as first hit.
+     *
+     * @return the map of proteins found several times with the number of
+     * times they appeared as first hit
+     */
+    public HashMap<String, Integer> getProteinCount() {
+        return proteinCount;
+    }
+
+    /**
+     * Saves the state in the given database folder.
+     *
+     * @param dbFolder the database folder
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the file
+     */
+    public void save(File dbFolder) throws IOException {
+        SerializationUtils.writeObject(this, getStateFile(dbFolder));
+    }
+
+    /**
+     * Loads the state saved in the given database folder.
+     *
+     * @param dbFolder the database folder
+     *
+     * @return the state saved in the given database folder, null if none
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the file
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing the file
+     */
+    public static ProcessingCheckpoint load(File dbFolder) throws IOException, ClassNotFoundException {
+        File stateFile = getStateFile(dbFolder);
+        if (!stateFile.exists()) {
+            return null;
+        }
+        return (ProcessingCheckpoint) SerializationUtils.readObject(stateFile);
+    }
+
+    /**
+     * Deletes the state saved in the given database folder if any.
+     *
+     * @param dbFolder the database folder
+     */
+    public static void delete(File dbFolder) {
+        File stateFile = getStateFile(dbFolder);
+        if (stateFile.exists() && !stateFile.delete()) {
+            stateFile.deleteOnExit();
+        }
+    }
+
+    /**
+     * Returns the file where the state is saved in the given database folder.
+     *
+     * @param dbFolder the database folder
+     *
+     * @return the file where the state is saved
+     */
+    public static File getStateFile(File dbFolder) {
+        return new File(dbFolder, STATE_FILE_NAME);
+    }
+
+    /**
+     * Returns the checkpoint file to use for the given cps file.
+     *
+     * @param cpsFile the cps file
+     *
+     * @return the checkpoint file
+     */
+    public static File getCheckpointFile(File cpsFile) {
+        return new File(cpsFile.getParentFile(), cpsFile.getName() + CHECKPOINT_FILE_SUFFIX);
+    }
+}
@@ -0,0 +1,92 @@
+package eu.isas.peptideshaker.utils;
+
+/**
+ * Enum listing the phases of the processing of the identifications in the
+ * order in which they are run.
+ *
+ * @author Marc Vaudel
+ */
+public enum ProcessingPhase {
+
+    importation(0, "Import of the identification files"),
+    psmScoring(1, "PSM scoring"),
+    bestHitSelection(2, "Best hit selection"),
+    psmPtmScoring(3, "PTM localization in PSMs"),
+    matchesBuilding(4, "Peptide and protein building"),
+    proteinGrouping(5, "Protein grouping"),
+    peptideScoring(6, "Peptide scoring"),
+    proteinInference(7, "Protein inference"),
+    validation(8, "Validation"),
+    ptmScoring(9, "PTM localization in peptides and proteins"),
+    featuresPrecomputation(10, "Protein and peptide features computation");
+    /**
+     * The index of this phase.
+     */
+    private int index;
+    /**
+     * The name of this phase.
+     */
+    private String name;
+
+    /**
+     * Constructor.
+     *
+     * @param index the index of this phase
+     * @param name the name of this phase
+     */
+    private ProcessingPhase(int index, String name) {
+        this.index = index;
+        this.name = name;
+    }
+
+    /**
+     * Returns the index of this phase.
+     *
+     * @return the index of this phase
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the name of this phase.
+     *
+     * @return the name of this phase
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+
+    /**
+     * Indicates whether this phase remains to be run after the given phase
+     * was completed.
+     *
+     * @param lastCompletedPhase the last completed phase, null if none
+     *
+     * @return a boolean indicating whether this phase remains to be run
+     */
+    public boolean isPending(ProcessingPhase lastCompletedPhase) {
+        return lastCompletedPhase == null || index > lastCompletedPhase.getIndex();
+    }
+
+    /**
+     * Returns the phase corresponding to the given index, null if not found.
+     *
+     * @param index the index of the phase
+     *
+     * @return the phase corresponding to the given index
+     */
+    public static ProcessingPhase getProcessingPhase(int index) {
+        for (ProcessingPhase phase : values()) {
+            if (phase.getIndex() == index) {
+                return phase;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,449 @@
+package eu.isas.peptideshaker.utils;
+
+import eu.isas.peptideshaker.PeptideShaker;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Timer;
+import java.util.TimerTask;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Records the resources used by the phases of the processing: wall time, CPU
+ * time, number of items processed, allocated bytes and peak heap usage.
+ * Phases can be nested, the resources of the process are attributed to all
+ * phases in progress.
+ *
+ * CPU time and allocations are taken from the HotSpot management beans and
+ * are not available on other virtual machines. Allocations and heap usage are
+ * sampled every SAMPLING_INTERVAL milliseconds while a phase is in progress,
+ * the allocations of a thread terminating between two samples are accounted
+ * up to the last sample.
+ *
+ * @author Marc Vaudel
+ */
+public class ProcessingStatistics implements ProcessingStatisticsMBean {
+
+    /**
+     * The name under which the statistics are published via JMX.
+     */
+    public static final String JMX_NAME = "eu.isas.peptideshaker:type=ProcessingStatistics";
+    /**
+     * The suffix of the file where the statistics are written next to the cps
+     * file.
+     */
+    public static final String FILE_SUFFIX = "_processing_statistics.json";
+    /**
+     * The sampling interval in milliseconds.
+     */
+    public static final long SAMPLING_INTERVAL = 100;
+    /**
+     * The phases in the order in which they were started.
+     */
+    private final ArrayList<PhaseStatistics> phases = new ArrayList<PhaseStatistics>();
+    /**
+     * The phases in progress.
+     */
+    private final ArrayList<PhaseStatistics> runningPhases = new ArrayList<PhaseStatistics>();
+    /**
+     * The bytes allocated by the live threads at the last sample indexed by
+     * thread id.
+     */
+    private HashMap<Long, Long> threadAllocations = new HashMap<Long, Long>();
+    /**
+     * The bytes allocated by the threads which terminated.
+     */
+    private long terminatedThreadsAllocations = 0;
+    /**
+     * The timer sampling the resources while phases are in progress.
+     */
+    private Timer timer = null;
+    /**
+     * The memory management bean.
+     */
+    private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+    /**
+     * The thread management bean, null if allocations are not available.
+     */
+    private final com.sun.management.ThreadMXBean threadMXBean;
+    /**
+     * The operating system management bean, null if the CPU time is not
+     * available.
+     */
+    private final com.sun.management.OperatingSystemMXBean operatingSystemMXBean;
+    /**
+     * Indicates whether the statistics are published via JMX.
+     */
+    private boolean registered = false;
+
+    /**
+     * Constructor.
+     */
+    public ProcessingStatistics() {
+        com.sun.management.ThreadMXBean tempThreadMXBean = null;
+        try {
+            ThreadMXBean platformThreadMXBean = ManagementFactory.getThreadMXBean();
+            if (platformThreadMXBean instanceof com.sun.management.ThreadMXBean) {
+                tempThreadMXBean = (com.sun.management.ThreadMXBean) platformThreadMXBean;
+                if (!tempThreadMXBean.isThreadAllocatedMemorySupported()) {
+                    tempThreadMXBean = null;
+                } else if (!tempThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+                    tempThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+                }
+            }
+        } catch (Throwable e) {
+            // not a HotSpot virtual machine
+            tempThreadMXBean = null;
+        }
+        threadMXBean = tempThreadMXBean;
+        com.sun.management.OperatingSystemMXBean tempOperatingSystemMXBean = null;
+        try {
+            OperatingSystemMXBean platformOperatingSystemMXBean = ManagementFactory.getOperatingSystemMXBean();
+            if (platformOperatingSystemMXBean instanceof com.sun.management.OperatingSystemMXBean) {
+                tempOperatingSystemMXBean = (com.sun.management.OperatingSystemMXBean) platformOperatingSystemMXBean;
+            }
+        } catch (Throwable e) {
+            // not a HotSpot virtual machine
+            tempOperatingSystemMXBean = null;
+        }
+        operatingSystemMXBean = tempOperatingSystemMXBean;
+    }
+
+    /**
+     * Starts a phase.
+     *
+     * @param name the name of the phase
+     *
+     * @return the statistics of the phase to give back when the phase ends
+     */
+    public synchronized PhaseStatistics startPhase(String name) {
+        PhaseStatistics phase = new PhaseStatistics(name, System.nanoTime(), getCpuTime(), sampleAllocatedBytes(), getHeapUsage());
+        phases.add(phase);
+        runningPhases.add(phase);
+        if (timer == null) {
+            timer = new Timer("ProcessingStatistics", true);
+            timer.scheduleAtFixedRate(new TimerTask() {
+                @Override
+                public void run() {
+                    sample();
+                }
+            }, SAMPLING_INTERVAL, SAMPLING_INTERVAL);
+        }
+        return phase;
+    }
+
+    /**
+     * Ends a phase. Nothing happens if the phase was already ended.
+     *
+     * @param phase the statistics of the phase as returned by startPhase
+     * @param nItems the number of items processed during the phase
+     */
+    public synchronized void endPhase(PhaseStatistics phase, long nItems) {
+        if (!runningPhases.remove(phase)) {
+            return;
+        }
+        phase.updatePeakHeap(getHeapUsage());
+        phase.complete(System.nanoTime(), getCpuTime(), sampleAllocatedBytes(), nItems);
+        if (runningPhases.isEmpty() && timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    /**
+     * Returns the statistics of the completed phases in the order in which
+     * they were started.
+     *
+     * @return the statistics of the completed phases
+     */
+    public synchronized ArrayList<PhaseStatistics> getCompletedPhases() {
+        ArrayList<PhaseStatistics> result = new ArrayList<PhaseStatistics>(phases.size());
+        for (PhaseStatistics phase : phases) {
+            if (phase.isCompleted()) {
+                result.add(phase);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Samples the heap usage and the allocations.
+     */
+    private synchronized void sample() {
+        long heap = getHeapUsage();
+        for (PhaseStatistics phase : runningPhases) {
+            phase.updatePeakHeap(heap);
+        }
+        sampleAllocatedBytes();
+    }
+
+    /**
+     * Returns the heap currently used in bytes.
+     *
+     * @return the heap currently used in bytes
+     */
+    private long getHeapUsage() {
+        return memoryMXBean.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Returns the CPU time used by the process in nanoseconds.
+     *
+     * @return the CPU time used by the process, -1 if not available
+     */
+    private long getCpuTime() {
+        if (operatingSystemMXBean == null) {
+            return -1;
+        }
+        return operatingSystemMXBean.getProcessCpuTime();
+    }
+
+    /**
+     * Returns the bytes allocated by the process since the first sample and
+     * updates the allocations of the threads.
+     *
+     * @return the bytes allocated by the process, -1 if not available
+     */
+    private long sampleAllocatedBytes() {
+        if (threadMXBean == null) {
+            return -1;
+        }
+        long[] threadIds = threadMXBean.getAllThreadIds();
+        long[] allocations = threadMXBean.getThreadAllocatedBytes(threadIds);
+        HashMap<Long, Long> newThreadAllocations = new HashMap<Long, Long>(threadIds.length);
+        long total = 0;
+        for (int i = 0; i < threadIds.length; i++) {
+            long allocated = allocations[i];
+            if (allocated >= 0) {
+                newThreadAllocations.put(threadIds[i], allocated);
+                total += allocated;
+            }
+        }
+        for (Long threadId : threadAllocations.keySet()) {
+            if (!newThreadAllocations.containsKey(threadId)) {
+                terminatedThreadsAllocations += threadAllocations.get(threadId);
+            }
+        }
+        threadAllocations = newThreadAllocations;
+        return terminatedThreadsAllocations + total;
+    }
+
+    /**
+     * Publishes the statistics via JMX under JMX_NAME, replacing any previous
+     * registration.
+     *
+     * @throws JMException exception thrown whenever an error occurred while
+     * registering the bean
+     */
+    public void registerMBean() throws JMException {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(JMX_NAME);
+        if (mBeanServer.isRegistered(objectName)) {
+            mBeanServer.unregisterMBean(objectName);
+        }
+        mBeanServer.registerMBean(this, objectName);
+        registered = true;
+    }
+
+    /**
+     * Removes the statistics from JMX if published.
+     *
+     * @throws JMException exception thrown whenever an error occurred while
+     * unregistering the bean
+     */
+    public void unregisterMBean() throws JMException {
+        if (registered) {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            registered = false;
+        }
+    }
+
+    @Override
+    public synchronized String[] getRunningPhases() {
+        String[] result = new String[runningPhases.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = runningPhases.get(i).getName();
+        }
+        return result;
+    }
+
+    @Override
+    public String[] getPhases() {
+        ArrayList<PhaseStatistics> completedPhases = getCompletedPhases();
+        String[] result = new String[completedPhases.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = completedPhases.get(i).getName();
+        }
+        return result;
+    }
+
+    @Override
+    public long[] getWallTimes() {
+        ArrayList<PhaseStatistics> completedPhases = getCompletedPhases();
+        long[] result = new long[completedPhases.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = completedPhases.get(i).getWallTime();
+        }
+        return result;
+    }
+
+    @Override
+    public long[] getCpuTimes() {
+        ArrayList<PhaseStatistics> completedPhases = getCompletedPhases();
+        long[] result = new long[completedPhases.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = completedPhases.get(i).getCpuTime();
+        }
+        return result;
+    }
+
+    @Override
+    public long[] getItems() {
+        ArrayList<PhaseStatistics> completedPhases = getCompletedPhases();
+        long[] result = new long[completedPhases.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = completedPhases.get(i).getnItems();
+        }
+        return result;
+    }
+
+    @Override
+    public long[] getAllocatedBytes() {
+        ArrayList<PhaseStatistics> completedPhases = getCompletedPhases();
+        long[] result = new long[completedPhases.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = completedPhases.get(i).getAllocatedBytes();
+        }
+        return result;
+    }
+
+    @Override
+    public long[] getPeakHeaps() {
+        ArrayList<PhaseStatistics> completedPhases = getCompletedPhases();
+        long[] result = new long[completedPhases.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = completedPhases.get(i).getPeakHeap();
+        }
+        return result;
+    }
+
+    @Override
+    public String getJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"version\": ").append(getJsonString(PeptideShaker.getVersion())).append(",\n");
+        json.append("  \"availableProcessors\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        json.append("  \"maxHeap\": ").append(Runtime.getRuntime().maxMemory()).append(",\n");
+        json.append("  \"phases\": [");
+        boolean first = true;
+        for (PhaseStatistics phase : getCompletedPhases()) {
+            if (first) {
+                first = false;
+            } else {
+                json.append(",");
+            }
+            json.append("\n    {");
+            json.append("\"name\": ").append(getJsonString(phase.getName())).append(", ");
+            json.append("\"wallTimeMs\": ").append(phase.getWallTime()).append(", ");
+            json.append("\"cpuTimeMs\": ").append(phase.getCpuTime()).append(", ");
+            json.append("\"items\": ").append(phase.getnItems()).append(", ");
+            json.append("\"itemsPerSecond\": ").append(phase.getThroughput()).append(", ");
+            json.append("\"allocatedBytes\": ").append(phase.getAllocatedBytes()).append(", ");
+            json.append("\"allocationRateBytesPerSecond\": ").append(phase.getAllocationRate()).append(", ");
+            json.append("\"peakHeapBytes\": ").append(phase.getPeakHeap());
+            json.append("}");
+        }
+        json.append("\n  ]\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    /**
+     * Writes the statistics in the json format to the given file.
+     *
+     * @param destinationFile the destination file
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the file
+     */
+    public void writeJson(File destinationFile) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(destinationFile));
+        try {
+            writer.write(getJson());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Returns the file where to write the statistics of the given cps file.
+     *
+     * @param cpsFile the cps file
+     *
+     * @return the file where to write the statistics
+     */
+    public static File getStatisticsFile(File cpsFile) {
+        String name = cpsFile.getName();
+        int extensionIndex = name.lastIndexOf('.');
+        if (extensionIndex > 0) {
+            name = name.substring(0, extensionIndex);
+        }
+        return new File(cpsFile.getParentFile(), name + FILE_SUFFIX);
+    }
+
+    /**
+     * Returns the given string as a json string.
+     *
+     * @param value the string
+     *
+     * @return the string as a json string
+     */
+    private static String getJsonString(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder result = new StringBuilder(value.length() + 2);
+        result.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            switch (character) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (character < 0x20) {
+                        result.append(String.format("\\u%04x", (int) character));
+                    } else {
+                        result.append(character);
+                    }
+            }
+        }
+        result.append('"');
+        return result.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package eu.isas.peptideshaker.utils;
+
+/**
+ * JMX view of the processing statistics. Arrays are indexed by completed
+ * phase in the order in which the phases were started.
+ *
+ * @author Marc Vaudel
+ */
+public interface ProcessingStatisticsMBean {
+
+    /**
+     * Returns the names of the phases in progress.
+     *
+     * @return the names of the phases in progress
+     */
+    public String[] getRunningPhases();
+
+    /**
+     * Returns the names of the completed phases.
+     *
+     * @return the names of the completed phases
+     */
+    public String[] getPhases();
+
+    /**
+     * Returns the wall time of the completed phases in milliseconds.
+     *
+     * @return the wall time of the completed phases
+     */
+    public long[] getWallTimes();
+
+    /**
+     * Returns the CPU time of the completed phases in milliseconds, -1 if not
+     * available.
+     *
+     * @return the CPU time of the completed phases
+     */
+    public long[] getCpuTimes();
+
+    /**
+     * Returns the number of items processed in the completed phases.
+     *
+     * @return the number of items processed in the completed phases
+     */
+    public long[] getItems();
+
+    /**
+     * Returns the bytes allocated during the completed phases, -1 if not
+     * available.
+     *
+     * @return the bytes allocated during the completed phases
+     */
+    public long[] getAllocatedBytes();
+
+    /**
+     * Returns the largest heap usage observed during the completed phases in
+     * bytes.
+     *
+     * @return the largest heap usage observed during the completed phases
+     */
+    public long[] getPeakHeaps();
+
+    /**
+     * Returns the statistics in the json format.
+     *
+     * @return the statistics in the json format
+     */
+    public String getJson();
+}
@@ -0,0 +1,205 @@
+package eu.isas.peptideshaker.utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Compact representation of values attributed to the residues of a sequence
+ * as a list of sorted non-overlapping intervals. Residues not covered by an
+ * interval have the default value. 0 is the first amino acid.
+ *
+ * @author Marc Vaudel
+ */
+public class SequenceIntervals implements Serializable {
+
+    /**
+     * Serial version UID for backward compatibility.
+     */
+    static final long serialVersionUID = -6342751048125602917L;
+    /**
+     * The length of the sequence.
+     */
+    private final int sequenceLength;
+    /**
+     * The value of the residues not covered by an interval.
+     */
+    private final double defaultValue;
+    /**
+     * The start of every interval, inclusive.
+     */
+    private final int[] starts;
+    /**
+     * The end of every interval, exclusive.
+     */
+    private final int[] ends;
+    /**
+     * The value of every interval.
+     */
+    private final double[] values;
+
+    /**
+     * Constructor. The intervals must be sorted, must not overlap, and must be
+     * within the sequence.
+     *
+     * @param sequenceLength the length of the sequence
+     * @param defaultValue the value of the residues not covered by an interval
+     * @param starts the start of every interval, inclusive
+     * @param ends the end of every interval, exclusive
+     * @param values the value of every interval
+     */
+    public SequenceIntervals(int sequenceLength, double defaultValue, int[] starts, int[] ends, double[] values) {
+        if (starts.length != ends.length || starts.length != values.length) {
+            throw new IllegalArgumentException("Interval bounds and values must have the same length.");
+        }
+        this.sequenceLength = sequenceLength;
+        this.defaultValue = defaultValue;
+        this.starts = starts;
+        this.ends = ends;
+        this.values = values;
+    }
+
+    /**
+     * Sorts and merges the given intervals. Overlapping or adjacent intervals
+     * are merged. The arrays are sorted in place.
+     *
+     * @param starts the start of every interval, inclusive
+     * @param ends the end of every interval, exclusive
+     * @param nIntervals the number of intervals to consider in the arrays
+     *
+     * @return the number of merged intervals, stored at the beginning of the
+     * given arrays
+     */
+    public static int sortAndMerge(int[] starts, int[] ends, int nIntervals) {
+        if (nIntervals == 0) {
+            return 0;
+        }
+        long[] packed = new long[nIntervals];
+        for (int i = 0; i < nIntervals; i++) {
+            packed[i] = ((long) starts[i] << 32) | (ends[i] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(packed);
+        int nMerged = 0;
+        int currentStart = (int) (packed[0] >>> 32);
+        int currentEnd = (int) packed[0];
+        for (int i = 1; i < nIntervals; i++) {
+            int start = (int) (packed[i] >>> 32);
+            int end = (int) packed[i];
+            if (start <= currentEnd) {
+                if (end > currentEnd) {
+                    currentEnd = end;
+                }
+            } else {
+                starts[nMerged] = currentStart;
+                ends[nMerged] = currentEnd;
+                nMerged++;
+                currentStart = start;
+                currentEnd = end;
+            }
+        }
+        starts[nMerged] = currentStart;
+        ends[nMerged] = currentEnd;
+        return nMerged + 1;
+    }
+
+    /**
+     * Returns the length of the sequence.
+     *
+     * @return the length of the sequence
+     */
+    public int getSequenceLength() {
+        return sequenceLength;
+    }
+
+    /**
+     * Returns the number of intervals.
+     *
+     * @return the number of intervals
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * Returns the start of the interval at the given index, inclusive.
+     *
+     * @param index the index of the interval
+     *
+     * @return the start of the interval
+     */
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    /**
+     * Returns the end of the interval at the given index, exclusive.
+     *
+     * @param index the index of the interval
+     *
+     * @return the end of the interval
+     */
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    /**
+     * Returns the value of the interval at the given index.
+     *
+     * @param index the index of the interval
+     *
+     * @return the value of the interval
+     */
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Returns the number of residues having the given value.
+     *
+     * @param value the value of interest
+     *
+     * @return the number of residues having the given value
+     */
+    public int getLength(double value) {
+        int covered = 0;
+        int result = 0;
+        for (int i = 0; i < starts.length; i++) {
+            int length = ends[i] - starts[i];
+            covered += length;
+            if (values[i] == value) {
+                result += length;
+            }
+        }
+        if (value == defaultValue) {
+            result += sequenceLength - covered;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values of all residues as an array of doubles.
+     *
+     * @return the values of all residues
+     */
+    public double[] toDoubleArray() {
+        double[] result = new double[sequenceLength];
+        Arrays.fill(result, defaultValue);
+        for (int i = 0; i < starts.length; i++) {
+            Arrays.fill(result, starts[i], ends[i], values[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values of all residues as an array of integers.
+     *
+     * @return the values of all residues
+     */
+    public int[] toIntArray() {
+        int[] result = new int[sequenceLength];
+        Arrays.fill(result, (int) defaultValue);
+        for (int i = 0; i < starts.length; i++) {
+            Arrays.fill(result, starts[i], ends[i], (int) values[i]);
+        }
+        return result;
+    }
+}
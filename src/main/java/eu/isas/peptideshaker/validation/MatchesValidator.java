@@ -45,6 +45,7 @@ import eu.isas.peptideshaker.scoring.maps.ProteinMap;
 import eu.isas.peptideshaker.scoring.maps.PsmSpecificMap;
 import eu.isas.peptideshaker.scoring.targetdecoy.TargetDecoyMap;
 import eu.isas.peptideshaker.scoring.targetdecoy.TargetDecoyResults;
+import eu.isas.peptideshaker.utils.DoubleReservoir;
 import eu.isas.peptideshaker.utils.IdentificationFeaturesGenerator;
 import eu.isas.peptideshaker.utils.Metrics;
 import java.io.IOException;
@@ -54,9 +55,13 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.math.MathException;
 import uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException;
 
@@ -87,6 +92,10 @@ public class MatchesValidator {
      * The protein sequence factory.
      */
     private SequenceFactory sequenceFactory = SequenceFactory.getInstance();
+    /**
+     * The number of matches saved to the database at once.
+     */
+    public static final int BATCH_SIZE = 1000;
 
     /**
      * Constructor.
@@ -264,108 +273,85 @@ public class MatchesValidator {
         if (inputMap != null) {
             inputMap.resetAdvocateContributions();
         }
-        for (String spectrumFileName : identification.getSpectrumFiles()) {
-
-            AnnotationSettings annotationPreferences = identificationParameters.getAnnotationPreferences();
-            Double intensityLimit = annotationPreferences.getAnnotationIntensityLimit();
-            annotationPreferences.setIntensityLimit(0);
+        AnnotationSettings annotationPreferences = identificationParameters.getAnnotationPreferences();
+        Double intensityLimit = annotationPreferences.getAnnotationIntensityLimit();
+        annotationPreferences.setIntensityLimit(0);
 
-            ExecutorService pool = Executors.newFixedThreadPool(processingPreferences.getnThreads());
+        ExecutorService pool = Executors.newFixedThreadPool(processingPreferences.getnThreads());
 
-            ArrayList<String> spectrumKeys = null;
-            if (spectrumKeysMap != null) {
-                spectrumKeys = spectrumKeysMap.get(spectrumFileName);
-            }
-            PsmIterator psmIterator = identification.getPsmIterator(spectrumFileName, spectrumKeys, parameters, false, waitingHandler);
-
-            ArrayList<PsmValidatorRunnable> psmRunnables = new ArrayList<PsmValidatorRunnable>(processingPreferences.getnThreads());
-            for (int i = 1; i <= processingPreferences.getnThreads(); i++) {
-                PsmValidatorRunnable runnable = new PsmValidatorRunnable(psmIterator, identification, identificationFeaturesGenerator, geneMaps, identificationParameters, waitingHandler, exceptionHandler, inputMap, false, true);
-                pool.submit(runnable);
-                psmRunnables.add(runnable);
-                if (waitingHandler != null && waitingHandler.isRunCanceled()) {
-                    break;
-                }
-            }
+        // first pass on the PSMs of all files, estimating the mass deviations
+        PsmStream psmStream = new PsmStream(identification, spectrumKeysMap, parameters, waitingHandler);
+        ArrayList<PsmValidatorRunnable> psmRunnables = new ArrayList<PsmValidatorRunnable>(processingPreferences.getnThreads());
+        ArrayList<Future<?>> futures = new ArrayList<Future<?>>(processingPreferences.getnThreads());
+        for (int i = 1; i <= processingPreferences.getnThreads(); i++) {
+            PsmValidatorRunnable runnable = new PsmValidatorRunnable(psmStream, identification, identificationFeaturesGenerator, geneMaps, identificationParameters, waitingHandler, exceptionHandler, inputMap, false, true, null);
+            futures.add(pool.submit(runnable));
+            psmRunnables.add(runnable);
             if (waitingHandler != null && waitingHandler.isRunCanceled()) {
-                pool.shutdownNow();
-                return;
-            }
-            pool.shutdown();
-            if (!pool.awaitTermination(7, TimeUnit.DAYS)) {
-                throw new InterruptedException("PSM validation timed out. Please contact the developers.");
+                break;
             }
+        }
+        if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+            pool.shutdownNow();
+            return;
+        }
+        waitForCompletion(pool, futures, "PSM validation");
+        if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+            pool.shutdownNow();
+            return;
+        }
 
-            ArrayList<Double> precursorMzDeviations = new ArrayList<Double>();
-            for (PsmValidatorRunnable runnable : psmRunnables) {
-                precursorMzDeviations.addAll(runnable.getThreadPrecursorMzDeviations());
-            }
+        // files with too few precursors for a mass error distribution get a copy of the PSM filters without the probabilistic precursor filter
+        HashMap<String, ArrayList<Filter>> filePsmFilters = new HashMap<String, ArrayList<Filter>>();
+        for (String spectrumFileName : identification.getSpectrumFiles()) {
 
-            if (precursorMzDeviations.size() >= 100) {
-                Collections.sort(precursorMzDeviations);
-                identificationFeaturesGenerator.setMassErrorDistribution(spectrumFileName, precursorMzDeviations);
-            } else {
-                // There are not enough precursors, disable probabilistic precursor filter
-                for (Filter filter : validationQCPreferences.getPsmFilters()) {
-                    PsmFilter psmFilter = (PsmFilter) filter;
-                    if (psmFilter.getItemsNames().contains(AssumptionFilterItem.precrusorMzErrorStat.name)) {
-                        psmFilter.removeFilterItem(AssumptionFilterItem.precrusorMzErrorStat.name);
-                        SearchParameters searchParameters = identificationParameters.getSearchParameters();
-                        if (searchParameters.isPrecursorAccuracyTypePpm()) {
-                            psmFilter.setFilterItem(AssumptionFilterItem.precrusorMzErrorPpm.name, FilterItemComparator.lowerOrEqual, searchParameters.getPrecursorAccuracy());
-                        } else {
-                            psmFilter.setFilterItem(AssumptionFilterItem.precrusorMzErrorDa.name, FilterItemComparator.lowerOrEqual, searchParameters.getPrecursorAccuracy());
-                        }
-                    }
-                    AssumptionFilter assumptionFilter = psmFilter.getAssumptionFilter();
-                    if (assumptionFilter.getItemsNames().contains(AssumptionFilterItem.precrusorMzErrorStat.name)) {
-                        assumptionFilter.removeFilterItem(AssumptionFilterItem.precrusorMzErrorStat.name);
-                        SearchParameters searchParameters = identificationParameters.getSearchParameters();
-                        if (searchParameters.isPrecursorAccuracyTypePpm()) {
-                            assumptionFilter.setFilterItem(AssumptionFilterItem.precrusorMzErrorPpm.name, FilterItemComparator.lowerOrEqual, searchParameters.getPrecursorAccuracy());
-                        } else {
-                            assumptionFilter.setFilterItem(AssumptionFilterItem.precrusorMzErrorDa.name, FilterItemComparator.lowerOrEqual, searchParameters.getPrecursorAccuracy());
-                        }
-                    }
+            DoubleReservoir precursorMzDeviations = new DoubleReservoir(IdentificationFeaturesGenerator.MASS_ERROR_SAMPLE_SIZE);
+            for (PsmValidatorRunnable runnable : psmRunnables) {
+                DoubleReservoir threadPrecursorMzDeviations = runnable.getThreadPrecursorMzDeviations(spectrumFileName);
+                if (threadPrecursorMzDeviations != null) {
+                    precursorMzDeviations.addAll(threadPrecursorMzDeviations);
                 }
             }
 
-            pool = Executors.newFixedThreadPool(processingPreferences.getnThreads());
-
-            spectrumKeys = null;
-            if (spectrumKeysMap != null) {
-                spectrumKeys = spectrumKeysMap.get(spectrumFileName);
+            if (precursorMzDeviations.getnValues() >= 100) {
+                identificationFeaturesGenerator.setMassErrorDistribution(spectrumFileName, precursorMzDeviations.getSortedValues());
+            } else {
+                filePsmFilters.put(spectrumFileName, getPsmFiltersWithoutPrecursorStatistics(validationQCPreferences.getPsmFilters(), identificationParameters.getSearchParameters()));
             }
-            psmIterator = identification.getPsmIterator(spectrumFileName, spectrumKeys, parameters, false, waitingHandler);
+        }
+        psmRunnables = null;
 
-            for (int i = 1; i <= processingPreferences.getnThreads(); i++) {
-                PsmValidatorRunnable runnable = new PsmValidatorRunnable(psmIterator, identification, identificationFeaturesGenerator, geneMaps, identificationParameters, waitingHandler, exceptionHandler, inputMap, true, false);
-                pool.submit(runnable);
-                if (waitingHandler != null && waitingHandler.isRunCanceled()) {
-                    break;
-                }
-            }
+        // second pass on the PSMs of all files, applying the quality filters
+        psmStream = new PsmStream(identification, spectrumKeysMap, parameters, waitingHandler);
+        futures.clear();
+        for (int i = 1; i <= processingPreferences.getnThreads(); i++) {
+            PsmValidatorRunnable runnable = new PsmValidatorRunnable(psmStream, identification, identificationFeaturesGenerator, geneMaps, identificationParameters, waitingHandler, exceptionHandler, inputMap, true, false, filePsmFilters);
+            futures.add(pool.submit(runnable));
             if (waitingHandler != null && waitingHandler.isRunCanceled()) {
-                pool.shutdownNow();
-                return;
-            }
-            pool.shutdown();
-            if (!pool.awaitTermination(7, TimeUnit.DAYS)) {
-                throw new InterruptedException("PSM validation timed out. Please contact the developers.");
+                break;
             }
-
-            annotationPreferences.setIntensityLimit(intensityLimit);
+        }
+        if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+            pool.shutdownNow();
+            return;
+        }
+        waitForCompletion(pool, futures, "PSM validation");
+        if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+            pool.shutdownNow();
+            return;
         }
 
+        annotationPreferences.setIntensityLimit(intensityLimit);
+
         // validate the peptides
-        ExecutorService pool = Executors.newFixedThreadPool(processingPreferences.getnThreads());
         ArrayList<PeptideValidatorRunnable> peptideRunnables = new ArrayList<PeptideValidatorRunnable>(processingPreferences.getnThreads());
+        futures.clear();
 
         PeptideMatchesIterator peptideMatchesIterator = identification.getPeptideMatchesIterator(parameters, false, parameters, waitingHandler);
 
         for (int i = 1; i <= processingPreferences.getnThreads(); i++) {
             PeptideValidatorRunnable runnable = new PeptideValidatorRunnable(peptideMatchesIterator, identification, identificationFeaturesGenerator, geneMaps, identificationParameters, waitingHandler, exceptionHandler, metrics);
-            pool.submit(runnable);
+            futures.add(pool.submit(runnable));
             peptideRunnables.add(runnable);
             if (waitingHandler != null && waitingHandler.isRunCanceled()) {
                 break;
@@ -375,9 +361,10 @@ public class MatchesValidator {
             pool.shutdownNow();
             return;
         }
-        pool.shutdown();
-        if (!pool.awaitTermination(7, TimeUnit.DAYS)) {
-            throw new InterruptedException("PSM validation timed out. Please contact the developers.");
+        waitForCompletion(pool, futures, "Peptide validation");
+        if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+            pool.shutdownNow();
+            return;
         }
 
         HashMap<String, Integer> validatedTotalPeptidesPerFraction = new HashMap<String, Integer>();
@@ -402,13 +389,13 @@ public class MatchesValidator {
 
 //        ObjectsDB.setDebugInteractions(true);
         // validate the proteins
-        pool = Executors.newFixedThreadPool(processingPreferences.getnThreads());
+        futures.clear();
 
         ProteinMatchesIterator proteinMatchesIterator = identification.getProteinMatchesIterator(parameters, true, parameters, false, null, waitingHandler);
         ArrayList<ProteinValidatorRunnable> proteinRunnables = new ArrayList<ProteinValidatorRunnable>(processingPreferences.getnThreads());
         for (int i = 1; i <= processingPreferences.getnThreads(); i++) {
             ProteinValidatorRunnable runnable = new ProteinValidatorRunnable(proteinMatchesIterator, identification, identificationFeaturesGenerator, geneMaps, metrics, identificationParameters, spectrumCountingPreferences, waitingHandler, exceptionHandler);
-            pool.submit(runnable);
+            futures.add(pool.submit(runnable));
             proteinRunnables.add(runnable);
             if (waitingHandler != null && waitingHandler.isRunCanceled()) {
                 break;
@@ -418,22 +405,77 @@ public class MatchesValidator {
             pool.shutdownNow();
             return;
         }
+        waitForCompletion(pool, futures, "Protein validation");
         pool.shutdown();
         if (!pool.awaitTermination(7, TimeUnit.DAYS)) {
-            throw new InterruptedException("PSM validation timed out. Please contact the developers.");
+            throw new InterruptedException("Protein validation timed out. Please contact the developers.");
+        }
+        if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+            return;
         }
 
+        // merge the values accumulated by the different threads
         double totalSpectrumCounting = 0;
+        double totalSpectrumCountingMass = 0;
+        int maxValidatedPeptidesFractionLevel = 0;
+        int maxValidatedSpectraFractionLevel = 0;
+        double maxProteinAveragePrecursorIntensity = 0.0;
+        double maxProteinSummedPrecursorIntensity = 0.0;
         for (ProteinValidatorRunnable runnable : proteinRunnables) {
             totalSpectrumCounting += runnable.getTotalSpectrumCounting();
+            totalSpectrumCountingMass += runnable.getTotalSpectrumCountingMass();
+            maxValidatedPeptidesFractionLevel = Math.max(maxValidatedPeptidesFractionLevel, runnable.getMaxValidatedPeptidesFractionLevel());
+            maxValidatedSpectraFractionLevel = Math.max(maxValidatedSpectraFractionLevel, runnable.getMaxValidatedSpectraFractionLevel());
+            maxProteinAveragePrecursorIntensity = Math.max(maxProteinAveragePrecursorIntensity, runnable.getMaxProteinAveragePrecursorIntensity());
+            maxProteinSummedPrecursorIntensity = Math.max(maxProteinSummedPrecursorIntensity, runnable.getMaxProteinSummedPrecursorIntensity());
         }
         metrics.setTotalSpectrumCounting(totalSpectrumCounting);
+        metrics.setTotalSpectrumCountingMass(totalSpectrumCountingMass);
 
-        double totalSpectrumCountingMass = 0;
-        for (ProteinValidatorRunnable runnable : proteinRunnables) {
-            totalSpectrumCountingMass += runnable.getTotalSpectrumCountingMass();
+        // set the max values in the metrics
+        if (identification.getSpectrumFiles().size() > 1) {
+            if (metrics.getMaxValidatedPeptidesPerFraction() == null || maxValidatedPeptidesFractionLevel > metrics.getMaxValidatedPeptidesPerFraction()) {
+                metrics.setMaxValidatedPeptidesPerFraction(maxValidatedPeptidesFractionLevel);
+            }
+            if (metrics.getMaxValidatedSpectraPerFraction() == null || maxValidatedSpectraFractionLevel > metrics.getMaxValidatedSpectraPerFraction()) {
+                metrics.setMaxValidatedSpectraPerFraction(maxValidatedSpectraFractionLevel);
+            }
+            if (metrics.getMaxProteinAveragePrecursorIntensity() == null || maxProteinAveragePrecursorIntensity > metrics.getMaxProteinAveragePrecursorIntensity()) {
+                metrics.setMaxProteinAveragePrecursorIntensity(maxProteinAveragePrecursorIntensity);
+            }
+            if (metrics.getMaxProteinSummedPrecursorIntensity() == null || maxProteinSummedPrecursorIntensity > metrics.getMaxProteinSummedPrecursorIntensity()) {
+                metrics.setMaxProteinSummedPrecursorIntensity(maxProteinSummedPrecursorIntensity);
+            }
+        }
+    }
+
+    /**
+     * Waits for the given tasks to complete. If a task fails or times out, the
+     * tasks still running are interrupted and the pool is shut down.
+     *
+     * @param pool the pool executing the tasks
+     * @param futures the futures of the tasks
+     * @param taskName the name of the tasks to use in error messages
+     *
+     * @throws InterruptedException exception thrown whenever a threading issue
+     * occurred while waiting for the tasks or if the tasks timed out
+     */
+    private void waitForCompletion(ExecutorService pool, ArrayList<Future<?>> futures, String taskName) throws InterruptedException {
+        for (Future<?> future : futures) {
+            try {
+                future.get(7, TimeUnit.DAYS);
+            } catch (TimeoutException e) {
+                pool.shutdownNow();
+                throw new InterruptedException(taskName + " timed out. Please contact the developers.");
+            } catch (ExecutionException e) {
+                pool.shutdownNow();
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(taskName + " failed.", cause);
+            }
         }
-        metrics.setTotalSpectrumCountingMass(totalSpectrumCountingMass);
     }
 
     /**
@@ -670,6 +712,42 @@ public class MatchesValidator {
     public static void updateSpectrumMatchValidationLevel(Identification identification, IdentificationFeaturesGenerator identificationFeaturesGenerator, GeneMaps geneMaps,
             IdentificationParameters identificationParameters, PeptideSpectrumAnnotator peptideSpectrumAnnotator,
             PsmSpecificMap psmMap, String spectrumKey, boolean applyQCFilters) throws SQLException, IOException, ClassNotFoundException, InterruptedException, MzMLUnmarshallerException, MathException {
+        ArrayList<Filter> psmFilters = applyQCFilters ? identificationParameters.getIdValidationPreferences().getValidationQCPreferences().getPsmFilters() : null;
+        updateSpectrumMatchValidationLevel(identification, identificationFeaturesGenerator, geneMaps, identificationParameters, peptideSpectrumAnnotator, psmMap, spectrumKey, psmFilters);
+    }
+
+    /**
+     * Updates the validation status of a spectrum match using the given
+     * quality control filters. If the match was manually validated nothing
+     * will be changed.
+     *
+     * @param identification the identification object
+     * @param geneMaps the gene maps
+     * @param psmMap the PSM level target/decoy scoring map
+     * @param identificationParameters the identification parameters
+     * @param identificationFeaturesGenerator the identification features
+     * generator
+     * @param spectrumKey the key of the spectrum match of interest
+     * @param peptideSpectrumAnnotator a spectrum annotator, can be null
+     * @param psmFilters the quality control filters to apply, null if no
+     * quality control filter should be applied
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file.
+     * @throws InterruptedException exception thrown whenever a threading issue
+     * occurred while mapping the peptides to the proteins.
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the database.
+     * @throws uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException exception thrown
+     * whenever an error occurred while reading an mzML file.
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing an object from the database.
+     * @throws org.apache.commons.math.MathException Exception thrown whenever
+     * an error occurred while doing statistics on a distribution
+     */
+    public static void updateSpectrumMatchValidationLevel(Identification identification, IdentificationFeaturesGenerator identificationFeaturesGenerator, GeneMaps geneMaps,
+            IdentificationParameters identificationParameters, PeptideSpectrumAnnotator peptideSpectrumAnnotator,
+            PsmSpecificMap psmMap, String spectrumKey, ArrayList<Filter> psmFilters) throws SQLException, IOException, ClassNotFoundException, InterruptedException, MzMLUnmarshallerException, MathException {
 
         SequenceFactory sequenceFactory = SequenceFactory.getInstance();
         PSParameter psParameter = new PSParameter();
@@ -705,9 +783,9 @@ public class MatchesValidator {
 
                 boolean filtersPassed = true;
 
-                if (applyQCFilters) {
+                if (psmFilters != null) {
 
-                    for (Filter filter : validationQCPreferences.getPsmFilters()) {
+                    for (Filter filter : psmFilters) {
                         PsmFilter psmFilter = (PsmFilter) filter;
                         boolean validated = psmFilter.isValidated(spectrumKey, identification, geneMaps, identificationFeaturesGenerator, identificationParameters, peptideSpectrumAnnotator);
                         psParameter.setQcResult(psmFilter.getName(), validated);
@@ -770,6 +848,43 @@ public class MatchesValidator {
     public static void updatePeptideAssumptionValidationLevel(Identification identification, IdentificationFeaturesGenerator identificationFeaturesGenerator,
             IdentificationParameters identificationParameters, PeptideSpectrumAnnotator peptideSpectrumAnnotator,
             InputMap inputMap, String spectrumKey, PeptideAssumption peptideAssumption, boolean applyQCFilters) throws SQLException, IOException, ClassNotFoundException, InterruptedException, MzMLUnmarshallerException, MathException {
+        ArrayList<Filter> psmFilters = applyQCFilters ? identificationParameters.getIdValidationPreferences().getValidationQCPreferences().getPsmFilters() : null;
+        updatePeptideAssumptionValidationLevel(identification, identificationFeaturesGenerator, identificationParameters, peptideSpectrumAnnotator, inputMap, spectrumKey, peptideAssumption, psmFilters);
+    }
+
+    /**
+     * Updates the validation status of a peptide assumption using the
+     * assumption filters of the given quality control filters. If the match
+     * was manually validated nothing will be changed.
+     *
+     * @param identification the identification object containing the match to
+     * filter
+     * @param identificationFeaturesGenerator the identification features
+     * generator
+     * @param inputMap the target decoy map of all search engine scores
+     * @param spectrumKey the key of the inspected spectrum
+     * @param peptideAssumption the peptide assumption of interest
+     * @param peptideSpectrumAnnotator a spectrum annotator, can be null
+     * @param identificationParameters the identification parameters
+     * @param psmFilters the quality control filters to apply, null if no
+     * quality control filter should be applied
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file.
+     * @throws InterruptedException exception thrown whenever a threading issue
+     * occurred while mapping the peptides to the proteins.
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the database.
+     * @throws uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException exception thrown
+     * whenever an error occurred while reading an mzML file.
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing an object from the database.
+     * @throws org.apache.commons.math.MathException Exception thrown whenever
+     * an error occurred while doing statistics on a distribution
+     */
+    public static void updatePeptideAssumptionValidationLevel(Identification identification, IdentificationFeaturesGenerator identificationFeaturesGenerator,
+            IdentificationParameters identificationParameters, PeptideSpectrumAnnotator peptideSpectrumAnnotator,
+            InputMap inputMap, String spectrumKey, PeptideAssumption peptideAssumption, ArrayList<Filter> psmFilters) throws SQLException, IOException, ClassNotFoundException, InterruptedException, MzMLUnmarshallerException, MathException {
 
         SequenceFactory sequenceFactory = SequenceFactory.getInstance();
         PSParameter psParameter = new PSParameter();
@@ -802,9 +917,9 @@ public class MatchesValidator {
 
                 boolean filtersPassed = true;
 
-                if (applyQCFilters) {
+                if (psmFilters != null) {
 
-                    for (Filter filter : validationQCPreferences.getPsmFilters()) {
+                    for (Filter filter : psmFilters) {
                         PsmFilter psmFilter = (PsmFilter) filter;
                         AssumptionFilter assumptionFilter = psmFilter.getAssumptionFilter();
                         boolean validated = assumptionFilter.isValidated(spectrumKey, peptideAssumption, identification, identificationFeaturesGenerator, identificationParameters, peptideSpectrumAnnotator);
@@ -925,7 +1040,9 @@ public class MatchesValidator {
     }
 
     /**
-     * Fills the peptide specific map.
+     * Fills the peptide specific map. The PSM parameters of a page of peptide
+     * matches are loaded in a single query and the peptide parameters are
+     * saved together at the end of the page.
      *
      * @param identification the identification class containing the matches to
      * validate
@@ -954,15 +1071,80 @@ public class MatchesValidator {
         HashSet<String> foundModifications = new HashSet<String>();
         HashMap<String, ArrayList<String>> fractionPsmMatches = new HashMap<String, ArrayList<String>>();
 
-        PSParameter psParameter = new PSParameter();
-        ArrayList<UrParameter> parameters = new ArrayList<UrParameter>(1);
-        parameters.add(psParameter);
-        PeptideMatchesIterator peptideMatchesIterator = identification.getPeptideMatchesIterator(null, false, parameters, waitingHandler);
-        int nFractions = identification.getSpectrumFiles().size();
+        PeptideMatchesIterator peptideMatchesIterator = identification.getPeptideMatchesIterator(null, false, null, waitingHandler);
+        ArrayList<PeptideMatch> page = new ArrayList<PeptideMatch>(BATCH_SIZE);
         PeptideMatch peptideMatch;
 
         while ((peptideMatch = peptideMatchesIterator.next()) != null) {
 
+            page.add(peptideMatch);
+
+            if (page.size() == BATCH_SIZE) {
+                fillPeptideMaps(identification, page, foundModifications, fractionPsmMatches, identificationParameters, waitingHandler);
+                page.clear();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+            }
+        }
+
+        fillPeptideMaps(identification, page, foundModifications, fractionPsmMatches, identificationParameters, waitingHandler);
+        if (waitingHandler.isRunCanceled()) {
+            return;
+        }
+
+        waitingHandler.setSecondaryProgressCounterIndeterminate(true);
+
+        if (metrics != null) {
+            // set the fraction psm matches
+            metrics.setFractionPsmMatches(fractionPsmMatches);
+            // set the ptms
+            metrics.setFoundModifications(new ArrayList<String>(foundModifications));
+        }
+    }
+
+    /**
+     * Scores a page of peptide matches and adds them to the peptide specific
+     * map.
+     *
+     * @param identification the identification class containing the matches to
+     * validate
+     * @param page the peptide matches of the page
+     * @param foundModifications the modifications found
+     * @param fractionPsmMatches the PSMs of every peptide in every fraction
+     * @param identificationParameters the identification parameters
+     * @param waitingHandler the handler displaying feedback to the user
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file.
+     * @throws InterruptedException exception thrown whenever a threading issue
+     * occurred while interacting with the database.
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the database.
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing an object from the database.
+     */
+    private void fillPeptideMaps(Identification identification, ArrayList<PeptideMatch> page, HashSet<String> foundModifications,
+            HashMap<String, ArrayList<String>> fractionPsmMatches, IdentificationParameters identificationParameters, WaitingHandler waitingHandler)
+            throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+
+        if (page.isEmpty()) {
+            return;
+        }
+
+        ArrayList<String> spectrumKeys = new ArrayList<String>();
+        for (PeptideMatch peptideMatch : page) {
+            spectrumKeys.addAll(peptideMatch.getSpectrumMatchesKeys());
+        }
+        identification.loadSpectrumMatchParameters(spectrumKeys, new PSParameter(), null, false);
+
+        ArrayList<String> spectrumFiles = identification.getSpectrumFiles();
+        int nFractions = spectrumFiles.size();
+        ArrayList<PSParameter> peptideParameters = new ArrayList<PSParameter>(page.size());
+        PSParameter psParameter = new PSParameter();
+
+        for (PeptideMatch peptideMatch : page) {
+
             String peptideKey = peptideMatch.getKey();
 
             for (String modification : Peptide.getModificationFamily(peptideKey)) {
@@ -1008,27 +1190,27 @@ public class MatchesValidator {
                 }
             }
             if (nFractions == 1) {
-                String spectrumFile = identification.getSpectrumFiles().get(0);
+                String spectrumFile = spectrumFiles.get(0);
                 fractionScores.put(spectrumFile, probaScore);
                 String fractionKey = spectrumFile + "_" + peptideKey;
                 fractionPsmMatches.put(fractionKey, new ArrayList<String>(peptideMatch.getSpectrumMatchesKeys()));
             }
 
-            psParameter = new PSParameter();
+            PSParameter peptideParameter = new PSParameter();
 
             // set the fraction scores
             for (String fractionName : fractionScores.keySet()) {
-                psParameter.setFractionScore(fractionName, fractionScores.get(fractionName));
+                peptideParameter.setFractionScore(fractionName, fractionScores.get(fractionName));
             }
 
             // Set the global score and grouping key
-            psParameter.setPeptideProbabilityScore(probaScore);
+            peptideParameter.setPeptideProbabilityScore(probaScore);
             String peptideValidationGroup = "";
             if (identificationParameters.getIdValidationPreferences().getSeparatePeptides()) {
-                psParameter.setSpecificMapKey(peptideValidationGroup);
+                peptideParameter.setSpecificMapKey(peptideValidationGroup);
             }
-            identification.addPeptideMatchParameter(peptideKey, psParameter);
-            peptideMap.addPoint(psParameter.getPeptideProbabilityScore(), peptideMatch, identificationParameters.getSequenceMatchingPreferences());
+            peptideParameters.add(peptideParameter);
+            peptideMap.addPoint(peptideParameter.getPeptideProbabilityScore(), peptideMatch, identificationParameters.getSequenceMatchingPreferences());
 
             waitingHandler.increaseSecondaryProgressCounter();
 
@@ -1037,19 +1219,15 @@ public class MatchesValidator {
             }
         }
 
-        waitingHandler.setSecondaryProgressCounterIndeterminate(true);
-
-        if (metrics != null) {
-            // set the fraction psm matches
-            metrics.setFractionPsmMatches(fractionPsmMatches);
-            // set the ptms
-            metrics.setFoundModifications(new ArrayList<String>(foundModifications));
+        for (int i = 0; i < page.size(); i++) {
+            identification.addPeptideMatchParameter(page.get(i).getKey(), peptideParameters.get(i));
         }
     }
 
     /**
      * Attaches the peptide posterior error probabilities to the peptide
-     * matches.
+     * matches. The peptide parameters of a page of peptide matches are loaded
+     * in a single query and saved at the end of the page.
      *
      * @param identification the identification class containing the matches to
      * validate
@@ -1072,18 +1250,66 @@ public class MatchesValidator {
         waitingHandler.setSecondaryProgressCounterIndeterminate(false);
         waitingHandler.setMaxSecondaryProgressCounter(identification.getPeptideIdentification().size());
 
-        PSParameter psParameter = new PSParameter();
-        ArrayList<UrParameter> parameters = new ArrayList<UrParameter>(1);
-        parameters.add(psParameter);
-        PeptideMatchesIterator peptideMatchesIterator = identification.getPeptideMatchesIterator(parameters, false, parameters, waitingHandler);
+        PeptideMatchesIterator peptideMatchesIterator = identification.getPeptideMatchesIterator(null, false, null, waitingHandler);
+        ArrayList<String> page = new ArrayList<String>(BATCH_SIZE);
         PeptideMatch peptideMatch;
 
         while ((peptideMatch = peptideMatchesIterator.next()) != null) {
 
-            String peptideKey = peptideMatch.getKey();
-            psParameter = (PSParameter) identification.getPeptideMatchParameter(peptideKey, psParameter);
+            page.add(peptideMatch.getKey());
 
-            if (sequenceFactory.concatenatedTargetDecoy()) {
+            if (page.size() == BATCH_SIZE) {
+                attachPeptideProbabilities(identification, page, waitingHandler);
+                page.clear();
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+            }
+        }
+
+        attachPeptideProbabilities(identification, page, waitingHandler);
+        if (waitingHandler.isRunCanceled()) {
+            return;
+        }
+
+        waitingHandler.setSecondaryProgressCounterIndeterminate(true);
+    }
+
+    /**
+     * Attaches the peptide posterior error probabilities to a page of peptide
+     * matches.
+     *
+     * @param identification the identification class containing the matches to
+     * validate
+     * @param page the keys of the peptide matches of the page
+     * @param waitingHandler the handler displaying feedback to the user
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file.
+     * @throws InterruptedException exception thrown whenever a threading issue
+     * occurred while interacting with the database.
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the database.
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing an object from the database.
+     */
+    private void attachPeptideProbabilities(Identification identification, ArrayList<String> page, WaitingHandler waitingHandler)
+            throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+
+        if (page.isEmpty()) {
+            return;
+        }
+
+        identification.loadPeptideMatchParameters(page, new PSParameter(), null, false);
+
+        boolean concatenatedTargetDecoy = sequenceFactory.concatenatedTargetDecoy();
+        ArrayList<PSParameter> peptideParameters = new ArrayList<PSParameter>(page.size());
+
+        for (String peptideKey : page) {
+
+            PSParameter psParameter = (PSParameter) identification.getPeptideMatchParameter(peptideKey, new PSParameter());
+
+            if (concatenatedTargetDecoy) {
                 psParameter.setPeptideProbability(peptideMap.getProbability(psParameter.getSpecificMapKey(), psParameter.getPeptideProbabilityScore()));
             } else {
                 psParameter.setPeptideProbability(1.0);
@@ -1093,14 +1319,14 @@ public class MatchesValidator {
                 throw new IllegalArgumentException("Fractions not found for peptide " + peptideKey + ".");
             }
             for (String fraction : fractions) {
-                if (sequenceFactory.concatenatedTargetDecoy()) {
+                if (concatenatedTargetDecoy) {
                     psParameter.setFractionPEP(fraction, peptideMap.getProbability(psParameter.getSpecificMapKey(), psParameter.getFractionScore(fraction)));
                 } else {
                     psParameter.setFractionPEP(fraction, 1.0);
                 }
             }
 
-            identification.updatePeptideMatchParameter(peptideKey, psParameter);
+            peptideParameters.add(psParameter);
             waitingHandler.increaseSecondaryProgressCounter();
 
             if (waitingHandler.isRunCanceled()) {
@@ -1108,20 +1334,31 @@ public class MatchesValidator {
             }
         }
 
-        waitingHandler.setSecondaryProgressCounterIndeterminate(true);
+        updatePeptideMatchParameters(identification, page, peptideParameters);
     }
 
     /**
-     * Fills the protein map.
+     * Fills the protein map. The protein matches are scored in parallel, every
+     * thread filling its own partition of the map which are merged once all
+     * matches are processed.
      *
      * @param identification the identification class containing the matches to
      * validate
+     * @param processingPreferences the processing preferences
      * @param waitingHandler the handler displaying feedback to the user
+     * @param exceptionHandler handler for exceptions
      *
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the matches database
      * @throws IOException exception thrown whenever an error occurred while
-     * reading or writing a file.
+     * interacting with the matches database
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing a match from the database
+     * @throws InterruptedException exception thrown whenever a threading issue
+     * occurred while retrieving the matches
      */
-    public void fillProteinMap(Identification identification, WaitingHandler waitingHandler) throws Exception {
+    public void fillProteinMap(Identification identification, ProcessingPreferences processingPreferences, WaitingHandler waitingHandler,
+            ExceptionHandler exceptionHandler) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
 
         waitingHandler.setWaitingText("Filling Protein Map. Please Wait...");
 
@@ -1130,72 +1367,34 @@ public class MatchesValidator {
         waitingHandler.setSecondaryProgressCounterIndeterminate(false);
         waitingHandler.setMaxSecondaryProgressCounter(totalProgress);
 
-        PSParameter psParameter = new PSParameter();
         ArrayList<UrParameter> parameters = new ArrayList<UrParameter>(1);
-        parameters.add(psParameter);
+        parameters.add(new PSParameter());
         ProteinMatchesIterator proteinMatchesIterator = identification.getProteinMatchesIterator(null, true, parameters, false, null, waitingHandler);
-        int nFractions = identification.getSpectrumFiles().size();
-        ProteinMatch proteinMatch;
-
-        while ((proteinMatch = proteinMatchesIterator.next()) != null) {
 
-            String proteinKey = proteinMatch.getKey();
-
-            waitingHandler.increaseSecondaryProgressCounter();
+        ExecutorService pool = Executors.newFixedThreadPool(processingPreferences.getnThreads());
+        ArrayList<ProteinMapFillerRunnable> runnables = new ArrayList<ProteinMapFillerRunnable>(processingPreferences.getnThreads());
+        for (int i = 1; i <= processingPreferences.getnThreads(); i++) {
+            ProteinMapFillerRunnable runnable = new ProteinMapFillerRunnable(proteinMatchesIterator, identification, waitingHandler, exceptionHandler);
+            pool.submit(runnable);
+            runnables.add(runnable);
             if (waitingHandler.isRunCanceled()) {
-                return;
-            }
-
-            HashMap<String, Double> fractionScores = new HashMap<String, Double>(nFractions);
-            double probaScore = 1;
-
-            if (proteinMatch == null) {
-                throw new IllegalArgumentException("Protein match " + proteinKey + " not found.");
-            }
-
-            // get the global and fraction level scores
-            for (String peptideKey : proteinMatch.getPeptideMatchesKeys()) {
-
-                psParameter = (PSParameter) identification.getPeptideMatchParameter(peptideKey, psParameter);
-                probaScore = probaScore * psParameter.getPeptideProbability();
-
-                if (nFractions > 1) {
-                    for (String fraction : psParameter.getFractions()) {
-
-                        Double fractionScore = fractionScores.get(fraction);
-                        boolean change = false;
-                        if (fractionScore == null) {
-                            fractionScore = 1.0;
-                            change = true;
-                        }
-                        Double peptideScore = psParameter.getFractionPEP(fraction);
-                        if (peptideScore != 1.0) {
-                            fractionScore *= peptideScore;
-                            change = true;
-                        }
-                        if (change) {
-                            fractionScores.put(fraction, fractionScore);
-                        }
-                    }
-                }
-            }
-            if (nFractions == 1) {
-                String spectrumFile = identification.getSpectrumFiles().get(0);
-                fractionScores.put(spectrumFile, probaScore);
-            }
-
-            psParameter = new PSParameter();
-
-            // set the fraction scores
-            for (String fractionName : fractionScores.keySet()) {
-                psParameter.setFractionScore(fractionName, fractionScores.get(fractionName));
+                break;
             }
+        }
+        if (waitingHandler.isRunCanceled()) {
+            pool.shutdownNow();
+            return;
+        }
+        pool.shutdown();
+        if (!pool.awaitTermination(7, TimeUnit.DAYS)) {
+            throw new InterruptedException("Protein map filling timed out. Please contact the developers.");
+        }
+        if (waitingHandler.isRunCanceled()) {
+            return;
+        }
 
-            // Set the global score
-            psParameter.setProteinProbabilityScore(probaScore);
-
-            identification.addProteinMatchParameter(proteinKey, psParameter);
-            proteinMap.addPoint(psParameter.getProteinProbabilityScore(), proteinMatch.isDecoy());
+        for (ProteinMapFillerRunnable runnable : runnables) {
+            proteinMap.addAll(runnable.getProteinMap());
         }
 
         waitingHandler.setSecondaryProgressCounterIndeterminate(true);
@@ -1203,11 +1402,14 @@ public class MatchesValidator {
 
     /**
      * Attaches the protein posterior error probability to the protein matches.
+     * The protein matches are processed in parallel.
      *
      * @param identification the identification class containing the matches to
      * validate
      * @param metrics if provided fraction information
+     * @param processingPreferences the processing preferences
      * @param waitingHandler the handler displaying feedback to the user
+     * @param exceptionHandler handler for exceptions
      * @param fractionSettings the fraction settings
      *
      * @throws SQLException exception thrown whenever an error occurred while
@@ -1221,62 +1423,60 @@ public class MatchesValidator {
      * occurred while retrieving the match or when an error is encountered while
      * reading the FASTA file
      */
-    public void attachProteinProbabilities(Identification identification, Metrics metrics, WaitingHandler waitingHandler,
-            FractionSettings fractionSettings) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+    public void attachProteinProbabilities(Identification identification, Metrics metrics, ProcessingPreferences processingPreferences,
+            WaitingHandler waitingHandler, ExceptionHandler exceptionHandler, FractionSettings fractionSettings)
+            throws SQLException, IOException, ClassNotFoundException, InterruptedException {
 
         waitingHandler.setWaitingText("Attaching Protein Probabilities. Please Wait...");
 
         waitingHandler.setSecondaryProgressCounterIndeterminate(false);
         waitingHandler.setMaxSecondaryProgressCounter(identification.getProteinIdentification().size());
 
-        HashMap<String, ArrayList<Double>> fractionMW = new HashMap<String, ArrayList<Double>>();
-
-        PSParameter psParameter = new PSParameter();
         ArrayList<UrParameter> parameters = new ArrayList<UrParameter>(1);
-        parameters.add(psParameter);
+        parameters.add(new PSParameter());
         ProteinMatchesIterator proteinMatchesIterator = identification.getProteinMatchesIterator(parameters, true, parameters, true, parameters, waitingHandler);
-        ProteinMatch proteinMatch;
-
-        while ((proteinMatch = proteinMatchesIterator.next()) != null) {
-
-            String proteinKey = proteinMatch.getKey();
-            Double proteinMW = sequenceFactory.computeMolecularWeight(proteinMatch.getMainMatch());
 
-            psParameter = (PSParameter) identification.getProteinMatchParameter(proteinKey, psParameter);
-            if (sequenceFactory.concatenatedTargetDecoy()) {
-                double proteinProbability = proteinMap.getProbability(psParameter.getProteinProbabilityScore());
-                psParameter.setProteinProbability(proteinProbability);
-            } else {
-                psParameter.setProteinProbability(1.0);
+        ExecutorService pool = Executors.newFixedThreadPool(processingPreferences.getnThreads());
+        ArrayList<ProteinProbabilityRunnable> runnables = new ArrayList<ProteinProbabilityRunnable>(processingPreferences.getnThreads());
+        for (int i = 1; i <= processingPreferences.getnThreads(); i++) {
+            ProteinProbabilityRunnable runnable = new ProteinProbabilityRunnable(proteinMatchesIterator, identification, fractionSettings, waitingHandler, exceptionHandler);
+            pool.submit(runnable);
+            runnables.add(runnable);
+            if (waitingHandler.isRunCanceled()) {
+                break;
             }
+        }
+        if (waitingHandler.isRunCanceled()) {
+            pool.shutdownNow();
+            return;
+        }
+        pool.shutdown();
+        if (!pool.awaitTermination(7, TimeUnit.DAYS)) {
+            throw new InterruptedException("Protein probabilities attachment timed out. Please contact the developers.");
+        }
+        if (waitingHandler.isRunCanceled()) {
+            return;
+        }
 
-            for (String fraction : psParameter.getFractions()) {
-                if (sequenceFactory.concatenatedTargetDecoy()) {
-                    psParameter.setFractionPEP(fraction, proteinMap.getProbability(psParameter.getFractionScore(fraction)));
-                } else {
-                    psParameter.setFractionPEP(fraction, 1.0);
-                }
+        if (metrics != null) {
 
-                // set the fraction molecular weights
-                if (!proteinMatch.isDecoy() && psParameter.getFractionConfidence(fraction) > fractionSettings.getProteinConfidenceMwPlots()) {
+            // gather the fraction molecular weights in a deterministic order
+            HashMap<String, ArrayList<Double>> fractionMW = new HashMap<String, ArrayList<Double>>();
+            for (ProteinProbabilityRunnable runnable : runnables) {
+                HashMap<String, ArrayList<Double>> threadFractionMW = runnable.getFractionMW();
+                for (String fraction : threadFractionMW.keySet()) {
                     ArrayList<Double> mw = fractionMW.get(fraction);
                     if (mw == null) {
-                        mw = new ArrayList<Double>(1);
+                        mw = new ArrayList<Double>(threadFractionMW.get(fraction).size());
                         fractionMW.put(fraction, mw);
                     }
-                    mw.add(proteinMW);
+                    mw.addAll(threadFractionMW.get(fraction));
                 }
             }
-
-            identification.updateProteinMatchParameter(proteinKey, psParameter);
-            waitingHandler.increaseSecondaryProgressCounter();
-
-            if (waitingHandler.isRunCanceled()) {
-                return;
+            for (ArrayList<Double> mw : fractionMW.values()) {
+                Collections.sort(mw);
             }
-        }
 
-        if (metrics != null) {
             // set the observed fractional molecular weights per fraction
             metrics.setObservedFractionalMassesAll(fractionMW);
         }
@@ -1284,6 +1484,92 @@ public class MatchesValidator {
         waitingHandler.setSecondaryProgressCounterIndeterminate(true);
     }
 
+    /**
+     * Returns a copy of the given PSM filters where the probabilistic
+     * precursor m/z error filter is replaced by a filter on the precursor m/z
+     * error using the precursor tolerance of the search. The given filters are
+     * not modified.
+     *
+     * @param psmFilters the PSM filters
+     * @param searchParameters the search parameters
+     *
+     * @return the PSM filters without probabilistic precursor filter
+     */
+    private static ArrayList<Filter> getPsmFiltersWithoutPrecursorStatistics(ArrayList<Filter> psmFilters, SearchParameters searchParameters) {
+        String precursorItem = searchParameters.isPrecursorAccuracyTypePpm() ? AssumptionFilterItem.precrusorMzErrorPpm.name : AssumptionFilterItem.precrusorMzErrorDa.name;
+        ArrayList<Filter> result = new ArrayList<Filter>(psmFilters.size());
+        for (Filter filter : psmFilters) {
+            PsmFilter psmFilter = ((PsmFilter) filter).clone();
+            if (psmFilter.getItemsNames().contains(AssumptionFilterItem.precrusorMzErrorStat.name)) {
+                psmFilter.removeFilterItem(AssumptionFilterItem.precrusorMzErrorStat.name);
+                psmFilter.setFilterItem(precursorItem, FilterItemComparator.lowerOrEqual, searchParameters.getPrecursorAccuracy());
+            }
+            AssumptionFilter assumptionFilter = psmFilter.getAssumptionFilter();
+            if (assumptionFilter.getItemsNames().contains(AssumptionFilterItem.precrusorMzErrorStat.name)) {
+                assumptionFilter.removeFilterItem(AssumptionFilterItem.precrusorMzErrorStat.name);
+                assumptionFilter.setFilterItem(precursorItem, FilterItemComparator.lowerOrEqual, searchParameters.getPrecursorAccuracy());
+            }
+            result.add(psmFilter);
+        }
+        return result;
+    }
+
+    /**
+     * Saves the parameters of a batch of protein matches. The parameters go
+     * through the objects cache of the identification, which writes the
+     * modified objects to the database by batches when it is emptied, or
+     * directly to the store when the parameters are stored off-heap.
+     *
+     * @param identification the identification
+     * @param keys the keys of the protein matches
+     * @param psParameters the parameters of the protein matches in the same
+     * order as the keys
+     * @param newParameters if true the parameters are added, otherwise they
+     * replace existing parameters
+     *
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the matches database
+     * @throws IOException exception thrown whenever an error occurred while
+     * interacting with the matches database
+     * @throws InterruptedException exception thrown whenever a threading issue
+     * occurred while interacting with the matches database
+     */
+    private static void updateProteinMatchParameters(Identification identification, ArrayList<String> keys, ArrayList<PSParameter> psParameters, boolean newParameters)
+            throws SQLException, IOException, InterruptedException {
+        for (int i = 0; i < keys.size(); i++) {
+            if (newParameters) {
+                identification.addProteinMatchParameter(keys.get(i), psParameters.get(i));
+            } else {
+                identification.updateProteinMatchParameter(keys.get(i), psParameters.get(i));
+            }
+        }
+    }
+
+    /**
+     * Updates the parameters of a batch of peptide matches. The parameters go
+     * through the objects cache of the identification, which writes the
+     * modified objects to the database by batches when it is emptied, or
+     * directly to the store when the parameters are stored off-heap.
+     *
+     * @param identification the identification
+     * @param keys the keys of the peptide matches
+     * @param psParameters the parameters of the peptide matches in the same
+     * order as the keys
+     *
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the matches database
+     * @throws IOException exception thrown whenever an error occurred while
+     * interacting with the matches database
+     * @throws InterruptedException exception thrown whenever a threading issue
+     * occurred while interacting with the matches database
+     */
+    private static void updatePeptideMatchParameters(Identification identification, ArrayList<String> keys, ArrayList<PSParameter> psParameters)
+            throws SQLException, IOException, InterruptedException {
+        for (int i = 0; i < keys.size(); i++) {
+            identification.updatePeptideMatchParameter(keys.get(i), psParameters.get(i));
+        }
+    }
+
     /**
      * Returns the PSM scoring specific map.
      *
@@ -1386,9 +1672,9 @@ public class MatchesValidator {
     private class PsmValidatorRunnable implements Runnable {
 
         /**
-         * An iterator for the PSMs.
+         * The stream of PSMs to validate.
          */
-        private PsmIterator psmIterator;
+        private PsmStream psmStream;
         /**
          * The identification.
          */
@@ -1419,10 +1705,10 @@ public class MatchesValidator {
          */
         private PeptideSpectrumAnnotator peptideSpectrumAnnotator = new PeptideSpectrumAnnotator();
         /**
-         * List used to store precursor m/z deviations of matches currently
-         * validated.
+         * A sample of the precursor m/z deviations of the validated matches of
+         * every file: file name | deviations.
          */
-        private ArrayList<Double> threadPrecursorMzDeviations = new ArrayList<Double>(128);
+        private HashMap<String, DoubleReservoir> threadPrecursorMzDeviations = new HashMap<String, DoubleReservoir>();
         /**
          * If not null, information on search engine agreement will be stored in
          * the input map.
@@ -1436,11 +1722,16 @@ public class MatchesValidator {
          * If true, advocate contributions will be stored in the input map.
          */
         private boolean storeContributions;
+        /**
+         * The quality control filters to use for specific files, the filters
+         * of the validation preferences are used for the other files.
+         */
+        private HashMap<String, ArrayList<Filter>> filePsmFilters;
 
         /**
          * Constructor.
          *
-         * @param psmIterator a PSM iterator
+         * @param psmStream the stream of PSMs to validate
          * @param identification the identification containing the matches
          * @param identificationFeaturesGenerator the identification features
          * generator used to estimate, store and retrieve identification
@@ -1456,10 +1747,13 @@ public class MatchesValidator {
          * filters should be used
          * @param storeContributions boolean indicating whether advocate
          * contributions should be stored.
+         * @param filePsmFilters the quality control filters to use for specific
+         * files, can be null
          */
-        public PsmValidatorRunnable(PsmIterator psmIterator, Identification identification, IdentificationFeaturesGenerator identificationFeaturesGenerator, GeneMaps geneMaps,
-                IdentificationParameters identificationParameters, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler, InputMap inputMap, boolean applyQCFilters, boolean storeContributions) {
-            this.psmIterator = psmIterator;
+        public PsmValidatorRunnable(PsmStream psmStream, Identification identification, IdentificationFeaturesGenerator identificationFeaturesGenerator, GeneMaps geneMaps,
+                IdentificationParameters identificationParameters, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler, InputMap inputMap, boolean applyQCFilters, boolean storeContributions,
+                HashMap<String, ArrayList<Filter>> filePsmFilters) {
+            this.psmStream = psmStream;
             this.identification = identification;
             this.identificationFeaturesGenerator = identificationFeaturesGenerator;
             this.geneMaps = geneMaps;
@@ -1469,17 +1763,28 @@ public class MatchesValidator {
             this.inputMap = inputMap;
             this.applyQCFilters = applyQCFilters;
             this.storeContributions = storeContributions;
+            this.filePsmFilters = filePsmFilters;
         }
 
         @Override
         public void run() {
             try {
                 SpectrumMatch spectrumMatch;
-                while ((spectrumMatch = psmIterator.next()) != null && !waitingHandler.isRunCanceled()) {
+                while ((spectrumMatch = psmStream.next()) != null && !waitingHandler.isRunCanceled()) {
 
                     String spectrumKey = spectrumMatch.getKey();
 
-                    updateSpectrumMatchValidationLevel(identification, identificationFeaturesGenerator, geneMaps, identificationParameters, peptideSpectrumAnnotator, psmMap, spectrumKey, applyQCFilters);
+                    ArrayList<Filter> psmFilters = null;
+                    if (applyQCFilters) {
+                        if (filePsmFilters != null) {
+                            psmFilters = filePsmFilters.get(Spectrum.getSpectrumFile(spectrumKey));
+                        }
+                        if (psmFilters == null) {
+                            psmFilters = identificationParameters.getIdValidationPreferences().getValidationQCPreferences().getPsmFilters();
+                        }
+                    }
+
+                    updateSpectrumMatchValidationLevel(identification, identificationFeaturesGenerator, geneMaps, identificationParameters, peptideSpectrumAnnotator, psmMap, spectrumKey, psmFilters);
 
                     // update assumption validation level
                     HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptions = identification.getAssumptions(spectrumKey);
@@ -1487,7 +1792,7 @@ public class MatchesValidator {
                         for (ArrayList<SpectrumIdentificationAssumption> scoreList : algorithmMap.values()) {
                             for (SpectrumIdentificationAssumption spectrumIdentificationAssumption : scoreList) {
                                 if (spectrumIdentificationAssumption instanceof PeptideAssumption) {
-                                    updatePeptideAssumptionValidationLevel(identification, identificationFeaturesGenerator, identificationParameters, peptideSpectrumAnnotator, inputMap, spectrumKey, (PeptideAssumption) spectrumIdentificationAssumption, applyQCFilters);
+                                    updatePeptideAssumptionValidationLevel(identification, identificationFeaturesGenerator, identificationParameters, peptideSpectrumAnnotator, inputMap, spectrumKey, (PeptideAssumption) spectrumIdentificationAssumption, psmFilters);
                                 } else if (spectrumIdentificationAssumption instanceof TagAssumption) {
                                     updateTagAssumptionValidationLevel(identificationFeaturesGenerator, identificationParameters, inputMap, spectrumKey, (TagAssumption) spectrumIdentificationAssumption);
                                 } else {
@@ -1509,7 +1814,15 @@ public class MatchesValidator {
                             double precursorMz = spectrumFactory.getPrecursorMz(spectrumKey);
                             SearchParameters searchParameters = identificationParameters.getSearchParameters();
                             double precursorMzError = peptideAssumption.getDeltaMass(precursorMz, searchParameters.isPrecursorAccuracyTypePpm(), searchParameters.getMinIsotopicCorrection(), searchParameters.getMaxIsotopicCorrection());
-                            threadPrecursorMzDeviations.add(precursorMzError);
+                            if (!applyQCFilters) {
+                                String spectrumFile = Spectrum.getSpectrumFile(spectrumKey);
+                                DoubleReservoir fileDeviations = threadPrecursorMzDeviations.get(spectrumFile);
+                                if (fileDeviations == null) {
+                                    fileDeviations = new DoubleReservoir(IdentificationFeaturesGenerator.MASS_ERROR_SAMPLE_SIZE);
+                                    threadPrecursorMzDeviations.put(spectrumFile, fileDeviations);
+                                }
+                                fileDeviations.add(spectrumKey, precursorMzError);
+                            }
 
                             if (inputMap != null && storeContributions) {
 
@@ -1556,12 +1869,94 @@ public class MatchesValidator {
         }
 
         /**
-         * Returns the precursor m/z deviations of the validated PSMs.
+         * Returns a sample of the precursor m/z deviations of the validated
+         * PSMs of a file, null if none.
+         *
+         * @param spectrumFile the name of the spectrum file
          *
-         * @return the precursor m/z deviations of the validated PSMs
+         * @return a sample of the precursor m/z deviations of the validated
+         * PSMs of the file
          */
-        public ArrayList<Double> getThreadPrecursorMzDeviations() {
-            return threadPrecursorMzDeviations;
+        public DoubleReservoir getThreadPrecursorMzDeviations(String spectrumFile) {
+            return threadPrecursorMzDeviations.get(spectrumFile);
+        }
+    }
+
+    /**
+     * Stream of the PSMs of all spectrum files. The files are iterated one
+     * after the other so that the threads move to the next file without
+     * waiting for the others to finish the current one. This class is thread
+     * safe.
+     *
+     * @author Marc Vaudel
+     */
+    private class PsmStream {
+
+        /**
+         * The iterators of the PSMs of every file.
+         */
+        private final ArrayList<PsmIterator> psmIterators;
+        /**
+         * The index of the file currently iterated.
+         */
+        private final AtomicInteger fileIndex = new AtomicInteger();
+
+        /**
+         * Constructor.
+         *
+         * @param identification the identification containing the matches
+         * @param spectrumKeysMap the ordered spectrum keys of every file, can
+         * be null
+         * @param parameters the parameters to load along with the matches
+         * @param waitingHandler a waiting handler to display progress and allow
+         * canceling the process
+         *
+         * @throws SQLException exception thrown whenever an error occurred
+         * while interacting with the database
+         * @throws IOException exception thrown whenever an error occurred while
+         * interacting with the database
+         * @throws ClassNotFoundException exception thrown whenever an error
+         * occurred while deserializing an object from the database
+         * @throws InterruptedException exception thrown whenever a threading
+         * issue occurred while interacting with the database
+         */
+        public PsmStream(Identification identification, HashMap<String, ArrayList<String>> spectrumKeysMap, ArrayList<UrParameter> parameters,
+                WaitingHandler waitingHandler) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+            ArrayList<String> spectrumFiles = identification.getSpectrumFiles();
+            psmIterators = new ArrayList<PsmIterator>(spectrumFiles.size());
+            for (String spectrumFileName : spectrumFiles) {
+                ArrayList<String> spectrumKeys = null;
+                if (spectrumKeysMap != null) {
+                    spectrumKeys = spectrumKeysMap.get(spectrumFileName);
+                }
+                psmIterators.add(identification.getPsmIterator(spectrumFileName, spectrumKeys, parameters, false, waitingHandler));
+            }
+        }
+
+        /**
+         * Returns the next PSM, null if all PSMs were iterated.
+         *
+         * @return the next PSM
+         *
+         * @throws SQLException exception thrown whenever an error occurred
+         * while interacting with the database
+         * @throws IOException exception thrown whenever an error occurred while
+         * interacting with the database
+         * @throws ClassNotFoundException exception thrown whenever an error
+         * occurred while deserializing an object from the database
+         * @throws InterruptedException exception thrown whenever a threading
+         * issue occurred while interacting with the database
+         */
+        public SpectrumMatch next() throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+            int index;
+            while ((index = fileIndex.get()) < psmIterators.size()) {
+                SpectrumMatch spectrumMatch = psmIterators.get(index).next();
+                if (spectrumMatch != null) {
+                    return spectrumMatch;
+                }
+                fileIndex.compareAndSet(index, index + 1);
+            }
+            return null;
         }
     }
 
@@ -1607,6 +2002,8 @@ public class MatchesValidator {
         private ArrayList<Double> validatedPeptideLengths = new ArrayList<Double>();
         /**
          * Map used to store the number of validated peptides per fraction.
+         * Only accessed by the thread running this runnable, the maps of the
+         * different runnables are merged after completion.
          */
         private HashMap<String, Integer> validatedTotalPeptidesPerFraction = new HashMap<String, Integer>();
         /**
@@ -1741,14 +2138,12 @@ public class MatchesValidator {
          *
          * @param fractionName the name of the fraction
          */
-        private synchronized void addValidatedPeptideForFraction(String fractionName) {
-
-            if (validatedTotalPeptidesPerFraction.containsKey(fractionName)) {
-                Integer value = validatedTotalPeptidesPerFraction.get(fractionName);
-                validatedTotalPeptidesPerFraction.put(fractionName, value + 1);
-            } else {
-                validatedTotalPeptidesPerFraction.put(fractionName, 1);
+        private void addValidatedPeptideForFraction(String fractionName) {
+            Integer value = validatedTotalPeptidesPerFraction.get(fractionName);
+            if (value == null) {
+                value = 0;
             }
+            validatedTotalPeptidesPerFraction.put(fractionName, value + 1);
         }
 
         /**
@@ -1817,6 +2212,8 @@ public class MatchesValidator {
         /**
          * The total spectrum counting mass contribution of the proteins
          * according to the validation level specified in the preferences.
+         * Only accessed by the thread running this runnable, the values of the
+         * different runnables are merged after completion.
          */
         private double totalSpectrumCountingMass = 0;
         /**
@@ -1824,6 +2221,22 @@ public class MatchesValidator {
          * the validation level specified in the preferences.
          */
         private double totalSpectrumCounting = 0;
+        /**
+         * The maximal number of validated spectra in a fraction.
+         */
+        private int maxValidatedSpectraFractionLevel = 0;
+        /**
+         * The maximal number of validated peptides in a fraction.
+         */
+        private int maxValidatedPeptidesFractionLevel = 0;
+        /**
+         * The maximal protein average precursor intensity in a fraction.
+         */
+        private double maxProteinAveragePrecursorIntensity = 0.0;
+        /**
+         * The maximal protein summed precursor intensity in a fraction.
+         */
+        private double maxProteinSummedPrecursorIntensity = 0.0;
         /**
          * The object used to store metrics on the project.
          */
@@ -1874,9 +2287,6 @@ public class MatchesValidator {
                     proteinConfidentThreshold = 100;
                 }
                 boolean noValidated = proteinMap.getTargetDecoyMap().getTargetDecoyResults().noValidated();
-                int maxValidatedSpectraFractionLevel = 0;
-                int maxValidatedPeptidesFractionLevel = 0;
-                double maxProteinAveragePrecursorIntensity = 0.0, maxProteinSummedPrecursorIntensity = 0.0;
                 ProteinMatch proteinMatch;
 
                 while ((proteinMatch = proteinMatchesIterator.next()) != null && !waitingHandler.isRunCanceled()) {
@@ -1906,10 +2316,10 @@ public class MatchesValidator {
 
                     if (!proteinMatch.isDecoy() && psParameter.getMatchValidationLevel().getIndex() >= spectrumCountingPreferences.getMatchValidationLevel()) {
                         double tempSpectrumCounting = identificationFeaturesGenerator.getSpectrumCounting(proteinKey);
-                        increaseSpectrumCounting(tempSpectrumCounting);
+                        totalSpectrumCounting += tempSpectrumCounting;
                         double molecularWeight = sequenceFactory.computeMolecularWeight(proteinMatch.getMainMatch());
                         double massContribution = molecularWeight * tempSpectrumCounting;
-                        increaseSpectrumCountingMass(massContribution);
+                        totalSpectrumCountingMass += massContribution;
                     }
                     // Load the coverage in cache
                     if (!proteinMatch.isDecoy() && psParameter.getMatchValidationLevel().isValidated()) {
@@ -1986,7 +2396,7 @@ public class MatchesValidator {
                                         maxProteinAveragePrecursorIntensity = psParameter.getPrecursorIntensityAveragePerFraction(fraction);
                                     }
                                     if (psParameter.getPrecursorIntensitySummedPerFraction(fraction) != null && psParameter.getPrecursorIntensitySummedPerFraction(fraction) > maxProteinSummedPrecursorIntensity) {
-                                        maxProteinAveragePrecursorIntensity = psParameter.getPrecursorIntensitySummedPerFraction(fraction);
+                                        maxProteinSummedPrecursorIntensity = psParameter.getPrecursorIntensitySummedPerFraction(fraction);
                                     }
                                 }
                             }
@@ -2000,87 +2410,367 @@ public class MatchesValidator {
                     }
                 }
 
-                // set the max values in the metrics
-                if (identification.getSpectrumFiles().size() > 1) {
-                    setMaxValues(
-                            maxValidatedPeptidesFractionLevel, 
-                            maxValidatedSpectraFractionLevel, 
-                            maxProteinAveragePrecursorIntensity, 
-                            maxProteinSummedPrecursorIntensity
-                    );
+            } catch (Exception e) {
+                exceptionHandler.catchException(e);
+            }
+        }
+
+        /**
+         * Returns the spectrum counting mass contribution of the validated
+         * proteins.
+         *
+         * @return the spectrum counting mass contribution of the validated
+         * proteins
+         */
+        public double getTotalSpectrumCountingMass() {
+            return totalSpectrumCountingMass;
+        }
+
+        /**
+         * Returns the spectrum counting contribution of the proteins iterated
+         * by this runnable.
+         *
+         * @return the spectrum counting contribution of the proteins iterated
+         * by this runnable
+         */
+        public double getTotalSpectrumCounting() {
+            return totalSpectrumCounting;
+        }
+
+        /**
+         * Returns the maximal number of validated spectra in a fraction for
+         * the proteins iterated by this runnable.
+         *
+         * @return the maximal number of validated spectra in a fraction
+         */
+        public int getMaxValidatedSpectraFractionLevel() {
+            return maxValidatedSpectraFractionLevel;
+        }
+
+        /**
+         * Returns the maximal number of validated peptides in a fraction for
+         * the proteins iterated by this runnable.
+         *
+         * @return the maximal number of validated peptides in a fraction
+         */
+        public int getMaxValidatedPeptidesFractionLevel() {
+            return maxValidatedPeptidesFractionLevel;
+        }
+
+        /**
+         * Returns the maximal protein average precursor intensity in a
+         * fraction for the proteins iterated by this runnable.
+         *
+         * @return the maximal protein average precursor intensity in a
+         * fraction
+         */
+        public double getMaxProteinAveragePrecursorIntensity() {
+            return maxProteinAveragePrecursorIntensity;
+        }
+
+        /**
+         * Returns the maximal protein summed precursor intensity in a fraction
+         * for the proteins iterated by this runnable.
+         *
+         * @return the maximal protein summed precursor intensity in a fraction
+         */
+        public double getMaxProteinSummedPrecursorIntensity() {
+            return maxProteinSummedPrecursorIntensity;
+        }
+    }
+
+    /**
+     * Runnable scoring protein matches. Every runnable fills its own partition
+     * of the protein map and saves the parameters of the matches to the
+     * database by batches.
+     *
+     * @author Marc Vaudel
+     */
+    private class ProteinMapFillerRunnable implements Runnable {
+
+        /**
+         * An iterator for the protein matches.
+         */
+        private ProteinMatchesIterator proteinMatchesIterator;
+        /**
+         * The identification.
+         */
+        private Identification identification;
+        /**
+         * The waiting handler.
+         */
+        private WaitingHandler waitingHandler;
+        /**
+         * Handler for the exceptions.
+         */
+        private ExceptionHandler exceptionHandler;
+        /**
+         * The partition of the protein map filled by this runnable.
+         */
+        private ProteinMap threadProteinMap = new ProteinMap();
+
+        /**
+         * Constructor.
+         *
+         * @param proteinMatchesIterator a protein matches iterator
+         * @param identification the identification containing the matches
+         * @param waitingHandler a waiting handler to display progress and allow
+         * canceling the process
+         * @param exceptionHandler handler for exceptions
+         */
+        public ProteinMapFillerRunnable(ProteinMatchesIterator proteinMatchesIterator, Identification identification,
+                WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+            this.proteinMatchesIterator = proteinMatchesIterator;
+            this.identification = identification;
+            this.waitingHandler = waitingHandler;
+            this.exceptionHandler = exceptionHandler;
+        }
+
+        @Override
+        public void run() {
+            try {
+                ArrayList<String> spectrumFiles = identification.getSpectrumFiles();
+                int nFractions = spectrumFiles.size();
+                PSParameter peptideParameter = new PSParameter();
+                ArrayList<String> batchKeys = new ArrayList<String>(BATCH_SIZE);
+                ArrayList<PSParameter> batchParameters = new ArrayList<PSParameter>(BATCH_SIZE);
+                ProteinMatch proteinMatch;
+
+                while ((proteinMatch = proteinMatchesIterator.next()) != null && !waitingHandler.isRunCanceled()) {
+
+                    String proteinKey = proteinMatch.getKey();
+
+                    HashMap<String, Double> fractionScores = new HashMap<String, Double>(nFractions);
+                    double probaScore = 1;
+
+                    // get the global and fraction level scores
+                    for (String peptideKey : proteinMatch.getPeptideMatchesKeys()) {
+
+                        peptideParameter = (PSParameter) identification.getPeptideMatchParameter(peptideKey, peptideParameter);
+                        probaScore = probaScore * peptideParameter.getPeptideProbability();
+
+                        if (nFractions > 1) {
+                            for (String fraction : peptideParameter.getFractions()) {
+
+                                Double fractionScore = fractionScores.get(fraction);
+                                boolean change = false;
+                                if (fractionScore == null) {
+                                    fractionScore = 1.0;
+                                    change = true;
+                                }
+                                Double peptideScore = peptideParameter.getFractionPEP(fraction);
+                                if (peptideScore != 1.0) {
+                                    fractionScore *= peptideScore;
+                                    change = true;
+                                }
+                                if (change) {
+                                    fractionScores.put(fraction, fractionScore);
+                                }
+                            }
+                        }
+                    }
+                    if (nFractions == 1) {
+                        fractionScores.put(spectrumFiles.get(0), probaScore);
+                    }
+
+                    PSParameter psParameter = new PSParameter();
+
+                    // set the fraction scores
+                    for (String fractionName : fractionScores.keySet()) {
+                        psParameter.setFractionScore(fractionName, fractionScores.get(fractionName));
+                    }
+
+                    // Set the global score
+                    psParameter.setProteinProbabilityScore(probaScore);
+
+                    threadProteinMap.addPoint(probaScore, proteinMatch.isDecoy());
+
+                    batchKeys.add(proteinKey);
+                    batchParameters.add(psParameter);
+                    if (batchKeys.size() == BATCH_SIZE) {
+                        saveBatch(batchKeys, batchParameters);
+                    }
+
+                    waitingHandler.increaseSecondaryProgressCounter();
                 }
 
+                saveBatch(batchKeys, batchParameters);
+
             } catch (Exception e) {
                 exceptionHandler.catchException(e);
+                waitingHandler.setRunCanceled();
             }
         }
 
         /**
-         * Increases the mass contribution of a protein.
+         * Saves a batch of protein match parameters to the database and clears
+         * the batch.
          *
-         * @param massContribution the mass contribution of a protein
+         * @param batchKeys the keys of the protein matches
+         * @param batchParameters the parameters of the protein matches
+         *
+         * @throws SQLException exception thrown whenever an error occurred
+         * while interacting with the matches database
+         * @throws IOException exception thrown whenever an error occurred while
+         * interacting with the matches database
+         * @throws InterruptedException exception thrown whenever a threading
+         * issue occurred while interacting with the matches database
          */
-        private synchronized void increaseSpectrumCountingMass(Double massContribution) {
-            totalSpectrumCountingMass += massContribution;
+        private void saveBatch(ArrayList<String> batchKeys, ArrayList<PSParameter> batchParameters) throws SQLException, IOException, InterruptedException {
+            updateProteinMatchParameters(identification, batchKeys, batchParameters, true);
+            batchKeys.clear();
+            batchParameters.clear();
         }
 
         /**
-         * Increases the spectrum counting contribution of a protein.
+         * Returns the partition of the protein map filled by this runnable.
          *
-         * @param spectrumCounting the spectrum counting contribution of a
-         * protein
+         * @return the partition of the protein map filled by this runnable
          */
-        private synchronized void increaseSpectrumCounting(Double spectrumCounting) {
-            totalSpectrumCounting += spectrumCounting;
+        public ProteinMap getProteinMap() {
+            return threadProteinMap;
         }
+    }
+
+    /**
+     * Runnable attaching the protein posterior error probabilities to the
+     * protein matches. The parameters of the matches are saved to the database
+     * by batches.
+     *
+     * @author Marc Vaudel
+     */
+    private class ProteinProbabilityRunnable implements Runnable {
+
+        /**
+         * An iterator for the protein matches.
+         */
+        private ProteinMatchesIterator proteinMatchesIterator;
+        /**
+         * The identification.
+         */
+        private Identification identification;
+        /**
+         * The fraction settings.
+         */
+        private FractionSettings fractionSettings;
+        /**
+         * The waiting handler.
+         */
+        private WaitingHandler waitingHandler;
+        /**
+         * Handler for the exceptions.
+         */
+        private ExceptionHandler exceptionHandler;
+        /**
+         * The molecular weights of the confident target proteins of every
+         * fraction processed by this runnable.
+         */
+        private HashMap<String, ArrayList<Double>> fractionMW = new HashMap<String, ArrayList<Double>>();
 
         /**
-         * Sets the max values in the metrics.
+         * Constructor.
          *
-         * @param maxValidatedPeptidesFractionLevel the maximal number of
-         * validated peptides in a fraction
-         * @param maxValidatedSpectraFractionLevel the maximal number of
-         * validated spectra in a fraction
-         * @param maxProteinAveragePrecursorIntensity the maximal protein
-         * average intensity
-         * @param maxProteinSummedPrecursorIntensity the maximal protein summed
-         * intensity
-         */
-        private synchronized void setMaxValues(int maxValidatedPeptidesFractionLevel, int maxValidatedSpectraFractionLevel, double maxProteinAveragePrecursorIntensity, double maxProteinSummedPrecursorIntensity) {
-            if (metrics.getMaxValidatedPeptidesPerFraction() != null && maxValidatedPeptidesFractionLevel > metrics.getMaxValidatedPeptidesPerFraction()) {
-                metrics.setMaxValidatedPeptidesPerFraction(maxValidatedPeptidesFractionLevel);
-            }
-            if (metrics.getMaxValidatedSpectraPerFraction() != null && maxValidatedSpectraFractionLevel > metrics.getMaxValidatedSpectraPerFraction()) {
-                metrics.setMaxValidatedSpectraPerFraction(maxValidatedSpectraFractionLevel);
-            }
-            if (metrics.getMaxProteinAveragePrecursorIntensity() != null && maxProteinAveragePrecursorIntensity > metrics.getMaxProteinAveragePrecursorIntensity()) {
-                metrics.setMaxProteinAveragePrecursorIntensity(maxProteinAveragePrecursorIntensity);
-            }
-            if (metrics.getMaxProteinSummedPrecursorIntensity() != null && maxProteinSummedPrecursorIntensity > metrics.getMaxProteinSummedPrecursorIntensity()) {
-                metrics.setMaxProteinSummedPrecursorIntensity(maxProteinSummedPrecursorIntensity);
+         * @param proteinMatchesIterator a protein matches iterator
+         * @param identification the identification containing the matches
+         * @param fractionSettings the fraction settings
+         * @param waitingHandler a waiting handler to display progress and allow
+         * canceling the process
+         * @param exceptionHandler handler for exceptions
+         */
+        public ProteinProbabilityRunnable(ProteinMatchesIterator proteinMatchesIterator, Identification identification, FractionSettings fractionSettings,
+                WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+            this.proteinMatchesIterator = proteinMatchesIterator;
+            this.identification = identification;
+            this.fractionSettings = fractionSettings;
+            this.waitingHandler = waitingHandler;
+            this.exceptionHandler = exceptionHandler;
+        }
+
+        @Override
+        public void run() {
+            try {
+                boolean concatenatedTargetDecoy = sequenceFactory.concatenatedTargetDecoy();
+                ArrayList<String> batchKeys = new ArrayList<String>(BATCH_SIZE);
+                ArrayList<PSParameter> batchParameters = new ArrayList<PSParameter>(BATCH_SIZE);
+                ProteinMatch proteinMatch;
+
+                while ((proteinMatch = proteinMatchesIterator.next()) != null && !waitingHandler.isRunCanceled()) {
+
+                    String proteinKey = proteinMatch.getKey();
+                    Double proteinMW = sequenceFactory.computeMolecularWeight(proteinMatch.getMainMatch());
+
+                    PSParameter psParameter = (PSParameter) identification.getProteinMatchParameter(proteinKey, new PSParameter());
+                    if (concatenatedTargetDecoy) {
+                        double proteinProbability = proteinMap.getProbability(psParameter.getProteinProbabilityScore());
+                        psParameter.setProteinProbability(proteinProbability);
+                    } else {
+                        psParameter.setProteinProbability(1.0);
+                    }
+
+                    for (String fraction : psParameter.getFractions()) {
+                        if (concatenatedTargetDecoy) {
+                            psParameter.setFractionPEP(fraction, proteinMap.getProbability(psParameter.getFractionScore(fraction)));
+                        } else {
+                            psParameter.setFractionPEP(fraction, 1.0);
+                        }
+
+                        // set the fraction molecular weights
+                        if (!proteinMatch.isDecoy() && psParameter.getFractionConfidence(fraction) > fractionSettings.getProteinConfidenceMwPlots()) {
+                            ArrayList<Double> mw = fractionMW.get(fraction);
+                            if (mw == null) {
+                                mw = new ArrayList<Double>(1);
+                                fractionMW.put(fraction, mw);
+                            }
+                            mw.add(proteinMW);
+                        }
+                    }
+
+                    batchKeys.add(proteinKey);
+                    batchParameters.add(psParameter);
+                    if (batchKeys.size() == BATCH_SIZE) {
+                        saveBatch(batchKeys, batchParameters);
+                    }
+
+                    waitingHandler.increaseSecondaryProgressCounter();
+                }
+
+                saveBatch(batchKeys, batchParameters);
+
+            } catch (Exception e) {
+                exceptionHandler.catchException(e);
+                waitingHandler.setRunCanceled();
             }
         }
 
         /**
-         * Returns the spectrum counting mass contribution of the validated
-         * proteins.
+         * Saves a batch of protein match parameters to the database and clears
+         * the batch.
          *
-         * @return the spectrum counting mass contribution of the validated
-         * proteins
+         * @param batchKeys the keys of the protein matches
+         * @param batchParameters the parameters of the protein matches
+         *
+         * @throws SQLException exception thrown whenever an error occurred
+         * while interacting with the matches database
+         * @throws IOException exception thrown whenever an error occurred while
+         * interacting with the matches database
+         * @throws InterruptedException exception thrown whenever a threading
+         * issue occurred while interacting with the matches database
          */
-        public double getTotalSpectrumCountingMass() {
-            return totalSpectrumCountingMass;
+        private void saveBatch(ArrayList<String> batchKeys, ArrayList<PSParameter> batchParameters) throws SQLException, IOException, InterruptedException {
+            updateProteinMatchParameters(identification, batchKeys, batchParameters, false);
+            batchKeys.clear();
+            batchParameters.clear();
         }
 
         /**
-         * Returns the spectrum counting contribution of the proteins iterated
-         * by this runnable.
+         * Returns the molecular weights of the confident target proteins of
+         * every fraction processed by this runnable.
          *
-         * @return the spectrum counting contribution of the proteins iterated
-         * by this runnable
+         * @return the molecular weights of the confident target proteins of
+         * every fraction
          */
-        public double getTotalSpectrumCounting() {
-            return totalSpectrumCounting;
+        public HashMap<String, ArrayList<Double>> getFractionMW() {
+            return fractionMW;
         }
     }
 }
@@ -0,0 +1,789 @@
+package eu.isas.peptideshaker.validation;
+
+import com.compomics.util.experiment.biology.Peptide;
+import com.compomics.util.experiment.biology.genes.GeneMaps;
+import com.compomics.util.experiment.identification.Identification;
+import com.compomics.util.experiment.identification.matches.PeptideMatch;
+import com.compomics.util.experiment.identification.matches.ProteinMatch;
+import com.compomics.util.experiment.identification.protein_sequences.SequenceFactory;
+import com.compomics.util.math.statistics.distributions.NonSymmetricalNormalDistribution;
+import com.compomics.util.preferences.IdentificationParameters;
+import com.compomics.util.preferences.ValidationQCPreferences;
+import com.compomics.util.waiting.WaitingHandler;
+import eu.isas.peptideshaker.parameters.PSParameter;
+import eu.isas.peptideshaker.preferences.SpectrumCountingPreferences;
+import eu.isas.peptideshaker.scoring.MatchValidationLevel;
+import eu.isas.peptideshaker.scoring.PSMaps;
+import eu.isas.peptideshaker.scoring.maps.PeptideSpecificMap;
+import eu.isas.peptideshaker.scoring.targetdecoy.TargetDecoyMap;
+import eu.isas.peptideshaker.scoring.targetdecoy.TargetDecoyResults;
+import eu.isas.peptideshaker.utils.DoubleArrayList;
+import eu.isas.peptideshaker.utils.IdentificationFeaturesGenerator;
+import eu.isas.peptideshaker.utils.Metrics;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import org.apache.commons.math.MathException;
+import uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException;
+
+/**
+ * This class updates the validation level of the matches after a change of the
+ * validation threshold of a target/decoy map when the probabilities did not
+ * change. The probabilities of the matches are indexed once per map, only the
+ * matches whose probability or confidence lies between the previous and the
+ * new limits are validated again, and the counts in the metrics are updated
+ * incrementally.
+ *
+ * Threshold changes at the PSM level also influence the precursor mass error
+ * distribution and the advocate contributions, they are therefore not
+ * supported and require a complete validation.
+ *
+ * @author Marc Vaudel
+ */
+public class ThresholdRevalidator {
+
+    /**
+     * The identification.
+     */
+    private Identification identification;
+    /**
+     * The PeptideShaker scoring maps.
+     */
+    private PSMaps psMaps;
+    /**
+     * The sequence factory.
+     */
+    private SequenceFactory sequenceFactory = SequenceFactory.getInstance();
+    /**
+     * The probability index of the protein matches, null if not built yet.
+     */
+    private ProbabilityIndex proteinIndex = null;
+    /**
+     * The probability indexes of the peptide matches per peptide map, null if
+     * not built yet.
+     */
+    private IdentityHashMap<TargetDecoyMap, ProbabilityIndex> peptideIndexes = null;
+    /**
+     * The number of validated peptides indexed by peptide length.
+     */
+    private HashMap<Integer, Integer> validatedPeptideLengths = null;
+
+    /**
+     * Constructor. The indexes are built upon the first re-validation and must
+     * be discarded whenever the probabilities of the matches change.
+     *
+     * @param identification the identification
+     * @param psMaps the PeptideShaker scoring maps
+     */
+    public ThresholdRevalidator(Identification identification, PSMaps psMaps) {
+        this.identification = identification;
+        this.psMaps = psMaps;
+    }
+
+    /**
+     * Indicates whether the matches of the given map can be re-validated
+     * without running a complete validation. This is the case for the protein
+     * map and, for projects with a single spectrum file, for the peptide maps.
+     *
+     * @param targetDecoyMap the target/decoy map of interest
+     *
+     * @return a boolean indicating whether the matches of the given map can be
+     * re-validated by this class
+     */
+    public boolean canRevalidate(TargetDecoyMap targetDecoyMap) {
+        if (targetDecoyMap == psMaps.getProteinMap().getTargetDecoyMap()) {
+            return true;
+        }
+        if (identification.getSpectrumFiles().size() > 1) {
+            return false; // the validated peptides per fraction would need to be recounted
+        }
+        PeptideSpecificMap peptideMap = psMaps.getPeptideSpecificMap();
+        for (String key : peptideMap.getKeys()) {
+            if (peptideMap.getTargetDecoyMap(key) == targetDecoyMap) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Updates the validation level of the matches of a target/decoy map after
+     * a change of its threshold. The target/decoy results of the map must
+     * already contain the new threshold.
+     *
+     * @param targetDecoyMap the target/decoy map whose threshold changed
+     * @param previousResults the target/decoy results at the previous
+     * threshold
+     * @param metrics the metrics to update
+     * @param geneMaps the gene maps
+     * @param identificationFeaturesGenerator the identification features
+     * generator
+     * @param identificationParameters the identification parameters
+     * @param spectrumCountingPreferences the spectrum counting preferences
+     * @param waitingHandler a waiting handler displaying progress to the user
+     * and allowing canceling the process
+     *
+     * @return the number of matches which were validated again
+     *
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the database
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing an object from the database
+     * @throws InterruptedException exception thrown whenever a threading issue
+     * occurred while interacting with the database
+     * @throws MzMLUnmarshallerException exception thrown whenever an error
+     * occurred while reading an mzML file
+     * @throws MathException exception thrown whenever an error occurred while
+     * doing statistics on a distribution
+     */
+    public int revalidate(TargetDecoyMap targetDecoyMap, TargetDecoyResults previousResults, Metrics metrics, GeneMaps geneMaps,
+            IdentificationFeaturesGenerator identificationFeaturesGenerator, IdentificationParameters identificationParameters,
+            SpectrumCountingPreferences spectrumCountingPreferences, WaitingHandler waitingHandler)
+            throws SQLException, IOException, ClassNotFoundException, InterruptedException, MzMLUnmarshallerException, MathException {
+
+        if (!canRevalidate(targetDecoyMap)) {
+            throw new IllegalArgumentException("The matches of this map cannot be re-validated without a complete validation.");
+        }
+
+        ValidationQCPreferences validationQCPreferences = identificationParameters.getIdValidationPreferences().getValidationQCPreferences();
+        ValidationLimits previousLimits = new ValidationLimits(targetDecoyMap, previousResults, validationQCPreferences);
+        ValidationLimits newLimits = new ValidationLimits(targetDecoyMap, targetDecoyMap.getTargetDecoyResults(), validationQCPreferences);
+
+        if (targetDecoyMap == psMaps.getProteinMap().getTargetDecoyMap()) {
+            ArrayList<String> proteinKeys = getProteinIndex(waitingHandler).getKeysToUpdate(previousLimits, newLimits);
+            revalidateProteins(proteinKeys, newLimits, metrics, geneMaps, identificationFeaturesGenerator, identificationParameters, spectrumCountingPreferences, waitingHandler);
+            return proteinKeys.size();
+        } else {
+            ArrayList<String> peptideKeys = getPeptideIndexes(waitingHandler).get(targetDecoyMap).getKeysToUpdate(previousLimits, newLimits);
+            return revalidatePeptides(peptideKeys, metrics, geneMaps, identificationFeaturesGenerator, identificationParameters, spectrumCountingPreferences, waitingHandler);
+        }
+    }
+
+    /**
+     * Validates the given protein matches again and updates the metrics
+     * accordingly.
+     *
+     * @param proteinKeys the keys of the protein matches to validate
+     * @param limits the validation limits of the protein map
+     * @param metrics the metrics to update
+     * @param geneMaps the gene maps
+     * @param identificationFeaturesGenerator the identification features
+     * generator
+     * @param identificationParameters the identification parameters
+     * @param spectrumCountingPreferences the spectrum counting preferences
+     * @param waitingHandler a waiting handler
+     *
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the database
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing an object from the database
+     * @throws InterruptedException exception thrown whenever a threading issue
+     * occurred while interacting with the database
+     * @throws MzMLUnmarshallerException exception thrown whenever an error
+     * occurred while reading an mzML file
+     * @throws MathException exception thrown whenever an error occurred while
+     * doing statistics on a distribution
+     */
+    private void revalidateProteins(ArrayList<String> proteinKeys, ValidationLimits limits, Metrics metrics, GeneMaps geneMaps,
+            IdentificationFeaturesGenerator identificationFeaturesGenerator, IdentificationParameters identificationParameters,
+            SpectrumCountingPreferences spectrumCountingPreferences, WaitingHandler waitingHandler)
+            throws SQLException, IOException, ClassNotFoundException, InterruptedException, MzMLUnmarshallerException, MathException {
+
+        if (proteinKeys.isEmpty()) {
+            return;
+        }
+
+        TargetDecoyMap targetDecoyMap = psMaps.getProteinMap().getTargetDecoyMap();
+        PSParameter psParameter = new PSParameter();
+        identification.loadProteinMatchParameters(proteinKeys, psParameter, null, false);
+
+        for (String proteinKey : proteinKeys) {
+
+            psParameter = (PSParameter) identification.getProteinMatchParameter(proteinKey, psParameter);
+            MatchValidationLevel previousLevel = psParameter.getMatchValidationLevel();
+
+            MatchesValidator.updateProteinMatchValidationLevel(identification, identificationFeaturesGenerator, geneMaps, identificationParameters,
+                    targetDecoyMap, limits.scoreThreshold, limits.nTargetLimit, limits.confidenceThreshold, limits.noValidated, proteinKey);
+
+            psParameter = (PSParameter) identification.getProteinMatchParameter(proteinKey, psParameter);
+            MatchValidationLevel newLevel = psParameter.getMatchValidationLevel();
+
+            if (newLevel != previousLevel && !ProteinMatch.isDecoy(proteinKey)) {
+
+                if (newLevel.isValidated() != previousLevel.isValidated() && metrics.getnValidatedProteins() != -1) {
+                    metrics.setnValidatedProteins(metrics.getnValidatedProteins() + (newLevel.isValidated() ? 1 : -1));
+                }
+                if ((newLevel == MatchValidationLevel.confident) != (previousLevel == MatchValidationLevel.confident) && metrics.getnConfidentProteins() != -1) {
+                    metrics.setnConfidentProteins(metrics.getnConfidentProteins() + (newLevel == MatchValidationLevel.confident ? 1 : -1));
+                }
+
+                boolean previouslyCounted = previousLevel.getIndex() >= spectrumCountingPreferences.getMatchValidationLevel();
+                boolean counted = newLevel.getIndex() >= spectrumCountingPreferences.getMatchValidationLevel();
+
+                if (previouslyCounted != counted && metrics.getTotalSpectrumCounting() != null) {
+                    double spectrumCounting = identificationFeaturesGenerator.getSpectrumCounting(proteinKey);
+                    if (!counted) {
+                        spectrumCounting = -spectrumCounting;
+                    }
+                    metrics.setTotalSpectrumCounting(metrics.getTotalSpectrumCounting() + spectrumCounting);
+                    if (metrics.getTotalSpectrumCountingMass() != null) {
+                        ProteinMatch proteinMatch = identification.getProteinMatch(proteinKey);
+                        double molecularWeight = sequenceFactory.computeMolecularWeight(proteinMatch.getMainMatch());
+                        metrics.setTotalSpectrumCountingMass(metrics.getTotalSpectrumCountingMass() + molecularWeight * spectrumCounting);
+                    }
+                }
+            }
+
+            if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Validates the given peptide matches again, as well as the proteins
+     * containing the peptides whose validation level changed, and updates the
+     * metrics accordingly.
+     *
+     * @param peptideKeys the keys of the peptide matches to validate
+     * @param metrics the metrics to update
+     * @param geneMaps the gene maps
+     * @param identificationFeaturesGenerator the identification features
+     * generator
+     * @param identificationParameters the identification parameters
+     * @param spectrumCountingPreferences the spectrum counting preferences
+     * @param waitingHandler a waiting handler
+     *
+     * @return the number of matches which were validated again
+     *
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the database
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing an object from the database
+     * @throws InterruptedException exception thrown whenever a threading issue
+     * occurred while interacting with the database
+     * @throws MzMLUnmarshallerException exception thrown whenever an error
+     * occurred while reading an mzML file
+     * @throws MathException exception thrown whenever an error occurred while
+     * doing statistics on a distribution
+     */
+    private int revalidatePeptides(ArrayList<String> peptideKeys, Metrics metrics, GeneMaps geneMaps,
+            IdentificationFeaturesGenerator identificationFeaturesGenerator, IdentificationParameters identificationParameters,
+            SpectrumCountingPreferences spectrumCountingPreferences, WaitingHandler waitingHandler)
+            throws SQLException, IOException, ClassNotFoundException, InterruptedException, MzMLUnmarshallerException, MathException {
+
+        if (peptideKeys.isEmpty()) {
+            return 0;
+        }
+
+        PeptideSpecificMap peptideMap = psMaps.getPeptideSpecificMap();
+        PSParameter psParameter = new PSParameter();
+        identification.loadPeptideMatchParameters(peptideKeys, psParameter, null, false);
+        HashSet<String> proteinKeys = new HashSet<String>();
+        boolean lengthsChanged = false;
+
+        // the spectrum counting of the proteins depends on the validation of their peptides, keep the values before validation to update the totals
+        HashMap<String, Double> previousSpectrumCounting = null;
+        if (metrics.getTotalSpectrumCounting() != null) {
+            HashSet<String> candidateProteinKeys = new HashSet<String>();
+            for (String peptideKey : peptideKeys) {
+                addProteinKeys(peptideKey, candidateProteinKeys, identificationParameters);
+            }
+            previousSpectrumCounting = getCountedSpectrumCounting(candidateProteinKeys, identificationFeaturesGenerator, spectrumCountingPreferences);
+        }
+
+        for (String peptideKey : peptideKeys) {
+
+            psParameter = (PSParameter) identification.getPeptideMatchParameter(peptideKey, psParameter);
+            MatchValidationLevel previousLevel = psParameter.getMatchValidationLevel();
+
+            MatchesValidator.updatePeptideMatchValidationLevel(identification, identificationFeaturesGenerator, geneMaps, identificationParameters, peptideMap, peptideKey);
+
+            psParameter = (PSParameter) identification.getPeptideMatchParameter(peptideKey, psParameter);
+            MatchValidationLevel newLevel = psParameter.getMatchValidationLevel();
+
+            if (newLevel != previousLevel) {
+
+                if (newLevel.isValidated() != previousLevel.isValidated()) {
+                    int length = Peptide.getSequence(peptideKey).length();
+                    Integer nPeptides = validatedPeptideLengths.get(length);
+                    if (nPeptides == null) {
+                        nPeptides = 0;
+                    }
+                    nPeptides += newLevel.isValidated() ? 1 : -1;
+                    validatedPeptideLengths.put(length, nPeptides);
+                    lengthsChanged = true;
+                }
+
+                addProteinKeys(peptideKey, proteinKeys, identificationParameters);
+            }
+
+            if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                return peptideKeys.size();
+            }
+        }
+
+        if (lengthsChanged) {
+            ArrayList<Double> lengths = new ArrayList<Double>();
+            for (Integer length : validatedPeptideLengths.keySet()) {
+                double lengthAsDouble = length;
+                for (int i = 0; i < validatedPeptideLengths.get(length); i++) {
+                    lengths.add(lengthAsDouble);
+                }
+            }
+            if (lengths.size() >= 100) {
+                metrics.setPeptideLengthDistribution(NonSymmetricalNormalDistribution.getRobustNonSymmetricalNormalDistribution(lengths));
+            }
+        }
+
+        ArrayList<String> proteinKeysList = new ArrayList<String>(proteinKeys);
+        for (String proteinKey : proteinKeysList) {
+            identificationFeaturesGenerator.updatePeptideValidationDependentFeatures(proteinKey);
+        }
+
+        if (previousSpectrumCounting != null) {
+            for (String proteinKey : proteinKeysList) {
+                Double previousValue = previousSpectrumCounting.get(proteinKey);
+                if (previousValue != null) {
+                    double spectrumCounting = identificationFeaturesGenerator.getSpectrumCounting(proteinKey);
+                    double difference = spectrumCounting - previousValue;
+                    metrics.setTotalSpectrumCounting(metrics.getTotalSpectrumCounting() + difference);
+                    if (metrics.getTotalSpectrumCountingMass() != null) {
+                        ProteinMatch proteinMatch = identification.getProteinMatch(proteinKey);
+                        double molecularWeight = sequenceFactory.computeMolecularWeight(proteinMatch.getMainMatch());
+                        metrics.setTotalSpectrumCountingMass(metrics.getTotalSpectrumCountingMass() + molecularWeight * difference);
+                    }
+                    if (metrics.getMaxSpectrumCounting() != null && spectrumCounting > metrics.getMaxSpectrumCounting()) {
+                        metrics.setMaxSpectrumCounting(spectrumCounting);
+                    }
+                }
+            }
+        }
+
+        TargetDecoyMap proteinTargetDecoyMap = psMaps.getProteinMap().getTargetDecoyMap();
+        ValidationQCPreferences validationQCPreferences = identificationParameters.getIdValidationPreferences().getValidationQCPreferences();
+        ValidationLimits proteinLimits = new ValidationLimits(proteinTargetDecoyMap, proteinTargetDecoyMap.getTargetDecoyResults(), validationQCPreferences);
+        revalidateProteins(proteinKeysList, proteinLimits, metrics, geneMaps, identificationFeaturesGenerator, identificationParameters, spectrumCountingPreferences, waitingHandler);
+
+        return peptideKeys.size() + proteinKeysList.size();
+    }
+
+    /**
+     * Adds the keys of the protein matches containing a peptide to the given
+     * set.
+     *
+     * @param peptideKey the key of the peptide match
+     * @param proteinKeys the set where to add the keys of the protein matches
+     * @param identificationParameters the identification parameters
+     *
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the database
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing an object from the database
+     * @throws InterruptedException exception thrown whenever a threading issue
+     * occurred while interacting with the database
+     */
+    private void addProteinKeys(String peptideKey, HashSet<String> proteinKeys, IdentificationParameters identificationParameters)
+            throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+        PeptideMatch peptideMatch = identification.getPeptideMatch(peptideKey);
+        for (String accession : peptideMatch.getTheoreticPeptide().getParentProteins(identificationParameters.getSequenceMatchingPreferences())) {
+            HashSet<String> proteinMatches = identification.getProteinMap().get(accession);
+            if (proteinMatches != null) {
+                proteinKeys.addAll(proteinMatches);
+            }
+        }
+    }
+
+    /**
+     * Returns the spectrum counting of the given target protein matches which
+     * are counted in the total spectrum counting of the metrics.
+     *
+     * @param proteinKeys the keys of the protein matches
+     * @param identificationFeaturesGenerator the identification features
+     * generator
+     * @param spectrumCountingPreferences the spectrum counting preferences
+     *
+     * @return the spectrum counting of the counted protein matches indexed by
+     * key
+     *
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the database
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing an object from the database
+     * @throws InterruptedException exception thrown whenever a threading issue
+     * occurred while interacting with the database
+     */
+    private HashMap<String, Double> getCountedSpectrumCounting(HashSet<String> proteinKeys, IdentificationFeaturesGenerator identificationFeaturesGenerator,
+            SpectrumCountingPreferences spectrumCountingPreferences) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+        HashMap<String, Double> result = new HashMap<String, Double>(proteinKeys.size());
+        PSParameter psParameter = new PSParameter();
+        for (String proteinKey : proteinKeys) {
+            if (!ProteinMatch.isDecoy(proteinKey)) {
+                psParameter = (PSParameter) identification.getProteinMatchParameter(proteinKey, psParameter);
+                if (psParameter.getMatchValidationLevel().getIndex() >= spectrumCountingPreferences.getMatchValidationLevel()) {
+                    result.put(proteinKey, identificationFeaturesGenerator.getSpectrumCounting(proteinKey));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the probability index of the protein matches, builds it if
+     * needed.
+     *
+     * @param waitingHandler a waiting handler
+     *
+     * @return the probability index of the protein matches
+     *
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the database
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing an object from the database
+     * @throws InterruptedException exception thrown whenever a threading issue
+     * occurred while interacting with the database
+     */
+    private ProbabilityIndex getProteinIndex(WaitingHandler waitingHandler) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+
+        if (proteinIndex == null) {
+
+            ArrayList<String> proteinKeys = new ArrayList<String>(identification.getProteinIdentification());
+            PSParameter psParameter = new PSParameter();
+            identification.loadProteinMatchParameters(proteinKeys, psParameter, waitingHandler, false);
+            ProbabilityIndex index = new ProbabilityIndex(proteinKeys.size());
+
+            for (String proteinKey : proteinKeys) {
+                psParameter = (PSParameter) identification.getProteinMatchParameter(proteinKey, psParameter);
+                index.add(proteinKey, psParameter.getProteinProbabilityScore(), psParameter.getProteinConfidence());
+            }
+
+            index.sort();
+            proteinIndex = index;
+        }
+
+        return proteinIndex;
+    }
+
+    /**
+     * Returns the probability indexes of the peptide matches per peptide map,
+     * builds them if needed together with the number of validated peptides
+     * per length.
+     *
+     * @param waitingHandler a waiting handler
+     *
+     * @return the probability indexes of the peptide matches
+     *
+     * @throws SQLException exception thrown whenever an error occurred while
+     * interacting with the database
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing an object from the database
+     * @throws InterruptedException exception thrown whenever a threading issue
+     * occurred while interacting with the database
+     */
+    private IdentityHashMap<TargetDecoyMap, ProbabilityIndex> getPeptideIndexes(WaitingHandler waitingHandler) throws SQLException, IOException, ClassNotFoundException, InterruptedException {
+
+        if (peptideIndexes == null) {
+
+            PeptideSpecificMap peptideMap = psMaps.getPeptideSpecificMap();
+            ArrayList<String> peptideKeys = new ArrayList<String>(identification.getPeptideIdentification());
+            PSParameter psParameter = new PSParameter();
+            identification.loadPeptideMatchParameters(peptideKeys, psParameter, waitingHandler, false);
+            IdentityHashMap<TargetDecoyMap, ProbabilityIndex> indexes = new IdentityHashMap<TargetDecoyMap, ProbabilityIndex>();
+            HashMap<Integer, Integer> lengths = new HashMap<Integer, Integer>();
+
+            for (String peptideKey : peptideKeys) {
+
+                psParameter = (PSParameter) identification.getPeptideMatchParameter(peptideKey, psParameter);
+                TargetDecoyMap targetDecoyMap = peptideMap.getTargetDecoyMap(peptideMap.getCorrectedKey(psParameter.getSpecificMapKey()));
+                ProbabilityIndex index = indexes.get(targetDecoyMap);
+                if (index == null) {
+                    index = new ProbabilityIndex(16);
+                    indexes.put(targetDecoyMap, index);
+                }
+                index.add(peptideKey, psParameter.getPeptideProbabilityScore(), psParameter.getPeptideConfidence());
+
+                if (psParameter.getMatchValidationLevel().isValidated()) {
+                    int length = Peptide.getSequence(peptideKey).length();
+                    Integer nPeptides = lengths.get(length);
+                    if (nPeptides == null) {
+                        nPeptides = 0;
+                    }
+                    lengths.put(length, nPeptides + 1);
+                }
+            }
+
+            for (ProbabilityIndex index : indexes.values()) {
+                index.sort();
+            }
+            for (String key : peptideMap.getKeys()) {
+                TargetDecoyMap targetDecoyMap = peptideMap.getTargetDecoyMap(key);
+                if (!indexes.containsKey(targetDecoyMap)) {
+                    ProbabilityIndex index = new ProbabilityIndex(1);
+                    index.sort();
+                    indexes.put(targetDecoyMap, index);
+                }
+            }
+
+            validatedPeptideLengths = lengths;
+            peptideIndexes = indexes;
+        }
+
+        return peptideIndexes;
+    }
+
+    /**
+     * The limits used to validate the matches of a target/decoy map.
+     */
+    private static class ValidationLimits {
+
+        /**
+         * The score threshold, matches with a probability score lower or
+         * equal to this threshold are validated.
+         */
+        private final double scoreThreshold;
+        /**
+         * The confidence threshold, validated matches with a confidence higher
+         * or equal to this threshold can be confident.
+         */
+        private final double confidenceThreshold;
+        /**
+         * The limit in number of target hits before the first decoy hit.
+         */
+        private final double nTargetLimit;
+        /**
+         * Indicates whether no match is validated.
+         */
+        private final boolean noValidated;
+        /**
+         * Indicates whether the map has enough target hits before the first
+         * decoy to consider matches as confident.
+         */
+        private final boolean enoughHits;
+
+        /**
+         * Constructor.
+         *
+         * @param targetDecoyMap the target/decoy map
+         * @param targetDecoyResults the target/decoy results at the threshold
+         * of interest
+         * @param validationQCPreferences the validation quality control
+         * preferences
+         */
+        private ValidationLimits(TargetDecoyMap targetDecoyMap, TargetDecoyResults targetDecoyResults, ValidationQCPreferences validationQCPreferences) {
+            nTargetLimit = 100.0 / targetDecoyResults.getFdrLimit();
+            scoreThreshold = targetDecoyResults.getScoreLimit();
+            double margin = validationQCPreferences.getConfidenceMargin() * targetDecoyMap.getResolution();
+            confidenceThreshold = Math.min(targetDecoyResults.getConfidenceLimit() + margin, 100);
+            noValidated = targetDecoyResults.noValidated();
+            enoughHits = !validationQCPreferences.isFirstDecoy() || targetDecoyMap.getnTargetOnly() > nTargetLimit;
+        }
+    }
+
+    /**
+     * Index of the keys of the matches of a map sorted by probability score
+     * and by confidence.
+     */
+    private static class ProbabilityIndex {
+
+        /**
+         * The match keys in the order of addition.
+         */
+        private ArrayList<String> keys;
+        /**
+         * The probability scores in the order of addition.
+         */
+        private DoubleArrayList probabilityScores;
+        /**
+         * The confidences in the order of addition.
+         */
+        private DoubleArrayList confidences;
+        /**
+         * The keys sorted by increasing probability score.
+         */
+        private String[] keysByProbability;
+        /**
+         * The sorted probability scores.
+         */
+        private double[] sortedProbabilityScores;
+        /**
+         * The keys sorted by increasing confidence.
+         */
+        private String[] keysByConfidence;
+        /**
+         * The sorted confidences.
+         */
+        private double[] sortedConfidences;
+
+        /**
+         * Constructor.
+         *
+         * @param initialCapacity the expected number of matches
+         */
+        private ProbabilityIndex(int initialCapacity) {
+            keys = new ArrayList<String>(initialCapacity);
+            probabilityScores = new DoubleArrayList(initialCapacity);
+            confidences = new DoubleArrayList(initialCapacity);
+        }
+
+        /**
+         * Adds a match to the index.
+         *
+         * @param key the key of the match
+         * @param probabilityScore the probability score of the match
+         * @param confidence the confidence of the match
+         */
+        private void add(String key, double probabilityScore, double confidence) {
+            keys.add(key);
+            probabilityScores.add(probabilityScore);
+            confidences.add(confidence);
+        }
+
+        /**
+         * Sorts the matches added to the index.
+         */
+        private void sort() {
+
+            final double[] probabilityArray = probabilityScores.toArray();
+            final double[] confidenceArray = confidences.toArray();
+            Integer[] order = new Integer[keys.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return Double.compare(probabilityArray[o1], probabilityArray[o2]);
+                }
+            });
+            keysByProbability = new String[order.length];
+            sortedProbabilityScores = new double[order.length];
+            for (int i = 0; i < order.length; i++) {
+                keysByProbability[i] = keys.get(order[i]);
+                sortedProbabilityScores[i] = probabilityArray[order[i]];
+            }
+
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return Double.compare(confidenceArray[o1], confidenceArray[o2]);
+                }
+            });
+            keysByConfidence = new String[order.length];
+            sortedConfidences = new double[order.length];
+            for (int i = 0; i < order.length; i++) {
+                keysByConfidence[i] = keys.get(order[i]);
+                sortedConfidences[i] = confidenceArray[order[i]];
+            }
+
+            keys = null;
+            probabilityScores = null;
+            confidences = null;
+        }
+
+        /**
+         * Returns the keys of the matches whose validation level can differ
+         * between the previous and the new limits, i.e., the matches with a
+         * probability score crossing the score threshold and the matches with a
+         * confidence crossing the confidence threshold. All matches are returned
+         * if the validation of the whole map changed.
+         *
+         * @param previousLimits the previous validation limits
+         * @param newLimits the new validation limits
+         *
+         * @return the keys of the matches to validate again
+         */
+        private ArrayList<String> getKeysToUpdate(ValidationLimits previousLimits, ValidationLimits newLimits) {
+
+            if (previousLimits.noValidated != newLimits.noValidated || previousLimits.enoughHits != newLimits.enoughHits) {
+                return new ArrayList<String>(Arrays.asList(keysByProbability));
+            }
+            if (newLimits.noValidated) {
+                return new ArrayList<String>(0);
+            }
+
+            HashSet<String> result = new HashSet<String>();
+
+            // validated matches have a probability score lower or equal to the score threshold
+            double lowScore = Math.min(previousLimits.scoreThreshold, newLimits.scoreThreshold);
+            double highScore = Math.max(previousLimits.scoreThreshold, newLimits.scoreThreshold);
+            for (int i = firstIndexAbove(sortedProbabilityScores, lowScore); i < sortedProbabilityScores.length && sortedProbabilityScores[i] <= highScore; i++) {
+                result.add(keysByProbability[i]);
+            }
+
+            // confident matches have a confidence higher or equal to the confidence threshold
+            double lowConfidence = Math.min(previousLimits.confidenceThreshold, newLimits.confidenceThreshold);
+            double highConfidence = Math.max(previousLimits.confidenceThreshold, newLimits.confidenceThreshold);
+            for (int i = firstIndexNotBelow(sortedConfidences, lowConfidence); i < sortedConfidences.length && sortedConfidences[i] < highConfidence; i++) {
+                result.add(keysByConfidence[i]);
+            }
+
+            return new ArrayList<String>(result);
+        }
+
+        /**
+         * Returns the index of the first value strictly higher than the given
+         * value in a sorted array.
+         *
+         * @param values the sorted values
+         * @param value the value of interest
+         *
+         * @return the index of the first value strictly higher than the given
+         * value
+         */
+        private static int firstIndexAbove(double[] values, double value) {
+            int low = 0, high = values.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] <= value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the index of the first value higher or equal to the given
+         * value in a sorted array.
+         *
+         * @param values the sorted values
+         * @param value the value of interest
+         *
+         * @return the index of the first value higher or equal to the given
+         * value
+         */
+        private static int firstIndexNotBelow(double[] values, double value) {
+            int low = 0, high = values.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] < value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,717 @@
+package eu.isas.peptideshaker.parameters;
+
+import eu.isas.peptideshaker.scoring.MatchValidationLevel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests the PSParameter: lookups in the sorted per fraction, quality control
+ * and intermediate score arrays, representation of missing values, round trip
+ * of the binary layout and reading of parameters saved with the default Java
+ * serialization.
+ *
+ * @author Marc Vaudel
+ */
+public class PSParameterTest extends TestCase {
+
+    /**
+     * Tests that the per fraction values remain aligned on their fraction when
+     * fractions are added in any order.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * serializing or deserializing the parameter
+     */
+    public void testFractionLookups() throws Exception {
+
+        PSParameter psParameter = new PSParameter();
+        Assert.assertNull(psParameter.getFractions());
+        Assert.assertNull(psParameter.getFractionScore("fraction_1"));
+        Assert.assertEquals(Integer.valueOf(0), psParameter.getFractionValidatedPeptides("fraction_1"));
+        Assert.assertEquals(Integer.valueOf(0), psParameter.getFractionValidatedSpectra("fraction_1"));
+        Assert.assertTrue(psParameter.getPrecursorIntensityPerFraction("fraction_1").isEmpty());
+
+        psParameter.setFractionScore("fraction_c", 0.3);
+        psParameter.setFractionPEP("fraction_a", 0.01);
+        psParameter.setFractionScore("fraction_b", 0.2);
+        HashMap<String, ArrayList<Double>> intensities = new HashMap<String, ArrayList<Double>>();
+        intensities.put("fraction_b", new ArrayList<Double>(Arrays.asList(10.0, 30.0)));
+        intensities.put("fraction_d", new ArrayList<Double>(Arrays.asList(5.0)));
+        psParameter.setPrecursorIntensityPerFraction(intensities);
+        HashMap<String, Integer> validatedPeptides = new HashMap<String, Integer>();
+        validatedPeptides.put("fraction_c", 4);
+        psParameter.setFractionValidatedPeptides(validatedPeptides);
+
+        // fractions inserted before and between the existing ones
+        psParameter.setFractionPEP("fraction_0", 0.05);
+        psParameter.setFractionScore("fraction_bb", 0.25);
+        psParameter.setFractionScore("fraction_c", 0.35);
+
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals(new HashSet<String>(Arrays.asList("fraction_b", "fraction_bb", "fraction_c")), psParameter.getFractions());
+            Assert.assertEquals(0.05, psParameter.getFractionPEP("fraction_0"), 0.0);
+            Assert.assertEquals(0.01, psParameter.getFractionPEP("fraction_a"), 0.0);
+            Assert.assertEquals(99.0, psParameter.getFractionConfidence("fraction_a"), 1e-10);
+            Assert.assertNull(psParameter.getFractionPEP("fraction_b"));
+            Assert.assertNull(psParameter.getFractionConfidence("fraction_b"));
+            Assert.assertNull(psParameter.getFractionScore("fraction_a"));
+            Assert.assertEquals(0.2, psParameter.getFractionScore("fraction_b"), 0.0);
+            Assert.assertEquals(0.25, psParameter.getFractionScore("fraction_bb"), 0.0);
+            Assert.assertEquals(0.35, psParameter.getFractionScore("fraction_c"), 0.0);
+            Assert.assertNull(psParameter.getFractionScore("fraction_e"));
+            Assert.assertEquals(Arrays.asList(10.0, 30.0), psParameter.getPrecursorIntensityPerFraction("fraction_b"));
+            Assert.assertEquals(Arrays.asList(5.0), psParameter.getPrecursorIntensityPerFraction("fraction_d"));
+            Assert.assertNull(psParameter.getPrecursorIntensityPerFraction("fraction_bb"));
+            Assert.assertEquals(20.0, psParameter.getPrecursorIntensityAveragePerFraction("fraction_b"), 0.0);
+            Assert.assertEquals(5.0, psParameter.getPrecursorIntensityAveragePerFraction("fraction_d"), 0.0);
+            Assert.assertNull(psParameter.getPrecursorIntensityAveragePerFraction("fraction_0"));
+            Assert.assertNull(psParameter.getPrecursorIntensitySummedPerFraction("fraction_b"));
+            Assert.assertEquals(Integer.valueOf(4), psParameter.getFractionValidatedPeptides("fraction_c"));
+            Assert.assertNull(psParameter.getFractionValidatedPeptides("fraction_b"));
+            Assert.assertNull(psParameter.getFractionValidatedPeptides("fraction_e"));
+            psParameter = roundTrip(psParameter);
+        }
+    }
+
+    /**
+     * Tests the lookups of the quality control results.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * serializing or deserializing the parameter
+     */
+    public void testQcLookups() throws Exception {
+
+        PSParameter psParameter = new PSParameter();
+        Assert.assertFalse(psParameter.hasQcFilters());
+        Assert.assertNull(psParameter.isQcPassed("Precursor m/z deviation"));
+        Assert.assertTrue(psParameter.getQcCriteria().isEmpty());
+
+        psParameter.setQcResult("Precursor m/z deviation", true);
+        psParameter.setQcResult("Fragment ion sequence coverage", false);
+        psParameter.setQcResult("Sequence coverage", true);
+        psParameter.setQcResult("Precursor m/z deviation", false);
+
+        for (int i = 0; i < 2; i++) {
+            Assert.assertTrue(psParameter.hasQcFilters());
+            Assert.assertEquals(new HashSet<String>(Arrays.asList("Precursor m/z deviation", "Fragment ion sequence coverage", "Sequence coverage")), psParameter.getQcCriteria());
+            Assert.assertEquals(Boolean.FALSE, psParameter.isQcPassed("Precursor m/z deviation"));
+            Assert.assertEquals(Boolean.FALSE, psParameter.isQcPassed("Fragment ion sequence coverage"));
+            Assert.assertEquals(Boolean.TRUE, psParameter.isQcPassed("Sequence coverage"));
+            Assert.assertNull(psParameter.isQcPassed("Charge"));
+            psParameter = roundTrip(psParameter);
+        }
+
+        // after a reset the filters are implemented but have no result
+        psParameter.resetQcResults();
+        for (int i = 0; i < 2; i++) {
+            Assert.assertTrue(psParameter.hasQcFilters());
+            Assert.assertTrue(psParameter.getQcCriteria().isEmpty());
+            Assert.assertNull(psParameter.isQcPassed("Sequence coverage"));
+            psParameter = roundTrip(psParameter);
+        }
+    }
+
+    /**
+     * Tests the lookups of the intermediate scores.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * serializing or deserializing the parameter
+     */
+    public void testIntermediateScoreLookups() throws Exception {
+
+        PSParameter psParameter = new PSParameter();
+        Assert.assertNull(psParameter.getIntermediateScore(0));
+
+        psParameter.createIntermediateScoreMap();
+        Assert.assertNull(psParameter.getIntermediateScore(0));
+
+        psParameter.setIntermediateScore(12, 1.2);
+        psParameter.setIntermediateScore(-1, -0.1);
+        psParameter.setIntermediateScore(3, 0.3);
+        psParameter.setIntermediateScore(12, 1.25);
+
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals(-0.1, psParameter.getIntermediateScore(-1), 0.0);
+            Assert.assertEquals(0.3, psParameter.getIntermediateScore(3), 0.0);
+            Assert.assertEquals(1.25, psParameter.getIntermediateScore(12), 0.0);
+            Assert.assertNull(psParameter.getIntermediateScore(0));
+            Assert.assertNull(psParameter.getIntermediateScore(13));
+            psParameter = roundTrip(psParameter);
+        }
+    }
+
+    /**
+     * Tests that values set to null are returned as missing, also after
+     * serialization and deserialization.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * serializing or deserializing the parameter
+     */
+    public void testMissingValues() throws Exception {
+
+        PSParameter psParameter = new PSParameter();
+        psParameter.setAlgorithmDeltaPEP(0.5);
+        psParameter.setAlgorithmDeltaPEP(null);
+        psParameter.setDeltaPEP(null);
+        psParameter.setManualValidation(null);
+        psParameter.setMatchValidationLevel(MatchValidationLevel.none);
+        psParameter.setFractionPEP("fraction_1", 0.01);
+        psParameter.setFractionPEP("fraction_1", null);
+        psParameter.setFractionScore("fraction_2", null);
+        HashMap<String, Integer> validatedSpectra = new HashMap<String, Integer>();
+        validatedSpectra.put("fraction_1", null);
+        validatedSpectra.put("fraction_2", 0);
+        psParameter.setFractionValidatedSpectra(validatedSpectra);
+        psParameter.setIntermediateScore(1, null);
+        psParameter.setIntermediateScore(2, 0.0);
+
+        for (int i = 0; i < 2; i++) {
+            Assert.assertNull(psParameter.getAlgorithmDeltaPEP());
+            Assert.assertNull(psParameter.getDeltaPEP());
+            Assert.assertFalse(psParameter.isManualValidation());
+            Assert.assertEquals(MatchValidationLevel.none, psParameter.getMatchValidationLevel());
+            Assert.assertNull(psParameter.getFractionPEP("fraction_1"));
+            Assert.assertNull(psParameter.getFractionConfidence("fraction_1"));
+            Assert.assertNull(psParameter.getFractionScore("fraction_2"));
+            Assert.assertTrue(psParameter.getFractions().isEmpty());
+            Assert.assertNull(psParameter.getFractionValidatedSpectra("fraction_1"));
+            Assert.assertEquals(Integer.valueOf(0), psParameter.getFractionValidatedSpectra("fraction_2"));
+            Assert.assertNull(psParameter.getIntermediateScore(1));
+            Assert.assertEquals(0.0, psParameter.getIntermediateScore(2), 0.0);
+            psParameter = roundTrip(psParameter);
+        }
+    }
+
+    /**
+     * Tests that a parameter with all attributes set is identical after
+     * serialization and deserialization, also when serialized again before its
+     * maps were accessed.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * serializing or deserializing the parameter
+     */
+    public void testRoundTrip() throws Exception {
+
+        PSParameter psParameter = getParameter();
+
+        PSParameter deserialized = roundTrip(psParameter);
+        checkParameter(deserialized);
+
+        // the maps are still encoded when serialized again
+        deserialized = roundTrip(roundTrip(psParameter));
+        checkParameter(deserialized);
+    }
+
+    /**
+     * Tests that a parameter without optional attributes is identical after
+     * serialization and deserialization.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * serializing or deserializing the parameter
+     */
+    public void testEmptyRoundTrip() throws Exception {
+
+        PSParameter psParameter = new PSParameter();
+        psParameter.setPsmProbability(0.05);
+
+        PSParameter deserialized = roundTrip(psParameter);
+        Assert.assertEquals(0.05, deserialized.getPsmProbability(), 0.0);
+        Assert.assertEquals(0.0, deserialized.getSearchEngineProbability(), 0.0);
+        Assert.assertNull(deserialized.getAlgorithmDeltaPEP());
+        Assert.assertNull(deserialized.getDeltaPEP());
+        Assert.assertNull(deserialized.getMatchValidationLevel());
+        Assert.assertFalse(deserialized.isManualValidation());
+        Assert.assertFalse(deserialized.isHidden());
+        Assert.assertFalse(deserialized.isStarred());
+        Assert.assertNull(deserialized.getSpecificMapKey());
+        Assert.assertEquals(PSParameter.NOT_GROUP, deserialized.getProteinInferenceClass());
+        Assert.assertNull(deserialized.getFractions());
+        Assert.assertNull(deserialized.getFractionPEP("fraction_1"));
+        Assert.assertFalse(deserialized.hasQcFilters());
+        Assert.assertNull(deserialized.getIntermediateScore(1));
+    }
+
+    /**
+     * Tests that a parameter saved with the default Java serialization of the
+     * previous versions is read.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * serializing or deserializing the parameter
+     */
+    public void testLegacyRead() throws Exception {
+
+        LegacyPSParameter legacyParameter = new LegacyPSParameter();
+        PSParameter deserialized = readLegacy(legacyParameter);
+        checkParameter(deserialized);
+
+        // the new layout is written after reading the legacy one
+        checkParameter(roundTrip(deserialized));
+    }
+
+    /**
+     * Tests that missing values of parameters saved with the default Java
+     * serialization are read as missing.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * serializing or deserializing the parameter
+     */
+    public void testLegacyReadMissingValues() throws Exception {
+
+        LegacyPSParameter legacyParameter = new LegacyPSParameter();
+        legacyParameter.algorithmDeltaPEP = null;
+        legacyParameter.deltaPEP = null;
+        legacyParameter.matchValidationLevel = null;
+        legacyParameter.manualValidation = null;
+        legacyParameter.specificMapKey = null;
+        legacyParameter.fractionPEP.put("fraction_1", null);
+        legacyParameter.fractionScore = null;
+        legacyParameter.validatedPeptidesPerFraction.put("fraction_1", null);
+        legacyParameter.validatedSpectraPerFraction = null;
+        legacyParameter.precursorIntensityPerFraction.put("fraction_2", null);
+        legacyParameter.qcFilters.put("Sequence coverage", null);
+        legacyParameter.intermediateScores.put(3, null);
+
+        PSParameter psParameter = readLegacy(legacyParameter);
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals(0.003, psParameter.getPsmProbability(), 0.0);
+            Assert.assertNull(psParameter.getAlgorithmDeltaPEP());
+            Assert.assertNull(psParameter.getDeltaPEP());
+            Assert.assertNull(psParameter.getMatchValidationLevel());
+            Assert.assertFalse(psParameter.isManualValidation());
+            Assert.assertNull(psParameter.getSpecificMapKey());
+            Assert.assertNull(psParameter.getFractionPEP("fraction_1"));
+            Assert.assertEquals(0.02, psParameter.getFractionPEP("fraction_2"), 0.0);
+            Assert.assertNull(psParameter.getFractions());
+            Assert.assertNull(psParameter.getFractionValidatedPeptides("fraction_1"));
+            Assert.assertEquals(Integer.valueOf(0), psParameter.getFractionValidatedPeptides("fraction_2"));
+            Assert.assertEquals(Integer.valueOf(0), psParameter.getFractionValidatedSpectra("fraction_1"));
+            Assert.assertEquals(Arrays.asList(1000.0, 3000.0), psParameter.getPrecursorIntensityPerFraction("fraction_1"));
+            Assert.assertNull(psParameter.getPrecursorIntensityPerFraction("fraction_2"));
+            Assert.assertEquals(Boolean.FALSE, psParameter.isQcPassed("Sequence coverage"));
+            Assert.assertEquals(Boolean.TRUE, psParameter.isQcPassed("Fragment ion sequence coverage"));
+            Assert.assertNull(psParameter.getIntermediateScore(3));
+            Assert.assertEquals(0.7, psParameter.getIntermediateScore(7), 0.0);
+            psParameter = roundTrip(psParameter);
+        }
+    }
+
+    /**
+     * Tests that parameters saved by versions which did not have all the
+     * attributes are read, the attributes not in the stream being missing.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * serializing or deserializing the parameter
+     */
+    public void testLegacyReadMissingFields() throws Exception {
+
+        PSParameter psParameter = readLegacy(new OldLegacyPSParameter());
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals(0.001, psParameter.getSearchEngineProbability(), 0.0);
+            Assert.assertEquals(0.003, psParameter.getPsmProbability(), 0.0);
+            Assert.assertEquals(0.0, psParameter.getPsmProbabilityScore(), 0.0);
+            Assert.assertNull(psParameter.getDeltaPEP());
+            Assert.assertNull(psParameter.getMatchValidationLevel());
+            Assert.assertFalse(psParameter.isManualValidation());
+            Assert.assertTrue(psParameter.isStarred());
+            Assert.assertFalse(psParameter.isHidden());
+            Assert.assertEquals(PSParameter.NOT_GROUP, psParameter.getProteinInferenceClass());
+            Assert.assertEquals(0.01, psParameter.getFractionPEP("fraction_1"), 0.0);
+            Assert.assertNull(psParameter.getFractions());
+            Assert.assertFalse(psParameter.hasQcFilters());
+            Assert.assertNull(psParameter.getIntermediateScore(1));
+            psParameter = roundTrip(psParameter);
+        }
+    }
+
+    /**
+     * Returns a parameter with all attributes set.
+     *
+     * @return a parameter with all attributes set
+     */
+    private static PSParameter getParameter() {
+
+        PSParameter psParameter = new PSParameter();
+        psParameter.setSearchEngineProbability(0.001);
+        psParameter.setAlgorithmDeltaPEP(0.5);
+        psParameter.setDeltaPEP(0.25);
+        psParameter.setSpectrumProbabilityScore(0.002);
+        psParameter.setPsmProbability(0.003);
+        psParameter.setPeptideProbabilityScore(0.004);
+        psParameter.setPeptideProbability(0.005);
+        psParameter.setProteinProbabilityScore(0.006);
+        psParameter.setProteinProbability(0.007);
+        psParameter.setMatchValidationLevel(MatchValidationLevel.doubtful);
+        psParameter.setManualValidation(true);
+        psParameter.setHidden(true);
+        psParameter.setStarred(true);
+        psParameter.setSpecificMapKey("2");
+        psParameter.setProteinInferenceClass(PSParameter.RELATED_AND_UNRELATED);
+
+        psParameter.setFractionPEP("fraction_2", 0.02);
+        psParameter.setFractionPEP("fraction_1", 0.01);
+        psParameter.setFractionScore("fraction_2", 0.2);
+        psParameter.setFractionScore("fraction_1", 0.1);
+        HashMap<String, Integer> validatedPeptides = new HashMap<String, Integer>();
+        validatedPeptides.put("fraction_1", 3);
+        validatedPeptides.put("fraction_2", 0);
+        psParameter.setFractionValidatedPeptides(validatedPeptides);
+        HashMap<String, Integer> validatedSpectra = new HashMap<String, Integer>();
+        validatedSpectra.put("fraction_1", 5);
+        psParameter.setFractionValidatedSpectra(validatedSpectra);
+        HashMap<String, ArrayList<Double>> intensities = new HashMap<String, ArrayList<Double>>();
+        intensities.put("fraction_1", new ArrayList<Double>(Arrays.asList(1000.0, 3000.0)));
+        psParameter.setPrecursorIntensityPerFraction(intensities);
+
+        psParameter.setQcResult("Precursor m/z deviation", false);
+        psParameter.setQcResult("Fragment ion sequence coverage", true);
+        psParameter.setIntermediateScore(7, 0.7);
+        psParameter.setIntermediateScore(1, 0.1);
+
+        return psParameter;
+    }
+
+    /**
+     * Checks that the given parameter has the attributes of the parameter
+     * returned by getParameter.
+     *
+     * @param psParameter the parameter to check
+     */
+    private static void checkParameter(PSParameter psParameter) {
+
+        Assert.assertEquals(0.001, psParameter.getSearchEngineProbability(), 0.0);
+        Assert.assertEquals(0.5, psParameter.getAlgorithmDeltaPEP(), 0.0);
+        Assert.assertEquals(0.25, psParameter.getDeltaPEP(), 0.0);
+        Assert.assertEquals(0.002, psParameter.getPsmProbabilityScore(), 0.0);
+        Assert.assertEquals(0.003, psParameter.getPsmProbability(), 0.0);
+        Assert.assertEquals(0.004, psParameter.getPeptideProbabilityScore(), 0.0);
+        Assert.assertEquals(0.005, psParameter.getPeptideProbability(), 0.0);
+        Assert.assertEquals(0.006, psParameter.getProteinProbabilityScore(), 0.0);
+        Assert.assertEquals(0.007, psParameter.getProteinProbability(), 0.0);
+        Assert.assertEquals(MatchValidationLevel.doubtful, psParameter.getMatchValidationLevel());
+        Assert.assertTrue(psParameter.isManualValidation());
+        Assert.assertTrue(psParameter.isHidden());
+        Assert.assertTrue(psParameter.isStarred());
+        Assert.assertEquals("2", psParameter.getSpecificMapKey());
+        Assert.assertEquals(PSParameter.RELATED_AND_UNRELATED, psParameter.getProteinInferenceClass());
+
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("fraction_1", "fraction_2")), psParameter.getFractions());
+        Assert.assertEquals(0.01, psParameter.getFractionPEP("fraction_1"), 0.0);
+        Assert.assertEquals(0.02, psParameter.getFractionPEP("fraction_2"), 0.0);
+        Assert.assertEquals(0.1, psParameter.getFractionScore("fraction_1"), 0.0);
+        Assert.assertEquals(0.2, psParameter.getFractionScore("fraction_2"), 0.0);
+        Assert.assertEquals(Integer.valueOf(3), psParameter.getFractionValidatedPeptides("fraction_1"));
+        Assert.assertEquals(Integer.valueOf(0), psParameter.getFractionValidatedPeptides("fraction_2"));
+        Assert.assertEquals(Integer.valueOf(5), psParameter.getFractionValidatedSpectra("fraction_1"));
+        Assert.assertNull(psParameter.getFractionValidatedSpectra("fraction_2"));
+        Assert.assertEquals(Arrays.asList(1000.0, 3000.0), psParameter.getPrecursorIntensityPerFraction("fraction_1"));
+        Assert.assertNull(psParameter.getPrecursorIntensityPerFraction("fraction_2"));
+        Assert.assertEquals(2000.0, psParameter.getPrecursorIntensityAveragePerFraction("fraction_1"), 0.0);
+        Assert.assertNull(psParameter.getPrecursorIntensityAveragePerFraction("fraction_2"));
+
+        Assert.assertTrue(psParameter.hasQcFilters());
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("Precursor m/z deviation", "Fragment ion sequence coverage")), psParameter.getQcCriteria());
+        Assert.assertEquals(Boolean.FALSE, psParameter.isQcPassed("Precursor m/z deviation"));
+        Assert.assertEquals(Boolean.TRUE, psParameter.isQcPassed("Fragment ion sequence coverage"));
+        Assert.assertEquals(0.1, psParameter.getIntermediateScore(1), 0.0);
+        Assert.assertEquals(0.7, psParameter.getIntermediateScore(7), 0.0);
+    }
+
+    /**
+     * Serializes and deserializes a parameter.
+     *
+     * @param psParameter the parameter
+     *
+     * @return the deserialized parameter
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * serializing or deserializing the parameter
+     * @throws ClassNotFoundException exception thrown whenever the class of
+     * the parameter was not found
+     */
+    private static PSParameter roundTrip(PSParameter psParameter) throws IOException, ClassNotFoundException {
+        return (PSParameter) deserialize(serialize(psParameter));
+    }
+
+    /**
+     * Serializes a legacy parameter and reads it as a PSParameter by replacing
+     * the name of its class in the stream.
+     *
+     * @param legacyParameter the legacy parameter, its class must have the
+     * serial version UID of the PSParameter
+     *
+     * @return the deserialized parameter
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * serializing or deserializing the parameter
+     * @throws ClassNotFoundException exception thrown whenever the class of
+     * the parameter was not found
+     */
+    private static PSParameter readLegacy(Serializable legacyParameter) throws IOException, ClassNotFoundException {
+
+        byte[] legacyBytes = serialize(legacyParameter);
+        byte[] legacyName = getUtf(legacyParameter.getClass().getName());
+        byte[] name = getUtf(PSParameter.class.getName());
+
+        int index = indexOf(legacyBytes, legacyName);
+        Assert.assertTrue(index >= 0);
+        byte[] bytes = new byte[legacyBytes.length - legacyName.length + name.length];
+        System.arraycopy(legacyBytes, 0, bytes, 0, index);
+        System.arraycopy(name, 0, bytes, index, name.length);
+        System.arraycopy(legacyBytes, index + legacyName.length, bytes, index + name.length, legacyBytes.length - index - legacyName.length);
+
+        return (PSParameter) deserialize(bytes);
+    }
+
+    /**
+     * Returns a string as written in a serialization stream, i.e. preceded by
+     * its length on two bytes.
+     *
+     * @param string the string
+     *
+     * @return the string as written in a serialization stream
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * encoding the string
+     */
+    private static byte[] getUtf(String string) throws IOException {
+        byte[] characters = string.getBytes("UTF-8");
+        byte[] result = new byte[characters.length + 2];
+        result[0] = (byte) (characters.length >>> 8);
+        result[1] = (byte) characters.length;
+        System.arraycopy(characters, 0, result, 2, characters.length);
+        return result;
+    }
+
+    /**
+     * Returns the index of the first occurrence of a pattern in an array of
+     * bytes, -1 if not found.
+     *
+     * @param bytes the array of bytes
+     * @param pattern the pattern
+     *
+     * @return the index of the first occurrence of the pattern
+     */
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        for (int i = 0; i <= bytes.length - pattern.length; i++) {
+            int j = 0;
+            while (j < pattern.length && bytes[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Serializes an object.
+     *
+     * @param object the object
+     *
+     * @return the serialized object
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * serializing the object
+     */
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes an object.
+     *
+     * @param bytes the serialized object
+     *
+     * @return the object
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * deserializing the object
+     * @throws ClassNotFoundException exception thrown whenever the class of
+     * the object was not found
+     */
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The attributes of the PSParameter as serialized by the default Java
+     * serialization of the previous versions, set to the values of the
+     * parameter returned by getParameter.
+     */
+    private static class LegacyPSParameter implements Serializable {
+
+        /**
+         * The serial version UID of the PSParameter.
+         */
+        static final long serialVersionUID = 2846587135366515967L;
+        /**
+         * Posterior error probability estimated for the search engine results.
+         */
+        private double searchEngineProbability = 0.001;
+        /**
+         * The algorithm delta PEP.
+         */
+        private Double algorithmDeltaPEP = 0.5;
+        /**
+         * The delta PEP.
+         */
+        private Double deltaPEP = 0.25;
+        /**
+         * Probabilistic score for a peptide to spectrum match.
+         */
+        private double psmProbabilityScore = 0.002;
+        /**
+         * Spectrum posterior error probability.
+         */
+        private double psmProbability = 0.003;
+        /**
+         * Probabilistic score for a peptide match.
+         */
+        private double peptideProbabilityScore = 0.004;
+        /**
+         * Peptide posterior error probability.
+         */
+        private double peptideProbability = 0.005;
+        /**
+         * Probabilistic score for a protein match.
+         */
+        private double proteinProbabilityScore = 0.006;
+        /**
+         * Protein posterior error probability.
+         */
+        private double proteinProbability = 0.007;
+        /**
+         * The validation level.
+         */
+        private MatchValidationLevel matchValidationLevel = MatchValidationLevel.doubtful;
+        /**
+         * Indicates whether the validation was manually updated.
+         */
+        private Boolean manualValidation = true;
+        /**
+         * Indicates whether this is a hidden match.
+         */
+        private boolean hidden = true;
+        /**
+         * Indicates whether this is a starred match.
+         */
+        private boolean starred = true;
+        /**
+         * The key in the corresponding specific map.
+         */
+        private String specificMapKey = "2";
+        /**
+         * The protein inference class.
+         */
+        private int groupClass = PSParameter.RELATED_AND_UNRELATED;
+        /**
+         * The fraction PEP per fraction.
+         */
+        private HashMap<String, Double> fractionPEP = new HashMap<String, Double>();
+        /**
+         * The fraction score per fraction.
+         */
+        private HashMap<String, Double> fractionScore = new HashMap<String, Double>();
+        /**
+         * The number of validated peptides per fraction.
+         */
+        private HashMap<String, Integer> validatedPeptidesPerFraction = new HashMap<String, Integer>();
+        /**
+         * The number of validated spectra per fraction.
+         */
+        private HashMap<String, Integer> validatedSpectraPerFraction = new HashMap<String, Integer>();
+        /**
+         * The precursor intensities per fraction.
+         */
+        private HashMap<String, ArrayList<Double>> precursorIntensityPerFraction = new HashMap<String, ArrayList<Double>>();
+        /**
+         * The average precursor intensity per fraction.
+         */
+        private HashMap<String, Double> precursorIntensityAveragePerFraction = new HashMap<String, Double>();
+        /**
+         * The summed precursor intensity per fraction.
+         */
+        private HashMap<String, Double> precursorIntensitySummedPerFraction = null;
+        /**
+         * The results of the validation quality filters.
+         */
+        private HashMap<String, Boolean> qcFilters = new HashMap<String, Boolean>();
+        /**
+         * The intermediate scores.
+         */
+        private HashMap<Integer, Double> intermediateScores = new HashMap<Integer, Double>();
+
+        /**
+         * Constructor filling the maps.
+         */
+        public LegacyPSParameter() {
+            fractionPEP.put("fraction_1", 0.01);
+            fractionPEP.put("fraction_2", 0.02);
+            fractionScore.put("fraction_1", 0.1);
+            fractionScore.put("fraction_2", 0.2);
+            validatedPeptidesPerFraction.put("fraction_1", 3);
+            validatedPeptidesPerFraction.put("fraction_2", 0);
+            validatedSpectraPerFraction.put("fraction_1", 5);
+            precursorIntensityPerFraction.put("fraction_1", new ArrayList<Double>(Arrays.asList(1000.0, 3000.0)));
+            precursorIntensityAveragePerFraction.put("fraction_1", 2000.0);
+            qcFilters.put("Precursor m/z deviation", false);
+            qcFilters.put("Fragment ion sequence coverage", true);
+            intermediateScores.put(1, 0.1);
+            intermediateScores.put(7, 0.7);
+        }
+    }
+
+    /**
+     * The attributes of the PSParameter as serialized by the default Java
+     * serialization of versions which had only part of the attributes.
+     */
+    private static class OldLegacyPSParameter implements Serializable {
+
+        /**
+         * The serial version UID of the PSParameter.
+         */
+        static final long serialVersionUID = 2846587135366515967L;
+        /**
+         * Posterior error probability estimated for the search engine results.
+         */
+        private double searchEngineProbability = 0.001;
+        /**
+         * Spectrum posterior error probability.
+         */
+        private double psmProbability = 0.003;
+        /**
+         * Indicates whether this is a starred match.
+         */
+        private boolean starred = true;
+        /**
+         * The fraction PEP per fraction.
+         */
+        private HashMap<String, Double> fractionPEP = new HashMap<String, Double>();
+
+        /**
+         * Constructor filling the map.
+         */
+        public OldLegacyPSParameter() {
+            fractionPEP.put("fraction_1", 0.01);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package eu.isas.peptideshaker.protein_inference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.TreeMap;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests the minimal protein set computed on small peptide to protein graphs:
+ * the proteins returned explain all peptides and no smaller set does.
+ *
+ * @author Marc Vaudel
+ */
+public class ParsimonySolverTest extends TestCase {
+
+    /**
+     * Tests a chain of proteins where the two proteins at the ends explain all
+     * peptides.
+     */
+    public void testChain() {
+
+        PeptideProteinGraph graph = getGraph(new String[][]{
+            {"A"},
+            {"A", "B"},
+            {"B", "C"},
+            {"C"}});
+
+        Assert.assertEquals(1, graph.getNComponents());
+        Assert.assertEquals(4, graph.getNGroups());
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("A", "C")), solve(graph));
+    }
+
+    /**
+     * Tests a graph where picking the protein with the most peptides first
+     * does not give the minimal protein set.
+     */
+    public void testGreedyTrap() {
+
+        PeptideProteinGraph graph = getGraph(new String[][]{
+            {"A", "C"},
+            {"A", "C"},
+            {"A", "C"},
+            {"B", "C"},
+            {"B", "C"},
+            {"B", "C"},
+            {"A", "E"},
+            {"B", "F"}});
+
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("A", "B")), solve(graph));
+    }
+
+    /**
+     * Tests that independent clusters of proteins are solved separately.
+     */
+    public void testComponents() {
+
+        PeptideProteinGraph graph = getGraph(new String[][]{
+            {"A"},
+            {"A", "B"},
+            {"C", "D"},
+            {"D"},
+            {"E", "F"}});
+
+        Assert.assertEquals(3, graph.getNComponents());
+        HashSet<String> result = solve(graph);
+        Assert.assertEquals(3, result.size());
+        Assert.assertTrue(result.contains("A"));
+        Assert.assertTrue(result.contains("D"));
+        Assert.assertTrue(result.contains("E") || result.contains("F"));
+    }
+
+    /**
+     * Tests the exact search against an exhaustive search on random graphs.
+     */
+    public void testExactCover() {
+
+        Random random = new Random(42);
+
+        for (int test = 0; test < 200; test++) {
+
+            int nAccessions = 2 + random.nextInt(11);
+            int nPeptides = 1 + random.nextInt(20);
+            String[][] peptideAccessions = new String[nPeptides][];
+            for (int peptide = 0; peptide < nPeptides; peptide++) {
+                int nPeptideAccessions = 1 + random.nextInt(Math.min(nAccessions, 4));
+                HashSet<String> accessions = new HashSet<String>();
+                while (accessions.size() < nPeptideAccessions) {
+                    accessions.add("P" + random.nextInt(nAccessions));
+                }
+                peptideAccessions[peptide] = accessions.toArray(new String[accessions.size()]);
+            }
+
+            PeptideProteinGraph graph = getGraph(peptideAccessions);
+            HashSet<String> result = solve(graph);
+            Assert.assertTrue(isCover(peptideAccessions, result));
+            Assert.assertEquals(getMinimalCoverSize(peptideAccessions), result.size());
+        }
+    }
+
+    /**
+     * Tests the greedy search on a component with too many proteins for the
+     * exact search: a chain of proteins where every peptide is shared by two
+     * consecutive proteins.
+     */
+    public void testGreedyCover() {
+
+        int nAccessions = 2 * ParsimonySolver.EXACT_LIMIT;
+        String[][] peptideAccessions = new String[nAccessions - 1][];
+        for (int i = 0; i < nAccessions - 1; i++) {
+            peptideAccessions[i] = new String[]{getAccession(i), getAccession(i + 1)};
+        }
+
+        PeptideProteinGraph graph = getGraph(peptideAccessions);
+        Assert.assertEquals(1, graph.getNComponents());
+        HashSet<String> result = solve(graph);
+        Assert.assertTrue(isCover(peptideAccessions, result));
+        Assert.assertEquals(nAccessions / 2, result.size());
+
+        // No protein can be removed
+        for (String accession : result) {
+            HashSet<String> subset = new HashSet<String>(result);
+            subset.remove(accession);
+            Assert.assertFalse(isCover(peptideAccessions, subset));
+        }
+    }
+
+    /**
+     * Tests that the result does not depend on the order of the peptides.
+     */
+    public void testDeterminism() {
+
+        String[][] peptideAccessions = new String[][]{
+            {"A", "B"},
+            {"B", "C"},
+            {"C", "D"},
+            {"D", "A"}};
+        HashSet<String> reference = solve(getGraph(peptideAccessions));
+        Assert.assertEquals(2, reference.size());
+
+        String[][] reversed = new String[peptideAccessions.length][];
+        for (int i = 0; i < peptideAccessions.length; i++) {
+            reversed[i] = peptideAccessions[peptideAccessions.length - 1 - i];
+        }
+        Assert.assertEquals(reference, solve(getGraph(reversed)));
+        Assert.assertEquals(reference, solve(getGraph(peptideAccessions)));
+    }
+
+    /**
+     * Returns the name of the accession of the given index, padded to keep
+     * the alphabetical order.
+     *
+     * @param i the index of the accession
+     *
+     * @return the accession
+     */
+    private static String getAccession(int i) {
+        return i < 10 ? "P0" + i : "P" + i;
+    }
+
+    /**
+     * Builds the graph of the given peptides: the peptides mapping to the same
+     * proteins are grouped like protein groups are in an identification.
+     *
+     * @param peptideAccessions the accessions of every peptide
+     *
+     * @return the peptide to protein graph
+     */
+    private static PeptideProteinGraph getGraph(String[][] peptideAccessions) {
+
+        TreeMap<String, ArrayList<String>> groupPeptides = new TreeMap<String, ArrayList<String>>();
+        TreeMap<String, String[]> groupAccessions = new TreeMap<String, String[]>();
+        for (int peptide = 0; peptide < peptideAccessions.length; peptide++) {
+            String[] accessions = peptideAccessions[peptide].clone();
+            Arrays.sort(accessions);
+            StringBuilder groupKey = new StringBuilder();
+            for (String accession : accessions) {
+                if (groupKey.length() > 0) {
+                    groupKey.append(",");
+                }
+                groupKey.append(accession);
+            }
+            String key = groupKey.toString();
+            ArrayList<String> peptides = groupPeptides.get(key);
+            if (peptides == null) {
+                peptides = new ArrayList<String>();
+                groupPeptides.put(key, peptides);
+                groupAccessions.put(key, accessions);
+            }
+            peptides.add("peptide_" + peptide);
+        }
+
+        int nGroups = groupPeptides.size();
+        String[] groupKeys = new String[nGroups];
+        String[][] groupsAccessions = new String[nGroups][];
+        String[][] groupsPeptides = new String[nGroups][];
+        int group = 0;
+        for (String key : groupPeptides.keySet()) {
+            groupKeys[group] = key;
+            groupsAccessions[group] = groupAccessions.get(key);
+            ArrayList<String> peptides = groupPeptides.get(key);
+            groupsPeptides[group] = peptides.toArray(new String[peptides.size()]);
+            group++;
+        }
+
+        return new PeptideProteinGraph(groupKeys, groupsAccessions, groupsPeptides);
+    }
+
+    /**
+     * Returns the accessions retained by the solver in all components of the
+     * graph.
+     *
+     * @param graph the peptide to protein graph
+     *
+     * @return the accessions retained
+     */
+    private static HashSet<String> solve(PeptideProteinGraph graph) {
+
+        ParsimonySolver solver = new ParsimonySolver(graph);
+        HashSet<String> result = new HashSet<String>();
+        for (int component = 0; component < graph.getNComponents(); component++) {
+            for (int accession : solver.solve(graph.getComponentGroups(component))) {
+                Assert.assertTrue(result.add(graph.getAccession(accession)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Indicates whether the given accessions explain all peptides.
+     *
+     * @param peptideAccessions the accessions of every peptide
+     * @param accessions the accessions retained
+     *
+     * @return a boolean indicating whether all peptides are explained
+     */
+    private static boolean isCover(String[][] peptideAccessions, HashSet<String> accessions) {
+        for (String[] peptide : peptideAccessions) {
+            boolean covered = false;
+            for (String accession : peptide) {
+                if (accessions.contains(accession)) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the size of the smallest set of accessions explaining all
+     * peptides by enumerating all sets of accessions.
+     *
+     * @param peptideAccessions the accessions of every peptide
+     *
+     * @return the size of the minimal protein set
+     */
+    private static int getMinimalCoverSize(String[][] peptideAccessions) {
+
+        HashSet<String> accessionsSet = new HashSet<String>();
+        for (String[] peptide : peptideAccessions) {
+            accessionsSet.addAll(Arrays.asList(peptide));
+        }
+        String[] accessions = accessionsSet.toArray(new String[accessionsSet.size()]);
+
+        int best = accessions.length;
+        for (int subset = 0; subset < (1 << accessions.length); subset++) {
+            int size = Integer.bitCount(subset);
+            if (size < best) {
+                HashSet<String> candidate = new HashSet<String>();
+                for (int i = 0; i < accessions.length; i++) {
+                    if ((subset & (1 << i)) != 0) {
+                        candidate.add(accessions[i]);
+                    }
+                }
+                if (isCover(peptideAccessions, candidate)) {
+                    best = size;
+                }
+            }
+        }
+        return best;
+    }
+}
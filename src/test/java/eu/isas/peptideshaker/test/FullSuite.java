@@ -1,6 +1,12 @@
 package eu.isas.peptideshaker.test;
 
+import eu.isas.peptideshaker.parameters.PSParameterTest;
 import eu.isas.peptideshaker.pride.PrideWebServiceTest;
+import eu.isas.peptideshaker.protein_inference.ParsimonySolverTest;
+import eu.isas.peptideshaker.utils.CpsxArchiveTest;
+import eu.isas.peptideshaker.utils.DoubleReservoirTest;
+import eu.isas.peptideshaker.utils.OffHeapMatchStoreTest;
+import eu.isas.peptideshaker.utils.ProcessingCheckpointTest;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -19,6 +25,12 @@ public class FullSuite extends TestCase {
     public static Test suite() {
         TestSuite ts = new TestSuite("Test suite for the PeptideShaker project.");
         ts.addTest(new TestSuite(PrideWebServiceTest.class));
+        ts.addTest(new TestSuite(CpsxArchiveTest.class));
+        ts.addTest(new TestSuite(OffHeapMatchStoreTest.class));
+        ts.addTest(new TestSuite(DoubleReservoirTest.class));
+        ts.addTest(new TestSuite(ProcessingCheckpointTest.class));
+        ts.addTest(new TestSuite(PSParameterTest.class));
+        ts.addTest(new TestSuite(ParsimonySolverTest.class));
         return ts;
     }
 }
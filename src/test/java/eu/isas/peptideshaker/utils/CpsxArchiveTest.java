@@ -0,0 +1,374 @@
+package eu.isas.peptideshaker.utils;
+
+import com.compomics.util.gui.waiting.waitinghandlers.WaitingHandlerCLIImpl;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.zip.CRC32;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests the cpsx containers: round trip of the content, rejection of invalid
+ * entries, append of the changed blocks, reuse of the unchanged blocks and
+ * rollback of the canceled writes.
+ *
+ * @author Marc Vaudel
+ */
+public class CpsxArchiveTest extends TestCase {
+
+    /**
+     * The size of the blocks of the container.
+     */
+    private static final int BLOCK_SIZE = 4 * 1024 * 1024;
+    /**
+     * The folder where the test files are written.
+     */
+    private File testFolder;
+
+    @Override
+    protected void setUp() throws IOException {
+        testFolder = File.createTempFile("cpsx_archive_test", "");
+        testFolder.delete();
+        testFolder.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() {
+        delete(testFolder);
+    }
+
+    /**
+     * Tests that the content of a folder is extracted identically, entirely
+     * or entry by entry, and that excluded files are not archived.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * archiving or extracting the files
+     */
+    public void testArchiveRoundTrip() throws Exception {
+
+        File folder = new File(testFolder, "project");
+        File subFolder = new File(folder, "seg0");
+        subFolder.mkdirs();
+        new File(folder, "empty_folder").mkdirs();
+        Random random = new Random(42);
+        byte[] large = new byte[2 * BLOCK_SIZE + 12345];
+        random.nextBytes(large);
+        write(new File(subFolder, "c10.dat"), large);
+        byte[] small = "experiment".getBytes("UTF-8");
+        write(new File(folder, "experiment"), small);
+        write(new File(folder, "empty.dat"), new byte[0]);
+        File excluded = new File(folder, "log.dat");
+        write(excluded, small);
+        HashSet<String> exceptions = new HashSet<String>(1);
+        exceptions.add(excluded.getAbsolutePath());
+
+        File archive = new File(testFolder, "project.cpsx");
+        CpsxArchive.archive(folder, archive, exceptions, 4, null);
+        Assert.assertTrue(CpsxArchive.isCpsxArchive(archive));
+
+        File destination = new File(testFolder, "extracted");
+        CpsxArchive.extract(archive, destination, 4, null);
+        Assert.assertTrue(Arrays.equals(large, read(new File(destination, "seg0/c10.dat"))));
+        Assert.assertTrue(Arrays.equals(small, read(new File(destination, "experiment"))));
+        Assert.assertEquals(0, new File(destination, "empty.dat").length());
+        Assert.assertTrue(new File(destination, "empty_folder").isDirectory());
+        Assert.assertFalse(new File(destination, "log.dat").exists());
+
+        File entryFile = new File(testFolder, "entry");
+        Assert.assertTrue(CpsxArchive.extractEntry(archive, "seg0/c10.dat", entryFile));
+        Assert.assertTrue(Arrays.equals(large, read(entryFile)));
+        Assert.assertFalse(CpsxArchive.extractEntry(archive, "log.dat", entryFile));
+
+        File partialDestination = new File(testFolder, "partial");
+        HashSet<String> entryExceptions = new HashSet<String>(1);
+        entryExceptions.add("seg0/c10.dat");
+        CpsxArchive.extract(archive, partialDestination, entryExceptions, 4, null);
+        Assert.assertTrue(Arrays.equals(small, read(new File(partialDestination, "experiment"))));
+        Assert.assertFalse(new File(partialDestination, "seg0/c10.dat").exists());
+    }
+
+    /**
+     * Tests that an entry navigating to a parent folder is not extracted.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * writing the container
+     */
+    public void testExtractRejectsParentFolderEntries() throws Exception {
+
+        // container with a single folder entry
+        File archive = new File(testFolder, "invalid.cpsx");
+        byte[] magic = {'P', 'S', 'C', 'P', 'S', 'X', '0', '1'};
+        DataOutputStream output = new DataOutputStream(new FileOutputStream(archive));
+        try {
+            output.write(magic);
+            output.writeLong(System.currentTimeMillis());
+            output.writeInt(1);
+            output.writeUTF("../outside");
+            output.writeBoolean(true);
+            output.writeLong(0);
+            output.writeLong(0);
+            output.writeInt(0);
+            output.writeLong(magic.length);
+            output.write(magic);
+        } finally {
+            output.close();
+        }
+        Assert.assertTrue(CpsxArchive.isCpsxArchive(archive));
+
+        File destination = new File(testFolder, "extracted");
+        try {
+            CpsxArchive.extract(archive, destination, 1, null);
+            Assert.fail("Entry extracted outside of the destination folder.");
+        } catch (IOException e) {
+            // expected
+        }
+        Assert.assertFalse(new File(testFolder, "outside").exists());
+    }
+
+    /**
+     * Tests that canceling the writing of a new container leaves the previous
+     * file untouched.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * archiving or extracting the files
+     */
+    public void testCanceledArchiveKeepsPreviousFile() throws Exception {
+
+        File folder = new File(testFolder, "project");
+        folder.mkdirs();
+        byte[] content = new byte[BLOCK_SIZE + 1000];
+        new Random(42).nextBytes(content);
+        write(new File(folder, "file.dat"), content);
+
+        File archive = new File(testFolder, "project.cpsx");
+        CpsxArchive.archive(folder, archive, null, 1, null);
+        byte[] archiveContent = read(archive);
+
+        WaitingHandlerCLIImpl waitingHandler = new WaitingHandlerCLIImpl();
+        waitingHandler.setRunCanceled();
+        CpsxArchive.archive(folder, archive, null, 1, waitingHandler);
+
+        Assert.assertTrue(Arrays.equals(archiveContent, read(archive)));
+        Assert.assertEquals(2, testFolder.listFiles().length);
+    }
+
+    /**
+     * Tests that updating a container only appends the changed blocks and
+     * that the updated container extracts to the new content.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * archiving or extracting the files
+     */
+    public void testUpdateAppendsChangedBlocks() throws Exception {
+
+        File folder = new File(testFolder, "project");
+        folder.mkdirs();
+        Random random = new Random(42);
+        byte[] unchanged = new byte[2 * BLOCK_SIZE + 1000];
+        random.nextBytes(unchanged);
+        write(new File(folder, "unchanged.dat"), unchanged);
+        byte[] changed = new byte[2 * BLOCK_SIZE];
+        random.nextBytes(changed);
+        File changedFile = new File(folder, "changed.dat");
+        write(changedFile, changed);
+
+        File archive = new File(testFolder, "project.cpsx");
+        CpsxArchive.archive(folder, archive, null, 2, null);
+        long initialLength = archive.length();
+
+        changed[BLOCK_SIZE + 10]++;
+        write(changedFile, changed);
+        CpsxArchive.update(folder, archive, null, 2, null);
+
+        // random data does not compress, one block and a new index are appended
+        long appended = archive.length() - initialLength;
+        Assert.assertTrue(appended > BLOCK_SIZE);
+        Assert.assertTrue(appended < 2 * BLOCK_SIZE);
+
+        File destination = new File(testFolder, "extracted");
+        CpsxArchive.extract(archive, destination, 2, null);
+        Assert.assertTrue(Arrays.equals(unchanged, read(new File(destination, "unchanged.dat"))));
+        Assert.assertTrue(Arrays.equals(changed, read(new File(destination, "changed.dat"))));
+    }
+
+    /**
+     * Tests that a block with the same length and checksum as the archived
+     * block but a different content is not reused.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * archiving or extracting the files
+     */
+    public void testBlockWithSameChecksumIsNotReused() throws Exception {
+
+        File folder = new File(testFolder, "project");
+        folder.mkdirs();
+        byte[] content = new byte[1000];
+        new Random(42).nextBytes(content);
+        File file = new File(folder, "file.dat");
+        write(file, content);
+
+        File archive = new File(testFolder, "project.cpsx");
+        CpsxArchive.archive(folder, archive, null, 1, null);
+
+        byte[] collision = getChecksumCollision(content, 500);
+        Assert.assertFalse(Arrays.equals(content, collision));
+        Assert.assertEquals(getChecksum(content), getChecksum(collision));
+        write(file, collision);
+        CpsxArchive.update(folder, archive, null, 1, null);
+
+        File destination = new File(testFolder, "extracted");
+        CpsxArchive.extract(archive, destination, 1, null);
+        Assert.assertTrue(Arrays.equals(collision, read(new File(destination, "file.dat"))));
+    }
+
+    /**
+     * Tests that a canceled update is removed from the container so that the
+     * previous index remains valid.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * archiving or extracting the files
+     */
+    public void testCanceledUpdateIsRolledBack() throws Exception {
+
+        File folder = new File(testFolder, "project");
+        folder.mkdirs();
+        byte[] content = new byte[BLOCK_SIZE + 1000];
+        new Random(42).nextBytes(content);
+        File file = new File(folder, "file.dat");
+        write(file, content);
+
+        File archive = new File(testFolder, "project.cpsx");
+        CpsxArchive.archive(folder, archive, null, 1, null);
+        long initialLength = archive.length();
+
+        byte[] newContent = Arrays.copyOf(content, content.length);
+        newContent[0]++;
+        write(file, newContent);
+        WaitingHandlerCLIImpl waitingHandler = new WaitingHandlerCLIImpl();
+        waitingHandler.setRunCanceled();
+        CpsxArchive.update(folder, archive, null, 1, waitingHandler);
+
+        Assert.assertEquals(initialLength, archive.length());
+        File destination = new File(testFolder, "extracted");
+        CpsxArchive.extract(archive, destination, 1, null);
+        Assert.assertTrue(Arrays.equals(content, read(new File(destination, "file.dat"))));
+    }
+
+    /**
+     * Returns a copy of the given content where five bytes starting at the
+     * given position are changed without changing the CRC32 checksum. The
+     * checksum being linear, the flipped bits are found by solving a linear
+     * system.
+     *
+     * @param content the content
+     * @param position the position of the bytes to change
+     *
+     * @return the modified content
+     */
+    private static byte[] getChecksumCollision(byte[] content, int position) {
+
+        int nBits = 40;
+        int reference = getChecksum(content);
+        int[] pivots = new int[32];
+        long[] pivotCombinations = new long[32];
+
+        for (int bit = 0; bit < nBits; bit++) {
+            byte[] flipped = Arrays.copyOf(content, content.length);
+            flipped[position + bit / 8] ^= 1 << (bit % 8);
+            int vector = getChecksum(flipped) ^ reference;
+            long combination = 1L << bit;
+            for (int i = 31; i >= 0 && vector != 0; i--) {
+                if ((vector & (1 << i)) != 0 && pivots[i] != 0) {
+                    vector ^= pivots[i];
+                    combination ^= pivotCombinations[i];
+                }
+            }
+            if (vector == 0) {
+                byte[] result = Arrays.copyOf(content, content.length);
+                for (int i = 0; i < nBits; i++) {
+                    if ((combination & (1L << i)) != 0) {
+                        result[position + i / 8] ^= 1 << (i % 8);
+                    }
+                }
+                return result;
+            }
+            int pivot = 31 - Integer.numberOfLeadingZeros(vector);
+            pivots[pivot] = vector;
+            pivotCombinations[pivot] = combination;
+        }
+        throw new IllegalStateException("No checksum collision found.");
+    }
+
+    /**
+     * Returns the CRC32 checksum of the given bytes.
+     *
+     * @param bytes the bytes
+     *
+     * @return the checksum
+     */
+    private static int getChecksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes the given content to a file.
+     *
+     * @param file the file
+     * @param content the content
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * writing the file
+     */
+    private static void write(File file, byte[] content) throws IOException {
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Reads the content of a file.
+     *
+     * @param file the file
+     *
+     * @return the content of the file
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the file
+     */
+    private static byte[] read(File file) throws IOException {
+        byte[] content = new byte[(int) file.length()];
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            raf.readFully(content);
+        } finally {
+            raf.close();
+        }
+        return content;
+    }
+
+    /**
+     * Deletes a file or folder recursively.
+     *
+     * @param file the file or folder
+     */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
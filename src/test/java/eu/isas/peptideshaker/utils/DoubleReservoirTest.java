@@ -0,0 +1,98 @@
+package eu.isas.peptideshaker.utils;
+
+import java.util.Arrays;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests the bounded sample of doubles: small samples are complete, the sample
+ * does not depend on the order of the values, merged samples equal the sample
+ * of all values and the percentiles are interpolated.
+ *
+ * @author Marc Vaudel
+ */
+public class DoubleReservoirTest extends TestCase {
+
+    /**
+     * Tests that all values are kept when fewer values than the capacity are
+     * added.
+     */
+    public void testSmallSample() {
+
+        DoubleReservoir reservoir = new DoubleReservoir(100);
+        for (int i = 49; i >= 0; i--) {
+            reservoir.add("spectrum_" + i, i);
+        }
+        Assert.assertEquals(50, reservoir.size());
+        Assert.assertEquals(50, reservoir.getnValues());
+        DoubleArrayList values = reservoir.getSortedValues();
+        for (int i = 0; i < 50; i++) {
+            Assert.assertEquals((double) i, values.get(i), 0.0);
+        }
+    }
+
+    /**
+     * Tests that the sample is bounded and does not depend on the order of
+     * the values or on how they were split before merging.
+     */
+    public void testOrderAndMerge() {
+
+        int nValues = 100000;
+        int capacity = 1000;
+
+        DoubleReservoir ascending = new DoubleReservoir(capacity);
+        for (int i = 0; i < nValues; i++) {
+            ascending.add("spectrum_" + i, i);
+        }
+        DoubleReservoir descending = new DoubleReservoir(capacity);
+        for (int i = nValues - 1; i >= 0; i--) {
+            descending.add("spectrum_" + i, i);
+        }
+        DoubleReservoir merged = new DoubleReservoir(capacity);
+        DoubleReservoir[] parts = new DoubleReservoir[7];
+        for (int j = 0; j < parts.length; j++) {
+            parts[j] = new DoubleReservoir(capacity);
+        }
+        for (int i = 0; i < nValues; i++) {
+            parts[(i * 31) % parts.length].add("spectrum_" + i, i);
+        }
+        for (DoubleReservoir part : parts) {
+            merged.addAll(part);
+        }
+
+        Assert.assertEquals(capacity, ascending.size());
+        Assert.assertEquals(nValues, ascending.getnValues());
+        Assert.assertEquals(nValues, merged.getnValues());
+        double[] expected = ascending.getSortedValues().toArray();
+        Assert.assertTrue(Arrays.equals(expected, descending.getSortedValues().toArray()));
+        Assert.assertTrue(Arrays.equals(expected, merged.getSortedValues().toArray()));
+
+        // the sample is spread over the values
+        Assert.assertTrue(expected[0] < nValues / 10);
+        Assert.assertTrue(expected[capacity - 1] > nValues - nValues / 10);
+        double median = expected[capacity / 2];
+        Assert.assertTrue(Math.abs(median - nValues / 2) < nValues / 10);
+    }
+
+    /**
+     * Tests the percentiles of the sorted sample, interpolated between the
+     * two closest values.
+     */
+    public void testPercentiles() {
+
+        DoubleReservoir reservoir = new DoubleReservoir(100);
+        for (int i = 10; i >= 0; i--) {
+            reservoir.add("spectrum_" + i, 2 * i);
+        }
+        DoubleArrayList values = reservoir.getSortedValues();
+        Assert.assertEquals(0.0, values.getPercentileSorted(0), 0.0);
+        Assert.assertEquals(10.0, values.getPercentileSorted(0.5), 0.0);
+        Assert.assertEquals(20.0, values.getPercentileSorted(1), 0.0);
+        Assert.assertEquals(3.174, values.getPercentileSorted(0.1587), 1e-9);
+        Assert.assertEquals(16.826, values.getPercentileSorted(0.8413), 1e-9);
+
+        DoubleArrayList single = new DoubleArrayList();
+        single.add(3.0);
+        Assert.assertEquals(3.0, single.getPercentileSorted(0.1587), 0.0);
+    }
+}
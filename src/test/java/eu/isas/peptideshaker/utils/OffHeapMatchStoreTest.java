@@ -0,0 +1,353 @@
+package eu.isas.peptideshaker.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests the off-heap match store: storage, overwrite and removal of values,
+ * growth of the table, records at the boundary of the segments and reopening
+ * of the files.
+ *
+ * @author Marc Vaudel
+ */
+public class OffHeapMatchStoreTest extends TestCase {
+
+    /**
+     * The size of the segments of the data file.
+     */
+    private static final int SEGMENT_SIZE = 32 * 1024 * 1024;
+    /**
+     * The name of the store.
+     */
+    private static final String NAME = "test_store";
+    /**
+     * The folder where the store is written.
+     */
+    private File testFolder;
+
+    @Override
+    protected void setUp() throws IOException {
+        testFolder = File.createTempFile("match_store_test", "");
+        testFolder.delete();
+        testFolder.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() {
+        File[] files = testFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        testFolder.delete();
+    }
+
+    /**
+     * Tests the storage, retrieval and overwrite of values.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * using the store
+     */
+    public void testPutGetOverwrite() throws Exception {
+
+        OffHeapMatchStore store = new OffHeapMatchStore(testFolder, NAME, true);
+        try {
+            Assert.assertNull(store.get("spectrum_1"));
+            Assert.assertFalse(store.contains("spectrum_1"));
+
+            store.put("spectrum_1", new byte[]{1, 2, 3});
+            store.put("spectrum_2", new byte[0]);
+            Assert.assertTrue(Arrays.equals(new byte[]{1, 2, 3}, store.get("spectrum_1")));
+            Assert.assertTrue(Arrays.equals(new byte[0], store.get("spectrum_2")));
+            Assert.assertTrue(store.contains("spectrum_2"));
+            Assert.assertEquals(2, store.size());
+
+            store.put("spectrum_1", new byte[]{4, 5});
+            Assert.assertTrue(Arrays.equals(new byte[]{4, 5}, store.get("spectrum_1")));
+            Assert.assertEquals(2, store.size());
+
+            // keys are compared on their UTF-8 bytes
+            store.put("pept\u00efde", new byte[]{6});
+            Assert.assertTrue(Arrays.equals(new byte[]{6}, store.get("pept\u00efde")));
+            Assert.assertNull(store.get("peptide"));
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Tests that all keys are found after the table grew several times and
+     * after reopening the store.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * using the store
+     */
+    public void testGrowTableAndReopen() throws Exception {
+
+        int nKeys = 20000;
+        OffHeapMatchStore store = new OffHeapMatchStore(testFolder, NAME, true);
+        try {
+            for (int i = 0; i < nKeys; i++) {
+                store.put("match_" + i, getValue(i));
+            }
+            // overwrite some values after the growth of the table
+            for (int i = 0; i < nKeys; i += 7) {
+                store.put("match_" + i, getValue(-i));
+            }
+            Assert.assertEquals(nKeys, store.size());
+            checkValues(store, nKeys);
+        } finally {
+            store.close();
+        }
+
+        store = new OffHeapMatchStore(testFolder, NAME, false);
+        try {
+            Assert.assertEquals(nKeys, store.size());
+            checkValues(store, nKeys);
+            store.put("match_" + nKeys, getValue(nKeys));
+            Assert.assertTrue(Arrays.equals(getValue(nKeys), store.get("match_" + nKeys)));
+            Assert.assertEquals(nKeys + 1, store.size());
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Tests the storage of values by batches and that they are found after
+     * reopening the store.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * using the store
+     */
+    public void testPutAll() throws Exception {
+
+        int nKeys = 5000;
+        OffHeapMatchStore store = new OffHeapMatchStore(testFolder, NAME, true);
+        try {
+            ArrayList<String> keys = new ArrayList<String>(nKeys);
+            ArrayList<byte[]> values = new ArrayList<byte[]>(nKeys);
+            for (int i = 0; i < nKeys; i++) {
+                keys.add("match_" + i);
+                values.add(getValue(i));
+            }
+            store.putAll(keys, values);
+            store.putAll(new ArrayList<String>(), new ArrayList<byte[]>());
+            Assert.assertEquals(nKeys, store.size());
+
+            keys.clear();
+            values.clear();
+            for (int i = 0; i < nKeys; i += 7) {
+                keys.add("match_" + i);
+                values.add(getValue(-i));
+            }
+            store.putAll(keys, values);
+            Assert.assertEquals(nKeys, store.size());
+            checkValues(store, nKeys);
+
+            try {
+                store.putAll(keys, new ArrayList<byte[]>());
+                Assert.fail("Batch with missing values stored.");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        } finally {
+            store.close();
+        }
+
+        store = new OffHeapMatchStore(testFolder, NAME, false);
+        try {
+            Assert.assertEquals(nKeys, store.size());
+            checkValues(store, nKeys);
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Tests the removal of keys: the removed keys are not found anymore, the
+     * other keys of the table are still found, also after reopening the
+     * store, and removed keys can be stored again.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * using the store
+     */
+    public void testRemove() throws Exception {
+
+        int nKeys = 5000;
+        OffHeapMatchStore store = new OffHeapMatchStore(testFolder, NAME, true);
+        try {
+            for (int i = 0; i < nKeys; i++) {
+                store.put("match_" + i, getValue(i));
+            }
+            Assert.assertFalse(store.remove("match_" + nKeys));
+
+            // remove runs of keys to empty slots in the middle of clusters
+            int nRemoved = 0;
+            for (int i = 0; i < nKeys; i++) {
+                if (isRemoved(i)) {
+                    Assert.assertTrue(store.remove("match_" + i));
+                    nRemoved++;
+                }
+            }
+            Assert.assertFalse(store.remove("match_0"));
+            Assert.assertEquals(nKeys - nRemoved, store.size());
+            checkRemoved(store, nKeys);
+        } finally {
+            store.close();
+        }
+
+        store = new OffHeapMatchStore(testFolder, NAME, false);
+        try {
+            checkRemoved(store, nKeys);
+            store.put("match_0", getValue(-1));
+            Assert.assertTrue(Arrays.equals(getValue(-1), store.get("match_0")));
+            Assert.assertTrue(store.remove("match_4"));
+            Assert.assertFalse(store.contains("match_4"));
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Tests that records which do not fit in the remaining space of a segment
+     * are written in the next segment and can be read after reopening.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * using the store
+     */
+    public void testSegmentBoundaries() throws Exception {
+
+        Random random = new Random(42);
+        byte[] first = new byte[SEGMENT_SIZE / 2];
+        random.nextBytes(first);
+        byte[] second = new byte[SEGMENT_SIZE / 2];
+        random.nextBytes(second);
+        byte[] largest = new byte[SEGMENT_SIZE - 8 - "largest".length()];
+        random.nextBytes(largest);
+
+        OffHeapMatchStore store = new OffHeapMatchStore(testFolder, NAME, true);
+        try {
+            store.put("first", first);
+            store.put("second", second);
+            store.put("largest", largest);
+            store.put("small", new byte[]{1});
+            Assert.assertTrue(Arrays.equals(first, store.get("first")));
+            Assert.assertTrue(Arrays.equals(second, store.get("second")));
+            Assert.assertTrue(Arrays.equals(largest, store.get("largest")));
+            try {
+                store.put("too large", new byte[SEGMENT_SIZE]);
+                Assert.fail("Record larger than a segment stored.");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        } finally {
+            store.close();
+        }
+
+        // three segments are mapped for the data file
+        Assert.assertTrue(new File(testFolder, NAME + OffHeapMatchStore.DATA_SUFFIX).length() > 2L * SEGMENT_SIZE);
+
+        store = new OffHeapMatchStore(testFolder, NAME, false);
+        try {
+            Assert.assertTrue(Arrays.equals(first, store.get("first")));
+            Assert.assertTrue(Arrays.equals(second, store.get("second")));
+            Assert.assertTrue(Arrays.equals(largest, store.get("largest")));
+            Assert.assertTrue(Arrays.equals(new byte[]{1}, store.get("small")));
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Tests that a closed store cannot be used anymore and that its files can
+     * be deleted.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * using the store
+     */
+    public void testClose() throws Exception {
+
+        OffHeapMatchStore store = new OffHeapMatchStore(testFolder, NAME, true);
+        store.put("spectrum_1", new byte[]{1});
+        store.close();
+        store.close();
+
+        try {
+            store.get("spectrum_1");
+            Assert.fail("Closed store read.");
+        } catch (IOException e) {
+            // expected
+        }
+        Assert.assertTrue(new File(testFolder, NAME + OffHeapMatchStore.DATA_SUFFIX).delete());
+        Assert.assertTrue(new File(testFolder, NAME + OffHeapMatchStore.INDEX_SUFFIX).delete());
+    }
+
+    /**
+     * Checks the values written by testGrowTableAndReopen.
+     *
+     * @param store the store
+     * @param nKeys the number of keys
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the store
+     */
+    private static void checkValues(OffHeapMatchStore store, int nKeys) throws IOException {
+        for (int i = 0; i < nKeys; i++) {
+            byte[] expected = i % 7 == 0 ? getValue(-i) : getValue(i);
+            Assert.assertTrue("match_" + i, Arrays.equals(expected, store.get("match_" + i)));
+        }
+    }
+
+    /**
+     * Indicates whether the key of the given number is removed by testRemove.
+     *
+     * @param number the number of the key
+     *
+     * @return a boolean indicating whether the key is removed
+     */
+    private static boolean isRemoved(int number) {
+        return number % 3 == 0 || number % 10 < 4;
+    }
+
+    /**
+     * Checks the values left by testRemove.
+     *
+     * @param store the store
+     * @param nKeys the number of keys stored before the removal
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading the store
+     */
+    private static void checkRemoved(OffHeapMatchStore store, int nKeys) throws IOException {
+        for (int i = 0; i < nKeys; i++) {
+            String key = "match_" + i;
+            if (isRemoved(i)) {
+                Assert.assertFalse(key, store.contains(key));
+                Assert.assertNull(store.get(key));
+            } else {
+                Assert.assertTrue(key, Arrays.equals(getValue(i), store.get(key)));
+            }
+        }
+    }
+
+    /**
+     * Returns a value of variable length derived from the given number.
+     *
+     * @param number the number
+     *
+     * @return the value
+     */
+    private static byte[] getValue(int number) {
+        byte[] value = new byte[Math.abs(number) % 50 + 1];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = (byte) (number + i);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,129 @@
+package eu.isas.peptideshaker.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests the checkpoints of the processing: resuming after any phase runs the
+ * same phases as an uninterrupted processing, and the state saved after
+ * every phase is restored when resuming.
+ *
+ * @author Marc Vaudel
+ */
+public class ProcessingCheckpointTest extends TestCase {
+
+    /**
+     * The database folder where the state is saved.
+     */
+    private File dbFolder;
+
+    @Override
+    protected void setUp() throws IOException {
+        dbFolder = File.createTempFile("processing_checkpoint_test", "");
+        dbFolder.delete();
+        dbFolder.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() {
+        File[] files = dbFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dbFolder.delete();
+    }
+
+    /**
+     * Tests that the phases completed before a checkpoint and the phases
+     * pending when resuming from it are, for every phase, the phases of an
+     * uninterrupted processing in the same order.
+     */
+    public void testResumeFromEveryPhase() {
+
+        ProcessingPhase[] phases = ProcessingPhase.values();
+        for (int i = 0; i < phases.length; i++) {
+            Assert.assertEquals(i, phases[i].getIndex());
+            Assert.assertEquals(phases[i], ProcessingPhase.getProcessingPhase(i));
+        }
+        Assert.assertNull(ProcessingPhase.getProcessingPhase(phases.length));
+
+        ArrayList<ProcessingPhase> uninterruptedRun = getExecutedPhases(null);
+        Assert.assertEquals(phases.length, uninterruptedRun.size());
+
+        for (ProcessingPhase lastCompletedPhase : phases) {
+            ArrayList<ProcessingPhase> interruptedRun = getExecutedPhases(null);
+            ArrayList<ProcessingPhase> resumedRun = getExecutedPhases(lastCompletedPhase);
+            interruptedRun.removeAll(resumedRun);
+            Assert.assertEquals(lastCompletedPhase, interruptedRun.get(interruptedRun.size() - 1));
+            ArrayList<ProcessingPhase> run = new ArrayList<ProcessingPhase>(interruptedRun);
+            run.addAll(resumedRun);
+            Assert.assertEquals(lastCompletedPhase.getName(), uninterruptedRun, run);
+        }
+    }
+
+    /**
+     * Tests that the state saved after every phase is restored and that a
+     * new checkpoint replaces the previous one.
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * saving or loading the state
+     */
+    public void testSaveAndLoad() throws Exception {
+
+        Assert.assertNull(ProcessingCheckpoint.load(dbFolder));
+
+        HashMap<String, Integer> proteinCount = new HashMap<String, Integer>();
+        proteinCount.put("P12345", 2);
+        proteinCount.put("Q67890", 5);
+
+        for (ProcessingPhase phase : ProcessingPhase.values()) {
+            new ProcessingCheckpoint(phase, null, proteinCount).save(dbFolder);
+            ProcessingCheckpoint checkpoint = ProcessingCheckpoint.load(dbFolder);
+            Assert.assertNotNull(checkpoint);
+            Assert.assertSame(phase, checkpoint.getLastCompletedPhase());
+            Assert.assertEquals(proteinCount, checkpoint.getProteinCount());
+            Assert.assertNull(checkpoint.getPsMaps());
+            Assert.assertEquals(getExecutedPhases(phase), getExecutedPhases(checkpoint.getLastCompletedPhase()));
+        }
+
+        ProcessingCheckpoint.delete(dbFolder);
+        Assert.assertFalse(ProcessingCheckpoint.getStateFile(dbFolder).exists());
+        Assert.assertNull(ProcessingCheckpoint.load(dbFolder));
+        ProcessingCheckpoint.delete(dbFolder);
+    }
+
+    /**
+     * Tests the name of the checkpoint file.
+     */
+    public void testCheckpointFile() {
+
+        File cpsFile = new File(dbFolder, "project.cpsx");
+        File checkpointFile = ProcessingCheckpoint.getCheckpointFile(cpsFile);
+        Assert.assertEquals(dbFolder, checkpointFile.getParentFile());
+        Assert.assertEquals("project.cpsx" + ProcessingCheckpoint.CHECKPOINT_FILE_SUFFIX, checkpointFile.getName());
+    }
+
+    /**
+     * Returns the phases executed by the processing when resuming after the
+     * given phase in the order of execution.
+     *
+     * @param lastCompletedPhase the last completed phase, null if none
+     *
+     * @return the phases executed by the processing
+     */
+    private static ArrayList<ProcessingPhase> getExecutedPhases(ProcessingPhase lastCompletedPhase) {
+        ArrayList<ProcessingPhase> result = new ArrayList<ProcessingPhase>();
+        for (ProcessingPhase phase : ProcessingPhase.values()) {
+            if (phase.isPending(lastCompletedPhase)) {
+                result.add(phase);
+            }
+        }
+        return result;
+    }
+}